@@ -52,6 +52,9 @@
  *       one step at a time</li>
  *   <li>{@link org.foolish.fvm.ubc.UnicelluarBraneComputer#runToCompletion()} executes
  *       until all expressions are evaluated</li>
+ *   <li>{@link org.foolish.fvm.ubc.UnicelluarBraneComputer#runFor(long)} and
+ *       {@link org.foolish.fvm.ubc.UnicelluarBraneComputer#runUntil(java.time.Instant)} run
+ *       within a budget and leave the UBC resumable</li>
  *   <li>Returns frozen {@link org.foolish.fvm.Env} for fully evaluated branes</li>
  *   <li>Returns integer values for expression Firoes</li>
  * </ul>
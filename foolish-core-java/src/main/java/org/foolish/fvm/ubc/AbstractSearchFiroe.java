@@ -16,12 +16,44 @@ public abstract class AbstractSearchFiroe extends FiroeWithBraneMind implements
     protected final SearchOperator operator;
     protected Optional<FIR> searchResult = null;
     protected FIR unwrapAnchor = null;
+    /** What the last step waited on without making progress; see {@link #blockedOn()}. */
+    private FIR waitingOn = null;
 
     protected AbstractSearchFiroe(AST.Expr ast, SearchOperator operator) {
         super(ast);
         this.operator = operator;
     }
 
+    AbstractSearchFiroe(UbcSnapshot.In in) {
+        super(in);
+        this.operator = in.ordinal(SearchOperator.values());
+    }
+
+    @Override
+    void writeFinals(UbcSnapshot.Out out) {
+        super.writeFinals(out);
+        out.ordinal(operator);
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.bool(searchResult != null);
+        out.ref(searchResult != null ? searchResult.orElse(null) : null);
+        out.ref(unwrapAnchor);
+        out.ref(waitingOn);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        boolean searched = in.bool();
+        FIR found = in.ref();
+        searchResult = searched ? Optional.ofNullable(found) : null;
+        unwrapAnchor = in.ref();
+        waitingOn = in.ref();
+    }
+
     /**
      * Copy constructor for cloneConstanic.
      * Resets search state so the search can be re-executed in a new context.
@@ -53,10 +85,15 @@ public abstract class AbstractSearchFiroe extends FiroeWithBraneMind implements
     }
 
     public int step() {
+        waitingOn = null;
         switch (getNyes()) {
             case UNINITIALIZED -> {
                 initialize();
                 setNyes(Nyes.INITIALIZED);
+                if (executionContext().isFusedTransitions()) {
+                    prime();
+                    setNyes(Nyes.CHECKED);
+                }
                 return 1;
             }
             case INITIALIZED -> {
@@ -81,7 +118,7 @@ public abstract class AbstractSearchFiroe extends FiroeWithBraneMind implements
                     
                     if (isAnchorReady()) {
                         int work = performSearchStep();
-                        if (work == 0) {
+                        if (work == 0 && searchResult == null) {
                              // Waiting for dependency
                              return 0;
                         }
@@ -102,7 +139,8 @@ public abstract class AbstractSearchFiroe extends FiroeWithBraneMind implements
                         
                         // Wait for result to be ready
                         if (result.isNye()) {
-                             return 1; 
+                             waitingOn = result;
+                             return stepResult(result);
                         }
                         if (result.atConstanic()) {
                             setNyes(Nyes.CONSTANIC);
@@ -151,12 +189,27 @@ public abstract class AbstractSearchFiroe extends FiroeWithBraneMind implements
         return isBraneEmpty();
     }
 
+    @Override
+    protected FIR blockedOn() {
+        return waitingOn;
+    }
+
     protected boolean isAnchorReady() {
         // stepNonBranesUntilState(PRIMED) ensures general readiness.
         // We just need to know if we have something to anchor to.
         return !isMemoryEmpty();
     }
 
+    /**
+     * Called while the result found is still nye. The result is normally a line of the searched brane, which
+     * that brane steps, so this only waits; a search that owns its result steps it here.
+     *
+     * @return the work done, 0 to be parked until the result changes
+     */
+    protected int stepResult(FIR result) {
+        return 1;
+    }
+
     protected int performSearchStep() {
         if (searchResult != null) return 0; // Already finished search
 
@@ -174,6 +227,7 @@ public abstract class AbstractSearchFiroe extends FiroeWithBraneMind implements
 
         if (valuable == null) {
             // Anchor not ready (pre-PRIMED or evaluating)
+            waitingOn = unwrapAnchor;
             return 0; // Waiting
         }
 
@@ -203,8 +257,12 @@ public abstract class AbstractSearchFiroe extends FiroeWithBraneMind implements
              
              // Unwrap the result using recursive valuableSelf()
              Optional<FIR> val = result.valuableSelf();
+             if (demand(val == null ? result : val.orElse(null))) {
+                 return 1;
+             }
              if (val == null) {
                  // Result depends on something not ready. Wait.
+                 waitingOn = result;
                  return 0; // Waiting
              }
              
@@ -237,29 +295,46 @@ public abstract class AbstractSearchFiroe extends FiroeWithBraneMind implements
         return 1;
     }
 
-    protected SearchCursor createCursor(BraneFiroe target) {
-        ReadOnlyBraneMemory memory = target.getBraneMemory();
-        int size = memory.size();
+    /**
+     * With {@link ExecutionContext#isLazyBranes()}, a nye statement found in a lazy brane may be stepped by
+     * nobody else, so the search queues it as its own child; the search runs again once it has completed.
+     *
+     * @return true if the FIR was queued
+     */
+    private boolean demand(FIR found) {
+        if (found == null || !found.isNye() || !executionContext().isLazyBranes()) {
+            return false;
+        }
+        braneEnqueue(found);
+        return true;
+    }
 
-        // Handle empty memory gracefully
-        int lastIndex = Math.max(0, size - 1);
+    protected SearchCursor createCursor(BraneFiroe target) {
         int firstIndex = 0;
 
-        // Note: boolean defaults: inclusive=true, braneBound=true (for now)
+        // Note: boolean defaults: inclusive=true, braneBound=true except for the global operators
         return switch (operator) {
             case HEAD -> new SearchCursor(new FoolishCursor(target, firstIndex), true, true, true);
-            case TAIL -> new SearchCursor(new FoolishCursor(target, lastIndex), false, true, true);
+            case TAIL -> new SearchCursor(new FoolishCursor(target, lastIndex(target)), false, true, true);
             
-            case REGEXP_LOCAL -> new SearchCursor(new FoolishCursor(target, lastIndex), false, true, true);
-            case REGEXP_GLOBAL -> new SearchCursor(new FoolishCursor(target, lastIndex), false, true, true);
+            case REGEXP_LOCAL -> new SearchCursor(new FoolishCursor(target, lastIndex(target)), false, true, true);
+            case REGEXP_GLOBAL -> new SearchCursor(new FoolishCursor(target, lastIndex(target)), false, true, false);
             case REGEXP_FORWARD_LOCAL -> new SearchCursor(new FoolishCursor(target, firstIndex), true, true, true);
-            case REGEXP_FORWARD_GLOBAL -> new SearchCursor(new FoolishCursor(target, firstIndex), true, true, true);
+            case REGEXP_FORWARD_GLOBAL -> new SearchCursor(new FoolishCursor(target, firstIndex), true, true, false);
             
             // Default fallbacks
             default -> new SearchCursor(new FoolishCursor(target, firstIndex), true, true, true);
         };
     }
 
+    /**
+     * The last line of the target, 0 if it is empty. Only backward searches ask, so forward ones leave a lazily
+     * filled brane (see {@link FindAllSearchFiroe}) unread past what they find.
+     */
+    private static int lastIndex(BraneFiroe target) {
+        return Math.max(0, target.getBraneMemory().size() - 1);
+    }
+
     protected abstract FIR executeSearch(SearchCursor cursor);
 
     public FIR getResult() {
@@ -281,26 +356,21 @@ public abstract class AbstractSearchFiroe extends FiroeWithBraneMind implements
     protected abstract FIR cloneConstanic(FIR newParent, Optional<Nyes> targetNyes);
 
     @Override
-    public Optional<FIR> valuableSelf() {
+    protected Optional<FIR> valuableSelf(int depth) {
         // GIGANTIC TODO: CHECK FOR CIRCULAR REFERENCE
         // Implementing simple recursion limit to prevent StackOverflow
-        if (FIR.RECURSION_DEPTH.get() > 100) {
+        if (depth > MAX_VALUABLE_DEPTH) {
             return Optional.empty();
         }
 
-        try {
-            FIR.RECURSION_DEPTH.set(FIR.RECURSION_DEPTH.get() + 1);
-            if (searchResult != null) {
-                // Found a result (could be empty if not found/constanic)
-                 if (searchResult.isEmpty()) {
-                     return Optional.empty();
-                 }
-                 return searchResult.get().valuableSelf();
-            }
-            // Not ready/evaluated yet
-            return null;
-        } finally {
-            FIR.RECURSION_DEPTH.set(FIR.RECURSION_DEPTH.get() - 1);
+        if (searchResult != null) {
+            // Found a result (could be empty if not found/constanic)
+             if (searchResult.isEmpty()) {
+                 return Optional.empty();
+             }
+             return searchResult.get().valuableSelf(depth + 1);
         }
+        // Not ready/evaluated yet
+        return null;
     }
 }
@@ -0,0 +1,254 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An arithmetic expression lowered to a flat instruction array over {@code long} registers.
+ * <p>
+ * {@link #compile(AST.Expr)} takes the maximal arithmetic subtree rooted at an expression: binary and
+ * unary operator nodes plus integer literals. Every other subexpression (identifiers, searches, ifs, ...)
+ * becomes an <em>input</em>: it is still evaluated as an ordinary FIR, and its value is loaded into a
+ * register before the program runs. Repeated identifiers share one input, as they resolve identically.
+ * <p>
+ * Register layout: inputs first, then literals (preloaded from {@link #constants}), then one register per
+ * operator node. Each instruction is four ints: opcode, destination, first and second operand register.
+ * <p>
+ * {@link #run(long[])} follows {@link BinaryFiroe} and {@link UnaryFiroe} exactly, including division or
+ * modulo by zero, which throws an {@link ArithmeticException} the caller turns into NK.
+ */
+final class ArithmeticProgram {
+    static final int ADD = 0;
+    static final int SUB = 1;
+    static final int MUL = 2;
+    static final int DIV = 3;
+    static final int MOD = 4;
+    static final int EQ = 5;
+    static final int NE = 6;
+    static final int LT = 7;
+    static final int LE = 8;
+    static final int GT = 9;
+    static final int GE = 10;
+    static final int AND = 11;
+    static final int OR = 12;
+    static final int NEG = 13;
+    static final int NOT = 14;
+
+    /** Width of one instruction in {@link #code}. */
+    static final int WIDTH = 4;
+
+    private final List<AST.Expr> inputs;
+    private final long[] constants;
+    private final int[] code;
+    private final int registerCount;
+    private final int resultRegister;
+
+    private ArithmeticProgram(List<AST.Expr> inputs, long[] constants, int[] code, int registerCount,
+                              int resultRegister) {
+        this.inputs = inputs;
+        this.constants = constants;
+        this.code = code;
+        this.registerCount = registerCount;
+        this.resultRegister = resultRegister;
+    }
+
+    /**
+     * Compiles the arithmetic subtree rooted at the given expression.
+     *
+     * @return the program, or null if the root itself is not an operator the interpreter supports
+     */
+    static ArithmeticProgram compile(AST.Expr expr) {
+        if (opcode(expr) < 0) {
+            return null;
+        }
+        return new Compiler(expr).finish();
+    }
+
+    /**
+     * Subexpressions evaluated as FIRs; input {@code i} is loaded into register {@code i}.
+     */
+    List<AST.Expr> inputs() {
+        return inputs;
+    }
+
+    int[] code() {
+        return code;
+    }
+
+    long[] constants() {
+        return constants;
+    }
+
+    int registerCount() {
+        return registerCount;
+    }
+
+    int resultRegister() {
+        return resultRegister;
+    }
+
+    /**
+     * Number of operator nodes folded into this program, i.e. FIRs that are no longer created and stepped.
+     */
+    int operatorCount() {
+        return code.length / WIDTH;
+    }
+
+    /**
+     * Runs the program.
+     *
+     * @param inputValues the value of each input, in {@link #inputs()} order
+     * @return the value of the root expression
+     * @throws ArithmeticException on division or modulo by zero
+     */
+    long run(long[] inputValues) {
+        long[] r = new long[registerCount];
+        System.arraycopy(inputValues, 0, r, 0, inputs.size());
+        System.arraycopy(constants, 0, r, inputs.size(), constants.length);
+        for (int pc = 0; pc < code.length; pc += WIDTH) {
+            long a = r[code[pc + 2]];
+            long b = r[code[pc + 3]];
+            r[code[pc + 1]] = switch (code[pc]) {
+                case ADD -> a + b;
+                case SUB -> a - b;
+                case MUL -> a * b;
+                case DIV -> {
+                    if (b == 0) throw new ArithmeticException("Division by zero");
+                    yield a / b;
+                }
+                case MOD -> {
+                    if (b == 0) throw new ArithmeticException("Modulo by zero");
+                    yield a % b;
+                }
+                case EQ -> a == b ? 1L : 0L;
+                case NE -> a != b ? 1L : 0L;
+                case LT -> a < b ? 1L : 0L;
+                case LE -> a <= b ? 1L : 0L;
+                case GT -> a > b ? 1L : 0L;
+                case GE -> a >= b ? 1L : 0L;
+                case AND -> (a != 0 && b != 0) ? 1L : 0L;
+                case OR -> (a != 0 || b != 0) ? 1L : 0L;
+                case NEG -> -a;
+                case NOT -> a == 0 ? 1L : 0L;
+                default -> throw new IllegalStateException("Unknown opcode: " + code[pc]);
+            };
+        }
+        return r[resultRegister];
+    }
+
+    /**
+     * The opcode for an operator node, or -1 if the expression is not one the interpreter supports.
+     */
+    private static int opcode(AST.Expr expr) {
+        return switch (expr) {
+            case AST.BinaryExpr binary -> switch (binary.op()) {
+                case "+" -> ADD;
+                case "-" -> SUB;
+                case "*" -> MUL;
+                case "/" -> DIV;
+                case "%" -> MOD;
+                case "==" -> EQ;
+                case "!=", "<>" -> NE;
+                case "<" -> LT;
+                case "<=" -> LE;
+                case ">" -> GT;
+                case ">=" -> GE;
+                case "&&" -> AND;
+                case "||" -> OR;
+                default -> -1;
+            };
+            case AST.UnaryExpr unary -> switch (unary.op()) {
+                case "-" -> NEG;
+                case "!" -> NOT;
+                default -> -1;
+            };
+            default -> -1;
+        };
+    }
+
+    /**
+     * Two passes over the subtree: the first numbers inputs and literals, the second emits
+     * instructions in evaluation order, so every register index is known when it is emitted.
+     */
+    private static final class Compiler {
+        private final AST.Expr root;
+        private final Map<AST.Identifier, Integer> identifierInputs = new LinkedHashMap<>();
+        private final List<AST.Expr> inputs = new ArrayList<>();
+        private final List<Long> constants = new ArrayList<>();
+        private final List<Integer> code = new ArrayList<>();
+        private int nextConstant = 0;
+        private int nextTemp;
+
+        Compiler(AST.Expr root) {
+            this.root = root;
+        }
+
+        ArithmeticProgram finish() {
+            collect(root);
+            nextTemp = inputs.size() + constants.size();
+            int result = emit(root);
+            int[] instructions = code.stream().mapToInt(Integer::intValue).toArray();
+            long[] literals = constants.stream().mapToLong(Long::longValue).toArray();
+            return new ArithmeticProgram(List.copyOf(inputs), literals, instructions, nextTemp, result);
+        }
+
+        private void collect(AST.Expr expr) {
+            switch (expr) {
+                case AST.BinaryExpr binary when opcode(binary) >= 0 -> {
+                    collect(binary.left());
+                    collect(binary.right());
+                }
+                case AST.UnaryExpr unary when opcode(unary) >= 0 -> collect(unary.expr());
+                case AST.IntegerLiteral literal -> constants.add(literal.value());
+                case AST.Identifier identifier -> identifierInputs.computeIfAbsent(identifier, id -> {
+                    inputs.add(id);
+                    return inputs.size() - 1;
+                });
+                default -> inputs.add(expr);
+            }
+        }
+
+        /**
+         * Emits the code for a subtree and returns the register holding its value. Walks in the same
+         * order as {@link #collect}, so non-identifier inputs and literals are met in numbering order.
+         */
+        private int emit(AST.Expr expr) {
+            return switch (expr) {
+                case AST.BinaryExpr binary when opcode(binary) >= 0 -> {
+                    int left = emit(binary.left());
+                    int right = emit(binary.right());
+                    yield instruction(opcode(binary), left, right);
+                }
+                case AST.UnaryExpr unary when opcode(unary) >= 0 -> {
+                    int operand = emit(unary.expr());
+                    yield instruction(opcode(unary), operand, operand);
+                }
+                case AST.IntegerLiteral literal -> inputs.size() + nextConstant++;
+                case AST.Identifier identifier -> identifierInputs.get(identifier);
+                default -> indexOfInput(expr);
+            };
+        }
+
+        private int indexOfInput(AST.Expr expr) {
+            for (int i = 0; i < inputs.size(); i++) {
+                if (inputs.get(i) == expr) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Input was not collected: " + expr);
+        }
+
+        private int instruction(int opcode, int a, int b) {
+            int destination = nextTemp++;
+            code.add(opcode);
+            code.add(destination);
+            code.add(a);
+            code.add(b);
+            return destination;
+        }
+    }
+}
@@ -23,6 +23,23 @@ public class AssignmentFiroe extends FiroeWithBraneMind implements Constanicable
         this.result = null;
     }
 
+    AssignmentFiroe(UbcSnapshot.In in) {
+        super(in);
+        this.lhs = new CharacterizedIdentifier(((AST.Assignment) ast).identifier());
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.ref(result);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        result = in.ref();
+    }
+
     /**
      * Constructor for cloneConstanic that avoids cloning braneMemory items.
      * Instead, it creates a fresh AssignmentFiroe from the AST and copies the result.
@@ -33,12 +50,24 @@ public class AssignmentFiroe extends FiroeWithBraneMind implements Constanicable
         this.lhs = lhs;  // Use provided lhs (same object as original, not final assignment)
         this.result = null;
         this.ordinated = false;
-        this.indexLookup = new java.util.IdentityHashMap<>();
         // Initialize braneMemory from AST (same as original constructor)
         // This must be called AFTER setting up the object but BEFORE marking as initialized
         storeExprs(assignment.expr());
     }
 
+    /**
+     * Creates an assignment that is already CONSTANT with the given value, for branes whose
+     * statement values were computed without stepping (see {@link BraneJit}).
+     */
+    static AssignmentFiroe constant(AST.Assignment assignment, FIR value) {
+        AssignmentFiroe constant = new AssignmentFiroe(assignment);
+        constant.setInitialized();
+        constant.storeFirs(value);
+        constant.result = value;
+        constant.setNyes(Nyes.CONSTANT);
+        return constant;
+    }
+
     @Override
     protected void initialize() {
         if (isInitialized()) return;
@@ -65,6 +94,7 @@ public class AssignmentFiroe extends FiroeWithBraneMind implements Constanicable
                 initialize();
                 setNyes(Nyes.INITIALIZED);
                 System.out.println("DEBUG AssignmentFiroe.step UNINITIALIZED: this=" + System.identityHashCode(this));
+                fuseTransitions();
                 return 1;
             }
             case INITIALIZED, CHECKED, PRIMED -> {
@@ -73,6 +103,9 @@ public class AssignmentFiroe extends FiroeWithBraneMind implements Constanicable
             }
             case EVALUATING -> {
                 // Step the expression through evaluation
+                if (isBraneBlocked()) {
+                    return 0;
+                }
                 if (isBraneEmpty()) {
                     // Expression evaluated, store result and determine final state
                     System.out.println("DEBUG AssignmentFiroe.step EVALUATING: this=" + System.identityHashCode(this) + " memorySize=" + memorySize());
@@ -98,9 +131,7 @@ public class AssignmentFiroe extends FiroeWithBraneMind implements Constanicable
                 FIR current = braneDequeue();
                 try {
                     int work = current.step();
-                    if (current.isNye()) {
-                        braneEnqueue(current);
-                    }
+                    requeue(current);
                     return work;
                 } catch (Exception e) {
                     braneEnqueueFirst(current); // Re-enqueue on error
@@ -198,24 +229,19 @@ public class AssignmentFiroe extends FiroeWithBraneMind implements Constanicable
     }
 
     @Override
-    public Optional<FIR> valuableSelf() {
-        if (FIR.RECURSION_DEPTH.get() > 100) {
+    protected Optional<FIR> valuableSelf(int depth) {
+        if (depth > MAX_VALUABLE_DEPTH) {
             return Optional.empty();
         }
-        try {
-            FIR.RECURSION_DEPTH.set(FIR.RECURSION_DEPTH.get() + 1);
-            // TODO: Check for circular reference
-            if (result != null) {
-                return result.valuableSelf();
-            }
-            if (atConstanic()) {
-                 // Constanic means we paused (e.g. missing var), effectively empty result
-                 return Optional.empty();
-            }
-            // If not ready yet, return null
-            return null;
-        } finally {
-            FIR.RECURSION_DEPTH.set(FIR.RECURSION_DEPTH.get() - 1);
+        // TODO: Check for circular reference
+        if (result != null) {
+            return result.valuableSelf(depth + 1);
+        }
+        if (atConstanic()) {
+             // Constanic means we paused (e.g. missing var), effectively empty result
+             return Optional.empty();
         }
+        // If not ready yet, return null
+        return null;
     }
 }
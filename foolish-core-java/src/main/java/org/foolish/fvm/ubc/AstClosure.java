@@ -0,0 +1,74 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.foolish.ast.SearchOperator;
+
+/**
+ * Static check for closed expressions: ASTs whose evaluation can never read anything outside themselves.
+ * <p>
+ * An expression is closed when every identifier in it resolves to an assignment inside the expression,
+ * using the same rule as {@link BraneMemory#get(Query, int)}: the enclosing branes are scanned backward
+ * from the identifier's statement, inclusive. Anything whose reach depends on context is treated as open:
+ * {@code ↑}, unanchored seeks, global regexp searches, detachment branes, concatenations and the
+ * stay-foolish markers. The check is conservative; an open verdict only means evaluation must stay in place.
+ */
+final class AstClosure {
+
+    private AstClosure() {
+    }
+
+    /**
+     * Returns true if the expression references nothing outside itself.
+     */
+    static boolean isClosed(AST.Expr expr) {
+        return closed(expr, null);
+    }
+
+    /**
+     * One enclosing brane and the statement being checked within it.
+     */
+    private record Scope(AST.Brane brane, int statement, Scope outer) {
+        boolean binds(AST.Identifier identifier) {
+            for (Scope scope = this; scope != null; scope = scope.outer) {
+                for (int i = Math.min(scope.statement, scope.brane.statements().size() - 1); i >= 0; i--) {
+                    if (scope.brane.statements().get(i) instanceof AST.Assignment assignment
+                        && assignment.identifier().equals(identifier)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    private static boolean closed(AST.Expr expr, Scope scope) {
+        return switch (expr) {
+            case null -> false;
+            case AST.IntegerLiteral literal -> true;
+            case AST.UnknownExpr unknown -> true;
+            case AST.Identifier identifier -> scope != null && scope.binds(identifier);
+            case AST.Brane brane -> {
+                for (int i = 0; i < brane.statements().size(); i++) {
+                    if (!closed(brane.statements().get(i), new Scope(brane, i, scope))) {
+                        yield false;
+                    }
+                }
+                yield true;
+            }
+            case AST.Assignment assignment -> closed(assignment.expr(), scope);
+            case AST.BinaryExpr binary -> closed(binary.left(), scope) && closed(binary.right(), scope);
+            case AST.UnaryExpr unary -> closed(unary.expr(), scope);
+            case AST.IfExpr ifExpr -> closed(ifExpr.condition(), scope)
+                && closed(ifExpr.thenExpr(), scope)
+                && closed(ifExpr.elseExpr(), scope)
+                && ifExpr.elseIfs().stream().allMatch(elseIf -> closed(elseIf, scope));
+            case AST.DereferenceExpr deref -> closed(deref.anchor(), scope);
+            case AST.OneShotSearchExpr search -> closed(search.anchor(), scope);
+            case AST.SeekExpr seek -> closed(seek.anchor(), scope);
+            case AST.RegexpSearchExpr search -> search.operator() != SearchOperator.REGEXP_GLOBAL
+                && search.operator() != SearchOperator.REGEXP_FORWARD_GLOBAL
+                && closed(search.anchor(), scope);
+            default -> false;
+        };
+    }
+}
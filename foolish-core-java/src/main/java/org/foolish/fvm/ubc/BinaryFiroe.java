@@ -14,6 +14,8 @@ import org.foolish.ast.AST;
 public class BinaryFiroe extends FiroeWithBraneMind implements Constanicable {
     private final String operator;
     private FIR result;
+    /** The compiled subtree when arithmetic compilation is on; braneMemory then holds its inputs. */
+    private ArithmeticProgram program;
 
     public BinaryFiroe(AST.BinaryExpr binaryExpr) {
         super(binaryExpr);
@@ -32,14 +34,41 @@ public class BinaryFiroe extends FiroeWithBraneMind implements Constanicable {
     protected BinaryFiroe(BinaryFiroe original, FIR newParent) {
         super(original, newParent);
         this.operator = original.operator;
+        this.program = original.program;
         // Always reset result to null - the copy will re-evaluate
         this.result = null;
     }
 
+    BinaryFiroe(UbcSnapshot.In in) {
+        super(in);
+        this.operator = ((AST.BinaryExpr) ast).op();
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.ref(result);
+        out.bool(program != null);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        result = in.ref();
+        program = in.bool() ? ArithmeticProgram.compile((AST.Expr) ast) : null;
+    }
+
     @Override
     protected void initialize() {
         AST.BinaryExpr binaryExpr = (AST.BinaryExpr) ast;
-        storeExprs(binaryExpr.left(), binaryExpr.right());  // Store in braneMemory, not braneMind
+        if (executionContext().isCompiledArithmetic()) {
+            program = ArithmeticProgram.compile(binaryExpr);
+        }
+        if (program != null) {
+            storeExprs(program.inputs().toArray(AST.Expr[]::new));
+        } else {
+            storeExprs(binaryExpr.left(), binaryExpr.right());  // Store in braneMemory, not braneMind
+        }
         setInitialized();
     }
 
@@ -58,6 +87,9 @@ public class BinaryFiroe extends FiroeWithBraneMind implements Constanicable {
             }
             case EVALUATING -> {
                 // Step operands through evaluation
+                if (isBraneBlocked()) {
+                    return 0;
+                }
                 if (isBraneEmpty()) {
                     // All operands evaluated, compute result
                     computeResult();
@@ -67,9 +99,7 @@ public class BinaryFiroe extends FiroeWithBraneMind implements Constanicable {
                 FIR current = braneDequeue();
                 try {
                     int work = current.step();
-                    if (current.isNye()) {
-                        braneEnqueue(current);
-                    }
+                    requeue(current);
                     return work;
                 } catch (Exception e) {
                     braneEnqueueFirst(current); // Re-enqueue on error
@@ -89,6 +119,10 @@ public class BinaryFiroe extends FiroeWithBraneMind implements Constanicable {
     }
 
     private void computeResult() {
+        if (program != null) {
+            computeCompiledResult();
+            return;
+        }
         FIR leftFir = memoryGet(0);
         FIR rightFir = memoryGet(1);
 
@@ -139,6 +173,31 @@ public class BinaryFiroe extends FiroeWithBraneMind implements Constanicable {
         }
     }
 
+    /**
+     * Runs the compiled subtree over the values of its inputs. As in the tree walk, any CONSTANIC input
+     * makes the whole result CONSTANIC, and any arithmetic error makes it NK.
+     */
+    private void computeCompiledResult() {
+        for (int i = 0; i < program.inputs().size(); i++) {
+            if (memoryGet(i).atConstanic()) {
+                result = null; // Stay Constanic
+                setNyes(Nyes.CONSTANIC);
+                return;
+            }
+        }
+
+        try {
+            long[] inputs = new long[program.inputs().size()];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = memoryGet(i).getValue();
+            }
+            result = new ValueFiroe(null, program.run(inputs));
+        } catch (Exception e) {
+            result = new NKFiroe(ast, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+        setNyes(Nyes.CONSTANT);
+    }
+
     // Removed isNye override to use parent's state-based logic
 
     /**
@@ -4,6 +4,9 @@ import org.foolish.ast.AST;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * BraneFiroe represents a brane in the UBC system.
@@ -39,6 +42,18 @@ public class BraneFiroe extends FiroeWithBraneMind implements Constanicable {
      */
     private int EXPRMNT_brane_depth;
 
+    /** Whether the independent children have already been handed to the parallel pool. */
+    private boolean parallelForked = false;
+    /** Cached {@link #statementsClosed()}; null until first asked. */
+    private Boolean statementsClosed = null;
+    /** Static addresses of this brane's identifiers; null until initialized, or if it is not addressed. */
+    private LexicalScope lexicalScope = null;
+    /**
+     * Nyes changes of the FIRs held under this brane, counted only for the root brane of a UBC; see
+     * {@link FIR#stateChanges()}. Forked children count into it from pool threads.
+     */
+    LongAdder stateChanges = null;
+
     public BraneFiroe(AST ast) {
         super(ast);
 
@@ -61,6 +76,26 @@ public class BraneFiroe extends FiroeWithBraneMind implements Constanicable {
         setMemoryOwner(this);
     }
 
+    BraneFiroe(UbcSnapshot.In in) {
+        super(in);
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.integer(EXPRMNT_brane_depth);
+        out.bool(parallelForked);
+        out.ref(lexicalScope);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        EXPRMNT_brane_depth = in.integer();
+        parallelForked = in.bool();
+        lexicalScope = in.ref();
+    }
+
     /**
      * EXPERIMENTAL: Sets the brane depth and checks if it exceeds the maximum allowed depth.
      * If the depth exceeds the limit, this brane is immediately set to CONSTANT and an alarm is raised.
@@ -73,6 +108,9 @@ public class BraneFiroe extends FiroeWithBraneMind implements Constanicable {
      * @param depth the new depth to set
      */
     protected void setExprmntBraneDepth(int depth) {
+        if (isFrozen()) {
+            return;
+        }
         this.EXPRMNT_brane_depth = depth;
 
         // Check if depth exceeds limit
@@ -144,6 +182,7 @@ public class BraneFiroe extends FiroeWithBraneMind implements Constanicable {
         // re-parented (e.g., in CMFir.startPhaseB), the depth needs updating
         int newDepth = cloned.calculateBraneDepth();
         cloned.setExprmntBraneDepth(newDepth);
+        cloned.parallelForked = false;
 
         return cloned;
     }
@@ -198,6 +237,9 @@ public class BraneFiroe extends FiroeWithBraneMind implements Constanicable {
         setInitialized();
 
         if (ast instanceof AST.Brane brane) {
+            if (executionContext().isLexicalAddressing() && getClass() == BraneFiroe.class) {
+                lexicalScope = LexicalScope.of(this);
+            }
             for (AST.Expr expr : brane.statements()) {
                 FIR firoe = createFiroeFromExpr(expr);
                 storeFirs(firoe);  // Store in braneMemory only, prime() will enqueue to braneMind
@@ -207,18 +249,188 @@ public class BraneFiroe extends FiroeWithBraneMind implements Constanicable {
         }
     }
 
+    /**
+     * The static addresses of this brane's identifiers (see {@link LexicalScope}), or null.
+     */
+    LexicalScope lexicalScope() {
+        return lexicalScope;
+    }
+
+    /**
+     * Completes this uninitialized brane with statement values computed by a {@link BraneJit} kernel:
+     * each statement is stored already CONSTANT, in place of the FIRs {@link #initialize()} would create.
+     *
+     * @param assignments the assignment made by each statement, or null for a bare expression
+     * @param values      the value of each statement
+     */
+    void installConstants(List<AST.Assignment> assignments, long[] values) {
+        setInitialized();
+        AST.Brane brane = (AST.Brane) ast;
+        for (int i = 0; i < values.length; i++) {
+            AST.Assignment assignment = assignments.get(i);
+            storeFirs(assignment != null
+                ? AssignmentFiroe.constant(assignment, new ValueFiroe(values[i]))
+                : new ValueFiroe(brane.statements().get(i), values[i]));
+        }
+        setNyes(Nyes.CONSTANT);
+    }
+
+    /**
+     * Completes this uninitialized brane with the lines of a CONSTANT, structurally equal brane found through
+     * the {@link BraneMemo}. The lines stay the leader's, as when {@code cloneConstanic} shares a CONSTANT brane.
+     */
+    private void shareLines(BraneFiroe leader) {
+        setInitialized();
+        leader.stream().forEach(this::shareFir);
+        setNyes(Nyes.CONSTANT);
+    }
+
+    /**
+     * With {@link ExecutionContext#isLazyBranes()}, a closed nested brane queues none of its statements, so it
+     * completes as soon as it is primed and each statement is evaluated by the first FIR that reads it: an
+     * identifier resolving to it or a search finding it steps it as its own child. Undemanded statements stay
+     * nye. Only closed branes qualify, since their statements evaluate to the same thing whoever steps them;
+     * the root and the other brane kinds are always evaluated in full.
+     */
+    @Override
+    protected void prime() {
+        if (executionContext().isLazyBranes() && getClass() == BraneFiroe.class && getParentFir() != null
+            && AstClosure.isClosed((AST.Brane) ast)) {
+            return;
+        }
+        super.prime();
+    }
+
     // Removed isNye override
 
     @Override
     public int step() {
         if (!isInitialized()) {
+            BraneMemo memo = executionContext().getBraneMemo();
+            if (memo != null && getClass() == BraneFiroe.class) {
+                BraneFiroe leader = memo.leaderFor(this);
+                if (leader != null && leader != this) {
+                    if (leader.isNye()) {
+                        return 0;
+                    }
+                    if (leader.atConstant()) {
+                        shareLines(leader);
+                        memo.recordHit();
+                        return 1;
+                    }
+                }
+            }
+            BraneJit jit = executionContext().getBraneJit();
+            if (jit != null && getClass() == BraneFiroe.class && statementDependencies() == null
+                && jit.tryEvaluate(this)) {
+                return 1;
+            }
             initialize();
-            return 1;
+            if (!executionContext().isFusedTransitions()) {
+                return 1;
+            }
+        }
+
+        if (!parallelForked && getNyes() == Nyes.EVALUATING && executionContext().getParallelPool() != null) {
+            parallelForked = true;
+            int work = evaluateIndependentChildren();
+            if (work > 0) {
+                return work;
+            }
         }
 
         return super.step();
     }
 
+    /**
+     * Parallel mode: when no statement of this brane can observe another (every statement is closed, see
+     * {@link AstClosure}) and nothing outside can observe this brane's progress, the child branes are taken
+     * off the braneMind and each is run to completion as a task on the parallel pool, forked from this step.
+     * Forked children apply the same rule, so nested branes fork onto the same pool and idle workers steal them.
+     * <p>
+     * Because nothing observes the children while they run, each one takes exactly the steps it would have
+     * taken breadth-first, and the work returned here is the sum of them. The remaining statements are then
+     * stepped as usual. Returns 0 if fewer than two child branes qualified and nothing was forked.
+     */
+    private int evaluateIndependentChildren() {
+        if (stream().filter(BraneFiroe::isChildBrane).limit(2).count() < 2
+            || !statementsClosed() || !isUnobserved()) {
+            return 0;
+        }
+        List<FIR> independent = braneRemoveIf(BraneFiroe::isChildBrane);
+
+        List<ForkJoinTask<Integer>> tasks = new ArrayList<>();
+        for (FIR child : independent) {
+            tasks.add(ForkJoinTask.adapt(() -> runChild(child)));
+        }
+        ForkJoinTask<Integer> all = ForkJoinTask.adapt(() -> {
+            ForkJoinTask.invokeAll(tasks);
+            int work = 0;
+            for (ForkJoinTask<Integer> task : tasks) {
+                work += task.join();
+            }
+            return work;
+        });
+        ForkJoinPool pool = executionContext().getParallelPool();
+        return ForkJoinTask.getPool() == pool ? all.invoke() : pool.invoke(all);
+    }
+
+    /**
+     * A still-nye statement that is a brane, or an assignment of one.
+     */
+    private static boolean isChildBrane(FIR fir) {
+        return fir.isNye() && switch (fir.ast()) {
+            case AST.Brane brane -> true;
+            case AST.Assignment assignment -> assignment.expr() instanceof AST.Brane;
+            case null, default -> false;
+        };
+    }
+
+    /**
+     * True if only this brane's own steps can change what it holds and nobody but its holder looks at it:
+     * it is the root, or a statement (or the value of an assignment statement) of an unobserved brane whose
+     * statements are all closed. Any other holder (searches, identifiers, CMFir clones) may watch it.
+     */
+    private boolean isUnobserved() {
+        FIR holder = getParentFir();
+        if (holder instanceof AssignmentFiroe assignment) {
+            holder = assignment.getParentFir();
+        }
+        return switch (holder) {
+            case null -> true;
+            case BraneFiroe parent -> parent.statementsClosed() && parent.isUnobserved();
+            default -> false;
+        };
+    }
+
+    private boolean statementsClosed() {
+        if (statementsClosed == null) {
+            statementsClosed = ast instanceof AST.Brane brane
+                && brane.statements().stream().allMatch(AstClosure::isClosed);
+        }
+        return statementsClosed;
+    }
+
+    private static int runChild(FIR child) {
+        int work = 0;
+        LongAdder changes = child.stateChanges();
+        int idle = 0;
+        while (child.isNye()) {
+            long before = changes == null ? 0 : changes.sum();
+            int stepWork = child.step();
+            work += stepWork;
+            boolean progressed = changes == null ? stepWork > 0 : changes.sum() != before;
+            idle = progressed ? 0 : idle + 1;
+            // Same stall rule as UnicelluarBraneComputer.runToCompletion()
+            if (idle >= UnicelluarBraneComputer.STALL_ITERATIONS) {
+                throw new RuntimeException(child.formatErrorMessage(
+                    "Parallel brane evaluation stalled (possible infinite loop)"));
+            }
+        }
+        return work;
+    }
+
+
     /**
      * Returns the list of expression Firoes in this brane.
      * Includes both completed (in braneMemory) and pending (in braneMind) FIRs.
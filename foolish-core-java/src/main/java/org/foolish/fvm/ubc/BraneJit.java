@@ -0,0 +1,384 @@
+package org.foolish.fvm.ubc;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.foolish.ast.AST;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.CodeBuilder;
+import java.lang.classfile.Opcode;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDescs;
+import java.lang.constant.MethodTypeDesc;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tier-2 compiler for hot branes: JVM bytecode generated with the {@code java.lang.classfile} API.
+ * <p>
+ * A brane qualifies when every statement is an assignment (or a bare expression) built only from integer
+ * literals, arithmetic and identifiers. Identifiers bound by an earlier statement of the brane become
+ * JVM locals; any other identifier is an <em>input</em> looked up from the enclosing brane, exactly as
+ * {@link IdentifierFiroe} would. Each qualifying brane is compiled once into a hidden
+ * class whose {@link Kernel#compute} method computes every statement value in a straight line.
+ * <p>
+ * Branes are counted per AST (structurally) and compiled once they have started evaluating
+ * {@code threshold} times. The kernel only runs on the happy path: if an input is missing, nye,
+ * CONSTANIC or not a value, or the kernel throws (division by zero), the brane is evaluated by the
+ * {@link FiroeWithBraneMind} interpreter as usual, which produces the CONSTANIC or NK results.
+ * <p>
+ * {@code if} expressions are left to {@link IfFiroe}: it evaluates each arm as FIRs of its own and gives a
+ * chain with no matching branch an NK value, which a kernel computing plain longs does not reproduce.
+ * <p>
+ * Programs containing a concatenation are never compiled: a concatenation joins only the statements of
+ * its elements that are already constanic at join time, so finishing a brane in one step instead of
+ * several can change what it sees. A {@code BraneJit} is thread-safe and meant to be shared, through an
+ * {@link ExecutionContext}, by every UBC that evaluates the same templates.
+ */
+public final class BraneJit {
+
+    /**
+     * The compiled form of a brane.
+     */
+    interface Kernel {
+        /**
+         * @param inputs the values of the brane's inputs, in {@link Plan#inputs()} order
+         * @param values receives the value of each statement
+         */
+        void compute(long[] inputs, long[] values);
+    }
+
+    /**
+     * The result of analysing a brane: its inputs, and for each statement the assignment it binds, if any.
+     */
+    record Plan(List<AST.Identifier> inputs, List<AST.Assignment> assignments) {}
+
+    private static final ClassDesc CD_KERNEL = ClassDesc.of(Kernel.class.getName());
+    private static final ClassDesc CD_LONG_ARRAY = ConstantDescs.CD_long.arrayType();
+    private static final MethodTypeDesc MTD_COMPUTE =
+        MethodTypeDesc.of(ConstantDescs.CD_void, CD_LONG_ARRAY, CD_LONG_ARRAY);
+    /** Local slots of compute(): 0 = this, 1 = inputs, 2 = values, then one long per statement. */
+    private static final int FIRST_STATEMENT_SLOT = 3;
+
+    /**
+     * Per-AST compilation state. {@code plan} and {@code kernel} stay null for branes that do not qualify.
+     */
+    private static final class Entry {
+        long starts = 0;
+        boolean analysed = false;
+        Plan plan;
+        Kernel kernel;
+    }
+
+    private final int threshold;
+    private final Map<AST.Brane, Entry> entries = Collections.synchronizedMap(new WeakHashMap<>());
+    private final Map<AST, Boolean> concatenatingPrograms = Collections.synchronizedMap(new WeakHashMap<>());
+    private final AtomicLong compiled = new AtomicLong();
+    private final AtomicLong compiledRuns = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    /**
+     * @param threshold how many times a brane must start evaluating before it is compiled; 1 compiles on first use
+     */
+    public BraneJit(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be at least 1");
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * Number of branes compiled to hidden classes so far.
+     */
+    public long getCompiledCount() {
+        return compiled.get();
+    }
+
+    /**
+     * Number of brane evaluations completed by a compiled kernel.
+     */
+    public long getCompiledRuns() {
+        return compiledRuns.get();
+    }
+
+    /**
+     * Number of times a compiled brane had to be handed back to the interpreter.
+     */
+    public long getFallbackCount() {
+        return fallbacks.get();
+    }
+
+    /**
+     * Called when an uninitialized brane is first stepped. If its AST is hot and compiled, and all of its
+     * inputs are CONSTANT values, runs the kernel and installs the results as CONSTANT statements.
+     *
+     * @return true if the brane is now CONSTANT; false to evaluate it with the interpreter
+     */
+    boolean tryEvaluate(BraneFiroe brane) {
+        if (!(brane.ast() instanceof AST.Brane ast) || inConcatenatingProgram(brane)) {
+            return false;
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(ast, key -> new Entry());
+        }
+        Kernel kernel;
+        Plan plan;
+        synchronized (entry) {
+            if (++entry.starts < threshold) {
+                return false;
+            }
+            if (!entry.analysed) {
+                entry.analysed = true;
+                entry.plan = analyse(ast);
+                if (entry.plan != null) {
+                    entry.kernel = compile(ast, entry.plan);
+                    compiled.incrementAndGet();
+                }
+            }
+            kernel = entry.kernel;
+            plan = entry.plan;
+        }
+        if (kernel == null) {
+            return false;
+        }
+
+        long[] values = new long[ast.statements().size()];
+        try {
+            kernel.compute(resolveInputs(brane, plan), values);
+        } catch (RuntimeException e) {
+            fallbacks.incrementAndGet();
+            return false;
+        }
+        brane.installConstants(plan.assignments(), values);
+        compiledRuns.incrementAndGet();
+        return true;
+    }
+
+    private boolean inConcatenatingProgram(FIR fir) {
+        while (fir.getParentFir() != null) {
+            fir = fir.getParentFir();
+        }
+        AST root = fir.ast();
+        if (root == null) {
+            return true;
+        }
+        return concatenatingPrograms.computeIfAbsent(root, ConcatenationFiroe::occursIn);
+    }
+
+    /**
+     * Looks up every input from the brane's enclosing memory.
+     *
+     * @throws IllegalStateException if an input is not a CONSTANT value
+     */
+    private static long[] resolveInputs(BraneFiroe brane, Plan plan) {
+        long[] inputs = new long[plan.inputs().size()];
+        for (int i = 0; i < inputs.length; i++) {
+            AST.Identifier identifier = plan.inputs().get(i);
+            Optional<Pair<Integer, FIR>> found = brane.memoryGet(
+                new Query.StrictlyMatchingQuery(identifier.id(), identifier.canonicalCharacterization()), 0);
+            FIR value = found.map(Pair::getRight)
+                .orElseThrow(() -> new IllegalStateException("Input not found: " + identifier));
+            if (value.isNye() || value.atConstanic()) {
+                throw new IllegalStateException("Input not constant: " + identifier);
+            }
+            inputs[i] = value.getValue();
+        }
+        return inputs;
+    }
+
+    // ---- analysis ----
+
+    /**
+     * Returns the plan for a brane, or null if it does not qualify.
+     */
+    static Plan analyse(AST.Brane brane) {
+        List<AST.Identifier> inputs = new ArrayList<>();
+        List<AST.Assignment> assignments = new ArrayList<>();
+        List<AST.Expr> statements = brane.statements();
+        for (int i = 0; i < statements.size(); i++) {
+            AST.Expr expr;
+            if (statements.get(i) instanceof AST.Assignment assignment) {
+                if (assignment.operator() != AST.AssignmentOperator.ASSIGN) {
+                    return null;
+                }
+                assignments.add(assignment);
+                expr = assignment.expr();
+            } else if (statements.get(i) instanceof AST.BinaryExpr || statements.get(i) instanceof AST.UnaryExpr
+                || statements.get(i) instanceof AST.IntegerLiteral) {
+                assignments.add(null);
+                expr = statements.get(i);
+            } else {
+                return null;
+            }
+            if (!qualifies(expr, brane, i, inputs)) {
+                return null;
+            }
+        }
+        return new Plan(List.copyOf(inputs), Collections.unmodifiableList(assignments));
+    }
+
+    private static boolean qualifies(AST.Expr expr, AST.Brane brane, int statement, List<AST.Identifier> inputs) {
+        return switch (expr) {
+            case AST.IntegerLiteral literal -> true;
+            case AST.Identifier identifier -> {
+                int binding = binding(brane, identifier, statement);
+                if (binding == statement) {
+                    yield false; // refers to the statement being evaluated
+                }
+                if (binding < 0 && !inputs.contains(identifier)) {
+                    inputs.add(identifier);
+                }
+                yield true;
+            }
+            case AST.BinaryExpr binary -> opcode(binary) != null
+                && qualifies(binary.left(), brane, statement, inputs)
+                && qualifies(binary.right(), brane, statement, inputs);
+            case AST.UnaryExpr unary -> (unary.op().equals("-") || unary.op().equals("!"))
+                && qualifies(unary.expr(), brane, statement, inputs);
+            default -> false;
+        };
+    }
+
+    /**
+     * The statement of the brane an identifier used in the given statement resolves to, scanning backward
+     * inclusive as {@link BraneMemory#get(Query, int)} does, or -1 if it resolves outside the brane.
+     */
+    private static int binding(AST.Brane brane, AST.Identifier identifier, int statement) {
+        CharacterizedIdentifier wanted = new CharacterizedIdentifier(identifier);
+        for (int i = statement; i >= 0; i--) {
+            if (brane.statements().get(i) instanceof AST.Assignment assignment
+                && new CharacterizedIdentifier(assignment.identifier()).equals(wanted)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Opcode opcode(AST.BinaryExpr binary) {
+        return switch (binary.op()) {
+            case "+" -> Opcode.LADD;
+            case "-" -> Opcode.LSUB;
+            case "*" -> Opcode.LMUL;
+            case "/" -> Opcode.LDIV;
+            case "%" -> Opcode.LREM;
+            case "==" -> Opcode.IFEQ;
+            case "!=", "<>" -> Opcode.IFNE;
+            case "<" -> Opcode.IFLT;
+            case "<=" -> Opcode.IFLE;
+            case ">" -> Opcode.IFGT;
+            case ">=" -> Opcode.IFGE;
+            case "&&" -> Opcode.IMUL;
+            case "||" -> Opcode.IOR;
+            default -> null;
+        };
+    }
+
+    // ---- code generation ----
+
+    /**
+     * Generates and loads the hidden kernel class for an analysed brane.
+     */
+    static Kernel compile(AST.Brane brane, Plan plan) {
+        byte[] bytes = ClassFile.of().build(ClassDesc.of(BraneJit.class.getPackageName(), "BraneJitKernel"),
+            cb -> cb
+                .withFlags(ClassFile.ACC_FINAL | ClassFile.ACC_SYNTHETIC)
+                .withInterfaceSymbols(CD_KERNEL)
+                .withMethodBody(ConstantDescs.INIT_NAME, ConstantDescs.MTD_void, ClassFile.ACC_PUBLIC, code -> code
+                    .aload(0)
+                    .invokespecial(ConstantDescs.CD_Object, ConstantDescs.INIT_NAME, ConstantDescs.MTD_void)
+                    .return_())
+                .withMethodBody("compute", MTD_COMPUTE, ClassFile.ACC_PUBLIC, code -> {
+                    List<AST.Expr> statements = brane.statements();
+                    for (int i = 0; i < statements.size(); i++) {
+                        AST.Expr expr = statements.get(i) instanceof AST.Assignment assignment
+                            ? assignment.expr() : statements.get(i);
+                        emit(code, expr, brane, i, plan);
+                        code.lstore(slot(i));
+                        code.aload(2).loadConstant(i).lload(slot(i)).lastore();
+                    }
+                    code.return_();
+                }));
+        try {
+            MethodHandles.Lookup hidden = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (Kernel) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not load compiled brane", e);
+        }
+    }
+
+    private static int slot(int statement) {
+        return FIRST_STATEMENT_SLOT + 2 * statement;
+    }
+
+    /**
+     * Emits code leaving the expression's value on the stack as a long.
+     */
+    private static void emit(CodeBuilder code, AST.Expr expr, AST.Brane brane, int statement, Plan plan) {
+        switch (expr) {
+            case AST.IntegerLiteral literal -> code.loadConstant(literal.value());
+            case AST.Identifier identifier -> {
+                int binding = binding(brane, identifier, statement);
+                if (binding >= 0) {
+                    code.lload(slot(binding));
+                } else {
+                    code.aload(1).loadConstant(plan.inputs().indexOf(identifier)).laload();
+                }
+            }
+            case AST.UnaryExpr unary -> {
+                emit(code, unary.expr(), brane, statement, plan);
+                if (unary.op().equals("-")) {
+                    code.lneg();
+                } else {
+                    code.lconst_0().lcmp();
+                    booleanToLong(code, Opcode.IFEQ);
+                }
+            }
+            case AST.BinaryExpr binary -> {
+                Opcode opcode = opcode(binary);
+                boolean logical = opcode == Opcode.IMUL || opcode == Opcode.IOR;
+                emit(code, binary.left(), brane, statement, plan);
+                if (logical) {
+                    code.lconst_0().lcmp();
+                }
+                emit(code, binary.right(), brane, statement, plan);
+                switch (opcode) {
+                    case LADD -> code.ladd();
+                    case LSUB -> code.lsub();
+                    case LMUL -> code.lmul();
+                    case LDIV -> code.ldiv();
+                    case LREM -> code.lrem();
+                    case IMUL, IOR -> {
+                        // Both sides are compared with 0, giving -1, 0 or 1; the product (and) or
+                        // bitwise or (or) of those is non-zero exactly when the operator holds.
+                        code.lconst_0().lcmp();
+                        if (opcode == Opcode.IMUL) {
+                            code.imul();
+                        } else {
+                            code.ior();
+                        }
+                        booleanToLong(code, Opcode.IFNE);
+                    }
+                    default -> {
+                        code.lcmp();
+                        booleanToLong(code, opcode);
+                    }
+                }
+            }
+            default -> throw new IllegalArgumentException("Not compilable: " + expr);
+        }
+    }
+
+    /**
+     * Consumes an int and pushes 1L if the given branch opcode's condition holds for it, else 0L.
+     */
+    private static void booleanToLong(CodeBuilder code, Opcode condition) {
+        code.ifThenElse(condition, thenBlock -> thenBlock.lconst_1(), elseBlock -> elseBlock.lconst_0());
+    }
+}
@@ -0,0 +1,200 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Memo table of closed brane literals for one evaluation: the first {@link BraneFiroe} stepped for a brane
+ * becomes the leader for every structurally equal brane, and the others take its lines once it is CONSTANT
+ * instead of evaluating their own.
+ * <p>
+ * Only branes that reference nothing outside themselves ({@link AstClosure}) are memoized, so every copy
+ * would compute exactly what the leader computed; this is the same sharing {@code cloneConstanic} does for
+ * CONSTANT branes. Structural equality ignores source locations, and conditionals are never memoized.
+ * <p>
+ * A memo belongs to one UBC and is not thread-safe; see {@link ExecutionContext#withMemoizedBranes}.
+ */
+final class BraneMemo {
+    private static final Key NOT_MEMOIZED = new Key(null, 0);
+
+    private final Map<Key, BraneFiroe> leaders = new HashMap<>();
+    private final Map<AST.Brane, Key> keys = new IdentityHashMap<>();
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Returns the leader for a brane's AST, registering the brane as leader if it is the first; null if the
+     * brane is not memoized.
+     */
+    BraneFiroe leaderFor(BraneFiroe brane) {
+        if (!(brane.ast() instanceof AST.Brane ast)) {
+            return null;
+        }
+        Key key = keys.computeIfAbsent(ast, BraneMemo::keyOf);
+        if (key == NOT_MEMOIZED) {
+            return null;
+        }
+        BraneFiroe leader = leaders.putIfAbsent(key, brane);
+        if (leader == null) {
+            misses++;
+            return brane;
+        }
+        return leader;
+    }
+
+    /**
+     * Writes the leaders and counts; the keys are computed again from the leaders' ASTs. See {@link UbcSnapshot}.
+     */
+    void writeState(UbcSnapshot.Out out) {
+        out.refs(new ArrayList<>(leaders.values()));
+        out.longValue(hits);
+        out.longValue(misses);
+    }
+
+    void readState(UbcSnapshot.In in) {
+        for (BraneFiroe leader : in.<BraneFiroe>refs()) {
+            AST.Brane ast = (AST.Brane) leader.ast();
+            leaders.put(keys.computeIfAbsent(ast, BraneMemo::keyOf), leader);
+        }
+        hits = in.longValue();
+        misses = in.longValue();
+    }
+
+    /**
+     * Drops a brane as leader, for a brane whose lines are about to change.
+     */
+    void forget(BraneFiroe brane) {
+        leaders.values().removeIf(leader -> leader == brane);
+    }
+
+    void recordHit() {
+        hits++;
+    }
+
+    /**
+     * Branes that took a leader's lines instead of being evaluated.
+     */
+    long hits() {
+        return hits;
+    }
+
+    /**
+     * Distinct memoized branes, each evaluated once by its leader.
+     */
+    long misses() {
+        return misses;
+    }
+
+    private static Key keyOf(AST.Brane brane) {
+        if (!memoizable(brane) || !AstClosure.isClosed(brane)) {
+            return NOT_MEMOIZED;
+        }
+        return new Key(brane, hash(brane));
+    }
+
+    /**
+     * A brane AST, compared by structure.
+     */
+    private record Key(AST.Brane brane, int hash) {
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key other && hash == other.hash && same(brane, other.brane);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * True for the node kinds {@link #hash} and {@link #same} cover.
+     */
+    private static boolean memoizable(AST.Expr expr) {
+        return switch (expr) {
+            case AST.IntegerLiteral literal -> true;
+            case AST.UnknownExpr unknown -> true;
+            case AST.Identifier identifier -> true;
+            case AST.Brane brane -> brane.statements().stream().allMatch(BraneMemo::memoizable);
+            case AST.Assignment assignment -> memoizable(assignment.expr());
+            case AST.BinaryExpr binary -> memoizable(binary.left()) && memoizable(binary.right());
+            case AST.UnaryExpr unary -> memoizable(unary.expr());
+            case AST.DereferenceExpr deref -> memoizable(deref.anchor());
+            case AST.RegexpSearchExpr search -> memoizable(search.anchor());
+            case AST.OneShotSearchExpr search -> memoizable(search.anchor());
+            case AST.SeekExpr seek -> memoizable(seek.anchor());
+            case null, default -> false;
+        };
+    }
+
+    private static int hash(AST.Expr expr) {
+        return switch (expr) {
+            case AST.IntegerLiteral literal -> Objects.hash(literal.canonicalCharacterization(), literal.value());
+            case AST.Identifier identifier ->
+                Objects.hash(identifier.canonicalCharacterization(), identifier.cannonicalId());
+            case AST.Brane brane -> 31 * brane.canonicalCharacterization().hashCode() + hashAll(brane.statements());
+            case AST.Assignment assignment ->
+                Objects.hash(hash(assignment.identifier()), assignment.operator(), hash(assignment.expr()));
+            case AST.BinaryExpr binary -> Objects.hash(binary.op(), hash(binary.left()), hash(binary.right()));
+            case AST.UnaryExpr unary -> Objects.hash(unary.op(), hash(unary.expr()));
+            case AST.DereferenceExpr deref -> Objects.hash(hash(deref.anchor()), hash(deref.coordinate()));
+            case AST.RegexpSearchExpr search -> Objects.hash(hash(search.anchor()), search.operator(), search.pattern());
+            case AST.OneShotSearchExpr search -> Objects.hash(hash(search.anchor()), search.operator());
+            case AST.SeekExpr seek -> Objects.hash(hash(seek.anchor()), seek.offset());
+            default -> expr.getClass().hashCode();
+        };
+    }
+
+    private static int hashAll(List<? extends AST.Expr> exprs) {
+        int hash = 1;
+        for (AST.Expr expr : exprs) {
+            hash = 31 * hash + hash(expr);
+        }
+        return hash;
+    }
+
+    /**
+     * Structural equality of memoizable ASTs; unlike {@code equals}, ignores where assignments were parsed.
+     */
+    private static boolean same(AST.Expr a, AST.Expr b) {
+        if (a == b) {
+            return true;
+        }
+        return switch (a) {
+            case AST.Brane x -> b instanceof AST.Brane y
+                && x.canonicalCharacterization().equals(y.canonicalCharacterization())
+                && sameAll(x.statements(), y.statements());
+            case AST.Assignment x -> b instanceof AST.Assignment y
+                && x.identifier().equals(y.identifier()) && x.operator() == y.operator() && same(x.expr(), y.expr());
+            case AST.BinaryExpr x -> b instanceof AST.BinaryExpr y
+                && x.op().equals(y.op()) && same(x.left(), y.left()) && same(x.right(), y.right());
+            case AST.UnaryExpr x -> b instanceof AST.UnaryExpr y && x.op().equals(y.op()) && same(x.expr(), y.expr());
+            case AST.DereferenceExpr x -> b instanceof AST.DereferenceExpr y
+                && x.coordinate().equals(y.coordinate()) && same(x.anchor(), y.anchor());
+            case AST.RegexpSearchExpr x -> b instanceof AST.RegexpSearchExpr y && x.operator() == y.operator()
+                && x.pattern().equals(y.pattern()) && same(x.anchor(), y.anchor());
+            case AST.OneShotSearchExpr x -> b instanceof AST.OneShotSearchExpr y
+                && x.operator() == y.operator() && same(x.anchor(), y.anchor());
+            case AST.SeekExpr x -> b instanceof AST.SeekExpr y && x.offset() == y.offset() && same(x.anchor(), y.anchor());
+            default -> a.equals(b);
+        };
+    }
+
+    private static boolean sameAll(List<? extends AST.Expr> a, List<? extends AST.Expr> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!same(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
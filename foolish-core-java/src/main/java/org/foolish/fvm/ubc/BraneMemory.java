@@ -3,8 +3,14 @@ package org.foolish.fvm.ubc;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import static java.lang.Math.min;
@@ -15,15 +21,107 @@ import static java.lang.Math.max;
  * <p>
  * Supports backward search from a position with parent chain traversal for identifier resolution.
  * See {@code projects/FIR-Invariances.md#C7: BraneMemory Persistence}
+ * <p>
+ * Lines live in an array allocated on the first {@link #put} and grown by doubling, so the many FIRs that
+ * hold one or two lines (or none) stay small. The index a FIR is known by in its holder
+ * ({@link #putIndex}) is kept on the FIR itself; only a FIR indexed by a second memory while still
+ * indexed here spills into a lazily allocated map.
+ * <p>
+ * The memory of a {@code cloneConstanic} copy is a lazy view of the original's ({@link #copyLazily}): a line is
+ * cloned into the copy's context the first time it is read, so copying a brane is O(1) and a copy that is never
+ * stepped or inspected never clones its subtree. Searches match against the original's line, which has the
+ * same identifier as its clone, and clone only the line they find.
+ * <p>
+ * A memory of {@link #INDEXED_SIZE} lines or more answers identifier queries from an index: for every assignment
+ * identifier, the ascending positions of the lines that bind it. Finding the latest binding at or before a line is
+ * then a hash lookup and a binary search rather than a scan. The index is built on the first identifier query that
+ * needs it and kept up to date as lines are added or replaced.
+ * <p>
+ * Regexp queries with a {@link Query.RegexpQuery#getLiteralPrefix() literal prefix} use a second index of the
+ * same size threshold, a trie of assignment names (both as written and without their characterization) whose
+ * nodes hold the positions of the lines with names under them. Only those lines are matched against the
+ * pattern; other regexp queries scan.
+ * <p>
+ * {@link Query.CharacterizationQuery Characterization queries} use a third, an inverted index from
+ * characterizations to the positions of the lines characterized by them. A line with a chained characterization
+ * such as {@code outer'inner'} is listed under {@code outer'} as well, so a query is one lookup whatever it matches.
+ * <p>
+ * The memory of a find-all search's result brane is filled lazily from the search's matches
+ * ({@link #fillLazily}): a match is looked for only when a line past those found so far is read. Reading a line,
+ * iterating, {@link #hasLine} and forward queries take matches one at a time; backward queries take them up to
+ * the line they start from, and {@link #size()} and the like take them all.
  */
 public class BraneMemory implements ReadOnlyBraneMemory {
+    private static final FIR[] EMPTY = new FIR[0];
+    private static final int INITIAL_CAPACITY = 2;
+    /** Fewest lines for which identifier queries use the index; smaller memories are quicker to scan. */
+    static final int INDEXED_SIZE = 8;
+
     private FiroeWithBraneMind parentBrane;
-    private final List<FIR> memory;
+    private FIR[] memory = EMPTY;
+    private int size = 0;
     private FiroeWithBraneMind owningBrane = null;
+    /** Indices of FIRs whose own index fields have since been taken by another memory. */
+    private Map<FIR, Integer> spilledIndices = null;
+    /** Set on the root memory of an incremental evaluation; see {@link StatementDependencies}. */
+    private StatementDependencies dependencies = null;
+    /** The constanic memory this is a lazy copy of, while some of its lines are not yet cloned; else null. */
+    private BraneMemory copiedFrom = null;
+    private FiroeWithBraneMind copier = null;
+    private int uncopied = 0;
+    /** Positions of each assignment identifier's lines; null until a query needs it, see {@link #indexed()}. */
+    private Map<CharacterizedIdentifier, LinePositions> index = null;
+    /** Lines by the prefixes of their names; null until a regexp query needs it, see {@link #named()}. */
+    private NameTrie names = null;
+    /** Lines by each leading part of their characterization; null until a characterization query needs it. */
+    private Map<String, LinePositions> characterized = null;
+    /** Lines still to come, for a memory being filled lazily; null once they have all been put. */
+    private Iterator<FIR> pending = null;
 
     public BraneMemory(FiroeWithBraneMind parentBrane) {
         this.parentBrane = parentBrane;
-        this.memory = new ArrayList<>();
+    }
+
+    /**
+     * Writes this memory for {@link #readState}; the identifier, name and characterization indexes are left out
+     * and rebuilt by the first query that needs them. See {@link UbcSnapshot}.
+     */
+    void writeState(UbcSnapshot.Out out) {
+        out.ref(parentBrane);
+        out.integer(size);
+        out.refs(Arrays.asList(memory).subList(0, min(size, memory.length)));
+        out.ref(owningBrane);
+        out.refs(spilledIndices == null ? null : new ArrayList<>(spilledIndices.keySet()));
+        if (spilledIndices != null) {
+            for (Integer index : spilledIndices.values()) {
+                out.integer(index);
+            }
+        }
+        out.ref(dependencies);
+        out.ref(copiedFrom);
+        out.ref(copier);
+        out.integer(uncopied);
+        out.ref(pending);
+    }
+
+    void readState(UbcSnapshot.In in) {
+        parentBrane = in.ref();
+        size = in.integer();
+        List<FIR> lines = in.refs();
+        memory = lines.isEmpty() ? EMPTY : lines.toArray(FIR[]::new);
+        owningBrane = in.ref();
+        List<FIR> spilled = in.refs();
+        if (spilled != null) {
+            spilledIndices = new IdentityHashMap<>(spilled.size());
+            for (FIR fir : spilled) {
+                spilledIndices.put(fir, in.integer());
+            }
+        }
+        dependencies = in.ref();
+        copiedFrom = in.ref();
+        copier = in.ref();
+        uncopied = in.integer();
+        pending = in.ref();
     }
 
     public FiroeWithBraneMind getParentBrane() {
@@ -35,33 +133,325 @@ public class BraneMemory implements ReadOnlyBraneMemory {
     }
 
     public FIR get(int idx) {
-        if (idx >= 0 && idx < memory.size()) {
-            return memory.get(idx);
+        if (idx >= 0 && reach(idx)) {
+            if (dependencies != null) {
+                dependencies.read(idx, idx);
+            }
+            return line(idx);
+        }
+        throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + size);
+    }
+
+    /**
+     * Makes this empty memory a lazy copy of a constanic brane's memory, whose lines are cloned by
+     * {@link FiroeWithBraneMind#copyLine} as they are read.
+     */
+    void copyLazily(BraneMemory original, FiroeWithBraneMind copier) {
+        if (size != 0) {
+            throw new IllegalStateException("Only an empty BraneMemory can become a copy");
+        }
+        original.drain();
+        size = original.size;
+        if (size > 0) {
+            copiedFrom = original;
+            this.copier = copier;
+            uncopied = size;
+        }
+    }
+
+    /**
+     * Makes this empty memory hold the given lines, put one by one as they are first needed. The iterator is
+     * part of the memory's state, so it must be a plain object a checkpoint can hold, such as
+     * {@link SearchCursor.Matches}.
+     */
+    void fillLazily(Iterator<FIR> lines) {
+        if (size != 0) {
+            throw new IllegalStateException("Only an empty BraneMemory can be filled lazily");
+        }
+        pending = lines;
+    }
+
+    /**
+     * Puts the next pending line; false if there is none.
+     */
+    private boolean pull() {
+        if (pending == null) {
+            return false;
+        }
+        if (pending.hasNext()) {
+            put(pending.next());
+            return true;
+        }
+        pending = null;
+        return false;
+    }
+
+    /**
+     * True once line {@code idx} is held, putting pending lines up to it.
+     */
+    private boolean reach(int idx) {
+        while (idx >= size && pull()) {
+        }
+        return idx < size;
+    }
+
+    private void drain() {
+        while (pull()) {
+        }
+    }
+
+    /**
+     * Lines held so far, not counting those of a lazy fill still pending.
+     */
+    int linesHeld() {
+        return size;
+    }
+
+    @Override
+    public boolean hasLine(int idx) {
+        return idx >= 0 && reach(idx);
+    }
+
+    /**
+     * Line {@code idx}, cloned from the original first if this is a lazy copy that has not read it yet.
+     */
+    private FIR line(int idx) {
+        FIR line = idx < memory.length ? memory[idx] : null;
+        if (line != null || copiedFrom == null) {
+            return line;
+        }
+        if (memory.length < size) {
+            memory = Arrays.copyOf(memory, Math.max(INITIAL_CAPACITY, size));
+        }
+        line = copier.copyLine(copiedFrom.line(idx), idx);
+        memory[idx] = line;
+        if (--uncopied == 0) {
+            copiedFrom = null;
+            copier = null;
+        }
+        return line;
+    }
+
+    /**
+     * Line {@code idx} for matching a query: the original's line if it has not been cloned yet.
+     */
+    private FIR peek(int idx) {
+        FIR line = idx < memory.length ? memory[idx] : null;
+        return line != null || copiedFrom == null ? line : copiedFrom.peek(idx);
+    }
+
+    /**
+     * Lines of a lazy copy that have not been cloned from the original yet.
+     */
+    int uncopiedLines() {
+        return copiedFrom == null ? 0 : uncopied;
+    }
+
+    private void copyAll() {
+        for (int i = 0; copiedFrom != null && i < size; i++) {
+            line(i);
         }
-        throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + memory.size());
     }
 
     public Optional<Pair<Integer, FIR>> get(Query query, int fromLine) {
-        for (int line = min(fromLine, memory.size() - 1); line >= 0; line--) {
-            var lineMemory = memory.get(line);
-            if (query.matches(lineMemory)) {
-                if (shouldFilterMatch(query)) {
-                    continue;
-                }
-                return Optional.of(Pair.of(line, lineMemory));
+        reach(fromLine);
+        int line = findBackward(query, min(fromLine, size - 1), true);
+        if (line >= 0) {
+            if (dependencies != null) {
+                dependencies.read(line, min(fromLine, size - 1));
             }
+            return Optional.of(Pair.of(line, line(line)));
+        }
+        if (dependencies != null) {
+            dependencies.read(0, min(fromLine, size - 1));
         }
         if (parentBrane != null) {
-            int parentPos = parentBrane.memorySize() - 1;
-            if (owningBrane != null) {
-                int idx = owningBrane.getMyBraneStatementNumber();
-                if (idx >= 0) {
-                    parentPos = idx;
+            return parentBrane.memoryGet(query, positionInParent());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The line of the parent brane's memory that a search leaving this memory continues from: the statement
+     * holding the owning brane, or the parent's last line if that is not known.
+     */
+    int positionInParent() {
+        if (owningBrane != null) {
+            int idx = owningBrane.getMyBraneStatementNumber();
+            if (idx >= 0) {
+                return idx;
+            }
+        }
+        return parentBrane.memorySize() - 1;
+    }
+
+    /**
+     * The last line at or before {@code last} that matches the query, or -1. With {@code filtered}, matches the
+     * owning detachment brane blocks are skipped; they all bind the same name, so the index skips them at once.
+     */
+    private int findBackward(Query query, int last, boolean filtered) {
+        if (query instanceof Query.StrictlyMatchingQuery identifier && indexed()) {
+            if (filtered && shouldFilterMatch(query)) {
+                return -1;
+            }
+            LinePositions positions = index.get(identifier);
+            return positions == null ? -1 : positions.atOrBefore(last);
+        }
+        if (query instanceof Query.CharacterizationQuery typed && characterizedIndexed()) {
+            LinePositions positions = characterized.get(typed.getCharacterization());
+            return positions == null ? -1 : positions.atOrBefore(last);
+        }
+        Predicate<FIR> matching = query.lineMatcher();
+        if (query instanceof Query.RegexpQuery regexp && !regexp.getLiteralPrefix().isEmpty() && named()) {
+            LinePositions candidates = names.under(regexp.getLiteralPrefix());
+            for (int at = candidates == null ? -1 : candidates.indexAtOrBefore(last); at >= 0; at--) {
+                if (matching.test(peek(candidates.get(at)))) {
+                    return candidates.get(at);
                 }
             }
-            return parentBrane.memoryGet(query, parentPos);
+            return -1;
+        }
+        for (int line = last; line >= 0; line--) {
+            if (matching.test(peek(line)) && !(filtered && shouldFilterMatch(query))) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The first line at or after {@code first} that matches the query, or -1.
+     */
+    private int findForward(Query query, int first) {
+        if (pending != null) {
+            Predicate<FIR> matching = query.lineMatcher();
+            for (int line = first; reach(line); line++) {
+                if (matching.test(peek(line))) {
+                    return line;
+                }
+            }
+            return -1;
+        }
+        if (query instanceof Query.StrictlyMatchingQuery identifier && indexed()) {
+            LinePositions positions = index.get(identifier);
+            return positions == null ? -1 : positions.atOrAfter(first);
+        }
+        if (query instanceof Query.CharacterizationQuery typed && characterizedIndexed()) {
+            LinePositions positions = characterized.get(typed.getCharacterization());
+            return positions == null ? -1 : positions.atOrAfter(first);
+        }
+        Predicate<FIR> matching = query.lineMatcher();
+        if (query instanceof Query.RegexpQuery regexp && !regexp.getLiteralPrefix().isEmpty() && named()) {
+            LinePositions candidates = names.under(regexp.getLiteralPrefix());
+            int count = candidates == null ? 0 : candidates.size();
+            for (int at = count == 0 ? 0 : candidates.indexAtOrAfter(first); at < count; at++) {
+                if (matching.test(peek(candidates.get(at)))) {
+                    return candidates.get(at);
+                }
+            }
+            return -1;
+        }
+        for (int line = first; line < size; line++) {
+            if (matching.test(peek(line))) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * True if identifier queries use the index, building it first if this memory has just become large enough.
+     */
+    private boolean indexed() {
+        if (index == null && size >= INDEXED_SIZE) {
+            buildIndex();
+        }
+        return index != null;
+    }
+
+    /**
+     * True if regexp queries with a literal prefix use the name trie, building it first if needed.
+     */
+    private boolean named() {
+        if (names == null && size >= INDEXED_SIZE) {
+            names = new NameTrie();
+            for (int line = 0; line < size; line++) {
+                names.add(peek(line), line);
+            }
+        }
+        return names != null;
+    }
+
+    /**
+     * True if characterization queries use the characterization index, building it first if needed.
+     */
+    private boolean characterizedIndexed() {
+        if (characterized == null && size >= INDEXED_SIZE) {
+            characterized = new HashMap<>();
+            for (int line = 0; line < size; line++) {
+                characterizeLine(peek(line), line);
+            }
+        }
+        return characterized != null;
+    }
+
+    /**
+     * Lists an assignment under each leading part of its characterization: {@code outer'inner'x} under
+     * {@code outer'} and {@code outer'inner'}.
+     */
+    private void characterizeLine(FIR line, int position) {
+        if (line instanceof AssignmentFiroe assignment) {
+            String characterization = assignment.getLhs().getCharacterization();
+            for (int end = characterization.indexOf('\''); end >= 0; end = characterization.indexOf('\'', end + 1)) {
+                characterized.computeIfAbsent(characterization.substring(0, end + 1), c -> new LinePositions())
+                    .add(position);
+            }
+        }
+    }
+
+    private void uncharacterizeLine(FIR line, int position) {
+        if (line instanceof AssignmentFiroe assignment) {
+            String characterization = assignment.getLhs().getCharacterization();
+            for (int end = characterization.indexOf('\''); end >= 0; end = characterization.indexOf('\'', end + 1)) {
+                String leading = characterization.substring(0, end + 1);
+                LinePositions positions = characterized.get(leading);
+                if (positions != null && positions.remove(position)) {
+                    characterized.remove(leading);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the indexes now rather than on the first queries, for a memory that is about to be shared read-only.
+     */
+    void prepareIndex() {
+        drain();
+        indexed();
+        named();
+        characterizedIndexed();
+    }
+
+    private void buildIndex() {
+        index = new HashMap<>();
+        for (int line = 0; line < size; line++) {
+            indexLine(peek(line), line);
+        }
+    }
+
+    private void indexLine(FIR line, int position) {
+        if (line instanceof AssignmentFiroe assignment) {
+            index.computeIfAbsent(assignment.getLhs(), lhs -> new LinePositions()).add(position);
+        }
+    }
+
+    private void unindexLine(FIR line, int position) {
+        if (line instanceof AssignmentFiroe assignment) {
+            LinePositions positions = index.get(assignment.getLhs());
+            if (positions != null && positions.remove(position)) {
+                index.remove(assignment.getLhs());
+            }
         }
-        return Optional.empty();
     }
 
     private boolean shouldFilterMatch(Query query) {
@@ -81,25 +471,35 @@ public class BraneMemory implements ReadOnlyBraneMemory {
         return switch (query) {
             case Query.StrictlyMatchingQuery smq -> smq.getId();
             case Query.RegexpQuery rq -> null;
+            case Query.CharacterizationQuery cq -> null;
         };
     }
 
     public Optional<Pair<Integer, FIR>> getLocal(Query query, int fromLine) {
-        for (int line = min(fromLine, memory.size() - 1); line >= 0; line--) {
-            var lineMemory = memory.get(line);
-            if (query.matches(lineMemory)) {
-                return Optional.of(Pair.of(line, lineMemory));
+        reach(fromLine);
+        int line = findBackward(query, min(fromLine, size - 1), false);
+        if (line >= 0) {
+            if (dependencies != null) {
+                dependencies.read(line, min(fromLine, size - 1));
             }
+            return Optional.of(Pair.of(line, line(line)));
+        }
+        if (dependencies != null) {
+            dependencies.read(0, min(fromLine, size - 1));
         }
         return Optional.empty();
     }
 
     public Optional<Pair<Integer, FIR>> getLocalForward(Query query, int fromLine) {
-        for (int line = max(fromLine, 0); line < memory.size(); line++) {
-            var lineMemory = memory.get(line);
-            if (query.matches(lineMemory)) {
-                return Optional.of(Pair.of(line, lineMemory));
+        int line = findForward(query, max(fromLine, 0));
+        if (line >= 0) {
+            if (dependencies != null) {
+                dependencies.read(max(fromLine, 0), line);
             }
+            return Optional.of(Pair.of(line, line(line)));
+        }
+        if (dependencies != null) {
+            dependencies.read(max(fromLine, 0), size - 1);
         }
         return Optional.empty();
     }
@@ -120,38 +520,86 @@ public class BraneMemory implements ReadOnlyBraneMemory {
     }
 
     public void put(FIR line) {
-        memory.add(line);
+        if (size >= memory.length) {
+            memory = Arrays.copyOf(memory, Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        memory[size++] = line;
+        if (index != null) {
+            indexLine(line, size - 1);
+        }
+        if (names != null) {
+            names.add(line, size - 1);
+        }
+        if (characterized != null) {
+            characterizeLine(line, size - 1);
+        }
     }
 
     public boolean isEmpty() {
-        return memory.isEmpty();
+        return size == 0 && !pull();
     }
 
     public Stream<FIR> stream() {
-        return memory.stream();
+        drain();
+        if (dependencies != null) {
+            dependencies.read(0, size - 1);
+        }
+        copyAll();
+        return Arrays.stream(memory, 0, size);
     }
 
     public int size() {
-        return memory.size();
+        drain();
+        return size;
     }
 
     public FIR getLast() {
-        if (memory.isEmpty()) {
+        drain();
+        if (size == 0) {
             throw new java.util.NoSuchElementException("BraneMemory is empty");
         }
-        return memory.get(memory.size() - 1);
+        if (dependencies != null) {
+            dependencies.read(size - 1, size - 1);
+        }
+        return line(size - 1);
     }
 
     public FIR removeFirst() {
-        if (memory.isEmpty()) {
+        drain();
+        if (size == 0) {
             throw new java.util.NoSuchElementException("BraneMemory is empty");
         }
-        return memory.remove(0);
+        copyAll();
+        FIR first = memory[0];
+        System.arraycopy(memory, 1, memory, 0, --size);
+        memory[size] = null;
+        index = null;  // every position moved; rebuilt when next needed
+        names = null;
+        characterized = null;
+        return first;
     }
 
     @Override
     public java.util.Iterator<FIR> iterator() {
-        return memory.iterator();
+        if (dependencies != null) {
+            dependencies.read(0, size - 1);
+        }
+        return new java.util.Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return reach(next);
+            }
+
+            @Override
+            public FIR next() {
+                if (!reach(next)) {
+                    throw new java.util.NoSuchElementException();
+                }
+                return line(next++);
+            }
+        };
     }
 
     public void setOwningBrane(FiroeWithBraneMind brane) {
@@ -167,11 +615,255 @@ public class BraneMemory implements ReadOnlyBraneMemory {
     }
 
     public int getStatementIndex(FIR fir) {
-        for (int i = 0; i < memory.size(); i++) {
-            if (memory.get(i) == fir) {
+        drain();
+        copyAll();
+        if (fir.indexedIn == this && fir.statementIndex < size && memory[fir.statementIndex] == fir) {
+            return fir.statementIndex;
+        }
+        for (int i = 0; i < size; i++) {
+            if (memory[i] == fir) {
                 return i;
             }
         }
         return -1;
     }
+
+    /**
+     * Puts a FIR in place of an existing line, for re-evaluating that line (see
+     * {@link UnicelluarBraneComputer#replaceStatement}).
+     */
+    void set(int idx, FIR line) {
+        drain();
+        if (idx < 0 || idx >= size) {
+            throw new IndexOutOfBoundsException("Index: " + idx + ", Size: " + size);
+        }
+        copyAll();
+        if (index != null) {
+            unindexLine(memory[idx], idx);
+            indexLine(line, idx);
+        }
+        if (names != null) {
+            names.remove(memory[idx], idx);
+            names.add(line, idx);
+        }
+        if (characterized != null) {
+            uncharacterizeLine(memory[idx], idx);
+            characterizeLine(line, idx);
+        }
+        memory[idx] = line;
+    }
+
+    StatementDependencies getDependencies() {
+        return dependencies;
+    }
+
+    void setDependencies(StatementDependencies dependencies) {
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * Records the index the holder of this memory knows a FIR by; see {@link #indexOf}.
+     */
+    void putIndex(FIR fir, int index) {
+        if (fir.isFrozen()) {
+            if (fir.indexedIn != this) {
+                if (spilledIndices == null) {
+                    spilledIndices = new IdentityHashMap<>(4);
+                }
+                spilledIndices.put(fir, index);
+            }
+            return;
+        }
+        if (fir.indexedIn != null && fir.indexedIn != this) {
+            fir.indexedIn.spillIndex(fir);
+        }
+        if (spilledIndices != null) {
+            spilledIndices.remove(fir);
+        }
+        fir.indexedIn = this;
+        fir.statementIndex = index;
+    }
+
+    /**
+     * The index last recorded for a FIR with {@link #putIndex}, or -1 if none was.
+     */
+    int indexOf(FIR fir) {
+        if (fir.indexedIn == this) {
+            return fir.statementIndex;
+        }
+        Integer index = spilledIndices == null ? null : spilledIndices.get(fir);
+        return index != null ? index : -1;
+    }
+
+    private void spillIndex(FIR fir) {
+        if (spilledIndices == null) {
+            spilledIndices = new IdentityHashMap<>(4);
+        }
+        spilledIndices.put(fir, fir.statementIndex);
+    }
+
+    /**
+     * Ascending line positions of one identifier's bindings. Lines are almost always appended, so adding is
+     * amortized O(1); only replacing a line inserts out of order.
+     */
+    private static final class LinePositions {
+        private int[] lines = new int[2];
+        private int count = 0;
+
+        void add(int line) {
+            if (count == lines.length) {
+                lines = Arrays.copyOf(lines, count * 2);
+            }
+            int at = count;
+            while (at > 0 && lines[at - 1] > line) {
+                at--;
+            }
+            System.arraycopy(lines, at, lines, at + 1, count - at);
+            lines[at] = line;
+            count++;
+        }
+
+        /**
+         * Removes a position; true if none are left.
+         */
+        boolean remove(int line) {
+            int at = Arrays.binarySearch(lines, 0, count, line);
+            if (at >= 0) {
+                System.arraycopy(lines, at + 1, lines, at, --count - at);
+            }
+            return count == 0;
+        }
+
+        boolean contains(int line) {
+            return Arrays.binarySearch(lines, 0, count, line) >= 0;
+        }
+
+        int size() {
+            return count;
+        }
+
+        int get(int at) {
+            return lines[at];
+        }
+
+        /** Where the greatest position at or before {@code line} is, or -1. */
+        int indexAtOrBefore(int line) {
+            int at = Arrays.binarySearch(lines, 0, count, line);
+            return at >= 0 ? at : -at - 2;
+        }
+
+        /** Where the least position at or after {@code line} is, or {@link #size()}. */
+        int indexAtOrAfter(int line) {
+            int at = Arrays.binarySearch(lines, 0, count, line);
+            return at >= 0 ? at : -at - 1;
+        }
+
+        /** The greatest position at or before {@code line}, or -1. */
+        int atOrBefore(int line) {
+            int at = Arrays.binarySearch(lines, 0, count, line);
+            if (at >= 0) {
+                return lines[at];
+            }
+            int before = -at - 2;
+            return before >= 0 ? lines[before] : -1;
+        }
+
+        /** The least position at or after {@code line}, or -1. */
+        int atOrAfter(int line) {
+            int at = Arrays.binarySearch(lines, 0, count, line);
+            if (at >= 0) {
+                return lines[at];
+            }
+            int after = -at - 1;
+            return after < count ? lines[after] : -1;
+        }
+    }
+
+    /**
+     * Assignment lines by the prefixes of their names. A line is listed at every node along both its name as
+     * written and its name without characterization, so the lines whose names start with some text are those
+     * of one node, in order.
+     */
+    private static final class NameTrie {
+        private final Node root = new Node();
+
+        void add(FIR line, int position) {
+            if (line instanceof AssignmentFiroe assignment) {
+                CharacterizedIdentifier lhs = assignment.getLhs();
+                insert(lhs.toString(), position);
+                if (lhs.hasCharacterization()) {
+                    insert(lhs.getId(), position);
+                }
+            }
+        }
+
+        void remove(FIR line, int position) {
+            if (line instanceof AssignmentFiroe assignment) {
+                CharacterizedIdentifier lhs = assignment.getLhs();
+                delete(lhs.toString(), position);
+                delete(lhs.getId(), position);
+            }
+        }
+
+        /**
+         * The lines with a name starting with a non-empty prefix, or null if there are none.
+         */
+        LinePositions under(String prefix) {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+            return node == null || node.lines.size() == 0 ? null : node.lines;
+        }
+
+        private void insert(String name, int position) {
+            Node node = root;
+            for (int i = 0; i < name.length(); i++) {
+                node = node.childOrNew(name.charAt(i));
+                if (!node.lines.contains(position)) {
+                    node.lines.add(position);
+                }
+            }
+        }
+
+        private void delete(String name, int position) {
+            Node node = root;
+            for (int i = 0; i < name.length() && node != null; i++) {
+                node = node.child(name.charAt(i));
+                if (node != null) {
+                    node.lines.remove(position);
+                }
+            }
+        }
+    }
+
+    /**
+     * One character of a {@link NameTrie}. Names branch little, so children are found by a linear scan.
+     */
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private final LinePositions lines = new LinePositions();
+
+        Node child(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node childOrNew(char key) {
+            Node child = child(key);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = key;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
 }
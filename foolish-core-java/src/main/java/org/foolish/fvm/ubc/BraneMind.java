@@ -0,0 +1,127 @@
+package org.foolish.fvm.ubc;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * The work queue of a {@link FiroeWithBraneMind}: an array-backed ring buffer of FIRs.
+ * <p>
+ * Replaces a {@code LinkedList}, which allocates a node per enqueue and is itself allocated for every FIR
+ * with a braneMind. The backing array is allocated on the first enqueue, sized for a handful of entries,
+ * and doubles when full; it never shrinks, since a braneMind only drains once.
+ */
+final class BraneMind implements Iterable<FIR> {
+    private static final FIR[] EMPTY = new FIR[0];
+    private static final int INITIAL_CAPACITY = 4;
+
+    private FIR[] elements = EMPTY;
+    private int head = 0;
+    private int size = 0;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Writes the queue in order; see {@link UbcSnapshot}.
+     */
+    void writeState(UbcSnapshot.Out out) {
+        List<FIR> queued = new ArrayList<>(size);
+        forEach(queued::add);
+        out.refs(queued);
+    }
+
+    void readState(UbcSnapshot.In in) {
+        for (FIR fir : in.<FIR>refs()) {
+            addLast(fir);
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void addLast(FIR fir) {
+        ensureCapacity();
+        elements[(head + size) % elements.length] = fir;
+        size++;
+    }
+
+    void addFirst(FIR fir) {
+        ensureCapacity();
+        head = (head - 1 + elements.length) % elements.length;
+        elements[head] = fir;
+        size++;
+    }
+
+    FIR removeFirst() {
+        FIR first = getFirst();
+        elements[head] = null;
+        head = (head + 1) % elements.length;
+        size--;
+        return first;
+    }
+
+    FIR getFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException("braneMind is empty");
+        }
+        return elements[head];
+    }
+
+    /**
+     * Removes every FIR matching the test, returning them in queue order; the rest keep their order.
+     */
+    List<FIR> removeIf(Predicate<FIR> test) {
+        List<FIR> removed = new ArrayList<>();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            FIR fir = elements[(head + i) % elements.length];
+            if (test.test(fir)) {
+                removed.add(fir);
+            } else {
+                elements[(head + kept++) % elements.length] = fir;
+            }
+        }
+        for (int i = kept; i < size; i++) {
+            elements[(head + i) % elements.length] = null;
+        }
+        size = kept;
+        return removed;
+    }
+
+    @Override
+    public Iterator<FIR> iterator() {
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public FIR next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return elements[(head + next++) % elements.length];
+            }
+        };
+    }
+
+    private void ensureCapacity() {
+        if (size < elements.length) {
+            return;
+        }
+        FIR[] grown = new FIR[Math.max(INITIAL_CAPACITY, elements.length * 2)];
+        for (int i = 0; i < size; i++) {
+            grown[i] = elements[(head + i) % elements.length];
+        }
+        elements = grown;
+        head = 0;
+    }
+}
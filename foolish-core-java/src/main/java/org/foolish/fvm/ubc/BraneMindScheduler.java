@@ -0,0 +1,24 @@
+package org.foolish.fvm.ubc;
+
+/**
+ * Policy a {@link FiroeWithBraneMind} uses to decide what goes back on its braneMind after a step.
+ * <p>
+ * The policy is carried by the {@link ExecutionContext} a {@link UnicelluarBraneComputer} runs with, shared by every
+ * FIR stored beneath it.
+ */
+public enum BraneMindScheduler {
+    /**
+     * Round-robin: every FIR that is still nye is re-appended to the braneMind, including FIRs
+     * that are only waiting on some other FIR and will spend their next step polling it.
+     */
+    BREADTH_FIRST,
+
+    /**
+     * Ready queue: a FIR whose step reports it is blocked ({@link FIR#blockedOn()}) on a nye FIR
+     * is parked on that FIR instead of re-appended, and re-queued only when the FIR it waits on changes
+     * Nyes state. A holder whose children are all parked does nothing when stepped and is parked in turn,
+     * and never completes while any child is parked. A FIR waiting on a dependency that only it steps, or
+     * that nothing is stepping, keeps polling instead, so it cannot deadlock.
+     */
+    DEPENDENCY_DRIVEN
+}
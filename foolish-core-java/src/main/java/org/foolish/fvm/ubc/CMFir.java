@@ -52,6 +52,26 @@ public class CMFir extends FiroeWithoutBraneMind implements Constanicable {
         // CMFir starts as UNINITIALIZED (set by parent constructor)
     }
 
+    CMFir(UbcSnapshot.In in) {
+        super(in);
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.ref(o);
+        out.ref(o2);
+        out.bool(phaseBStarted);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        o = in.ref();
+        o2 = in.ref();
+        phaseBStarted = in.bool();
+    }
+
     @Override
     public int step() {
         if (atConstant()) return 0;
@@ -90,12 +110,12 @@ public class CMFir extends FiroeWithoutBraneMind implements Constanicable {
         }
 
         // If o2 has a braneMind, link its memory to the containing brane
-        // The parent brane's indexLookup tracks this FIR's position via the CMFir's own position
+        // The parent brane's statement index tracks this FIR's position via the CMFir's own position
         if (o2 instanceof FiroeWithBraneMind fwbm) {
             BraneFiroe myBrane = getMyBrane();
             if (myBrane != null) {
                 fwbm.linkMemoryParent(myBrane);  // Links to parent FIR (not its memory)
-                // The CMFir itself is tracked in the parent brane's indexLookup.
+                // The CMFir itself is tracked in the parent brane's statement index.
                 // o2 uses CMFir's position for identifier resolution since o2.parentFir = this.
             }
         }
@@ -150,6 +170,11 @@ public class CMFir extends FiroeWithoutBraneMind implements Constanicable {
         }
     }
 
+    @Override
+    protected FIR stateOwner() {
+        return phaseBStarted ? o2.stateOwner() : o.stateOwner();
+    }
+
     @Override
     public boolean atConstant() {
         if (phaseBStarted) {
@@ -189,19 +214,14 @@ public class CMFir extends FiroeWithoutBraneMind implements Constanicable {
     }
 
     @Override
-    public Optional<FIR> valuableSelf() {
-        if (FIR.RECURSION_DEPTH.get() > 100) {
+    protected Optional<FIR> valuableSelf(int depth) {
+        if (depth > MAX_VALUABLE_DEPTH) {
             return Optional.empty();
         }
-        try {
-            FIR.RECURSION_DEPTH.set(FIR.RECURSION_DEPTH.get() + 1);
-            if (phaseBStarted) {
-                return o2.valuableSelf();
-            } else {
-                return o.valuableSelf();
-            }
-        } finally {
-            FIR.RECURSION_DEPTH.set(FIR.RECURSION_DEPTH.get() - 1);
+        if (phaseBStarted) {
+            return o2.valuableSelf(depth + 1);
+        } else {
+            return o.valuableSelf(depth + 1);
         }
     }
 }
@@ -18,11 +18,14 @@ import org.foolish.ast.AST;
  * - Coordinate access in branes
  *
  * CharacterizedIdentifier is immutable and can be easily created from AST.Identifier
- * or constructed directly with strings.
+ * or constructed directly with strings. Each pair of id and characterization is interned
+ * in the {@link SymbolTable}, and identifiers compare by that symbol.
  */
 public class CharacterizedIdentifier {
     private final String id;
     private final String characterization;
+    /** Held so that the name stays interned while this identifier lives. */
+    private final SymbolTable.Symbol symbol;
 
     /**
      * Creates a CharacterizedIdentifier from an AST.Identifier.
@@ -31,6 +34,7 @@ public class CharacterizedIdentifier {
     public CharacterizedIdentifier(AST.Identifier identifier) {
         this.id = identifier.id();
         this.characterization = identifier.canonicalCharacterization();
+        this.symbol = SymbolTable.intern(id, characterization);
     }
 
     /**
@@ -42,6 +46,7 @@ public class CharacterizedIdentifier {
     public CharacterizedIdentifier(String id, String characterization) {
         this.id = id != null ? id : "";
         this.characterization = characterization != null ? characterization : "";
+        this.symbol = SymbolTable.intern(this.id, this.characterization);
     }
 
     /**
@@ -53,6 +58,14 @@ public class CharacterizedIdentifier {
         this(id, "");
     }
 
+    /**
+     * The symbol interned for this id and characterization: two identifiers are equal exactly when their
+     * symbols are.
+     */
+    public int getSymbol() {
+        return symbol.id();
+    }
+
     /**
      * Gets the identifier name.
      */
@@ -96,11 +109,11 @@ public class CharacterizedIdentifier {
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (!(obj instanceof CharacterizedIdentifier other)) return false;
-        return id.equals(other.id) && characterization.equals(other.characterization);
+        return symbol == other.symbol;
     }
 
     @Override
     public int hashCode() {
-        return 31 * id.hashCode() + characterization.hashCode();
+        return symbol.id();
     }
 }
@@ -42,6 +42,27 @@ public class ConcatenationFiroe extends FiroeWithBraneMind implements Constanica
         this.sourceElements = concatenation.elements();
     }
 
+    ConcatenationFiroe(UbcSnapshot.In in) {
+        super(in);
+        this.sourceElements = ((AST.Concatenation) ast).elements();
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.ref(stageAExecutor);
+        out.refs(sourceFirs);
+        out.bool(joinComplete);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        stageAExecutor = in.ref();
+        sourceFirs = in.refs();
+        joinComplete = in.bool();
+    }
+
     /**
      * Copy constructor for cloneConstanic.
      */
@@ -63,6 +84,33 @@ public class ConcatenationFiroe extends FiroeWithBraneMind implements Constanica
         return getNyes().ordinal() >= Nyes.PRIMED.ordinal();
     }
 
+    /**
+     * True if the tree contains a concatenation anywhere. Joins only take the element statements that are
+     * already constanic, so modes that change the pacing of evaluation stay off in such programs.
+     */
+    static boolean occursIn(AST ast) {
+        return switch (ast) {
+            case null -> false;
+            case AST.Concatenation concatenation -> true;
+            case AST.Branes branes -> branes.branes().size() > 1
+                || branes.branes().stream().anyMatch(ConcatenationFiroe::occursIn);
+            case AST.Brane brane -> brane.statements().stream().anyMatch(ConcatenationFiroe::occursIn);
+            case AST.DetachmentBrane brane -> brane.statements().stream().anyMatch(s -> occursIn(s.expr()));
+            case AST.Assignment assignment -> occursIn(assignment.expr());
+            case AST.BinaryExpr binary -> occursIn(binary.left()) || occursIn(binary.right());
+            case AST.UnaryExpr unary -> occursIn(unary.expr());
+            case AST.IfExpr ifExpr -> occursIn(ifExpr.condition()) || occursIn(ifExpr.thenExpr())
+                || occursIn(ifExpr.elseExpr()) || ifExpr.elseIfs().stream().anyMatch(ConcatenationFiroe::occursIn);
+            case AST.DereferenceExpr deref -> occursIn(deref.anchor());
+            case AST.RegexpSearchExpr search -> occursIn(search.anchor());
+            case AST.OneShotSearchExpr search -> occursIn(search.anchor());
+            case AST.SeekExpr seek -> occursIn(seek.anchor());
+            case AST.StayFoolishExpr stayFoolish -> occursIn(stayFoolish.expr());
+            case AST.StayFullyFoolishExpr stayFullyFoolish -> occursIn(stayFullyFoolish.expr());
+            default -> false;
+        };
+    }
+
     @Override
     protected void initialize() {
         if (isInitialized()) return;
@@ -88,8 +136,8 @@ public class ConcatenationFiroe extends FiroeWithBraneMind implements Constanica
             if (fir instanceof FiroeWithBraneMind fwbm) {
                 if (!(fir instanceof BraneFiroe) && !(fir instanceof ConcatenationFiroe)) {
                     // Non-brane FiroeWithBraneMind (like IdentifierFiroe) - ordinate for resolution
-                    // Add to indexLookup first so parent knows the index
-                    indexLookup.put(fir, index);
+                    // Record the index first so parent knows it
+                    putIndex(fir, index);
                     fwbm.ordinateToParentBraneMind(this);
                 }
                 // BraneFiroe and ConcatenationFiroe - NOT ordinated (isolated during Stage A)
@@ -138,6 +186,7 @@ public class ConcatenationFiroe extends FiroeWithBraneMind implements Constanica
                 performJoin();
                 prime();
                 setNyes(Nyes.PRIMED);
+                fuseTransitions();
                 return 1;
             }
             case PRIMED -> {
@@ -28,6 +28,17 @@ public class DerefSearchFiroe extends RegexpSearchFiroe {
         this.originalAst = original.originalAst;
     }
 
+    DerefSearchFiroe(UbcSnapshot.In in) {
+        super(in);
+        this.originalAst = in.ref();
+    }
+
+    @Override
+    void writeFinals(UbcSnapshot.Out out) {
+        super.writeFinals(out);
+        out.ref(originalAst);
+    }
+
     @Override
     public String toString() {
         if (originalAst != null) {
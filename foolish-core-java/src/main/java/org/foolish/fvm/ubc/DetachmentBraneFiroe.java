@@ -37,15 +37,38 @@ public class DetachmentBraneFiroe extends FiroeWithBraneMind {
     public DetachmentBraneFiroe(AST.DetachmentBrane ast) {
         super(ast);
 
-        // Extract detached identifier names from AST
-        this.detachedIdentifiers = ast.statements().stream()
-            .map(stmt -> stmt.identifier().id())
-            .collect(Collectors.toSet());
+        this.detachedIdentifiers = detachedIdentifiers(ast);
 
         // Set up this brane's memory with filtering
         setMemoryOwner(this);
     }
 
+    DetachmentBraneFiroe(UbcSnapshot.In in) {
+        super(in);
+        this.detachedIdentifiers = detachedIdentifiers((AST.DetachmentBrane) ast);
+    }
+
+    /**
+     * Extracts the detached identifier names from the AST.
+     */
+    private static Set<String> detachedIdentifiers(AST.DetachmentBrane ast) {
+        return ast.statements().stream()
+            .map(stmt -> stmt.identifier().id())
+            .collect(Collectors.toSet());
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.bool(filterActive);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        filterActive = in.bool();
+    }
+
     @Override
     protected void initialize() {
         setInitialized();
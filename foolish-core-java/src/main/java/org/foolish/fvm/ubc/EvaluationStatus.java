@@ -0,0 +1,22 @@
+package org.foolish.fvm.ubc;
+
+/**
+ * Outcome of a budgeted run of a {@link UnicelluarBraneComputer}.
+ * <p>
+ * Only {@link #COMPLETE} is final; after the other two the UBC keeps its state and evaluation
+ * resumes exactly where it stopped on the next run or {@link UnicelluarBraneComputer#step()}.
+ */
+public enum EvaluationStatus {
+    /** The root brane is no longer nye; there is nothing left to evaluate. */
+    COMPLETE,
+
+    /** The step budget or deadline ran out while the root brane was still nye. */
+    BUDGET_EXHAUSTED,
+
+    /**
+     * The root brane has been stepped {@link UnicelluarBraneComputer#STALL_ITERATIONS} times in a row
+     * without any FIR changing Nyes state, so nothing is making progress (e.g. a cyclic wait, or a FIR
+     * that keeps polling something that never moves).
+     */
+    STALLED
+}
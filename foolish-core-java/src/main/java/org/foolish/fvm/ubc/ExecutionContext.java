@@ -1,24 +1,78 @@
 package org.foolish.fvm.ubc;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
- * ExecutionContext holds runtime context information for FIR execution,
- * such as the source filename being executed.
+ * ExecutionContext holds runtime context information for one evaluation,
+ * such as the source filename being executed and how the braneMind is scheduled.
  * <p>
- * This context is threaded through the UBC and FIR hierarchy to enable
- * comprehensive error reporting with file location information.
+ * The context is handed to a {@link UnicelluarBraneComputer} and threaded through
+ * its FIR hierarchy: every FIR stored into a brane takes its holder's context, so
+ * any number of UBCs can run side by side, on any threads, without sharing state.
+ * Contexts are immutable; the {@code with...} methods return modified copies.
  */
-public class ExecutionContext {
-    private static final ThreadLocal<ExecutionContext> CURRENT = new ThreadLocal<>();
+public final class ExecutionContext {
+    /**
+     * Context used by FIRs evaluated outside any UBC (e.g. directly in unit tests).
+     */
+    public static final ExecutionContext DEFAULT = new ExecutionContext("unknown.foo");
 
     private final String sourceFilename;
+    private final BraneMindScheduler scheduler;
+    private final ForkJoinPool parallelPool;
+    private final boolean compiledArithmetic;
+    private final BraneJit braneJit;
+    private final boolean fusedTransitions;
+    private final boolean incremental;
+    private final BraneMemo braneMemo;
+    private final boolean lazyBranes;
+    private final boolean lexicalAddressing;
+    private final SearchMemo searchMemo;
 
     /**
-     * Creates an execution context with the given source filename.
+     * Creates an execution context with the given source filename and default evaluation settings.
      *
      * @param sourceFilename the name of the .foo file being executed (e.g., "test.foo")
      */
     public ExecutionContext(String sourceFilename) {
+        this(sourceFilename, BraneMindScheduler.BREADTH_FIRST, null, false, null, false, false, null, false, true,
+            null);
+    }
+
+    private ExecutionContext(String sourceFilename, BraneMindScheduler scheduler, ForkJoinPool parallelPool,
+                             boolean compiledArithmetic, BraneJit braneJit, boolean fusedTransitions,
+                             boolean incremental, BraneMemo braneMemo, boolean lazyBranes,
+                             boolean lexicalAddressing, SearchMemo searchMemo) {
         this.sourceFilename = sourceFilename;
+        this.scheduler = scheduler;
+        this.parallelPool = parallelPool;
+        this.compiledArithmetic = compiledArithmetic;
+        this.braneJit = braneJit;
+        this.fusedTransitions = fusedTransitions;
+        this.incremental = incremental;
+        this.braneMemo = braneMemo;
+        this.lazyBranes = lazyBranes;
+        this.lexicalAddressing = lexicalAddressing;
+        this.searchMemo = searchMemo;
+    }
+
+    /**
+     * Snapshot constructor: a context without the process resources {@link UbcSnapshot} does not save.
+     */
+    ExecutionContext(UbcSnapshot.In in) {
+        this(in.string(), in.ordinal(BraneMindScheduler.values()), null, in.bool(), null, in.bool(), in.bool(),
+            in.ref(), in.bool(), in.bool(), null);
+    }
+
+    void writeFinals(UbcSnapshot.Out out) {
+        out.string(sourceFilename);
+        out.ordinal(scheduler);
+        out.bool(compiledArithmetic);
+        out.bool(fusedTransitions);
+        out.bool(incremental);
+        out.ref(braneMemo);
+        out.bool(lazyBranes);
+        out.bool(lexicalAddressing);
     }
 
     /**
@@ -31,27 +85,208 @@ public class ExecutionContext {
     }
 
     /**
-     * Sets the current thread's execution context.
+     * Gets the braneMind scheduling policy.
+     *
+     * @return the scheduling policy
+     */
+    public BraneMindScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Gets the pool independent branes are evaluated on.
+     *
+     * @return the pool, or null when evaluation is sequential
+     */
+    public ForkJoinPool getParallelPool() {
+        return parallelPool;
+    }
+
+    /**
+     * Whether arithmetic subtrees are compiled to an {@link ArithmeticProgram} instead of being
+     * evaluated one FIR per operator node.
+     *
+     * @return true if arithmetic is compiled
+     */
+    public boolean isCompiledArithmetic() {
+        return compiledArithmetic;
+    }
+
+    /**
+     * Gets the tier-2 compiler for hot branes.
+     *
+     * @return the compiler, or null when every brane is interpreted
+     */
+    public BraneJit getBraneJit() {
+        return braneJit;
+    }
+
+    /**
+     * Whether a FIR takes every state transition that needs no input from other FIRs within a single step,
+     * instead of spending one step per {@link Nyes} state. A UBC ignores this for programs containing a
+     * concatenation (see {@link ConcatenationFiroe#occursIn}).
+     *
+     * @return true if transitions are fused
+     */
+    public boolean isFusedTransitions() {
+        return fusedTransitions;
+    }
+
+    /**
+     * Whether a UBC records which statements of its root brane each statement read, so that replacing one
+     * statement re-evaluates only the statements that depend on it (see
+     * {@link UnicelluarBraneComputer#replaceStatement}).
+     *
+     * @return true if dependencies are tracked
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Whether structurally equal closed brane literals are evaluated once per UBC, the other copies taking
+     * the lines of the first once it is CONSTANT (see {@link BraneMemo}).
+     *
+     * @return true if closed branes are memoized
+     */
+    public boolean isMemoizedBranes() {
+        return braneMemo != null;
+    }
+
+    /**
+     * The memo table of the evaluation using this context.
+     *
+     * @return the table, or null when branes are not memoized
+     */
+    BraneMemo getBraneMemo() {
+        return braneMemo;
+    }
+
+    /**
+     * Whether closed nested branes evaluate a statement only when something reads it: an identifier resolving
+     * to it, a search finding it, or {@link UnicelluarBraneComputer#demandAll()}. A UBC ignores this for
+     * programs containing a concatenation.
+     *
+     * @return true if closed branes are evaluated on demand
+     */
+    public boolean isLazyBranes() {
+        return lazyBranes;
+    }
+
+    /**
+     * Whether identifiers are resolved through the addresses computed from the AST when their brane is
+     * initialized (see {@link LexicalScope}), searching memory only where no address applies. On by default;
+     * evaluation is the same either way.
      *
-     * @param context the execution context to set
+     * @return true if identifiers are lexically addressed
      */
-    public static void setCurrent(ExecutionContext context) {
-        CURRENT.set(context);
+    public boolean isLexicalAddressing() {
+        return lexicalAddressing;
     }
 
     /**
-     * Gets the current thread's execution context.
+     * Gets the memo of searches on CONSTANT branes (see {@link SearchMemo}).
      *
-     * @return the current execution context, or null if none is set
+     * @return the memo, or null when every search runs
+     */
+    public SearchMemo getSearchMemo() {
+        return searchMemo;
+    }
+
+    /**
+     * @param scheduler the braneMind scheduling policy
+     * @return a copy of this context using the given policy
+     */
+    public ExecutionContext withScheduler(BraneMindScheduler scheduler) {
+        return new ExecutionContext(sourceFilename, scheduler, parallelPool, compiledArithmetic, braneJit,
+            fusedTransitions, incremental, braneMemo, lazyBranes, lexicalAddressing, searchMemo);
+    }
+
+    /**
+     * @param parallelPool the pool for evaluating independent branes, or null for sequential evaluation
+     * @return a copy of this context using the given pool
+     */
+    public ExecutionContext withParallelPool(ForkJoinPool parallelPool) {
+        return new ExecutionContext(sourceFilename, scheduler, parallelPool, compiledArithmetic, braneJit,
+            fusedTransitions, incremental, braneMemo, lazyBranes, lexicalAddressing, searchMemo);
+    }
+
+    /**
+     * @param compiledArithmetic whether to compile arithmetic subtrees
+     * @return a copy of this context with arithmetic compilation switched on or off
      */
-    public static ExecutionContext getCurrent() {
-        return CURRENT.get();
+    public ExecutionContext withCompiledArithmetic(boolean compiledArithmetic) {
+        return new ExecutionContext(sourceFilename, scheduler, parallelPool, compiledArithmetic, braneJit,
+            fusedTransitions, incremental, braneMemo, lazyBranes, lexicalAddressing, searchMemo);
     }
 
     /**
-     * Clears the current thread's execution context.
+     * @param braneJit the compiler for hot branes, shared by every UBC using this context, or null to interpret
+     * @return a copy of this context using the given compiler
+     */
+    public ExecutionContext withBraneJit(BraneJit braneJit) {
+        return new ExecutionContext(sourceFilename, scheduler, parallelPool, compiledArithmetic, braneJit,
+            fusedTransitions, incremental, braneMemo, lazyBranes, lexicalAddressing, searchMemo);
+    }
+
+    /**
+     * @param fusedTransitions whether to fuse state transitions that need no input
+     * @return a copy of this context with fused transitions switched on or off
+     */
+    public ExecutionContext withFusedTransitions(boolean fusedTransitions) {
+        return new ExecutionContext(sourceFilename, scheduler, parallelPool, compiledArithmetic, braneJit,
+            fusedTransitions, incremental, braneMemo, lazyBranes, lexicalAddressing, searchMemo);
+    }
+
+    /**
+     * @param incremental whether to track statement dependencies for incremental re-evaluation
+     * @return a copy of this context with dependency tracking switched on or off
+     */
+    public ExecutionContext withIncremental(boolean incremental) {
+        return new ExecutionContext(sourceFilename, scheduler, parallelPool, compiledArithmetic, braneJit,
+            fusedTransitions, incremental, braneMemo, lazyBranes, lexicalAddressing, searchMemo);
+    }
+
+    /**
+     * Each UBC given a context with memoized branes starts from its own empty table, and ignores the setting
+     * for programs containing a concatenation and for parallel evaluation.
+     *
+     * @param memoizedBranes whether to memoize closed brane literals
+     * @return a copy of this context with an empty memo table, or none
+     */
+    public ExecutionContext withMemoizedBranes(boolean memoizedBranes) {
+        return new ExecutionContext(sourceFilename, scheduler, parallelPool, compiledArithmetic, braneJit,
+            fusedTransitions, incremental, memoizedBranes ? new BraneMemo() : null, lazyBranes,
+            lexicalAddressing, searchMemo);
+    }
+
+    /**
+     * @param lazyBranes whether to evaluate the statements of closed nested branes on demand
+     * @return a copy of this context with demand-driven evaluation switched on or off
+     */
+    public ExecutionContext withLazyBranes(boolean lazyBranes) {
+        return new ExecutionContext(sourceFilename, scheduler, parallelPool, compiledArithmetic, braneJit,
+            fusedTransitions, incremental, braneMemo, lazyBranes, lexicalAddressing, searchMemo);
+    }
+
+    /**
+     * @param lexicalAddressing whether to resolve identifiers through static addresses where they apply
+     * @return a copy of this context with lexical addressing switched on or off
+     */
+    public ExecutionContext withLexicalAddressing(boolean lexicalAddressing) {
+        return new ExecutionContext(sourceFilename, scheduler, parallelPool, compiledArithmetic, braneJit,
+            fusedTransitions, incremental, braneMemo, lazyBranes, lexicalAddressing, searchMemo);
+    }
+
+    /**
+     * Off by default. A memo is mutable and is shared by every UBC given a context holding it, including all those
+     * of one {@link UnicelluarBraneComputer#runAll}; give each UBC a context with its own memo to keep them apart.
+     *
+     * @param searchMemo the memo of searches on CONSTANT branes, or null to run every search
+     * @return a copy of this context using the given memo
      */
-    public static void clearCurrent() {
-        CURRENT.remove();
+    public ExecutionContext withSearchMemo(SearchMemo searchMemo) {
+        return new ExecutionContext(sourceFilename, scheduler, parallelPool, compiledArithmetic, braneJit,
+            fusedTransitions, incremental, braneMemo, lazyBranes, lexicalAddressing, searchMemo);
     }
 }
@@ -65,6 +65,45 @@ public class ExecutionFir extends FiroeWithBraneMind {
         }
     }
 
+    /**
+     * Snapshot constructor; the managed FIRs are read with the rest of the state. Callbacks cannot be written,
+     * so only an ExecutionFir without them is checkpointed.
+     */
+    ExecutionFir(UbcSnapshot.In in) {
+        super(in);
+        this.targetState = in.nyes();
+        this.shouldSetParent = in.bool();
+        this.managedFirs = new ArrayList<>();
+        this.onComplete = null;
+        this.onStuck = null;
+    }
+
+    @Override
+    void writeFinals(UbcSnapshot.Out out) {
+        if (onComplete != null || onStuck != null) {
+            throw new IllegalStateException(formatErrorMessage("An ExecutionFir with callbacks cannot be checkpointed"));
+        }
+        super.writeFinals(out);
+        out.ordinal(targetState);
+        out.bool(shouldSetParent);
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.refs(managedFirs);
+        out.bool(completed);
+        out.bool(stuck);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        managedFirs.addAll(in.refs());
+        completed = in.bool();
+        stuck = in.bool();
+    }
+
     /**
      * Creates a new ExecutionFir Builder with the given FIRs.
      *
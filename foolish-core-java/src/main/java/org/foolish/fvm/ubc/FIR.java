@@ -3,6 +3,8 @@ package org.foolish.fvm.ubc;
 import org.foolish.ast.AST;
 import org.foolish.ast.SearchOperator;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Foolish Internal Representation (FIR).
  * <p>
@@ -17,6 +19,18 @@ public abstract class FIR implements Cloneable {
     protected Nyes nyes;
     private FIR parentFir = null;
     private final boolean ai;
+    /** The evaluation this FIR belongs to; null to use the nearest ancestor's. */
+    protected ExecutionContext context = null;
+    /** FIRs parked until this FIR's Nyes changes; allocated on first park. */
+    private java.util.List<FIR> waiters = null;
+    /** Holder whose braneMind this FIR is parked out of, and the FIR it waits on. */
+    FiroeWithBraneMind parkedIn = null;
+    FIR parkedOn = null;
+    /** The memory whose holder knows this FIR by {@link #statementIndex}; see {@link BraneMemory#putIndex}. */
+    BraneMemory indexedIn = null;
+    int statementIndex = -1;
+    /** Set on the FIRs of the shared standard library, which no evaluation may change; see {@link #freeze()}. */
+    private boolean frozen = false;
 
     protected FIR(AST ast, String comment, boolean ai) {
         this.ast = ast;
@@ -38,6 +52,51 @@ public abstract class FIR implements Cloneable {
         this(null, comment, true);
     }
 
+    /**
+     * Snapshot constructor: the final fields as {@link #writeFinals} wrote them. The rest is read by
+     * {@link #readState} once every object of the snapshot exists; see {@link UbcSnapshot}.
+     */
+    FIR(UbcSnapshot.In in) {
+        this(in.ref(), in.string(), in.bool());
+    }
+
+    /**
+     * Writes the final fields of this FIR for its snapshot constructor. A subclass whose own final fields are
+     * not derived from the AST writes them after these.
+     */
+    void writeFinals(UbcSnapshot.Out out) {
+        out.ref(ast);
+        out.string(comment);
+        out.bool(ai);
+    }
+
+    /**
+     * Writes the rest of this FIR's state for {@link #readState}. A subclass writes its own after this.
+     */
+    void writeState(UbcSnapshot.Out out) {
+        out.bool(initialized);
+        out.ordinal(nyes);
+        out.ref(parentFir);
+        out.ref(context);
+        out.refs(waiters);
+        out.ref(parkedIn);
+        out.ref(parkedOn);
+        out.ref(indexedIn);
+        out.integer(statementIndex);
+    }
+
+    void readState(UbcSnapshot.In in) {
+        initialized = in.bool();
+        nyes = in.nyes();
+        parentFir = in.ref();
+        context = in.ref();
+        waiters = in.refs();
+        parkedIn = in.ref();
+        parkedOn = in.ref();
+        indexedIn = in.ref();
+        statementIndex = in.integer();
+    }
+
     public AST ast() {
         return ast;
     }
@@ -99,8 +158,7 @@ public abstract class FIR implements Cloneable {
 
     public String formatErrorMessage(String message) {
         StringBuilder sb = new StringBuilder();
-        ExecutionContext ctx = ExecutionContext.getCurrent();
-        sb.append(ctx != null ? ctx.getSourceFilename() : "unknown.foo").append(":");
+        sb.append(executionContext().getSourceFilename()).append(":");
         AST.SourceLocation loc = nearestSourceLocation();
         if (loc != AST.SourceLocation.UNKNOWN) {
             sb.append("line ").append(loc.line());
@@ -113,6 +171,19 @@ public abstract class FIR implements Cloneable {
         return sb.toString();
     }
 
+    /**
+     * The context of the evaluation this FIR belongs to: its own, else the nearest ancestor's,
+     * else {@link ExecutionContext#DEFAULT}.
+     */
+    public ExecutionContext executionContext() {
+        for (FIR current = this; current != null; current = current.parentFir) {
+            if (current.context != null) {
+                return current.context;
+            }
+        }
+        return ExecutionContext.DEFAULT;
+    }
+
     protected boolean isInitialized() {
         return initialized;
     }
@@ -135,6 +206,7 @@ public abstract class FIR implements Cloneable {
             this.nyes = nyes;
             return;
         }
+        Nyes before = this.nyes;
         if (this.nyes == Nyes.CONSTANIC) {
             if (nyes != Nyes.CONSTANT && nyes != Nyes.CONSTANIC) {
                 throw new IllegalStateException(formatErrorMessage(
@@ -154,12 +226,114 @@ public abstract class FIR implements Cloneable {
         } else {
             this.nyes = nyes;
         }
+        if (this.nyes != before) {
+            countStateChange();
+            if (waiters != null) {
+                wakeWaiters();
+            }
+        }
+    }
+
+    /**
+     * The Nyes changes counted by the evaluation this FIR belongs to: the counter of the UBC root brane it is held
+     * under, or null outside a UBC. Evaluation that changes no FIR's state is not progressing, however many steps
+     * it takes, so a UBC compares this count across an iteration to detect a stall.
+     */
+    LongAdder stateChanges() {
+        FIR top = this;
+        while (top.parentFir != null) {
+            top = top.parentFir;
+        }
+        return top instanceof BraneFiroe root ? root.stateChanges : null;
+    }
+
+    private void countStateChange() {
+        LongAdder changes = stateChanges();
+        if (changes != null) {
+            changes.increment();
+        }
+    }
+
+    /**
+     * Puts a completed FIR back to EVALUATING, the one backward transition {@link #setNyes} does not take, and
+     * wakes what waits on it. Only for a FIR nothing else can rely on never changing: a frozen FIR, or one held
+     * by a parent, is refused.
+     */
+    void reopen() {
+        if (frozen || parentFir != null) {
+            throw new IllegalStateException(formatErrorMessage(
+                "Only a FIR held by nothing else can be reopened"));
+        }
+        if (!isNye()) {
+            this.nyes = Nyes.EVALUATING;
+            countStateChange();
+            if (waiters != null) {
+                wakeWaiters();
+            }
+        }
+    }
+
+    /**
+     * Registers a FIR parked by the dependency-driven scheduler to be woken when this FIR changes state.
+     */
+    void addWaiter(FIR waiter) {
+        if (waiters == null) {
+            waiters = new java.util.ArrayList<>(2);
+        }
+        waiters.add(waiter);
+    }
+
+    private void wakeWaiters() {
+        java.util.List<FIR> woken = waiters;
+        waiters = null;
+        for (FIR waiter : woken) {
+            if (waiter.parkedIn != null && waiter.parkedOn == this) {
+                waiter.parkedIn.unpark(waiter);
+            }
+        }
+    }
+
+    /**
+     * The FIR whose progress this FIR's last step was waiting on, or null if it was not blocked.
+     * Used by {@link BraneMindScheduler#DEPENDENCY_DRIVEN} to park instead of re-polling.
+     */
+    protected FIR blockedOn() {
+        return null;
+    }
+
+    /**
+     * The FIR whose {@link #setNyes} actually records this FIR's state. Delegating wrappers override.
+     */
+    protected FIR stateOwner() {
+        return this;
     }
 
     protected void setParentFir(FIR parent) {
+        if (frozen) {
+            return;
+        }
         this.parentFir = parent;
     }
 
+    /**
+     * True for a FIR of a structure shared by several evaluations, such as
+     * {@link StandardConfiguration#standardLibrary()}: it is CONSTANT, and holding it keeps its parent, context and
+     * index as they were when it was frozen.
+     */
+    boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Freezes this completed FIR and everything it holds; see {@link #isFrozen()}.
+     */
+    void freeze() {
+        if (isNye()) {
+            throw new IllegalStateException(formatErrorMessage("Only a completed FIR can be frozen"));
+        }
+        frozen = true;
+    }
+
     protected FIR getParentFir() {
         return parentFir;
     }
@@ -258,16 +432,36 @@ public abstract class FIR implements Cloneable {
         return this.clone();
     }
 
-    protected static final ThreadLocal<Integer> RECURSION_DEPTH = ThreadLocal.withInitial(() -> 0);
+    /**
+     * Longest chain of wrappers {@link #valuableSelf()} follows before giving up as if constanic.
+     */
+    protected static final int MAX_VALUABLE_DEPTH = 100;
 
     public java.util.Optional<FIR> valuableSelf() {
+        return valuableSelf(0);
+    }
+
+    /**
+     * Resolves through wrappers to the FIR carrying the value. Wrappers pass {@code depth + 1} to
+     * what they wrap and return empty beyond {@link #MAX_VALUABLE_DEPTH}.
+     *
+     * @return the value FIR, empty if constanic, or null if not ready yet
+     */
+    protected java.util.Optional<FIR> valuableSelf(int depth) {
         return java.util.Optional.of(this);
     }
 
     @Override
     protected FIR clone() {
         try {
-            return (FIR) super.clone();
+            FIR copy = (FIR) super.clone();
+            copy.waiters = null;
+            copy.parkedIn = null;
+            copy.parkedOn = null;
+            copy.indexedIn = null;
+            copy.statementIndex = -1;
+            copy.frozen = false;
+            return copy;
         } catch (CloneNotSupportedException e) {
             throw new RuntimeException("Clone not supported for " + getClass().getSimpleName(), e);
         }
@@ -306,6 +500,9 @@ public abstract class FIR implements Cloneable {
             case AST.DetachmentBrane detachBrane -> new DetachmentBraneFiroe(detachBrane);
             case AST.Assignment assignment -> new AssignmentFiroe(assignment);
             case AST.Identifier identifier -> new IdentifierFiroe(identifier);
+            case AST.RegexpSearchExpr regexpSearch when regexpSearch.operator() == SearchOperator.REGEXP_GLOBAL
+                || regexpSearch.operator() == SearchOperator.REGEXP_FORWARD_GLOBAL ->
+                new FindAllSearchFiroe(regexpSearch);
             case AST.RegexpSearchExpr regexpSearch ->
                 DerefSearchFiroe.isExactMatch(regexpSearch.pattern())
                     ? new DerefSearchFiroe(regexpSearch)
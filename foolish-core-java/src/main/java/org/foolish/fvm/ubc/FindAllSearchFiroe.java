@@ -0,0 +1,152 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+
+/**
+ * FindAllSearchFiroe performs a find-all search from a brane: {@code b??pattern} finds every line matching the
+ * pattern from the end of {@code b} backward, {@code b~~pattern} from its start forward, both going on through the
+ * branes around {@code b} (see {@link SearchCursor}). The result is a brane of those lines in that order, so its
+ * head is what {@code b?pattern} or {@code b~pattern} finds when {@code b} has a match. A line holding the search
+ * itself is left out.
+ * <p>
+ * The result brane is filled lazily from the search's {@link SearchCursor.Matches}: taking its head, seeking to
+ * its {@code k}th line or searching it forward looks for only as many matches as it reads.
+ */
+public class FindAllSearchFiroe extends RegexpSearchFiroe {
+
+    public FindAllSearchFiroe(AST.RegexpSearchExpr regexpSearch) {
+        super(regexpSearch);
+    }
+
+    /**
+     * Copy constructor for cloneConstanic.
+     */
+    protected FindAllSearchFiroe(FindAllSearchFiroe original, FIR newParent) {
+        super(original, newParent);
+    }
+
+    FindAllSearchFiroe(UbcSnapshot.In in) {
+        super(in);
+    }
+
+    @Override
+    protected FIR executeSearch(SearchCursor cursor) {
+        return new ResultBrane((AST.RegexpSearchExpr) ast, this, cursor);
+    }
+
+    /**
+     * The result brane is this search's own, so this search settles it.
+     */
+    @Override
+    protected int stepResult(FIR result) {
+        return result.step();
+    }
+
+    @Override
+    protected FIR cloneConstanic(FIR newParent, java.util.Optional<Nyes> targetNyes) {
+        if (!isConstanic()) {
+            throw new IllegalStateException(
+                formatErrorMessage("cloneConstanic can only be called on CONSTANIC or CONSTANT FIRs, " +
+                    "but this FIR is in state: " + getNyes()));
+        }
+
+        if (isConstant()) {
+            return this;  // Share CONSTANT searches
+        }
+
+        FindAllSearchFiroe copy = new FindAllSearchFiroe(this, newParent);
+
+        if (targetNyes.isPresent()) {
+            copy.nyes = targetNyes.get();
+        } else {
+            copy.nyes = this.nyes;
+        }
+
+        return copy;
+    }
+
+    /**
+     * The brane a find-all search evaluates to. Its lines are the matched lines themselves, still held and
+     * evaluated by the searched brane, as a CONSTANT brane's lines are shared. Its state follows theirs: nye
+     * until every matched line is constanic, then CONSTANIC if any of them is and CONSTANT once all are.
+     * <p>
+     * The state is settled by a second pass over the matches, so finding it does not fill the lines. The search
+     * holding the result steps it to advance that pass; reading its state never does.
+     */
+    static final class ResultBrane extends BraneFiroe {
+        private final SearchCursor.Matches settling;
+        private boolean anyConstanic = false;
+        /** The first matched line found still nye, which the result is waiting on. */
+        private FIR pending = null;
+
+        ResultBrane(AST.RegexpSearchExpr search, FindAllSearchFiroe searcher, SearchCursor cursor) {
+            super(search);
+            setParentFir(searcher);
+            setInitialized();
+            shareFirsLazily(cursor.matches(searcher.getPattern(), searcher));
+            settling = cursor.matches(searcher.getPattern(), searcher);
+            setNyes(Nyes.EVALUATING);
+        }
+
+        ResultBrane(UbcSnapshot.In in) {
+            super(in);
+            settling = in.ref();
+        }
+
+        @Override
+        void writeFinals(UbcSnapshot.Out out) {
+            super.writeFinals(out);
+            out.ref(settling);
+        }
+
+        @Override
+        void writeState(UbcSnapshot.Out out) {
+            super.writeState(out);
+            out.bool(anyConstanic);
+            out.ref(pending);
+        }
+
+        @Override
+        void readState(UbcSnapshot.In in) {
+            super.readState(in);
+            anyConstanic = in.bool();
+            pending = in.ref();
+        }
+
+        /**
+         * Goes on through the matched lines from the one last found nye, stopping at the next line still nye.
+         *
+         * @return 1 if any line was passed or the state settled, 0 if the line waited on is still nye
+         */
+        @Override
+        public int step() {
+            if (nyes != Nyes.EVALUATING) {
+                return 0;
+            }
+            int work = 0;
+            while (pending != null || settling.hasNext()) {
+                FIR line = pending != null ? pending : settling.next();
+                if (line.isNye()) {
+                    if (line != pending) {
+                        pending = line;
+                        work = 1;
+                    }
+                    return work;
+                }
+                pending = null;
+                anyConstanic |= line.atConstanic();
+                work = 1;
+            }
+            setNyes(anyConstanic ? Nyes.CONSTANIC : Nyes.CONSTANT);
+            return 1;
+        }
+
+        /**
+         * A nye result waits on the matched line it is stopped at, so a search blocked on it is parked there.
+         */
+        @Override
+        protected FIR stateOwner() {
+            return isNye() && pending != null ? pending.stateOwner() : this;
+        }
+    }
+}
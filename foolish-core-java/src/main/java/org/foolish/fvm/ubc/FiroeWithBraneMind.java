@@ -3,11 +3,11 @@ package org.foolish.fvm.ubc;
 import org.foolish.ast.AST;
 import org.apache.commons.lang3.tuple.Pair;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
-import java.util.IdentityHashMap;
 
 /**
  * FIR with braneMind work queue for breadth-first evaluation.
@@ -15,14 +15,15 @@ import java.util.IdentityHashMap;
  * See {@code projects/FIR-Invariances.md} for constraints C5-C8.
  */
 public abstract class FiroeWithBraneMind extends FIR {
-    private final LinkedList<FIR> braneMind;
+    private final BraneMind braneMind;
     private final BraneMemory braneMemory;
     protected boolean ordinated;
-    protected IdentityHashMap indexLookup = new IdentityHashMap<FIR, Integer>();
+    /** Children parked out of the braneMind by {@link BraneMindScheduler#DEPENDENCY_DRIVEN}. */
+    private List<FIR> parked = null;
 
     protected FiroeWithBraneMind(AST ast, String comment) {
         super(ast, comment);
-        this.braneMind = new LinkedList<>();
+        this.braneMind = new BraneMind();
         this.braneMemory = new BraneMemory(null);
         this.ordinated = false;
     }
@@ -31,7 +32,37 @@ public abstract class FiroeWithBraneMind extends FIR {
         this(ast, null);
     }
 
+    FiroeWithBraneMind(UbcSnapshot.In in) {
+        super(in);
+        this.braneMind = in.ref();
+        this.braneMemory = in.ref();
+    }
+
+    @Override
+    void writeFinals(UbcSnapshot.Out out) {
+        super.writeFinals(out);
+        out.ref(braneMind);
+        out.ref(braneMemory);
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.bool(ordinated);
+        out.refs(parked);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        ordinated = in.bool();
+        parked = in.refs();
+    }
+
     public void ordinateToParentBraneMind(FiroeWithBraneMind parent) {
+        if (isFrozen()) {
+            return;
+        }
         assert !this.ordinated;
         linkMemoryParent(parent);
         setMemoryOwner(this);
@@ -39,7 +70,8 @@ public abstract class FiroeWithBraneMind extends FIR {
     }
 
     /**
-     * Copy constructor for cloneConstanic. Clones braneMemory with updated parent chains.
+     * Copy constructor for cloneConstanic. The braneMemory is a lazy copy of the original's: each line is
+     * cloned with an updated parent chain when first read (see {@link #copyLine}).
      */
     protected FiroeWithBraneMind(FiroeWithBraneMind original, FIR newParent) {
         super(original.ast(), original.comment);
@@ -50,37 +82,37 @@ public abstract class FiroeWithBraneMind extends FIR {
                 "cloneConstanic requires empty braneMind, but found " + original.braneMind.size() + " items"));
         }
 
-        this.braneMind = new LinkedList<>();
+        this.braneMind = new BraneMind();
         this.braneMemory = new BraneMemory(null);
+        inheritContext(original);
 
-        int index = 0;
-        for (FIR fir : original.braneMemory) {
-            FIR clonedFir = fir.cloneConstanic(this, Optional.of(Nyes.INITIALIZED));
-            this.braneMemory.put(clonedFir);
-            this.indexLookup.put(clonedFir, index);
-
-            if (clonedFir instanceof FiroeWithBraneMind fwbm) {
-                fwbm.ordinated = false;
-                fwbm.ordinateToParentBraneMind(this);
-            }
-            index++;
-        }
+        this.braneMemory.copyLazily(original.braneMemory, this);
 
         this.ordinated = original.ordinated;
         setInitialized();
     }
 
+    /**
+     * Clones line {@code index} of the original of this cloneConstanic copy into this FIR's context.
+     */
+    FIR copyLine(FIR line, int index) {
+        FIR clonedFir = line.cloneConstanic(this, Optional.of(Nyes.INITIALIZED));
+        putIndex(clonedFir, index);
+
+        if (clonedFir instanceof FiroeWithBraneMind fwbm && !fwbm.isFrozen()) {
+            fwbm.inheritContext(this);
+            fwbm.ordinated = false;
+            fwbm.ordinateToParentBraneMind(this);
+        }
+        return clonedFir;
+    }
+
     static FiroeWithBraneMind ofExpr(AST.Expr... tasks) {
         return of(List.of(tasks).stream().map(FIR::createFiroeFromExpr).toArray(FIR[]::new));
     }
 
     static FiroeWithBraneMind of(FIR... tasks) {
-        FiroeWithBraneMind result = new FiroeWithBraneMind((AST) null, null) {
-            @Override
-            protected void initialize() {
-                setInitialized();
-            }
-        };
+        FiroeWithBraneMind result = new Holder();
         for (FIR task : tasks) {
             result.enqueueFirs(task);
         }
@@ -101,7 +133,7 @@ public abstract class FiroeWithBraneMind extends FIR {
     protected void prime() {
         for (FIR fir : braneMemory) {
             if (!fir.isConstanic()) {
-                braneMind.add(fir);
+                braneMind.addLast(fir);
             }
         }
     }
@@ -110,31 +142,56 @@ public abstract class FiroeWithBraneMind extends FIR {
         for (FIR fir : firs) {
             braneMemory.put(fir);
             fir.setParentFir(this);
-            int index = braneMemory.size() - 1;
-            indexLookup.put(fir, index);
+            putIndex(fir, braneMemory.size() - 1);
+            if (fir instanceof FiroeWithBraneMind fwbm) {
+                fwbm.inheritContext(this);
+            }
             if (fir instanceof FiroeWithBraneMind fwbm && !fwbm.ordinated) {
                 fwbm.ordinateToParentBraneMind(this);
             }
         }
     }
 
+    /**
+     * Fills the empty memory with FIRs held by another brane, shared as {@link #shareFir} shares them, taking each
+     * only when it is first read (see {@link BraneMemory#fillLazily}).
+     */
+    protected void shareFirsLazily(java.util.Iterator<FIR> firs) {
+        braneMemory.fillLazily(firs);
+    }
+
+    /**
+     * Stores a CONSTANT FIR held by another brane as well, leaving its parent and statement index to that brane.
+     */
+    protected void shareFir(FIR fir) {
+        braneMemory.put(fir);
+    }
+
     @Deprecated
     protected void enqueueFirs(FIR... firs) {
         for (FIR fir : firs) {
             braneMind.addLast(fir);
             braneMemory.put(fir);
             fir.setParentFir(this);
-            int index = braneMind.size() - 1;
-            indexLookup.put(fir, index);
+            putIndex(fir, braneMind.size() - 1);
+            if (fir instanceof FiroeWithBraneMind fwbm) {
+                fwbm.inheritContext(this);
+            }
             if (fir instanceof FiroeWithBraneMind fwbm && !fwbm.ordinated) {
                 fwbm.ordinateToParentBraneMind(this);
             }
         }
     }
 
+    /**
+     * Records the index this FIR knows a child by, as returned by {@link #getIndexOf}.
+     */
+    protected void putIndex(FIR fir, int index) {
+        braneMemory.putIndex(fir, index);
+    }
+
     protected int getIndexOf(FIR f) {
-        Integer idx = (Integer) indexLookup.get(f);
-        return idx != null ? idx : -1;
+        return braneMemory.indexOf(f);
     }
 
     protected void storeExprs(AST.Expr... exprs) {
@@ -163,17 +220,20 @@ public abstract class FiroeWithBraneMind extends FIR {
             case UNINITIALIZED -> {
                 initialize();
                 setNyes(Nyes.INITIALIZED);
+                fuseTransitions();
                 yield 1;
             }
             case INITIALIZED -> {
                 if (stepNonBranesUntilState(Nyes.CHECKED)) {
                     setNyes(Nyes.CHECKED);
+                    fuseTransitions();
                 }
                 yield 1;
             }
             case CHECKED -> {
                 prime();
                 setNyes(Nyes.PRIMED);
+                fuseTransitions();
                 yield 1;
             }
             case PRIMED -> {
@@ -181,6 +241,9 @@ public abstract class FiroeWithBraneMind extends FIR {
                 yield 1;
             }
             case EVALUATING -> {
+                if (isBraneBlocked()) {
+                    yield 0;
+                }
                 if (isBraneEmpty()) {
                     boolean anyConstanic = braneMemory.stream().anyMatch(FIR::atConstanic);
                     setNyes(anyConstanic ? Nyes.CONSTANIC : Nyes.CONSTANT);
@@ -188,10 +251,8 @@ public abstract class FiroeWithBraneMind extends FIR {
                 }
                 FIR current = braneMind.removeFirst();
                 try {
-                    int work = current.step();
-                    if (current.isNye()) {
-                        braneMind.addLast(current);
-                    }
+                    int work = stepChild(current);
+                    requeue(current);
                     yield work;
                 } catch (Exception e) {
                     braneMind.addFirst(current);
@@ -203,13 +264,101 @@ public abstract class FiroeWithBraneMind extends FIR {
         };
     }
 
+    /**
+     * Steps a child from the braneMind, attributing what it reads of this brane's memory to its statement
+     * when {@link StatementDependencies} are being recorded.
+     */
+    private int stepChild(FIR child) {
+        StatementDependencies dependencies = braneMemory.getDependencies();
+        if (dependencies == null) {
+            return child.step();
+        }
+        int previous = dependencies.enter(getIndexOf(child));
+        try {
+            return child.step();
+        } finally {
+            dependencies.exit(previous);
+        }
+    }
+
+    /**
+     * Replaces statement {@code index} with a fresh FIR and queues it, reopening this FIR for evaluation if it
+     * had completed (see {@link #reopen}). What the memos hold for this brane is dropped, since its lines change.
+     * Only for the root brane of a UBC (see {@link UnicelluarBraneComputer#replaceStatement}).
+     */
+    void restartStatement(int index, FIR fir) {
+        reopen();
+        ExecutionContext context = executionContext();
+        if (this instanceof BraneFiroe brane) {
+            if (context.getSearchMemo() != null) {
+                context.getSearchMemo().forget(brane);
+            }
+            if (context.getBraneMemo() != null) {
+                context.getBraneMemo().forget(brane);
+            }
+        }
+        braneMemory.set(index, fir);
+        fir.setParentFir(this);
+        putIndex(fir, index);
+        if (fir instanceof FiroeWithBraneMind fwbm) {
+            fwbm.inheritContext(this);
+            if (!fwbm.ordinated) {
+                fwbm.ordinateToParentBraneMind(this);
+            }
+        }
+        braneMind.addLast(fir);
+    }
+
+    StatementDependencies statementDependencies() {
+        return braneMemory.getDependencies();
+    }
+
+    void trackStatementDependencies() {
+        braneMemory.setDependencies(new StatementDependencies());
+    }
+
+    /**
+     * With {@link ExecutionContext#isFusedTransitions()}, takes every transition from the current state up to
+     * EVALUATING that needs nothing from other FIRs: INITIALIZED to CHECKED when every non-brane on the braneMind
+     * is already CHECKED, CHECKED to PRIMED, and PRIMED to EVALUATING. Each one still goes through
+     * {@link #setNyes}, so the ordering checks and state waiters see every state. Only for FIRs whose
+     * INITIALIZED, CHECKED and PRIMED states mean what they mean in {@link #step()}.
+     */
+    protected void fuseTransitions() {
+        if (!executionContext().isFusedTransitions()) {
+            return;
+        }
+        if (getNyes() == Nyes.INITIALIZED && nonBranesReachedState(Nyes.CHECKED)) {
+            setNyes(Nyes.CHECKED);
+        }
+        if (getNyes() == Nyes.CHECKED) {
+            prime();
+            setNyes(Nyes.PRIMED);
+        }
+        if (getNyes() == Nyes.PRIMED) {
+            setNyes(Nyes.EVALUATING);
+        }
+    }
+
+    /**
+     * Like {@link #allNonBranesReachedState}, without rotating the braneMind.
+     */
+    private boolean nonBranesReachedState(Nyes targetState) {
+        for (FIR fir : braneMind) {
+            if (!isBrane(fir) && fir.getNyes().ordinal() < targetState.ordinal()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private boolean stepNonBranesUntilState(Nyes targetState) {
         if (braneMind.isEmpty() || allNonBranesReachedState(targetState)) {
             return true;
         }
         FIR current = braneDequeue();
         try {
-            current.step();
+            stepChild(current);
             if (current.isNye()) {
                 braneMind.addLast(current);
             }
@@ -225,7 +374,7 @@ public abstract class FiroeWithBraneMind extends FIR {
     }
 
     private boolean allNonBranesReachedState(Nyes targetState) {
-        if (isBraneEmpty()) {
+        if (braneMind.isEmpty()) {
             return true;
         }
         FIR current = branePeek();
@@ -258,6 +407,13 @@ public abstract class FiroeWithBraneMind extends FIR {
         braneMind.addFirst(fir);
     }
 
+    /**
+     * Removes every FIR matching the test from the braneMind, returning them in queue order.
+     */
+    protected List<FIR> braneRemoveIf(Predicate<FIR> test) {
+        return braneMind.removeIf(test);
+    }
+
     protected FIR braneDequeue() {
         return braneMind.removeFirst();
     }
@@ -266,8 +422,133 @@ public abstract class FiroeWithBraneMind extends FIR {
         return braneMind.getFirst();
     }
 
+    /**
+     * True when nothing is left to step. Parked children are still pending, so a FIR whose children are all
+     * parked is not empty but {@link #isBraneBlocked() blocked}.
+     */
     protected boolean isBraneEmpty() {
-        return braneMind.isEmpty();
+        return braneMind.isEmpty() && parked == null;
+    }
+
+    /**
+     * True when every pending child is parked: stepping this FIR does nothing until a FIR one of them waits on
+     * changes state and {@link #unpark}s it.
+     */
+    protected boolean isBraneBlocked() {
+        return braneMind.isEmpty() && parked != null;
+    }
+
+    // ========== DEPENDENCY-DRIVEN SCHEDULING ==========
+
+    /**
+     * Puts a just-stepped FIR back on the braneMind if it is still nye. Under
+     * {@link BraneMindScheduler#DEPENDENCY_DRIVEN} a FIR blocked on a nye FIR is parked on it instead.
+     */
+    protected void requeue(FIR fir) {
+        if (!fir.isNye()) {
+            return;
+        }
+        if (fir.parkedIn == null && executionContext().getScheduler() == BraneMindScheduler.DEPENDENCY_DRIVEN) {
+            FIR target = nyeDependency(fir.blockedOn());
+            if (target != null && target != fir && target != this && steppedWithout(target, fir)) {
+                park(fir, target);
+                return;
+            }
+        }
+        braneMind.addLast(fir);
+    }
+
+    /**
+     * Follows the result chain of a blocking FIR to the nye FIR that records the state change the
+     * waiter needs. Returns null when there is none, in which case the waiter keeps polling.
+     */
+    private static FIR nyeDependency(FIR fir) {
+        FIR current = fir;
+        for (int hops = 0; current != null && hops < 100; hops++) {
+            if (current.isNye()) {
+                FIR owner = current.stateOwner();
+                return owner.isNye() ? owner : null;
+            }
+            if (!(current instanceof Constanicable constanicable)) {
+                return null;
+            }
+            FIR next = constanicable.getResult();
+            if (next == current) {
+                return null;
+            }
+            current = next;
+        }
+        return null;
+    }
+
+    /**
+     * True if something other than {@code waiter} steps {@code target}: it is not stepped through the waiter,
+     * and every FIR holding it up to this FIR's root is still being evaluated. A target held by a completed
+     * brane, such as a statement of a lazy brane that only its readers step, or by nothing at all, would never
+     * change state while the waiter is parked on it.
+     */
+    private boolean steppedWithout(FIR target, FIR waiter) {
+        FIR top = target;
+        for (FIR current = target; current != null; current = current.getParentFir()) {
+            if (current == waiter || (current != target && !current.isNye())) {
+                return false;
+            }
+            top = current;
+        }
+        FIR root = this;
+        while (root.getParentFir() != null) {
+            root = root.getParentFir();
+        }
+        return top == root;
+    }
+
+    private void park(FIR fir, FIR target) {
+        fir.parkedIn = this;
+        fir.parkedOn = target;
+        if (parked == null) {
+            parked = new ArrayList<>(2);
+        }
+        parked.add(fir);
+        target.addWaiter(fir);
+    }
+
+    /**
+     * Returns a parked child to the braneMind, and this FIR to its own holder if it was parked too.
+     */
+    void unpark(FIR fir) {
+        if (fir.parkedIn != this) {
+            return;
+        }
+        fir.parkedIn = null;
+        fir.parkedOn = null;
+        parked.remove(fir);
+        if (parked.isEmpty()) {
+            parked = null;
+        }
+        braneMind.addLast(fir);
+        if (parkedIn != null) {
+            parkedIn.unpark(this);
+        }
+    }
+
+    /**
+     * A holder whose braneMind holds nothing but parked children is blocked on what they wait for.
+     */
+    @Override
+    protected FIR blockedOn() {
+        if (braneMind.isEmpty() && parked != null) {
+            return parked.getFirst().parkedOn;
+        }
+        return null;
+    }
+
+    /**
+     * Takes the execution context of the FIR this one is stored in, so lookups stay local.
+     */
+    protected void inheritContext(FiroeWithBraneMind from) {
+        if (from.context != null && !isFrozen()) {
+            this.context = from.context;
+        }
     }
 
     protected int braneSize() {
@@ -294,12 +575,45 @@ public abstract class FiroeWithBraneMind extends FIR {
         return braneMemory.get(query, fromLine);
     }
 
+    /**
+     * The FIR whose memory is searched after this one's.
+     */
+    FiroeWithBraneMind memoryParent() {
+        return braneMemory.getParentBrane();
+    }
+
     protected void linkMemoryParent(FiroeWithBraneMind parent) {
-        braneMemory.setParentBrane(parent);
+        if (!isFrozen()) {
+            braneMemory.setParentBrane(parent);
+        }
     }
 
     protected void setMemoryOwner(FiroeWithBraneMind owner) {
-        braneMemory.setOwningBrane(owner);
+        if (!isFrozen()) {
+            braneMemory.setOwningBrane(owner);
+        }
+    }
+
+    /**
+     * Freezes this FIR, every line of its memory and its result; the braneMind of a completed FIR is empty. The
+     * memory's identifier index is built now, as nothing may change a frozen memory once it is shared.
+     */
+    @Override
+    void freeze() {
+        super.freeze();
+        braneMemory.prepareIndex();
+        for (int i = 0; i < braneMemory.size(); i++) {
+            FIR line = braneMemory.get(i);
+            if (line != null && !line.isFrozen()) {
+                line.freeze();
+            }
+        }
+        if (this instanceof Constanicable constanicable) {
+            FIR result = constanicable.getResult();
+            if (result != null && !result.isFrozen()) {
+                result.freeze();
+            }
+        }
     }
 
     public ReadOnlyBraneMemory getBraneMemory() {
@@ -326,7 +640,9 @@ public abstract class FiroeWithBraneMind extends FIR {
 
     @Override
     protected FIR clone() {
-        return (FiroeWithBraneMind) super.clone();
+        FiroeWithBraneMind copy = (FiroeWithBraneMind) super.clone();
+        copy.parked = null;
+        return copy;
     }
 
     @Override
@@ -338,13 +654,31 @@ public abstract class FiroeWithBraneMind extends FIR {
         if (isConstant()) {
             return this;
         }
-        FiroeWithBraneMind copy = new FiroeWithBraneMind(this, newParent) {
-            @Override
-            protected void initialize() {
-                setInitialized();
-            }
-        };
+        FiroeWithBraneMind copy = new Holder(this, newParent);
         copy.nyes = targetNyes.orElse(this.nyes);
         return copy;
     }
+
+    /**
+     * A FIR that only holds the FIRs it is given: the holders made by {@link #of}, and the cloneConstanic copy
+     * of a FIR with no copy of its own type.
+     */
+    static final class Holder extends FiroeWithBraneMind {
+        Holder() {
+            super((AST) null, null);
+        }
+
+        Holder(FiroeWithBraneMind original, FIR newParent) {
+            super(original, newParent);
+        }
+
+        Holder(UbcSnapshot.In in) {
+            super(in);
+        }
+
+        @Override
+        protected void initialize() {
+            setInitialized();
+        }
+    }
 }
@@ -30,6 +30,10 @@ public abstract class FiroeWithoutBraneMind extends FIR {
         setNyes(Nyes.CONSTANT);
     }
 
+    FiroeWithoutBraneMind(UbcSnapshot.In in) {
+        super(in);
+    }
+
     /**
      * FiroeWithoutBraneMind instances don't require stepping as they represent finalized values.
      * This is a no-op implementation.
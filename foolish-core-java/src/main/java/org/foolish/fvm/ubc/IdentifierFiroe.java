@@ -21,12 +21,38 @@ import java.util.Optional;
 public class IdentifierFiroe extends FiroeWithBraneMind implements Constanicable {
     private final Query.StrictlyMatchingQuery identifier;
     FIR value = null; // Package-private for access by RegexpSearchFiroe
+    private LexicalScope.Address address = null;
 
     public IdentifierFiroe(AST.Identifier identifier) {
         super(identifier);
         this.identifier = new Query.StrictlyMatchingQuery(identifier.id(), identifier.canonicalCharacterization());
     }
 
+    IdentifierFiroe(UbcSnapshot.In in) {
+        super(in);
+        AST.Identifier identifier = (AST.Identifier) ast;
+        this.identifier = new Query.StrictlyMatchingQuery(identifier.id(), identifier.canonicalCharacterization());
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.ref(value);
+        out.bool(address != null);
+        if (address != null) {
+            out.ref(address.origin());
+            out.integer(address.depth());
+            out.integer(address.index());
+        }
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        value = in.ref();
+        address = in.bool() ? new LexicalScope.Address(in.ref(), in.integer(), in.integer()) : null;
+    }
+
     /**
      * Copy constructor for cloneConstanic.
      */
@@ -34,6 +60,7 @@ public class IdentifierFiroe extends FiroeWithBraneMind implements Constanicable
         super(original, newParent);
         this.identifier = original.identifier;  // Query is immutable, can share
         this.value = null;  // Reset value for re-resolution in new context
+        this.address = null;  // A clone is resolved by searching its new context
     }
 
     /**
@@ -78,8 +105,18 @@ public class IdentifierFiroe extends FiroeWithBraneMind implements Constanicable
         return value.isConstanic();
     }
 
+    /**
+     * The statically computed place this identifier binds to, or null if it is resolved by searching memory.
+     */
+    LexicalScope.Address getLexicalAddress() {
+        return address;
+    }
+
     @Override
     protected void initialize() {
+        if (executionContext().isLexicalAddressing()) {
+            address = LexicalScope.addressOf(this);
+        }
         setInitialized();
     }
 
@@ -97,14 +134,14 @@ public class IdentifierFiroe extends FiroeWithBraneMind implements Constanicable
                 return 1;
             }
             case INITIALIZED -> {
-                var found = memoryGet(identifier, 0);
+                FIR addressed = address != null ? address.find(this) : null;
+                var found = addressed != null ? Optional.of(addressed)
+                    : memoryGet(identifier, 0).map(r -> r.getRight());
                 if (found.isEmpty()) {
                     setNyes(Nyes.CONSTANIC);
                     return 1;
                 }
-                value = found
-                        .map(r -> r.getRight())
-                        .orElse(null);
+                value = found.orElse(null);
                 if (value == null) {
                     setNyes(Nyes.CONSTANIC);
                 } else {
@@ -130,6 +167,7 @@ public class IdentifierFiroe extends FiroeWithBraneMind implements Constanicable
                     braneEnqueue(value);
                     setNyes(Nyes.PRIMED);
                 }
+                fuseTransitions();
                 return 1;
             }
             case PRIMED -> {
@@ -138,6 +176,9 @@ public class IdentifierFiroe extends FiroeWithBraneMind implements Constanicable
                 return 1;
             }
             case EVALUATING -> {
+                if (isBraneBlocked()) {
+                    return 0;
+                }
                 if (isBraneEmpty()) {
                     if (value.isConstanic()) {
                         setNyes(value.atConstanic() ? Nyes.CONSTANIC : Nyes.CONSTANT);
@@ -148,7 +189,7 @@ public class IdentifierFiroe extends FiroeWithBraneMind implements Constanicable
                 }
                 FIR current = braneDequeue();
                 current.step();
-                if (current.isNye()) braneEnqueue(current);
+                requeue(current);
                 return 1;
             }
             case CONSTANIC, CONSTANT -> {
@@ -203,24 +244,19 @@ public class IdentifierFiroe extends FiroeWithBraneMind implements Constanicable
     }
 
     @Override
-    public Optional<FIR> valuableSelf() {
-        if (FIR.RECURSION_DEPTH.get() > 100) {
+    protected Optional<FIR> valuableSelf(int depth) {
+        if (depth > MAX_VALUABLE_DEPTH) {
             return Optional.empty();
         }
-        try {
-            FIR.RECURSION_DEPTH.set(FIR.RECURSION_DEPTH.get() + 1);
-            // TODO: Check for circular reference
-            if (value != null) {
-                return value.valuableSelf();
-            }
-            if (atConstanic()) {
-                 // Constanic (e.g. not found), return Empty as requested
-                 return Optional.empty();
-            }
-            // Not ready yet
-            return null;
-        } finally {
-            FIR.RECURSION_DEPTH.set(FIR.RECURSION_DEPTH.get() - 1);
+        // TODO: Check for circular reference
+        if (value != null) {
+            return value.valuableSelf(depth + 1);
+        }
+        if (atConstanic()) {
+             // Constanic (e.g. not found), return Empty as requested
+             return Optional.empty();
         }
+        // Not ready yet
+        return null;
     }
 }
@@ -17,6 +17,12 @@ public class IdentifyingFiroe extends FiroeWithBraneMind implements Constanicabl
         this.identifier = new Query.StrictlyMatchingQuery(identifier.id(), identifier.canonicalCharacterization());
     }
 
+    IdentifyingFiroe(UbcSnapshot.In in) {
+        super(in);
+        AST.Identifier identifier = (AST.Identifier) ast;
+        this.identifier = new Query.StrictlyMatchingQuery(identifier.id(), identifier.canonicalCharacterization());
+    }
+
     public CharacterizedIdentifier getIdentifier() {
         return identifier;
     }
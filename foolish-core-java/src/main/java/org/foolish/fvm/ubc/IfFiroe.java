@@ -18,6 +18,24 @@ public class IfFiroe extends FiroeWithBraneMind implements Constanicable {
 
     protected int nextPossibleIdx;
 
+    IfFiroe(UbcSnapshot.In in) {
+        super(in);
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.ref(result);
+        out.integer(nextPossibleIdx);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        result = in.ref();
+        nextPossibleIdx = in.integer();
+    }
+
     protected void initialize() {
         if (isInitialized()) return;
 
@@ -91,17 +109,36 @@ public class IfFiroe extends FiroeWithBraneMind implements Constanicable {
     }
 
 
-    // This class is private to ensure that nothing else can insert
-    // this class into the "else branch"
-    private class ConditionalFiroe extends FiroeWithBraneMind {
+    // Only IfFiroe creates this class, so that nothing else can insert
+    // it into the "else branch"; snapshots restore it too
+    static final class ConditionalFiroe extends FiroeWithBraneMind {
 
         Boolean condition_value = null;
 
-        protected ConditionalFiroe(AST.IfExpr ifExpr) {
+        private ConditionalFiroe(AST.IfExpr ifExpr) {
             super(ifExpr);
             storeSubfirOfExprs(ifExpr.condition(), ifExpr.thenExpr());
         }
 
+        ConditionalFiroe(UbcSnapshot.In in) {
+            super(in);
+        }
+
+        @Override
+        void writeState(UbcSnapshot.Out out) {
+            super.writeState(out);
+            out.bool(condition_value != null);
+            out.bool(Boolean.TRUE.equals(condition_value));
+        }
+
+        @Override
+        void readState(UbcSnapshot.In in) {
+            super.readState(in);
+            boolean evaluated = in.bool();
+            boolean value = in.bool();
+            condition_value = evaluated ? value : null;
+        }
+
         protected void initialize() {
             setInitialized();
             // ConditionalFiroe handles initialization in constructor
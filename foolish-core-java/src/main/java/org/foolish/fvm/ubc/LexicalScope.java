@@ -0,0 +1,223 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static lexical addresses for the identifiers of one brane, computed from its AST when the brane is initialized.
+ * <p>
+ * Brane statements are append-only and ordered, so an identifier in statement {@code i} binds to the last
+ * assignment of its name at or before {@code i}, or failing that, to the last one at or before the brane's own
+ * statement in the enclosing brane, and so on outward: the rule {@link BraneMemory#get(Query, int)} applies at
+ * run time. Resolving it ahead of time gives an {@link Address}, a number of branes out and a statement index,
+ * and looking the identifier up becomes reading one line of one brane's memory.
+ * <p>
+ * Only the plain nesting of branes, assignments, arithmetic and search anchors is addressed. Identifiers under
+ * anything else (concatenations, detachments, {@code if}, stay-foolish markers, CMFir clones), names bound
+ * only by the standard library, and branes whose statements are tracked for
+ * {@link UnicelluarBraneComputer#replaceStatement} are left to the runtime search, as is any identifier whose
+ * FIRs turn out not to sit in the context its address was computed for.
+ */
+final class LexicalScope {
+
+    /**
+     * Where an identifier binds: statement {@code index} of the brane {@code depth} branes out from the one
+     * that was {@code origin} when the address was computed.
+     */
+    record Address(LexicalScope origin, int depth, int index) {
+
+        /**
+         * The addressed assignment, or null if the identifier is no longer where the address was computed.
+         */
+        FIR find(IdentifierFiroe identifier) {
+            BraneFiroe brane = enclosingBrane(identifier);
+            if (brane == null || brane.lexicalScope() != origin) {
+                return null;
+            }
+            LexicalScope scope = origin;
+            for (int level = 0; level < depth; level++) {
+                brane = enclosingBrane(brane);
+                scope = scope.outer;
+                if (brane == null || brane.lexicalScope() != scope) {
+                    return null;
+                }
+            }
+            if (brane.statementDependencies() != null) {
+                return null;
+            }
+            FIR line = brane.memoryGet(index);
+            return line instanceof AssignmentFiroe assignment && assignment.getLhs().equals(identifier.getIdentifier())
+                ? line : null;
+        }
+    }
+
+    /**
+     * Marks an identifier that is left to the runtime search, including a node met at two places with different
+     * addresses, as in a parse that interns leaves.
+     */
+    private static final Address UNADDRESSED = new Address(null, -1, -1);
+
+    private final AST.Brane brane;
+    private final LexicalScope outer;
+    private final int outerStatement;
+    private final Map<CharacterizedIdentifier, int[]> bindings = new HashMap<>();
+    private final Map<AST.Identifier, Address> addresses = new IdentityHashMap<>();
+    private final Map<AST.Brane, Integer> nested = new IdentityHashMap<>();
+    private final Map<CharacterizedIdentifier, Address> outward = new HashMap<>();
+
+    private LexicalScope(AST.Brane brane, LexicalScope outer, int outerStatement) {
+        this.brane = brane;
+        this.outer = outer;
+        this.outerStatement = outerStatement;
+
+        Map<CharacterizedIdentifier, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < brane.statements().size(); i++) {
+            if (brane.statements().get(i) instanceof AST.Assignment assignment) {
+                positions.computeIfAbsent(new CharacterizedIdentifier(assignment.identifier()),
+                    name -> new ArrayList<>()).add(i);
+            }
+        }
+        positions.forEach((name, lines) ->
+            bindings.put(name, lines.stream().mapToInt(Integer::intValue).toArray()));
+
+        for (int i = 0; i < brane.statements().size(); i++) {
+            collect(brane.statements().get(i), i);
+        }
+    }
+
+    /**
+     * Snapshot constructor: the addresses are computed again from the brane; see {@link UbcSnapshot}.
+     */
+    LexicalScope(UbcSnapshot.In in) {
+        this(in.ref(), in.ref(), in.integer());
+    }
+
+    void writeFinals(UbcSnapshot.Out out) {
+        out.ref(brane);
+        out.ref(outer);
+        out.integer(outerStatement);
+    }
+
+    /**
+     * The scope of a brane being initialized, or null if its identifiers are all left to the runtime search.
+     * A brane nested in an addressed brane through addressable FIRs gets that brane's scope as its outer scope;
+     * the root of a UBC, and a brane whose place in its enclosing brane is not in that brane's AST, get none.
+     */
+    static LexicalScope of(BraneFiroe brane) {
+        AST.Brane ast = (AST.Brane) brane.ast();
+        if (brane.getParentFir() == null) {
+            return new LexicalScope(ast, null, -1);
+        }
+        BraneFiroe enclosing = enclosingBrane(brane);
+        LexicalScope outer = enclosing == null ? null : enclosing.lexicalScope();
+        if (outer == null) {
+            return null;
+        }
+        Integer statement = outer.nested.get(ast);
+        return statement == null || statement < 0
+            ? new LexicalScope(ast, null, -1)
+            : new LexicalScope(ast, outer, statement);
+    }
+
+    /**
+     * The address of an identifier being initialized, or null if it is to be searched for at run time.
+     */
+    static Address addressOf(IdentifierFiroe identifier) {
+        BraneFiroe brane = enclosingBrane(identifier);
+        LexicalScope scope = brane == null ? null : brane.lexicalScope();
+        Address address = scope == null ? null : scope.addresses.get((AST.Identifier) identifier.ast());
+        return address == UNADDRESSED ? null : address;
+    }
+
+    /**
+     * The plain brane a FIR is a statement of, reached through FIRs whose memories hold no assignments, or null.
+     * Each step must be both the FIR's holder and its memory parent, so that the statement the runtime search
+     * would start from is the one the AST says.
+     */
+    private static BraneFiroe enclosingBrane(FiroeWithBraneMind fir) {
+        FiroeWithBraneMind current = fir;
+        while (true) {
+            FiroeWithBraneMind parent = current.memoryParent();
+            if (parent == null || parent != current.getParentFir()) {
+                return null;
+            }
+            if (parent.getClass() == BraneFiroe.class) {
+                return (BraneFiroe) parent;
+            }
+            if (!(parent instanceof AssignmentFiroe || parent instanceof BinaryFiroe || parent instanceof UnaryFiroe
+                || parent instanceof RegexpSearchFiroe || parent instanceof OneShotSearchFiroe
+                || parent instanceof SeekFiroe)) {
+                return null;
+            }
+            current = parent;
+        }
+    }
+
+    /**
+     * Addresses the identifiers of one statement and records the branes nested in it, following the FIRs
+     * {@link #enclosingBrane} passes through.
+     */
+    private void collect(AST.Expr expr, int statement) {
+        switch (expr) {
+            case AST.Identifier identifier -> {
+                Address address = resolve(new CharacterizedIdentifier(identifier), statement);
+                addresses.merge(identifier, address, (a, b) -> a.equals(b) ? a : UNADDRESSED);
+            }
+            case AST.Brane nestedBrane -> nested.merge(nestedBrane, statement, (a, b) -> a.equals(b) ? a : -1);
+            case AST.Assignment assignment -> collect(assignment.expr(), statement);
+            case AST.BinaryExpr binary -> {
+                collect(binary.left(), statement);
+                collect(binary.right(), statement);
+            }
+            case AST.UnaryExpr unary -> collect(unary.expr(), statement);
+            case AST.DereferenceExpr deref -> collect(deref.anchor(), statement);
+            case AST.RegexpSearchExpr search -> collect(search.anchor(), statement);
+            case AST.OneShotSearchExpr search -> collect(search.anchor(), statement);
+            case AST.SeekExpr seek -> collect(seek.anchor(), statement);
+            case null, default -> {
+            }
+        }
+    }
+
+    private Address resolve(CharacterizedIdentifier name, int statement) {
+        int line = boundAt(name, statement);
+        return line >= 0 ? new Address(this, 0, line) : outward(name);
+    }
+
+    /**
+     * The last statement at or before {@code statement} assigning the name, or -1.
+     */
+    private int boundAt(CharacterizedIdentifier name, int statement) {
+        int[] lines = bindings.get(name);
+        if (lines == null) {
+            return -1;
+        }
+        int found = Arrays.binarySearch(lines, statement);
+        int before = found >= 0 ? found : -found - 2;
+        return before >= 0 ? lines[before] : -1;
+    }
+
+    /**
+     * The address of a name bound outside this brane, the same for every statement of it. Nested branes ask
+     * their outer scope for each name they do not bind, possibly from several threads, so the answers are kept.
+     */
+    private Address outward(CharacterizedIdentifier name) {
+        synchronized (outward) {
+            Address address = outward.get(name);
+            if (address == null) {
+                int line = outer == null ? -1 : outer.boundAt(name, outerStatement);
+                Address beyond = outer == null ? UNADDRESSED
+                    : line >= 0 ? new Address(outer, 0, line) : outer.outward(name);
+                address = beyond == UNADDRESSED ? UNADDRESSED : new Address(this, beyond.depth + 1, beyond.index);
+                outward.put(name, address);
+            }
+            return address;
+        }
+    }
+}
@@ -37,6 +37,11 @@ public class NKFiroe extends FiroeWithoutBraneMind {
         this("Unknown reason");
     }
 
+    NKFiroe(UbcSnapshot.In in) {
+        super(in);
+        this.nkComment = comment;
+    }
+
     /**
      * Gets the comment explaining why this value is not known.
      *
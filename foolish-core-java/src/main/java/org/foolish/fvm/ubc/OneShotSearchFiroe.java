@@ -18,6 +18,10 @@ public class OneShotSearchFiroe extends AbstractSearchFiroe {
         super(original, newParent);
     }
 
+    OneShotSearchFiroe(UbcSnapshot.In in) {
+        super(in);
+    }
+
     @Override
     protected void initialize() {
         super.initialize();
@@ -27,10 +31,8 @@ public class OneShotSearchFiroe extends AbstractSearchFiroe {
 
     @Override
     protected FIR executeSearch(SearchCursor cursor) {
-        return cursor.streamCandidates()
-            .findFirst()
-            .map(org.apache.commons.lang3.tuple.Pair::getValue)
-            .orElse(new NKFiroe());
+        FIR first = cursor.first();
+        return first != null ? first : new NKFiroe();
     }
 
     @Override
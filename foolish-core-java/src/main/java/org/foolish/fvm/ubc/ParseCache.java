@@ -0,0 +1,107 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.foolish.ast.ASTBuilder;
+import org.foolish.ast.CompiledProgram;
+import org.foolish.ast.ConstantFolder;
+import org.foolish.grammar.FoolishParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * A directory of {@link CompiledProgram} {@code .fooc} files keyed by the SHA-256 of the source text, so parsing a
+ * script that has not changed since it was last parsed loads the stored tree instead of running ANTLR.
+ * <p>
+ * The cache holds the tree as {@link UbcRepl#parse(String)} builds it; constant folding, when asked for, is applied
+ * after loading. Sources with syntax errors are parsed every time, so their errors are reported every time. An entry
+ * that cannot be read (truncated, or written by another format version) is treated as a miss and replaced. Entries
+ * are written to a temporary file and moved into place, so concurrent runs never see a partial entry.
+ */
+public class ParseCache {
+    private final Path directory;
+    private long hits;
+    private long misses;
+
+    public ParseCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Parses the source, or loads it from the cache if the same source was parsed before.
+     */
+    public AST.Program parse(String source) throws IOException {
+        return parse(source, false);
+    }
+
+    /**
+     * As {@link #parse(String)}, optionally folding constants as {@link UbcRepl#parse(String, boolean)} does.
+     */
+    public AST.Program parse(String source, boolean foldConstants) throws IOException {
+        Path entry = entryFor(source);
+        AST.Program program = null;
+        if (Files.isRegularFile(entry)) {
+            try {
+                program = CompiledProgram.load(entry);
+                hits++;
+            } catch (IOException unreadable) {
+                program = null;
+            }
+        }
+        if (program == null) {
+            misses++;
+            FoolishParser parser = UbcRepl.parser(source);
+            program = (AST.Program) new ASTBuilder().visitProgram(parser.program());
+            if (parser.getNumberOfSyntaxErrors() == 0) {
+                store(entry, program);
+            }
+        }
+        return foldConstants ? ConstantFolder.fold(program) : program;
+    }
+
+    /**
+     * The file a source is cached in, whether or not it exists yet.
+     */
+    public Path entryFor(String source) {
+        return directory.resolve(contentHash(source) + ".fooc");
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private void store(Path entry, AST.Program program) throws IOException {
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, CompiledProgram.toBytes(program));
+            try {
+                Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    static String contentHash(String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every Java platform", e);
+        }
+    }
+}
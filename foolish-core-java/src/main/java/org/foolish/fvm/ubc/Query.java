@@ -1,5 +1,10 @@
 package org.foolish.fvm.ubc;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -7,15 +12,34 @@ import java.util.regex.Pattern;
  * This is a sealed interface with different query types:
  * - StrictlyMatchingQuery: exact identifier match
  * - RegexpQuery: regular expression pattern match
+ * - CharacterizationQuery: characterization match, whatever the name
  */
-public sealed interface Query permits Query.StrictlyMatchingQuery, Query.RegexpQuery {
+public sealed interface Query permits Query.StrictlyMatchingQuery, Query.RegexpQuery, Query.CharacterizationQuery {
     /**
      * Checks if the given FIR matches this query.
      */
     boolean matches(FIR brane_line);
 
     /**
-     * StrictlyMatchingQuery matches identifiers exactly by name and characterization.
+     * The test a scan over lines applies to each of them, the same as {@link #matches}. It may keep state
+     * between lines, so it is for one scan on one thread; queries themselves hold none and are shared.
+     */
+    default Predicate<FIR> lineMatcher() {
+        return this::matches;
+    }
+
+    /**
+     * The query for a search pattern: a {@link CharacterizationQuery} for a pattern such as {@code type'.*}, which
+     * matches exactly the names so characterized, and the shared {@link RegexpQuery} for any other.
+     */
+    static Query forPattern(String pattern) {
+        String characterization = CharacterizationQuery.characterizationOf(pattern);
+        return characterization != null ? new CharacterizationQuery(characterization) : RegexpQuery.of(pattern);
+    }
+
+    /**
+     * StrictlyMatchingQuery matches identifiers exactly by name and characterization, comparing the symbols
+     * both were interned as.
      */
     final class StrictlyMatchingQuery extends CharacterizedIdentifier implements Query {
         public StrictlyMatchingQuery(String name, String characterization) {
@@ -24,15 +48,8 @@ public sealed interface Query permits Query.StrictlyMatchingQuery, Query.RegexpQ
 
         @Override
         public boolean matches(FIR brane_line) {
-            return switch (brane_line) {
-                case AssignmentFiroe ass -> {
-                    CharacterizedIdentifier lhs = ass.getLhs();
-                    yield lhs.equals(this);
-                }
-                default ->
-                    // mostly here is unnamed lines in brane.
-                        false;
-            };
+            // Unnamed lines in the brane never match; this runs for every line a lookup passes
+            return brane_line instanceof AssignmentFiroe ass && ass.getLhs().getSymbol() == getSymbol();
         }
 
         @Override
@@ -46,11 +63,41 @@ public sealed interface Query permits Query.StrictlyMatchingQuery, Query.RegexpQ
      * If the pattern doesn't start with ^ or end with $, they are added
      * to make it a "whole identifier" match (similar to StrictlyMatchingQuery).
      * If the pattern contains anchors, it uses partial matching within the identifier.
+     * <p>
+     * Queries are immutable, so searches share them through {@link #of}, which compiles each pattern once.
+     * A pattern every match must begin with some literal text of has that text as its
+     * {@link #getLiteralPrefix() literal prefix}, which indexed memories use to visit only the lines whose
+     * names start with it.
      */
     final class RegexpQuery implements Query {
+        /** Most compiled queries kept; the least recently used are dropped beyond it. */
+        static final int CACHED_PATTERNS = 256;
+        private static final Map<String, RegexpQuery> COMPILED = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RegexpQuery> eldest) {
+                    return size() > CACHED_PATTERNS;
+                }
+            });
+
         private final Pattern pattern;
         private final String originalPattern;
         private final boolean isAnchored;
+        private final String literalPrefix;
+
+        /**
+         * The query for a pattern, compiled on first use and shared by every search for it.
+         */
+        public static RegexpQuery of(String regexPattern) {
+            return COMPILED.computeIfAbsent(regexPattern, RegexpQuery::new);
+        }
+
+        /**
+         * The number of compiled queries currently cached.
+         */
+        static int cached() {
+            return COMPILED.size();
+        }
 
         public RegexpQuery(String regexPattern) {
             this.originalPattern = regexPattern;
@@ -66,21 +113,53 @@ public sealed interface Query permits Query.StrictlyMatchingQuery, Query.RegexpQ
             }
 
             this.pattern = Pattern.compile(finalPattern);
+            this.literalPrefix = literalPrefixOf(regexPattern, startsWithCaret, endsWithDollar);
+        }
+
+        /**
+         * The literal text at the start of a pattern that is matched from the start of a name. Stops at the first
+         * metacharacter, leaving out a character a quantifier may repeat zero times; a pattern with an alternation
+         * anywhere has none.
+         */
+        private static String literalPrefixOf(String regexPattern, boolean startsWithCaret, boolean endsWithDollar) {
+            if (!startsWithCaret && endsWithDollar || regexPattern.indexOf('|') >= 0) {
+                return "";
+            }
+            int start = startsWithCaret ? 1 : 0;
+            int end = start;
+            while (end < regexPattern.length() && "\\^$.|?*+()[]{}".indexOf(regexPattern.charAt(end)) < 0) {
+                end++;
+            }
+            if (end < regexPattern.length() && "?*{".indexOf(regexPattern.charAt(end)) >= 0 && end > start) {
+                end--;
+            }
+            return regexPattern.substring(start, end);
         }
 
         @Override
         public boolean matches(FIR brane_line) {
-            return switch (brane_line) {
-                case AssignmentFiroe ass -> {
-                    CharacterizedIdentifier lhs = ass.getLhs();
-                    String fullName = lhs.toString(); // Includes characterization
-                    String nameOnly = lhs.getId();
-
-                    // Try matching against both the full name and name only
-                    yield pattern.matcher(fullName).find() || pattern.matcher(nameOnly).find();
-                }
-                default -> false;
-            };
+            return matches(brane_line, pattern.matcher(""));
+        }
+
+        /**
+         * One matcher for the whole scan, reset for each name, so matching a line allocates nothing.
+         */
+        @Override
+        public Predicate<FIR> lineMatcher() {
+            Matcher names = pattern.matcher("");
+            return line -> matches(line, names);
+        }
+
+        private static boolean matches(FIR brane_line, Matcher names) {
+            if (!(brane_line instanceof AssignmentFiroe ass)) {
+                return false;
+            }
+            CharacterizedIdentifier lhs = ass.getLhs();
+            String fullName = lhs.toString(); // Includes characterization
+            String nameOnly = lhs.getId();
+
+            // Try matching against both the full name and name only (the same string when uncharacterized)
+            return names.reset(fullName).find() || fullName != nameOnly && names.reset(nameOnly).find();
         }
 
         public Pattern getPattern() {
@@ -95,9 +174,82 @@ public sealed interface Query permits Query.StrictlyMatchingQuery, Query.RegexpQ
             return isAnchored;
         }
 
+        /**
+         * Text every name this query matches starts with, either as written or without its characterization;
+         * empty if the pattern has none.
+         */
+        public String getLiteralPrefix() {
+            return literalPrefix;
+        }
+
         @Override
         public String toString() {
             return "RegexpQuery[" + originalPattern + " -> " + pattern.pattern() + "]";
         }
     }
+
+    /**
+     * CharacterizationQuery matches assignments by characterization alone: {@code type'} matches {@code type'x},
+     * {@code type'y} and the chained {@code type'inner'z}, that is every name whose characterization starts with
+     * the query's, just as the regexp {@code type'.*} does. Brane memories answer it from an index of their
+     * lines by characterization rather than matching every line.
+     */
+    final class CharacterizationQuery implements Query {
+        private final String characterization;
+
+        /**
+         * @param characterization the characterization, canonical ({@code outer'inner'}) or without the last
+         *                         apostrophe ({@code outer'inner})
+         */
+        public CharacterizationQuery(String characterization) {
+            if (characterization == null || characterization.isEmpty() || characterization.equals("'")) {
+                throw new IllegalArgumentException("A characterization query needs a characterization");
+            }
+            this.characterization = characterization.endsWith("'") ? characterization : characterization + "'";
+        }
+
+        /**
+         * The characterization a pattern of the form {@code a'b'.*} matches names by, or null for any other
+         * pattern.
+         */
+        static String characterizationOf(String pattern) {
+            if (!pattern.endsWith("'.*")) {
+                return null;
+            }
+            int end = pattern.length() - 2;
+            boolean segment = false;
+            for (int i = 0; i < end; i++) {
+                char c = pattern.charAt(i);
+                if (c == '\'') {
+                    if (!segment) {
+                        return null;
+                    }
+                    segment = false;
+                } else if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+                    return null;
+                } else {
+                    segment = true;
+                }
+            }
+            return pattern.substring(0, end);
+        }
+
+        @Override
+        public boolean matches(FIR brane_line) {
+            return brane_line instanceof AssignmentFiroe ass
+                && ass.getLhs().getCharacterization().startsWith(characterization);
+        }
+
+        /**
+         * The characterization matched, in canonical form, ending with an apostrophe.
+         */
+        public String getCharacterization() {
+            return characterization;
+        }
+
+        @Override
+        public String toString() {
+            return "CharacterizationQuery[" + characterization + "]";
+        }
+    }
 }
@@ -41,6 +41,11 @@ public interface ReadOnlyBraneMemory extends Iterable<FIR> {
      */
     int size();
 
+    /**
+     * True if the memory holds a line at {@code index}, without reading any lines past it.
+     */
+    boolean hasLine(int index);
+
     /**
      * Checks if memory is empty.
      */
@@ -1,6 +1,5 @@
 package org.foolish.fvm.ubc;
 
-import org.apache.commons.lang3.tuple.Pair;
 import org.foolish.ast.AST;
 
 import java.util.Optional;
@@ -26,6 +25,11 @@ public class RegexpSearchFiroe
         this.pattern = original.pattern;
     }
 
+    RegexpSearchFiroe(UbcSnapshot.In in) {
+        super(in);
+        this.pattern = ((AST.RegexpSearchExpr) ast).pattern();
+    }
+
     @Override
     protected void initialize() {
         super.initialize();
@@ -33,21 +37,25 @@ public class RegexpSearchFiroe
         storeExprs(searchExpr.anchor());
     }
 
+    /**
+     * A brane-bound search of a CONSTANT brane goes through the context's {@link SearchMemo}, so it scans the
+     * brane only the first time it is made.
+     */
     @Override
     protected FIR executeSearch(SearchCursor cursor) {
-        Query.RegexpQuery query = new Query.RegexpQuery(pattern);
-        
-        return cursor.streamCandidates()
-            .filter(pair -> {
-                FIR fir = pair.getRight();
-                if (query.matches(fir)) {
-                    return true;
-                }
-                return false;
-            })
-            .findFirst()
-            .map(Pair::getValue)
-            .orElse(new NKFiroe());
+        Query query = Query.forPattern(pattern);
+        BraneFiroe target = cursor.getStart().brane();
+        SearchMemo memo = executionContext().getSearchMemo();
+        if (memo != null && cursor.isBraneBound() && target.isConstant()) {
+            int line = memo.line(target, operator, pattern, () -> cursor.findFirstLine(query));
+            return line != SearchMemo.NOT_FOUND ? target.getBraneMemory().get(line) : new NKFiroe();
+        }
+        FIR found = cursor.findFirst(query);
+        return found != null ? found : new NKFiroe();
+    }
+
+    protected String getPattern() {
+        return pattern;
     }
 
     @Override
@@ -22,6 +22,10 @@ public class SFMarkFiroe extends CMFir {
         super(ast, o);
     }
 
+    SFMarkFiroe(UbcSnapshot.In in) {
+        super(in);
+    }
+
     /**
      * SF marker differs from base CMFir in Phase B:
      * - Phase A: Wait for o to reach CONSTANIC
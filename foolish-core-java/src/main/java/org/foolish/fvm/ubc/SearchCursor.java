@@ -1,12 +1,18 @@
 package org.foolish.fvm.ubc;
 
 import org.apache.commons.lang3.tuple.Pair;
-import java.util.stream.Stream;
-import java.util.Spliterators;
-import java.util.Spliterator;
-import java.util.stream.StreamSupport;
 import java.util.Iterator;
+import java.util.Optional;
 
+/**
+ * Where a search starts and which way it goes. A brane-bound search reads only the start brane; any other one,
+ * on running off the start (backward) or end (forward) of a memory, continues in the parent brane's memory from
+ * the statement holding the brane it left (backward, as identifier lookup does) or the statement after it
+ * (forward), up to the outermost brane.
+ * <p>
+ * Each memory is searched with its own primitive line loops and indexes, and moving between memories updates one
+ * mutable position, so passing over a candidate line allocates nothing.
+ */
 public final class SearchCursor {
     private final Cursor start;
     private final boolean forward;
@@ -24,72 +30,191 @@ public final class SearchCursor {
         return start;
     }
 
-    public Stream<Pair<Cursor, FIR>> streamCandidates() {
-        return StreamSupport.stream(
-            Spliterators.spliteratorUnknownSize(new CandidateIterator(), Spliterator.ORDERED),
-            false);
+    public boolean isBraneBound() {
+        return braneBound;
     }
 
-    private class CandidateIterator implements Iterator<Pair<Cursor, FIR>> {
-        private Cursor current;
-        private boolean hasNext;
-
-        public CandidateIterator() {
-            this.current = start;
-            // logic to determine initial hasNext based on start position and direction
-            // If inclusive: start check from 'current'.
-            // If !inclusive: start check from next/prev depending on direction.
-            // But Cursor is just a pointer.
-            // If inclusive && forward: start at current.statementIndex
-            // If !inclusive && forward: start at current.statementIndex + 1
-            
-            // Adjust start position if not inclusive
-            if (!inclusive) {
-                int nextIdx = current.statementIndex() + (forward ? 1 : -1);
-                this.current = new FoolishCursor(current.brane(), nextIdx);
+    /**
+     * The first candidate line, or null if there is none.
+     */
+    public FIR first() {
+        Position position = new Position(start, firstIndex());
+        while (true) {
+            if (position.index >= 0 && position.memory.hasLine(position.index)) {
+                return position.memory.get(position.index);
             }
-            this.hasNext = isValid(this.current);
+            if (braneBound || !position.climb(forward)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The first candidate matching a query, or null.
+     */
+    public FIR findFirst(Query query) {
+        Position position = new Position(start, firstIndex());
+        while (true) {
+            int line = position.find(query, forward);
+            if (line >= 0) {
+                return position.memory.get(line);
+            }
+            if (braneBound || !position.climb(forward)) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The index of the first line of the start brane matching a query, or -1; for brane-bound searches.
+     */
+    int findFirstLine(Query query) {
+        return new Position(start, firstIndex()).find(query, forward);
+    }
+
+    /**
+     * The lines matching a pattern, found one at a time as they are asked for, leaving out any line that holds
+     * {@code within}, the FIR searching, so that a find-all result never holds itself.
+     */
+    Matches matches(String pattern, FIR within) {
+        return new Matches(new Position(start, firstIndex()), pattern, forward, braneBound, within);
+    }
+
+    private int firstIndex() {
+        return start.statementIndex() + (inclusive ? 0 : forward ? 1 : -1);
+    }
+
+    /**
+     * A memory and a line of it: where a search goes on from. Mutable, so one serves a whole search.
+     */
+    static final class Position {
+        private BraneMemory memory;
+        private int index;
+
+        Position(BraneMemory memory, int index) {
+            this.memory = memory;
+            this.index = index;
+        }
+
+        Position(Cursor cursor, int index) {
+            this((BraneMemory) cursor.brane().getBraneMemory(), index);
+        }
+
+        void writeState(UbcSnapshot.Out out) {
+            out.ref(memory);
+            out.integer(index);
+        }
+
+        void readState(UbcSnapshot.In in) {
+            memory = in.ref();
+            index = in.integer();
+        }
+
+        /**
+         * The first line from here matching the query in this memory, or -1; a backward search from before the
+         * first line finds nothing.
+         */
+        int find(Query query, boolean forward) {
+            if (index < 0) {
+                return -1;
+            }
+            Optional<Pair<Integer, FIR>> found = forward
+                ? memory.getLocalForward(query, index) : memory.getLocal(query, index);
+            return found.isPresent() ? found.get().getLeft() : -1;
         }
 
-        private boolean isValid(Cursor c) {
-            // Check bounds in current brane
-            if (c.statementIndex() < 0) return false;
-            
-            // Note: BraneMemory access
-            if (c.statementIndex() >= c.brane().getBraneMemory().size()) return false;
-            
+        /**
+         * Moves to the parent brane's memory, where a search leaving this one continues; false at the outermost.
+         */
+        boolean climb(boolean forward) {
+            FiroeWithBraneMind parent = memory.getParentBrane();
+            if (parent == null) {
+                return false;
+            }
+            int position = memory.positionInParent();
+            memory = (BraneMemory) parent.getBraneMemory();
+            index = forward ? position + 1 : position;
             return true;
         }
+    }
+
+    /**
+     * The matches of a find-all search, in the order the cursor meets them. Each is looked up from where the
+     * previous one was found, through the memories' indexes where they have them, only when it is asked for; the
+     * iterator holds nothing but its position, the pattern and the searching FIR, so a brane filled from it (see
+     * {@link BraneMemory#fillLazily}) can be checkpointed half read.
+     */
+    static final class Matches implements Iterator<FIR> {
+        private final Position position;
+        private final String pattern;
+        private final boolean forward;
+        private final boolean braneBound;
+        private final FIR within;
+        private FIR found = null;
+        private boolean exhausted = false;
+
+        Matches(Position position, String pattern, boolean forward, boolean braneBound, FIR within) {
+            this.position = position;
+            this.pattern = pattern;
+            this.forward = forward;
+            this.braneBound = braneBound;
+            this.within = within;
+        }
+
+        Matches(UbcSnapshot.In in) {
+            this(in.ref(), in.string(), in.bool(), in.bool(), in.ref());
+        }
+
+        void writeFinals(UbcSnapshot.Out out) {
+            out.ref(position);
+            out.string(pattern);
+            out.bool(forward);
+            out.bool(braneBound);
+            out.ref(within);
+        }
+
+        void writeState(UbcSnapshot.Out out) {
+            out.ref(found);
+            out.bool(exhausted);
+        }
+
+        void readState(UbcSnapshot.In in) {
+            found = in.ref();
+            exhausted = in.bool();
+        }
 
         @Override
         public boolean hasNext() {
-            return hasNext;
+            Query query = null;
+            while (found == null && !exhausted) {
+                query = query != null ? query : Query.forPattern(pattern);
+                int line = position.find(query, forward);
+                if (line >= 0) {
+                    FIR match = position.memory.get(line);
+                    position.index = line + (forward ? 1 : -1);
+                    found = holds(match) ? null : match;
+                } else if (braneBound || !position.climb(forward)) {
+                    exhausted = true;
+                }
+            }
+            return found != null;
         }
 
         @Override
-        public Pair<Cursor, FIR> next() {
-            if (!hasNext) throw new java.util.NoSuchElementException();
-
-            Cursor retCursor = current;
-            FIR retFir = retCursor.brane().getMemoryItem(retCursor.statementIndex());
-            Pair<Cursor, FIR> result = Pair.of(retCursor, retFir);
-
-            // Advance
-            int nextIdx = retCursor.statementIndex() + (forward ? 1 : -1);
-            
-            // Check bounds
-            if (nextIdx < 0 || nextIdx >= retCursor.brane().getBraneMemory().size()) {
-                 // End of this brane
-                 // TODO: If not braneBound, move to parent?
-                 // For now, implementing braneBound=true logic implicitly
-                 // If !braneBound, we would set 'current' to parent's cursor?
-                 hasNext = false; 
-            } else {
-                 current = new FoolishCursor(retCursor.brane(), nextIdx);
-                 hasNext = true;
-            }
+        public FIR next() {
+            if (!hasNext()) throw new java.util.NoSuchElementException();
+            FIR line = found;
+            found = null;
+            return line;
+        }
 
-            return result;
+        private boolean holds(FIR line) {
+            for (FIR fir = within; fir != null; fir = fir.getParentFir()) {
+                if (fir == line) {
+                    return true;
+                }
+            }
+            return false;
         }
     }
 }
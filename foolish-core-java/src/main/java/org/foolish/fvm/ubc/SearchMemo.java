@@ -0,0 +1,98 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.SearchOperator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Memo of brane-bound searches on CONSTANT branes: the line a search with a given operator and pattern found in
+ * a brane, or that it found none. A CONSTANT brane's lines never change, so every later occurrence of the same
+ * search on the same brane ({@code cfg.x} read from dozens of places) takes the line from here instead of
+ * scanning again.
+ * <p>
+ * Branes are weakly held and compared by identity, and the memo keeps line indices rather than the lines, which
+ * would hold their brane and keep it from ever being dropped. Searches use a memo only when their context has one
+ * ({@link ExecutionContext#withSearchMemo}); a {@code SearchMemo} is thread-safe, so UBCs may share one.
+ */
+public final class SearchMemo {
+    /** What {@link #line} memoizes for a search that found nothing. */
+    public static final int NOT_FOUND = -1;
+
+    private record Key(SearchOperator operator, String pattern) {}
+
+    private final Map<BraneFiroe, Map<Key, Integer>> lines = new WeakHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The line of a CONSTANT brane that a search finds, running the search only the first time it is asked for.
+     *
+     * @param search runs the search, returning the line found or {@link #NOT_FOUND}
+     */
+    int line(BraneFiroe brane, SearchOperator operator, String pattern, IntSupplier search) {
+        Key key = new Key(operator, pattern);
+        Integer line;
+        synchronized (lines) {
+            line = lines.computeIfAbsent(brane, b -> new HashMap<>()).get(key);
+        }
+        if (line != null) {
+            hits.incrementAndGet();
+            return line;
+        }
+        misses.incrementAndGet();
+        int found = search.getAsInt();
+        synchronized (lines) {
+            lines.computeIfAbsent(brane, b -> new HashMap<>()).put(key, found);
+        }
+        return found;
+    }
+
+    /**
+     * Drops what is memoized for a brane whose lines are about to change.
+     */
+    void forget(BraneFiroe brane) {
+        synchronized (lines) {
+            lines.remove(brane);
+        }
+    }
+
+    /**
+     * Number of searches answered from the memo.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Number of searches run and memoized.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Fraction of searches answered from the memo, 0 before any search.
+     */
+    public double getHitRate() {
+        long hit = hits.get();
+        long total = hit + misses.get();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * Number of searches memoized, over the branes still held.
+     */
+    public int size() {
+        synchronized (lines) {
+            int size = 0;
+            for (Map<Key, Integer> searches : lines.values()) {
+                size += searches.size();
+            }
+            return size;
+        }
+    }
+}
@@ -15,6 +15,22 @@ public class SearchUpFiroe extends FiroeWithoutBraneMind {
         this.referencedBrane = null;
     }
 
+    SearchUpFiroe(UbcSnapshot.In in) {
+        super(in);
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.ref(referencedBrane);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        referencedBrane = in.ref();
+    }
+
     /**
      * Gets the referenced brane.
      */
@@ -24,6 +24,11 @@ public class SeekFiroe extends AbstractSearchFiroe {
         this.offset = original.offset;
     }
 
+    SeekFiroe(UbcSnapshot.In in) {
+        super(in);
+        this.offset = ((AST.SeekExpr) ast).offset();
+    }
+
     @Override
     protected void initialize() {
         super.initialize();
@@ -37,16 +42,15 @@ public class SeekFiroe extends AbstractSearchFiroe {
         // The SearchCursor iterator isn't strictly needed for direct indexing, 
         // but the signature requires it.
         ReadOnlyBraneMemory targetMemory = cursor.getStart().brane().getBraneMemory();
-        int size = targetMemory.size();
         int idx = offset;
 
         // Handle negative indexing
         if (idx < 0) {
-            idx = size + idx;
+            idx = targetMemory.size() + idx;
         }
 
-        // Check bounds
-        if (idx >= 0 && idx < size) {
+        // Check bounds, reading a lazily filled brane no further than the line sought
+        if (targetMemory.hasLine(idx)) {
              return targetMemory.get(idx);
         }
 
@@ -1,28 +1,36 @@
 package org.foolish.fvm.ubc;
 
 import org.foolish.ast.AST;
+import org.foolish.ast.ASTBuilder;
 import org.foolish.fvm.AlarmSystem;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Creates the standard configuration/library for the Foolish environment.
+ * <p>
+ * The library is a brane evaluated like any other. Every UBC links its root brane's memory to the one
+ * {@link #standardLibrary()}, which is evaluated once per process and then frozen (see {@link FIR#isFrozen()}):
+ * evaluations resolve identifiers into it and hold its FIRs, but never change them, so it is safe to share
+ * between UBCs on any number of threads.
  */
 public class StandardConfiguration {
 
+    private static final FiroeWithBraneMind STANDARD_LIBRARY = freeze(createStandardLibrary());
+
+    /**
+     * The shared, frozen standard library.
+     */
+    public static FiroeWithBraneMind standardLibrary() {
+        return STANDARD_LIBRARY;
+    }
+
     /**
-     * Creates the standard library as a FiroeWithBraneMind.
+     * Creates and evaluates a new, private copy of the standard library.
      * The returned FIR contains predefined values like ALARM_LEVELS.
      */
     public static FiroeWithBraneMind createStandardLibrary() {
-        // Create a FiroeWithBraneMind to hold the standard library items
-        FiroeWithBraneMind stdLib = new FiroeWithBraneMind((AST) null) {
-            @Override
-            protected void initialize() { setInitialized(); }
-        };
-
         // Define ALARM_LEVELS brane
         // ALARM_LEVELS = [ NOT=0; BARELY=1; MILD=3; HAIR_RAISING=5; PANIC=10; ]
 
@@ -33,35 +41,33 @@ public class StandardConfiguration {
         alarmStmts.add(createConstAssignment("HAIR_RAISING", AlarmSystem.HAIR_RAISING));
         alarmStmts.add(createConstAssignment("PANIC", AlarmSystem.PANIC));
 
-        AST.Brane alarmBraneAst = new AST.Brane(alarmStmts);
+        List<AST.Expr> libraryStmts = new ArrayList<>();
+        libraryStmts.add(new AST.Assignment(identifier("ALARM_LEVELS"), new AST.Brane(alarmStmts)));
 
-        // Run a BraneFiroe manually to evaluate the ALARM_LEVELS brane without recursion
-        BraneFiroe val = new BraneFiroe(alarmBraneAst);
-        while (val.isNye()) {
-            val.step();
+        // Run the library brane manually, as a UBC would run its root brane, without a parent to resolve into
+        BraneFiroe stdLib = new BraneFiroe(new AST.Brane(libraryStmts));
+        stdLib.context = ExecutionContext.DEFAULT;
+        stdLib.ordinateToParentBraneMind(FiroeWithBraneMind.of());
+        stdLib.linkMemoryParent(null);
+        while (stdLib.isNye()) {
+            stdLib.step();
         }
+        return stdLib;
+    }
 
-        AST.Identifier id = new AST.Identifier("ALARM_LEVELS");
-        AST.Assignment dummyAst = new AST.Assignment(id, new AST.IntegerLiteral(0));
-
-        AssignmentFiroe assignment = new AssignmentFiroe(dummyAst) {
-             @Override
-             public FIR getResult() {
-                 return val;
-             }
-
-             @Override
-             public boolean isNye() {
-                 return false;
-             }
-        };
-
-        stdLib.storeFirs(assignment);
-
+    private static FiroeWithBraneMind freeze(FiroeWithBraneMind stdLib) {
+        stdLib.freeze();
         return stdLib;
     }
 
+    /**
+     * Library names are spelled as the parser canonicalizes identifiers, so that source can refer to them.
+     */
+    private static AST.Identifier identifier(String name) {
+        return new AST.Identifier(ASTBuilder.canonicalizeIdentifierName(name));
+    }
+
     private static AST.Assignment createConstAssignment(String name, long value) {
-        return new AST.Assignment(new AST.Identifier(name), new AST.IntegerLiteral(value));
+        return new AST.Assignment(identifier(name), new AST.IntegerLiteral(value));
     }
 }
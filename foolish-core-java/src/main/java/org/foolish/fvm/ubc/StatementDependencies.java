@@ -0,0 +1,104 @@
+package org.foolish.fvm.ubc;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Records, for each statement of a brane, which lines of that brane's {@link BraneMemory} were read while
+ * the statement was being stepped. Used by {@link UnicelluarBraneComputer#replaceStatement} to find the
+ * statements an edit can affect.
+ * <p>
+ * A backward search that passes over a line without matching it still depends on it: an edit there could
+ * make it match. So every line a lookup scans is recorded, not only the one it finds; a lookup that finds
+ * nothing and continues in the parent memory has read every line before the statement.
+ * <p>
+ * Reads are attributed to the statement the holder is stepping (see {@link #enter}); reads made outside a
+ * statement step, such as the holder checking its own completion, are not recorded.
+ */
+final class StatementDependencies {
+    private final List<BitSet> reads = new ArrayList<>();
+    private int current = -1;
+
+    /**
+     * Writes the lines read for each statement; see {@link UbcSnapshot}.
+     */
+    void writeState(UbcSnapshot.Out out) {
+        out.integer(reads.size());
+        for (BitSet lines : reads) {
+            out.bits(lines);
+        }
+        out.integer(current);
+    }
+
+    void readState(UbcSnapshot.In in) {
+        for (int statement = in.integer(); statement > 0; statement--) {
+            reads.add(in.bits());
+        }
+        current = in.integer();
+    }
+
+    /**
+     * Attributes reads to the given statement until {@link #exit}.
+     *
+     * @return the statement previously read for, to pass to {@link #exit}
+     */
+    int enter(int statement) {
+        int previous = current;
+        current = statement;
+        return previous;
+    }
+
+    void exit(int previous) {
+        current = previous;
+    }
+
+    /**
+     * Records that lines {@code from} to {@code to}, inclusive, were read.
+     */
+    void read(int from, int to) {
+        if (current < 0 || to < from) {
+            return;
+        }
+        while (reads.size() <= current) {
+            reads.add(new BitSet());
+        }
+        reads.get(current).set(Math.max(from, 0), to + 1);
+    }
+
+    /**
+     * The lines read for a statement so far.
+     */
+    BitSet readsOf(int statement) {
+        return statement < reads.size() ? (BitSet) reads.get(statement).clone() : new BitSet();
+    }
+
+    /**
+     * The statements whose values may change when the given statement is replaced: the statement itself, and
+     * every statement that read a line whose statement may change.
+     */
+    BitSet invalidatedBy(int statement) {
+        BitSet invalid = new BitSet();
+        invalid.set(statement);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < reads.size(); i++) {
+                if (!invalid.get(i) && reads.get(i).intersects(invalid)) {
+                    invalid.set(i);
+                    changed = true;
+                }
+            }
+        }
+        return invalid;
+    }
+
+    /**
+     * Forgets the reads of a statement that is about to be evaluated afresh.
+     */
+    void clear(int statement) {
+        if (statement < reads.size()) {
+            reads.get(statement).clear();
+        }
+    }
+}
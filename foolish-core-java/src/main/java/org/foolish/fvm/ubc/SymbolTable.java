@@ -0,0 +1,97 @@
+package org.foolish.fvm.ubc;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide table giving each distinct (id, characterization) pair an int symbol, so that
+ * {@link CharacterizedIdentifier}s compare by one int instead of two strings. Names are compared when they are
+ * interned, once per FIR, rather than on every line an identifier lookup passes.
+ * <p>
+ * The table is shared by every UBC, as the standard library they all resolve into is, but holds its names
+ * weakly: a name stays interned only while some identifier holds its {@link Symbol}, so a long-running process
+ * that keeps creating UBCs does not keep every name any of them ever used. A name dropped and interned again
+ * gets a new symbol, which no live identifier can hold the old one of. Symbols are local to the process: a
+ * restored snapshot interns its identifiers as it rebuilds them (see {@link UbcSnapshot}).
+ */
+final class SymbolTable {
+
+    /**
+     * An interned name. Identifiers hold it to keep the name interned, and compare by its {@link #id()}.
+     */
+    static final class Symbol {
+        private final Name name;
+        private final int id;
+
+        private Symbol(Name name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        int id() {
+            return id;
+        }
+    }
+
+    private record Name(String id, String characterization) {
+    }
+
+    /**
+     * A weak reference to a symbol that remembers its name, so the entry can be removed once the symbol is gone.
+     */
+    private static final class SymbolRef extends WeakReference<Symbol> {
+        private final Name name;
+
+        private SymbolRef(Symbol symbol) {
+            super(symbol, CLEARED);
+            this.name = symbol.name;
+        }
+    }
+
+    /** Each name's symbol, held weakly; entries whose symbol was collected are purged through {@link #CLEARED}. */
+    private static final ConcurrentMap<Name, SymbolRef> SYMBOLS = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Symbol> CLEARED = new ReferenceQueue<>();
+    private static final AtomicInteger NEXT = new AtomicInteger();
+
+    private SymbolTable() {
+    }
+
+    /**
+     * The symbol of a name, assigning the next one if the name is new.
+     */
+    static Symbol intern(String id, String characterization) {
+        purge();
+        Name name = new Name(id, characterization);
+        while (true) {
+            SymbolRef ref = SYMBOLS.get(name);
+            Symbol symbol = ref == null ? null : ref.get();
+            if (symbol != null) {
+                return symbol;
+            }
+            symbol = new Symbol(name, NEXT.getAndIncrement());
+            SymbolRef created = new SymbolRef(symbol);
+            // Another thread may intern the name, or replace a cleared entry, first; then use its symbol
+            if (ref == null ? SYMBOLS.putIfAbsent(name, created) == null : SYMBOLS.replace(name, ref, created)) {
+                return symbol;
+            }
+        }
+    }
+
+    /**
+     * The number of distinct names interned and still held.
+     */
+    static int size() {
+        purge();
+        return SYMBOLS.size();
+    }
+
+    private static void purge() {
+        for (Reference<? extends Symbol> ref; (ref = CLEARED.poll()) != null; ) {
+            SYMBOLS.remove(((SymbolRef) ref).name, ref);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.foolish.ast.AST;
 import org.foolish.ast.ASTBuilder;
+import org.foolish.ast.ConstantFolder;
 import org.foolish.grammar.FoolishLexer;
 import org.foolish.grammar.FoolishParser;
 
@@ -69,13 +70,29 @@ public class UbcRepl {
      * Parse the provided source into an AST program.
      */
     public static AST.Program parse(String source) {
+        return parse(source, false);
+    }
+
+    /**
+     * Parse the provided source into an AST program, optionally folding literal-only arithmetic
+     * with {@link ConstantFolder}.
+     */
+    public static AST.Program parse(String source, boolean foldConstants) {
+        AST.Program program = (AST.Program) new ASTBuilder().visitProgram(parser(source).program());
+        return foldConstants ? ConstantFolder.fold(program) : program;
+    }
+
+    /**
+     * The parser {@link #parse} uses, reporting syntax errors on the console.
+     */
+    static FoolishParser parser(String source) {
         CharStream input = CharStreams.fromString(source);
         FoolishLexer lexer = new FoolishLexer(input);
         CommonTokenStream tokens = new CommonTokenStream(lexer);
         FoolishParser parser = new FoolishParser(tokens);
         parser.removeErrorListeners();
         parser.addErrorListener(new org.antlr.v4.runtime.ConsoleErrorListener());
-        return (AST.Program) new ASTBuilder().visitProgram(parser.program());
+        return parser;
     }
 
     /**
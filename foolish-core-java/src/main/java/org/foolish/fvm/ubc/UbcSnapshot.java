@@ -0,0 +1,864 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.foolish.ast.SearchOperator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Map.entry;
+
+/**
+ * Binary snapshot of a {@link UnicelluarBraneComputer}: everything reachable from it, that is the FIRs with their
+ * Nyes states, braneMind queues, braneMemory lines and parent links, the AST they were made from and the execution
+ * context, so that a restored UBC continues stepping exactly where the checkpointed one stopped.
+ * <p>
+ * Layout: a magic number and format version, then one record per object, then an end tag. Every object gets a
+ * stable id, its position in breadth-first discovery order from the UBC, and is written once, in id order; objects
+ * refer to each other by id, so both directions are linear in the size of the graph. A record is a kind tag,
+ * then the object's final fields and then the rest of its state, each a run of values closed by an end tag.
+ * Values are tagged: null, a reference, an int, a long, a boolean, a string (through a string table) or a list
+ * of values. Enums are their ordinals.
+ * <p>
+ * Every kind of object has an encoding of its own. AST nodes are written as their components, with the tags of
+ * {@link org.foolish.ast.CompiledProgram}. Each FIR type writes its final fields in {@link FIR#writeFinals}, read
+ * back by its snapshot constructor, and its state in {@link FIR#writeState}, read back by {@link FIR#readState};
+ * the other classes of the FIR graph do the same. Caches that are rebuilt on demand, such as the identifier
+ * indexes of a braneMemory, are not written, and identifiers are interned as they are rebuilt from their AST.
+ * <p>
+ * Restoring creates every object from its final fields, creating the objects those name first, and only then
+ * reads the rest of each object's state, so cycles (parent links, waiters, parked FIRs) come back as they were.
+ * The FIRs and memories of the shared {@link StandardConfiguration#standardLibrary()} and
+ * {@link ExecutionContext#DEFAULT} are written as references to themselves and restored as the same objects.
+ * <p>
+ * The parallel pool, the brane JIT and the search memo of the context belong to the process rather than the
+ * evaluation and are not saved: a restored UBC evaluates sequentially and interpreted, running every search.
+ * <p>
+ * The encoding depends on the fields each type writes, the AST record shapes and the order of {@link Nyes},
+ * {@link BraneMindScheduler}, {@link SearchOperator} and {@link AST.AssignmentOperator}; any change to them must
+ * bump {@link #VERSION}. Snapshots of another version are rejected, not misread.
+ */
+final class UbcSnapshot {
+    private static final int MAGIC = 0x46554243; // "FUBC"
+    static final int VERSION = 2;
+
+    // Values
+    private static final byte END = 0;
+    private static final byte NULL = 1;
+    private static final byte REF = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte TRUE = 5;
+    private static final byte FALSE = 6;
+    private static final byte STRING = 7;
+    private static final byte LIST = 8;
+    /** An object of the shared standard library, by its position in {@link Library#OBJECTS}. */
+    private static final byte LIBRARY = 9;
+    private static final byte DEFAULT_CONTEXT = 10;
+
+    // AST nodes, tagged as in CompiledProgram
+    private static final int PROGRAM = 1, BRANES = 2, CONCATENATION = 3, BRANE = 4, DETACHMENT_BRANE = 5,
+        DETACHMENT_STATEMENT = 6, SEARCH_UP = 7, INTEGER = 8, IDENTIFIER = 9, BINARY = 10, UNARY = 11,
+        DEREFERENCE = 12, REGEXP_SEARCH = 13, SEEK = 14, UNANCHORED_SEEK = 15, ONE_SHOT_SEARCH = 16,
+        ASSIGNMENT = 17, UNKNOWN = 18, STAY_FOOLISH = 19, STAY_FULLY_FOOLISH = 20, IF = 21,
+        BRANE_REGEXP_SEARCH = 22;
+
+    // The rest of the FIR graph
+    private static final int UBC = 32, CONTEXT = 33, BRANE_MEMORY = 34, BRANE_MIND = 35, DEPENDENCIES = 36,
+        BRANE_MEMO = 37, LEXICAL_SCOPE = 38, MATCHES = 39, POSITION = 40;
+
+    // FIRs
+    private static final int HOLDER_FIR = 48, BRANE_FIR = 49, RESULT_BRANE_FIR = 50, DETACHMENT_BRANE_FIR = 51,
+        ASSIGNMENT_FIR = 52, BINARY_FIR = 53, UNARY_FIR = 54, VALUE_FIR = 55, NK_FIR = 56, IDENTIFIER_FIR = 57,
+        IDENTIFYING_FIR = 58, IF_FIR = 59, CONDITIONAL_FIR = 60, CONCATENATION_FIR = 61, EXECUTION_FIR = 62,
+        REGEXP_SEARCH_FIR = 63, DEREF_SEARCH_FIR = 64, FIND_ALL_SEARCH_FIR = 65, ONE_SHOT_SEARCH_FIR = 66,
+        SEEK_FIR = 67, UNANCHORED_SEEK_FIR = 68, SEARCH_UP_FIR = 69, CM_FIR = 70, SF_MARK_FIR = 71;
+
+    /** The kind of each class a snapshot can hold; subclasses are kinds of their own, not their superclass's. */
+    private static final Map<Class<?>, Integer> KINDS = Map.ofEntries(
+        entry(AST.Program.class, PROGRAM),
+        entry(AST.Branes.class, BRANES),
+        entry(AST.Concatenation.class, CONCATENATION),
+        entry(AST.Brane.class, BRANE),
+        entry(AST.DetachmentBrane.class, DETACHMENT_BRANE),
+        entry(AST.DetachmentStatement.class, DETACHMENT_STATEMENT),
+        entry(AST.SearchUP.class, SEARCH_UP),
+        entry(AST.IntegerLiteral.class, INTEGER),
+        entry(AST.Identifier.class, IDENTIFIER),
+        entry(AST.BinaryExpr.class, BINARY),
+        entry(AST.UnaryExpr.class, UNARY),
+        entry(AST.DereferenceExpr.class, DEREFERENCE),
+        entry(AST.RegexpSearchExpr.class, REGEXP_SEARCH),
+        entry(AST.SeekExpr.class, SEEK),
+        entry(AST.UnanchoredSeekExpr.class, UNANCHORED_SEEK),
+        entry(AST.OneShotSearchExpr.class, ONE_SHOT_SEARCH),
+        entry(AST.Assignment.class, ASSIGNMENT),
+        entry(AST.UnknownExpr.class, UNKNOWN),
+        entry(AST.StayFoolishExpr.class, STAY_FOOLISH),
+        entry(AST.StayFullyFoolishExpr.class, STAY_FULLY_FOOLISH),
+        entry(AST.IfExpr.class, IF),
+        entry(AST.BraneRegexpSearch.class, BRANE_REGEXP_SEARCH),
+        entry(UnicelluarBraneComputer.class, UBC),
+        entry(ExecutionContext.class, CONTEXT),
+        entry(BraneMemory.class, BRANE_MEMORY),
+        entry(BraneMind.class, BRANE_MIND),
+        entry(StatementDependencies.class, DEPENDENCIES),
+        entry(BraneMemo.class, BRANE_MEMO),
+        entry(LexicalScope.class, LEXICAL_SCOPE),
+        entry(SearchCursor.Matches.class, MATCHES),
+        entry(SearchCursor.Position.class, POSITION),
+        entry(FiroeWithBraneMind.Holder.class, HOLDER_FIR),
+        entry(BraneFiroe.class, BRANE_FIR),
+        entry(FindAllSearchFiroe.ResultBrane.class, RESULT_BRANE_FIR),
+        entry(DetachmentBraneFiroe.class, DETACHMENT_BRANE_FIR),
+        entry(AssignmentFiroe.class, ASSIGNMENT_FIR),
+        entry(BinaryFiroe.class, BINARY_FIR),
+        entry(UnaryFiroe.class, UNARY_FIR),
+        entry(ValueFiroe.class, VALUE_FIR),
+        entry(NKFiroe.class, NK_FIR),
+        entry(IdentifierFiroe.class, IDENTIFIER_FIR),
+        entry(IdentifyingFiroe.class, IDENTIFYING_FIR),
+        entry(IfFiroe.class, IF_FIR),
+        entry(IfFiroe.ConditionalFiroe.class, CONDITIONAL_FIR),
+        entry(ConcatenationFiroe.class, CONCATENATION_FIR),
+        entry(ExecutionFir.class, EXECUTION_FIR),
+        entry(RegexpSearchFiroe.class, REGEXP_SEARCH_FIR),
+        entry(DerefSearchFiroe.class, DEREF_SEARCH_FIR),
+        entry(FindAllSearchFiroe.class, FIND_ALL_SEARCH_FIR),
+        entry(OneShotSearchFiroe.class, ONE_SHOT_SEARCH_FIR),
+        entry(SeekFiroe.class, SEEK_FIR),
+        entry(UnanchoredSeekFiroe.class, UNANCHORED_SEEK_FIR),
+        entry(SearchUpFiroe.class, SEARCH_UP_FIR),
+        entry(CMFir.class, CM_FIR),
+        entry(SFMarkFiroe.class, SF_MARK_FIR));
+
+    private static final Nyes[] NYES = Nyes.values();
+    private static final SearchOperator[] SEARCH_OPERATORS = SearchOperator.values();
+    private static final AST.AssignmentOperator[] ASSIGNMENT_OPERATORS = AST.AssignmentOperator.values();
+
+    private UbcSnapshot() {
+    }
+
+    static void write(UnicelluarBraneComputer ubc, OutputStream out) throws IOException {
+        new Out(new DataOutputStream(new BufferedOutputStream(out))).write(ubc);
+    }
+
+    static UnicelluarBraneComputer read(InputStream in) throws IOException {
+        return new Reader(new DataInputStream(new BufferedInputStream(in))).read();
+    }
+
+    private static IllegalStateException cannotCheckpoint(Object obj) {
+        return new IllegalStateException("UBC state holds a " + obj.getClass().getName()
+            + ", which cannot be checkpointed");
+    }
+
+    /**
+     * The FIRs and memories of the shared standard library, found by walking it the same way in every process.
+     * None of them ever changes, so a snapshot refers to them by position instead of copying them.
+     */
+    private static final class Library {
+        static final List<Object> OBJECTS;
+        static final Map<Object, Integer> POSITIONS = new IdentityHashMap<>();
+
+        static {
+            List<Object> objects = new ArrayList<>();
+            Deque<FIR> pending = new ArrayDeque<>();
+            pending.add(StandardConfiguration.standardLibrary());
+            while (!pending.isEmpty()) {
+                FIR fir = pending.removeFirst();
+                if (POSITIONS.containsKey(fir)) {
+                    continue;
+                }
+                POSITIONS.put(fir, objects.size());
+                objects.add(fir);
+                if (fir instanceof FiroeWithBraneMind holder) {
+                    POSITIONS.putIfAbsent(holder.getBraneMemory(), objects.size());
+                    objects.add(holder.getBraneMemory());
+                    for (int i = 0; i < holder.memorySize(); i++) {
+                        pending.add(holder.memoryGet(i));
+                    }
+                }
+                if (fir instanceof Constanicable constanicable && constanicable.getResult() != null) {
+                    pending.add(constanicable.getResult());
+                }
+            }
+            OBJECTS = Collections.unmodifiableList(objects);
+        }
+    }
+
+    // ========== WRITING ==========
+
+    /**
+     * Writes a snapshot; each object writes its own values through {@link #ref}, {@link #integer} and the like.
+     */
+    static final class Out {
+        private final DataOutputStream out;
+        private final Map<Object, Integer> ids = new IdentityHashMap<>();
+        private final List<Object> objects = new ArrayList<>();
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        private Out(DataOutputStream out) {
+            this.out = out;
+        }
+
+        private void write(UnicelluarBraneComputer ubc) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            ids.put(ubc, 0);
+            objects.add(ubc);
+            try {
+                for (int id = 0; id < objects.size(); id++) {
+                    object(objects.get(id));
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.writeByte(END);
+            out.flush();
+        }
+
+        private void object(Object obj) {
+            Integer kind = KINDS.get(obj.getClass());
+            if (kind == null) {
+                throw cannotCheckpoint(obj);
+            }
+            varint(kind);
+            switch (obj) {
+                case AST node -> {
+                    node(node);
+                    tag(END);
+                }
+                case FIR fir -> {
+                    fir.writeFinals(this);
+                    tag(END);
+                    fir.writeState(this);
+                }
+                case UnicelluarBraneComputer ubc -> {
+                    ubc.writeFinals(this);
+                    tag(END);
+                    ubc.writeState(this);
+                }
+                case ExecutionContext context -> {
+                    context.writeFinals(this);
+                    tag(END);
+                }
+                case LexicalScope scope -> {
+                    scope.writeFinals(this);
+                    tag(END);
+                }
+                case SearchCursor.Matches matches -> {
+                    matches.writeFinals(this);
+                    tag(END);
+                    matches.writeState(this);
+                }
+                case BraneMemory memory -> {
+                    tag(END);
+                    memory.writeState(this);
+                }
+                case BraneMind mind -> {
+                    tag(END);
+                    mind.writeState(this);
+                }
+                case StatementDependencies dependencies -> {
+                    tag(END);
+                    dependencies.writeState(this);
+                }
+                case BraneMemo memo -> {
+                    tag(END);
+                    memo.writeState(this);
+                }
+                case SearchCursor.Position position -> {
+                    tag(END);
+                    position.writeState(this);
+                }
+                default -> throw cannotCheckpoint(obj);
+            }
+            tag(END);
+        }
+
+        private void node(AST node) {
+            switch (node) {
+                case AST.Program program -> ref(program.branes());
+                case AST.Branes branes -> refs(branes.branes());
+                case AST.Concatenation concatenation -> refs(concatenation.elements());
+                case AST.Brane brane -> {
+                    strings(brane.characterizations());
+                    refs(brane.statements());
+                }
+                case AST.DetachmentBrane brane -> {
+                    strings(brane.characterizations());
+                    refs(brane.statements());
+                }
+                case AST.DetachmentStatement statement -> {
+                    ref(statement.identifier());
+                    ref(statement.expr());
+                }
+                case AST.SearchUP searchUp -> strings(searchUp.characterizations());
+                case AST.IntegerLiteral literal -> {
+                    strings(literal.characterizations());
+                    longValue(literal.value());
+                }
+                case AST.Identifier identifier -> {
+                    strings(identifier.characterizations());
+                    string(identifier.id());
+                }
+                case AST.BinaryExpr binary -> {
+                    string(binary.op());
+                    ref(binary.left());
+                    ref(binary.right());
+                }
+                case AST.UnaryExpr unary -> {
+                    string(unary.op());
+                    ref(unary.expr());
+                }
+                case AST.DereferenceExpr dereference -> {
+                    ref(dereference.anchor());
+                    ref(dereference.coordinate());
+                }
+                case AST.RegexpSearchExpr search -> {
+                    ref(search.anchor());
+                    ordinal(search.operator());
+                    string(search.pattern());
+                }
+                case AST.SeekExpr seek -> {
+                    ref(seek.anchor());
+                    integer(seek.offset());
+                }
+                case AST.UnanchoredSeekExpr seek -> integer(seek.offset());
+                case AST.OneShotSearchExpr search -> {
+                    ref(search.anchor());
+                    ordinal(search.operator());
+                }
+                case AST.Assignment assignment -> {
+                    ref(assignment.identifier());
+                    ref(assignment.expr());
+                    ordinal(assignment.operator());
+                    AST.SourceLocation location = assignment.location();
+                    bool(location != null);
+                    if (location != null) {
+                        integer(location.line());
+                        integer(location.column());
+                    }
+                }
+                case AST.UnknownExpr unknown -> {
+                }
+                case AST.StayFoolishExpr stayFoolish -> ref(stayFoolish.expr());
+                case AST.StayFullyFoolishExpr stayFullyFoolish -> ref(stayFullyFoolish.expr());
+                case AST.IfExpr ifExpr -> {
+                    ref(ifExpr.condition());
+                    ref(ifExpr.thenExpr());
+                    ref(ifExpr.elseExpr());
+                    refs(ifExpr.elseIfs());
+                }
+                case AST.BraneRegexpSearch search -> {
+                    ref(search.brane());
+                    string(search.operator());
+                    string(search.pattern());
+                }
+            }
+        }
+
+        /**
+         * Writes a reference to an object, which is written in a record of its own.
+         */
+        void ref(Object obj) {
+            if (obj == null) {
+                tag(NULL);
+                return;
+            }
+            Integer library = Library.POSITIONS.get(obj);
+            if (library != null) {
+                tag(LIBRARY);
+                varint(library);
+                return;
+            }
+            if (obj == ExecutionContext.DEFAULT) {
+                tag(DEFAULT_CONTEXT);
+                return;
+            }
+            if (obj instanceof FIR fir && fir.isFrozen()) {
+                throw new IllegalStateException(fir.formatErrorMessage(
+                    "A frozen FIR outside the standard library cannot be checkpointed"));
+            }
+            Integer id = ids.get(obj);
+            if (id == null) {
+                id = objects.size();
+                ids.put(obj, id);
+                objects.add(obj);
+            }
+            tag(REF);
+            varint(id);
+        }
+
+        /**
+         * Writes a list of references, or null.
+         */
+        void refs(List<?> objs) {
+            if (objs == null) {
+                tag(NULL);
+                return;
+            }
+            tag(LIST);
+            varint(objs.size());
+            for (Object obj : objs) {
+                ref(obj);
+            }
+        }
+
+        void bool(boolean value) {
+            tag(value ? TRUE : FALSE);
+        }
+
+        void integer(int value) {
+            tag(INT);
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void longValue(long value) {
+            tag(LONG);
+            try {
+                out.writeLong(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Writes an enum constant as its ordinal, or null.
+         */
+        void ordinal(Enum<?> value) {
+            if (value == null) {
+                tag(NULL);
+            } else {
+                integer(value.ordinal());
+            }
+        }
+
+        /**
+         * Writes a string, or null.
+         */
+        void string(String s) {
+            if (s == null) {
+                tag(NULL);
+                return;
+            }
+            tag(STRING);
+            Integer index = strings.get(s);
+            if (index != null) {
+                varint(index);
+                return;
+            }
+            varint(strings.size());
+            strings.put(s, strings.size());
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length);
+            try {
+                out.write(bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Writes a list of strings, or null.
+         */
+        void strings(List<String> values) {
+            if (values == null) {
+                tag(NULL);
+                return;
+            }
+            tag(LIST);
+            varint(values.size());
+            for (String value : values) {
+                string(value);
+            }
+        }
+
+        void bits(BitSet bits) {
+            long[] words = bits.toLongArray();
+            tag(LIST);
+            varint(words.length);
+            for (long word : words) {
+                longValue(word);
+            }
+        }
+
+        private void tag(byte tag) {
+            try {
+                out.writeByte(tag);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void varint(int value) {
+            try {
+                while ((value & ~0x7F) != 0) {
+                    out.writeByte((value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                out.writeByte(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // ========== READING ==========
+
+    /**
+     * A reference to the object with the given id, before objects are created.
+     */
+    private record Ref(int id) {
+    }
+
+    /**
+     * One object as read: its kind, and the raw values (literals, {@link Ref}s and lists as arrays) of its final
+     * fields and of the rest of its state.
+     */
+    private record Entry(int kind, Object[] finals, Object[] state) {
+    }
+
+    /**
+     * The values of one object, taken in the order they were written.
+     */
+    static final class In {
+        private final Reader reader;
+        private final Object[] values;
+        private int next = 0;
+
+        private In(Reader reader, Object[] values) {
+            this.reader = reader;
+            this.values = values;
+        }
+
+        private Object next() {
+            if (next >= values.length) {
+                throw new IllegalStateException("Record ends early");
+            }
+            return values[next++];
+        }
+
+        private void end() {
+            if (next != values.length) {
+                throw new IllegalStateException("Record has " + (values.length - next) + " values left over");
+            }
+        }
+
+        /**
+         * Reads a reference, creating the object it names if it does not exist yet.
+         */
+        @SuppressWarnings("unchecked")
+        <T> T ref() {
+            return (T) reader.resolve(next());
+        }
+
+        /**
+         * Reads a list of references into a new mutable list, or null.
+         */
+        @SuppressWarnings("unchecked")
+        <T> List<T> refs() {
+            Object[] raw = (Object[]) next();
+            if (raw == null) {
+                return null;
+            }
+            List<T> list = new ArrayList<>(raw.length);
+            for (Object value : raw) {
+                list.add((T) reader.resolve(value));
+            }
+            return list;
+        }
+
+        boolean bool() {
+            return (Boolean) next();
+        }
+
+        int integer() {
+            return (Integer) next();
+        }
+
+        long longValue() {
+            return (Long) next();
+        }
+
+        /**
+         * Reads an enum constant written as its ordinal, or null.
+         */
+        <E extends Enum<E>> E ordinal(E[] constants) {
+            Integer ordinal = (Integer) next();
+            return ordinal == null ? null : constants[ordinal];
+        }
+
+        Nyes nyes() {
+            return ordinal(NYES);
+        }
+
+        String string() {
+            return (String) next();
+        }
+
+        List<String> strings() {
+            Object[] raw = (Object[]) next();
+            if (raw == null) {
+                return null;
+            }
+            List<String> list = new ArrayList<>(raw.length);
+            for (Object value : raw) {
+                list.add((String) value);
+            }
+            return list;
+        }
+
+        BitSet bits() {
+            Object[] raw = (Object[]) next();
+            long[] words = new long[raw.length];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = (Long) raw[i];
+            }
+            return BitSet.valueOf(words);
+        }
+    }
+
+    private static final class Reader {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private final List<Entry> entries = new ArrayList<>();
+        private Object[] objects;
+        private boolean[] creating;
+
+        Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        UnicelluarBraneComputer read() throws IOException {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a UBC snapshot");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported UBC snapshot version " + version);
+            }
+            for (int kind = varint(); kind != END; kind = varint()) {
+                entries.add(new Entry(kind, values(), values()));
+            }
+            int count = entries.size();
+            objects = new Object[count];
+            creating = new boolean[count];
+            try {
+                for (int id = 0; id < count; id++) {
+                    object(id);
+                }
+                for (int id = 0; id < count; id++) {
+                    In state = new In(this, entries.get(id).state());
+                    readState(objects[id], state);
+                    state.end();
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt UBC snapshot: " + e.getMessage(), e);
+            }
+            if (count == 0 || !(objects[0] instanceof UnicelluarBraneComputer ubc)) {
+                throw new IOException("UBC snapshot does not start with a UnicelluarBraneComputer");
+            }
+            return ubc;
+        }
+
+        /**
+         * Reads values up to the end tag.
+         */
+        private Object[] values() throws IOException {
+            List<Object> values = new ArrayList<>();
+            for (byte tag = in.readByte(); tag != END; tag = in.readByte()) {
+                values.add(value(tag));
+            }
+            return values.toArray();
+        }
+
+        private Object value(byte tag) throws IOException {
+            return switch (tag) {
+                case NULL -> null;
+                case REF -> new Ref(varint());
+                case INT -> in.readInt();
+                case LONG -> in.readLong();
+                case TRUE -> true;
+                case FALSE -> false;
+                case STRING -> string();
+                case LIST -> {
+                    Object[] list = new Object[varint()];
+                    for (int i = 0; i < list.length; i++) {
+                        list[i] = value(in.readByte());
+                    }
+                    yield list;
+                }
+                case LIBRARY -> {
+                    int position = varint();
+                    if (position >= Library.OBJECTS.size()) {
+                        throw new IOException("Standard library object " + position + " out of range");
+                    }
+                    yield Library.OBJECTS.get(position);
+                }
+                case DEFAULT_CONTEXT -> ExecutionContext.DEFAULT;
+                default -> throw new IOException("Unknown value tag " + tag);
+            };
+        }
+
+        private String string() throws IOException {
+            int index = varint();
+            if (index < strings.size()) {
+                return strings.get(index);
+            }
+            if (index != strings.size()) {
+                throw new IOException("String table index " + index + " out of order");
+            }
+            byte[] bytes = new byte[varint()];
+            in.readFully(bytes);
+            String s = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(s);
+            return s;
+        }
+
+        private int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = in.readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private Object resolve(Object value) {
+            return value instanceof Ref ref ? object(ref.id()) : value;
+        }
+
+        /**
+         * The object with the given id, created from its final fields on first use.
+         */
+        private Object object(int id) {
+            if (id < 0 || id >= objects.length) {
+                throw new IllegalStateException("Object id " + id + " out of range");
+            }
+            if (objects[id] != null) {
+                return objects[id];
+            }
+            if (creating[id]) {
+                throw new IllegalStateException("Cycle through the final fields of object " + id);
+            }
+            creating[id] = true;
+            Entry entry = entries.get(id);
+            In finals = new In(this, entry.finals());
+            objects[id] = create(entry.kind(), finals);
+            finals.end();
+            creating[id] = false;
+            return objects[id];
+        }
+
+        private Object create(int kind, In in) {
+            return switch (kind) {
+                case PROGRAM -> new AST.Program(in.ref());
+                case BRANES -> new AST.Branes(in.refs());
+                case CONCATENATION -> new AST.Concatenation(in.refs());
+                case BRANE -> new AST.Brane(in.strings(), in.refs());
+                case DETACHMENT_BRANE -> new AST.DetachmentBrane(in.strings(), in.refs());
+                case DETACHMENT_STATEMENT -> new AST.DetachmentStatement(in.ref(), in.ref());
+                case SEARCH_UP -> new AST.SearchUP(in.strings());
+                case INTEGER -> new AST.IntegerLiteral(in.strings(), in.longValue());
+                case IDENTIFIER -> new AST.Identifier(in.strings(), in.string());
+                case BINARY -> new AST.BinaryExpr(in.string(), in.ref(), in.ref());
+                case UNARY -> new AST.UnaryExpr(in.string(), in.ref());
+                case DEREFERENCE -> new AST.DereferenceExpr(in.ref(), in.ref());
+                case REGEXP_SEARCH -> new AST.RegexpSearchExpr(in.ref(), in.ordinal(SEARCH_OPERATORS), in.string());
+                case SEEK -> new AST.SeekExpr(in.ref(), in.integer());
+                case UNANCHORED_SEEK -> new AST.UnanchoredSeekExpr(in.integer());
+                case ONE_SHOT_SEARCH -> new AST.OneShotSearchExpr(in.ref(), in.ordinal(SEARCH_OPERATORS));
+                case ASSIGNMENT -> new AST.Assignment(in.ref(), in.ref(), in.ordinal(ASSIGNMENT_OPERATORS),
+                    location(in));
+                case UNKNOWN -> AST.UnknownExpr.INSTANCE;
+                case STAY_FOOLISH -> new AST.StayFoolishExpr(in.ref());
+                case STAY_FULLY_FOOLISH -> new AST.StayFullyFoolishExpr(in.ref());
+                case IF -> new AST.IfExpr(in.ref(), in.ref(), in.ref(), in.refs());
+                case BRANE_REGEXP_SEARCH -> new AST.BraneRegexpSearch(in.ref(), in.string(), in.string());
+                case UBC -> new UnicelluarBraneComputer(in);
+                case CONTEXT -> new ExecutionContext(in);
+                case BRANE_MEMORY -> new BraneMemory(null);
+                case BRANE_MIND -> new BraneMind();
+                case DEPENDENCIES -> new StatementDependencies();
+                case BRANE_MEMO -> new BraneMemo();
+                case LEXICAL_SCOPE -> new LexicalScope(in);
+                case MATCHES -> new SearchCursor.Matches(in);
+                case POSITION -> new SearchCursor.Position((BraneMemory) null, -1);
+                case HOLDER_FIR -> new FiroeWithBraneMind.Holder(in);
+                case BRANE_FIR -> new BraneFiroe(in);
+                case RESULT_BRANE_FIR -> new FindAllSearchFiroe.ResultBrane(in);
+                case DETACHMENT_BRANE_FIR -> new DetachmentBraneFiroe(in);
+                case ASSIGNMENT_FIR -> new AssignmentFiroe(in);
+                case BINARY_FIR -> new BinaryFiroe(in);
+                case UNARY_FIR -> new UnaryFiroe(in);
+                case VALUE_FIR -> new ValueFiroe(in);
+                case NK_FIR -> new NKFiroe(in);
+                case IDENTIFIER_FIR -> new IdentifierFiroe(in);
+                case IDENTIFYING_FIR -> new IdentifyingFiroe(in);
+                case IF_FIR -> new IfFiroe(in);
+                case CONDITIONAL_FIR -> new IfFiroe.ConditionalFiroe(in);
+                case CONCATENATION_FIR -> new ConcatenationFiroe(in);
+                case EXECUTION_FIR -> new ExecutionFir(in);
+                case REGEXP_SEARCH_FIR -> new RegexpSearchFiroe(in);
+                case DEREF_SEARCH_FIR -> new DerefSearchFiroe(in);
+                case FIND_ALL_SEARCH_FIR -> new FindAllSearchFiroe(in);
+                case ONE_SHOT_SEARCH_FIR -> new OneShotSearchFiroe(in);
+                case SEEK_FIR -> new SeekFiroe(in);
+                case UNANCHORED_SEEK_FIR -> new UnanchoredSeekFiroe(in);
+                case SEARCH_UP_FIR -> new SearchUpFiroe(in);
+                case CM_FIR -> new CMFir(in);
+                case SF_MARK_FIR -> new SFMarkFiroe(in);
+                default -> throw new IllegalStateException("Unknown object kind " + kind);
+            };
+        }
+
+        private static AST.SourceLocation location(In in) {
+            if (!in.bool()) {
+                return null;
+            }
+            int line = in.integer();
+            int column = in.integer();
+            return line == -1 && column == -1 ? AST.SourceLocation.UNKNOWN : new AST.SourceLocation(line, column);
+        }
+
+        private static void readState(Object obj, In in) {
+            switch (obj) {
+                case FIR fir -> fir.readState(in);
+                case UnicelluarBraneComputer ubc -> ubc.readState(in);
+                case SearchCursor.Matches matches -> matches.readState(in);
+                case BraneMemory memory -> memory.readState(in);
+                case BraneMind mind -> mind.readState(in);
+                case StatementDependencies dependencies -> dependencies.readState(in);
+                case BraneMemo memo -> memo.readState(in);
+                case SearchCursor.Position position -> position.readState(in);
+                default -> {
+                    // AST nodes, contexts and lexical scopes are whole once created
+                }
+            }
+        }
+    }
+}
@@ -54,6 +54,23 @@ public class UnanchoredSeekFiroe extends FiroeWithBraneMind implements Constanic
         this.value = null;  // Reset for re-evaluation
     }
 
+    UnanchoredSeekFiroe(UbcSnapshot.In in) {
+        super(in);
+        this.offset = ((AST.UnanchoredSeekExpr) ast).offset();
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.ref(value);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        value = in.ref();
+    }
+
     @Override
     protected void initialize() {
         setInitialized();
@@ -84,6 +101,12 @@ public class UnanchoredSeekFiroe extends FiroeWithBraneMind implements Constanic
     @Override
     public int step() {
         switch (getNyes()) {
+            case UNINITIALIZED -> {
+                // Not the base UNINITIALIZED: fusing into CHECKED would skip the seek below
+                initialize();
+                setNyes(Nyes.INITIALIZED);
+                return 1;
+            }
             case INITIALIZED -> {
                 // UnanchoredSeek searches within the IMMEDIATE containing brane/concatenation.
                 // It does NOT traverse up to parent branes - the search is bounded by the
@@ -185,22 +208,17 @@ public class UnanchoredSeekFiroe extends FiroeWithBraneMind implements Constanic
         return copy;
     }
     @Override
-    public Optional<FIR> valuableSelf() {
-        if (FIR.RECURSION_DEPTH.get() > 100) {
+    protected Optional<FIR> valuableSelf(int depth) {
+        if (depth > MAX_VALUABLE_DEPTH) {
             return Optional.empty();
         }
-        try {
-            FIR.RECURSION_DEPTH.set(FIR.RECURSION_DEPTH.get() + 1);
-            // TODO: Check for circular reference
-            if (value != null) {
-                return value.valuableSelf();
-            }
-            if (atConstanic()) {
-                 return Optional.empty();
-            }
-            return null;
-        } finally {
-            FIR.RECURSION_DEPTH.set(FIR.RECURSION_DEPTH.get() - 1);
+        // TODO: Check for circular reference
+        if (value != null) {
+            return value.valuableSelf(depth + 1);
+        }
+        if (atConstanic()) {
+             return Optional.empty();
         }
+        return null;
     }
 }
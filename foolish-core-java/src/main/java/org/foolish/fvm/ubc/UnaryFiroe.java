@@ -15,6 +15,8 @@ public class UnaryFiroe extends FiroeWithBraneMind implements Constanicable {
     private final String operator;
     private FIR operandFiroe;
     private FIR result;
+    /** The compiled subtree when arithmetic compilation is on; braneMemory then holds its inputs. */
+    private ArithmeticProgram program;
 
     public UnaryFiroe(AST.UnaryExpr unaryExpr) {
         super(unaryExpr);
@@ -22,11 +24,39 @@ public class UnaryFiroe extends FiroeWithBraneMind implements Constanicable {
         this.result = null;
     }
 
+    UnaryFiroe(UbcSnapshot.In in) {
+        super(in);
+        this.operator = ((AST.UnaryExpr) ast).op();
+    }
+
+    @Override
+    void writeState(UbcSnapshot.Out out) {
+        super.writeState(out);
+        out.ref(operandFiroe);
+        out.ref(result);
+        out.bool(program != null);
+    }
+
+    @Override
+    void readState(UbcSnapshot.In in) {
+        super.readState(in);
+        operandFiroe = in.ref();
+        result = in.ref();
+        program = in.bool() ? ArithmeticProgram.compile((AST.Expr) ast) : null;
+    }
+
     @Override
     protected void initialize() {
         setInitialized();
         AST.UnaryExpr op = (AST.UnaryExpr) ast;
-        storeExprs(op.expr());
+        if (executionContext().isCompiledArithmetic()) {
+            program = ArithmeticProgram.compile(op);
+        }
+        if (program != null) {
+            storeExprs(program.inputs().toArray(AST.Expr[]::new));
+        } else {
+            storeExprs(op.expr());
+        }
     }
 
     @Override
@@ -44,6 +74,9 @@ public class UnaryFiroe extends FiroeWithBraneMind implements Constanicable {
             }
             case EVALUATING -> {
                 // Step operand through evaluation
+                if (isBraneBlocked()) {
+                    return 0;
+                }
                 if (isBraneEmpty()) {
                     // Operand evaluated, compute result
                     computeResult();
@@ -53,9 +86,7 @@ public class UnaryFiroe extends FiroeWithBraneMind implements Constanicable {
                 FIR current = braneDequeue();
                 try {
                     int work = current.step();
-                    if (current.isNye()) {
-                        braneEnqueue(current);
-                    }
+                    requeue(current);
                     return work;
                 } catch (Exception e) {
                     braneEnqueueFirst(current); // Re-enqueue on error
@@ -75,6 +106,10 @@ public class UnaryFiroe extends FiroeWithBraneMind implements Constanicable {
     }
 
     private void computeResult() {
+        if (program != null) {
+            computeCompiledResult();
+            return;
+        }
         if (isMemoryEmpty()) {
              // Should not happen if initialized
              return;
@@ -106,6 +141,31 @@ public class UnaryFiroe extends FiroeWithBraneMind implements Constanicable {
         }
     }
 
+    /**
+     * Runs the compiled subtree over the values of its inputs. As in the tree walk, any CONSTANIC input
+     * makes the whole result CONSTANIC, and any arithmetic error makes it NK.
+     */
+    private void computeCompiledResult() {
+        for (int i = 0; i < program.inputs().size(); i++) {
+            if (memoryGet(i).atConstanic()) {
+                result = null; // Stay Constanic
+                setNyes(Nyes.CONSTANIC);
+                return;
+            }
+        }
+
+        try {
+            long[] inputs = new long[program.inputs().size()];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = memoryGet(i).getValue();
+            }
+            result = new ValueFiroe(ast, program.run(inputs));
+        } catch (Exception e) {
+            result = new NKFiroe(ast, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+        setNyes(Nyes.CONSTANT);
+    }
+
     @Override
     public boolean isConstanic() {
         if (result != null) {
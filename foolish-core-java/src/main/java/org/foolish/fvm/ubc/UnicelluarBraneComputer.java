@@ -2,6 +2,24 @@ package org.foolish.fvm.ubc;
 
 import org.foolish.ast.AST;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Unicellular Brane Computer (UBC).
  * <p>
@@ -11,7 +29,21 @@ import org.foolish.ast.AST;
  * creating new values.
  */
 public class UnicelluarBraneComputer {
+    /**
+     * Consecutive root iterations in which no FIR changed Nyes state, after which evaluation counts as stalled.
+     * Steps alone are not progress: a FIR re-queued forever, polling something that never moves, takes a step
+     * every iteration. Waiting FIRs normally poll for only a handful of iterations before something changes.
+     * Changes are counted per UBC, on its root brane, so forked children and UBCs sharing a thread each see only
+     * their own evaluation's progress.
+     */
+    public static final int STALL_ITERATIONS = 10_000;
+
     private final BraneFiroe rootBrane;
+    private AST.Brane source;
+    private long iterations = 0;
+    private long stepsTaken = 0;
+    /** Consecutive iterations in which no FIR changed Nyes state. */
+    private int idleIterations = 0;
 
     /**
      * Creates a UBC with a Brane AST.
@@ -19,6 +51,30 @@ public class UnicelluarBraneComputer {
      * @param braneAst The brane AST
      */
     public UnicelluarBraneComputer(AST braneAst) {
+        this(braneAst, ExecutionContext.DEFAULT);
+    }
+
+    /**
+     * Creates a UBC with a Brane AST and the braneMind scheduling policy used throughout its FIR tree.
+     *
+     * @param braneAst  The brane AST
+     * @param scheduler The braneMind scheduling policy
+     */
+    public UnicelluarBraneComputer(AST braneAst, BraneMindScheduler scheduler) {
+        this(braneAst, ExecutionContext.DEFAULT.withScheduler(scheduler));
+    }
+
+    /**
+     * Creates a UBC with a Brane AST and the execution context shared by its whole FIR tree.
+     *
+     * @param braneAst The brane AST
+     * @param context  The execution context
+     */
+    public UnicelluarBraneComputer(AST braneAst, ExecutionContext context) {
+        if (context == null) {
+            throw new IllegalArgumentException("Execution context cannot be null");
+        }
+
         if (braneAst == null) {
             throw new IllegalArgumentException("Brane AST cannot be null");
         }
@@ -27,13 +83,115 @@ public class UnicelluarBraneComputer {
             throw new IllegalArgumentException("AST must be a Brane");
         }
 
-        FiroeWithBraneMind standardLib = StandardConfiguration.createStandardLibrary();
+        if (context.isFusedTransitions() && ConcatenationFiroe.occursIn(braneAst)) {
+            context = context.withFusedTransitions(false);
+        }
+        if (context.isLazyBranes() && ConcatenationFiroe.occursIn(braneAst)) {
+            context = context.withLazyBranes(false);
+        }
+        if (context.isMemoizedBranes()) {
+            context = context.withMemoizedBranes(context.getParallelPool() == null
+                && !ConcatenationFiroe.occursIn(braneAst));
+        }
+
+        FiroeWithBraneMind standardLib = StandardConfiguration.standardLibrary();
         this.rootBrane = new BraneFiroe(braneAst);
+        this.rootBrane.context = context;
+        this.rootBrane.stateChanges = new LongAdder();
         this.rootBrane.ordinateToParentBraneMind(FiroeWithBraneMind.of());
         
         // Link the rootBrane's memory to the standardLib FIR
-        // This allows the rootBrane to resolve identifiers from the standard library
+        // This allows the rootBrane to resolve identifiers from the standard library, which all UBCs share
         this.rootBrane.linkMemoryParent(standardLib);
+        this.source = (AST.Brane) braneAst;
+        if (context.isIncremental()) {
+            this.rootBrane.trackStatementDependencies();
+        }
+    }
+
+    /**
+     * Snapshot constructor; see {@link UbcSnapshot}.
+     */
+    UnicelluarBraneComputer(UbcSnapshot.In in) {
+        this.rootBrane = in.ref();
+        this.rootBrane.stateChanges = new LongAdder();
+    }
+
+    void writeFinals(UbcSnapshot.Out out) {
+        out.ref(rootBrane);
+    }
+
+    void writeState(UbcSnapshot.Out out) {
+        out.ref(source);
+        out.longValue(iterations);
+        out.longValue(stepsTaken);
+        out.integer(idleIterations);
+    }
+
+    void readState(UbcSnapshot.In in) {
+        source = in.ref();
+        iterations = in.longValue();
+        stepsTaken = in.longValue();
+        idleIterations = in.integer();
+    }
+
+    /**
+     * Enables parallel evaluation: child branes that reference nothing outside themselves are run to
+     * completion as tasks on the given pool, with nested branes forked onto the same pool. Must be
+     * called before the first step; pass null to evaluate sequentially (the default).
+     *
+     * @param pool the pool to evaluate independent branes on, or null
+     */
+    public void setParallelBranes(ForkJoinPool pool) {
+        if (iterations > 0) {
+            throw new IllegalStateException("Parallel mode must be chosen before evaluation starts");
+        }
+        ExecutionContext context = rootBrane.executionContext().withParallelPool(pool);
+        rootBrane.context = pool != null ? context.withMemoizedBranes(false) : context;
+    }
+
+    /**
+     * Evaluates independent programs concurrently, one UBC per program, each on its own virtual thread.
+     *
+     * @param branes the programs to evaluate
+     * @return the completed UBCs, in the order of {@code branes}
+     */
+    public static List<UnicelluarBraneComputer> runAll(List<AST.Brane> branes) {
+        return runAll(branes, ExecutionContext.DEFAULT);
+    }
+
+    /**
+     * Evaluates independent programs concurrently, one UBC per program, each on its own virtual thread.
+     * UBCs share no mutable state, so the only coordination is waiting for all of them to finish.
+     *
+     * @param branes  the programs to evaluate
+     * @param context the execution context every UBC runs with
+     * @return the completed UBCs, in the order of {@code branes}
+     */
+    public static List<UnicelluarBraneComputer> runAll(List<AST.Brane> branes, ExecutionContext context) {
+        List<Future<UnicelluarBraneComputer>> futures = new ArrayList<>(branes.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (AST.Brane brane : branes) {
+                futures.add(executor.submit(() -> {
+                    UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane, context);
+                    ubc.runToCompletion();
+                    return ubc;
+                }));
+            }
+        }
+
+        List<UnicelluarBraneComputer> ubcs = new ArrayList<>(futures.size());
+        for (Future<UnicelluarBraneComputer> future : futures) {
+            try {
+                ubcs.add(future.get());
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException runtime ? runtime : new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for UBCs", e);
+            }
+        }
+        return ubcs;
     }
 
     /**
@@ -47,29 +205,206 @@ public class UnicelluarBraneComputer {
             return false;
         }
 
-        rootBrane.step();
+        advance();
         return rootBrane.isNye();
     }
 
+    /**
+     * Steps the root brane at most {@code maxSteps} times. The UBC stays resumable: a later run
+     * continues where this one stopped.
+     *
+     * @param maxSteps the most root steps to take, as counted by {@link #step()}
+     * @return COMPLETE, BUDGET_EXHAUSTED if {@code maxSteps} steps were taken and it is still nye,
+     *         or STALLED if nothing made progress for {@link #STALL_ITERATIONS} steps
+     */
+    public EvaluationStatus runFor(long maxSteps) {
+        for (long taken = 0; taken < maxSteps; taken++) {
+            EvaluationStatus status = status();
+            if (status != null) {
+                return status;
+            }
+            advance();
+        }
+        EvaluationStatus status = status();
+        return status != null ? status : EvaluationStatus.BUDGET_EXHAUSTED;
+    }
+
+    /**
+     * Steps the root brane until evaluation completes, stalls, or the deadline passes. The UBC stays
+     * resumable: a later run continues where this one stopped. Note that with parallel branes a single
+     * step may run forked children to completion, so the deadline is checked between steps only.
+     *
+     * @param deadline the instant after which no further step is started
+     * @return COMPLETE, BUDGET_EXHAUSTED if the deadline passed while still nye,
+     *         or STALLED if nothing made progress for {@link #STALL_ITERATIONS} steps
+     */
+    public EvaluationStatus runUntil(Instant deadline) {
+        long start = System.nanoTime();
+        long budgetNanos;
+        try {
+            budgetNanos = Duration.between(Instant.now(), deadline).toNanos();
+        } catch (ArithmeticException e) {
+            budgetNanos = deadline.isAfter(Instant.now()) ? Long.MAX_VALUE : 0;
+        }
+        while (true) {
+            EvaluationStatus status = status();
+            if (status != null) {
+                return status;
+            }
+            if (System.nanoTime() - start >= budgetNanos) {
+                return EvaluationStatus.BUDGET_EXHAUSTED;
+            }
+            advance();
+        }
+    }
+
     /**
      * Runs the UBC until evaluation is complete.
      *
      * @return the number of meaningful steps taken (excluding empty transitions)
+     * @throws RuntimeException if evaluation stalls (see {@link EvaluationStatus#STALLED})
      */
     public int runToCompletion() {
-        int steps = 0;
-        int iterations = 0;
-        while (rootBrane.isNye()) {
-            int work = rootBrane.step();
-            steps += work;
-            iterations++;
-
-            // Safety check to prevent infinite loops
-            if (iterations > 100000) {
-                throw new RuntimeException("Evaluation exceeded maximum iteration count (possible infinite loop)");
+        long before = stepsTaken;
+        if (runFor(Long.MAX_VALUE) == EvaluationStatus.STALLED) {
+            throw new RuntimeException("Evaluation stalled: no progress in " + STALL_ITERATIONS
+                + " iterations (possible infinite loop)");
+        }
+        return (int) (stepsTaken - before);
+    }
+
+    /**
+     * Runs the UBC to completion, then evaluates every statement that {@link ExecutionContext#isLazyBranes()
+     * lazy} branes left nye because nothing read it, as sequencing the whole program needs. Without lazy branes
+     * this is {@link #runToCompletion()}.
+     *
+     * @return the number of meaningful steps taken, including those of {@link #runToCompletion()}
+     * @throws RuntimeException if evaluation stalls
+     */
+    public int demandAll() {
+        long before = stepsTaken;
+        runToCompletion();
+        demand(rootBrane, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return (int) (stepsTaken - before);
+    }
+
+    /**
+     * Steps a FIR until it completes, then does the same for everything it holds.
+     */
+    private void demand(FIR fir, Set<FIR> visited) {
+        if (fir == null || !visited.add(fir)) {
+            return;
+        }
+        LongAdder changes = fir.stateChanges();
+        int idle = 0;
+        while (fir.isNye()) {
+            long before = changes == null ? 0 : changes.sum();
+            int work = fir.step();
+            stepsTaken += work;
+            boolean progressed = changes == null ? work > 0 : changes.sum() != before;
+            idle = progressed ? 0 : idle + 1;
+            if (idle >= STALL_ITERATIONS) {
+                throw new RuntimeException(fir.formatErrorMessage(
+                    "Evaluation stalled: no progress in " + STALL_ITERATIONS + " iterations (possible infinite loop)"));
             }
         }
-        return steps;
+        if (fir instanceof FiroeWithBraneMind holder) {
+            holder.stream().forEach(line -> demand(line, visited));
+        }
+        if (fir instanceof Constanicable constanicable) {
+            demand(constanicable.getResult(), visited);
+        }
+    }
+
+    /**
+     * The final status of the evaluation so far, or null if it can still make progress.
+     */
+    private EvaluationStatus status() {
+        if (!rootBrane.isNye()) {
+            return EvaluationStatus.COMPLETE;
+        }
+        if (idleIterations >= STALL_ITERATIONS) {
+            return EvaluationStatus.STALLED;
+        }
+        return null;
+    }
+
+    private void advance() {
+        long before = rootBrane.stateChanges.sum();
+        stepsTaken += rootBrane.step();
+        iterations++;
+        idleIterations = rootBrane.stateChanges.sum() == before ? idleIterations + 1 : 0;
+    }
+
+    /**
+     * Replaces one statement of the program and queues for re-evaluation only the statements whose values may
+     * change: the replaced statement, and every statement that read a line of the root brane (including lines
+     * a lookup searched past) whose statement may change. The others keep their evaluated FIRs. Run the UBC
+     * again to evaluate the queued statements; the steps taken are proportional to what the edit affects.
+     * <p>
+     * Requires an {@link ExecutionContext#isIncremental() incremental} context and a completed evaluation.
+     *
+     * @param index     the index of the statement in the root brane
+     * @param statement the new statement
+     * @return the indices of the statements queued for re-evaluation
+     */
+    public BitSet replaceStatement(int index, AST.Expr statement) {
+        StatementDependencies dependencies = rootBrane.statementDependencies();
+        if (dependencies == null) {
+            throw new IllegalStateException("Incremental re-evaluation needs an incremental execution context");
+        }
+        if (rootBrane.isNye()) {
+            throw new IllegalStateException("Statements can only be replaced once evaluation has completed");
+        }
+        List<AST.Expr> statements = new ArrayList<>(source.statements());
+        statements.set(index, statement);
+        source = new AST.Brane(source.characterizations(), statements);
+
+        ExecutionContext context = rootBrane.executionContext();
+        if ((context.isFusedTransitions() || context.getBraneJit() != null || context.isMemoizedBranes()
+            || context.isLazyBranes()) && ConcatenationFiroe.occursIn(statement)) {
+            rootBrane.context = context.withFusedTransitions(false).withBraneJit(null).withMemoizedBranes(false)
+                .withLazyBranes(false);
+        }
+
+        BitSet invalid = dependencies.invalidatedBy(index);
+        for (int i = invalid.nextSetBit(0); i >= 0; i = invalid.nextSetBit(i + 1)) {
+            dependencies.clear(i);
+            rootBrane.restartStatement(i, FIR.createFiroeFromExpr(statements.get(i)));
+        }
+        idleIterations = 0;
+        return invalid;
+    }
+
+    /**
+     * Writes the complete state of this UBC, mid-evaluation or not, so that {@link #restore} can continue
+     * stepping it later, in this JVM or another. The cost is linear in the size of the FIR graph; see
+     * {@link UbcSnapshot} for the format. Must not be called while the UBC is being stepped.
+     *
+     * @param out the stream to write to; it is flushed, not closed
+     * @throws IOException if writing fails
+     */
+    public void checkpoint(OutputStream out) throws IOException {
+        UbcSnapshot.write(this, out);
+    }
+
+    /**
+     * Restores a UBC from a {@link #checkpoint}. Stepping it continues exactly where the checkpointed UBC was,
+     * with the same step counts, except that it evaluates sequentially and without a brane JIT.
+     *
+     * @param in the stream to read from
+     * @return the restored UBC
+     * @throws IOException if reading fails or the stream is not a UBC snapshot
+     */
+    public static UnicelluarBraneComputer restore(InputStream in) throws IOException {
+        return UbcSnapshot.read(in);
+    }
+
+    /**
+     * Returns the program being evaluated, with every statement replaced so far.
+     */
+    public AST.Brane getSource() {
+        return source;
     }
 
     /**
@@ -79,6 +414,27 @@ public class UnicelluarBraneComputer {
         return !rootBrane.isNye();
     }
 
+    /**
+     * Returns the number of meaningful steps taken so far, over all runs (excluding empty transitions).
+     */
+    public long getStepsTaken() {
+        return stepsTaken;
+    }
+
+    /**
+     * Returns the number of times the root brane has been stepped, including steps that did no work.
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Returns the execution context this UBC evaluates with.
+     */
+    public ExecutionContext getExecutionContext() {
+        return rootBrane.executionContext();
+    }
+
     /**
      * Returns the root BraneFiroe being evaluated.
      */
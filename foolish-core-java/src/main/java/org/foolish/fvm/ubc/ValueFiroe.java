@@ -18,6 +18,17 @@ public class ValueFiroe extends FiroeWithoutBraneMind {
         this(null, value);
     }
 
+    ValueFiroe(UbcSnapshot.In in) {
+        super(in);
+        this.value = in.longValue();
+    }
+
+    @Override
+    void writeFinals(UbcSnapshot.Out out) {
+        super.writeFinals(out);
+        out.longValue(value);
+    }
+
     /**
      * Returns the integral value stored in this ValueFiroe.
      */
@@ -0,0 +1,63 @@
+package org.foolish;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.foolish.ast.AST;
+import org.foolish.ast.ASTBuilder;
+import org.foolish.grammar.FoolishLexer;
+import org.foolish.grammar.FoolishParser;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Arrays;
+
+/**
+ * Parse time and retained heap of a large synthetic program, plain and interned.
+ * Not part of the default test run; run with {@code mvn test -Pbenchmarks}.
+ */
+class InterningASTBuilderBenchmark {
+
+    private static AST.Program parse(String source, boolean interning) {
+        FoolishParser parser = new FoolishParser(new CommonTokenStream(new FoolishLexer(CharStreams.fromString(source))));
+        return (AST.Program) new ASTBuilder(interning).visitProgram(parser.program());
+    }
+
+    private static String syntheticSource(int branes) {
+        StringBuilder source = new StringBuilder("{\n");
+        for (int i = 0; i < branes; i++) {
+            source.append("  config_").append(i).append(" = { width = 640; height = 480; depth'bits = 24;")
+                .append(" rgb'color = ").append(i % 16).append("; area = width * height;")
+                .append(" scaled = { factor = 2; w = width * factor; h = height * factor; }; };\n");
+        }
+        return source.append("}\n").toString();
+    }
+
+    @Test
+    void parseTimeAndRetainedHeap() {
+        String source = syntheticSource(2000);
+        for (boolean interning : new boolean[]{false, true}) {
+            long[] millis = new long[3];
+            for (int run = 0; run < millis.length; run++) {
+                long start = System.nanoTime();
+                parse(source, interning);
+                millis[run] = (System.nanoTime() - start) / 1_000_000;
+            }
+            Arrays.sort(millis);
+            System.out.printf("%s: parse %d ms (median of %d), AST retains %.1f MB%n",
+                interning ? "interned" : "plain", millis[millis.length / 2], millis.length,
+                retainedBytes(source, interning) / 1e6);
+        }
+    }
+
+    private static long retainedBytes(String source, boolean interning) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        AST.Program program = parse(source, interning);
+        System.gc();
+        long after = memory.getHeapMemoryUsage().getUsed();
+        java.lang.ref.Reference.reachabilityFence(program);
+        return after - before;
+    }
+}
@@ -0,0 +1,114 @@
+package org.foolish;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.foolish.ast.AST;
+import org.foolish.ast.ASTBuilder;
+import org.foolish.grammar.FoolishLexer;
+import org.foolish.grammar.FoolishParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.RecordComponent;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The interning mode of {@link ASTBuilder}: the same tree, with identical leaves shared.
+ */
+class InterningASTBuilderTest {
+
+    private static AST.Program parse(String source, boolean interning) {
+        FoolishParser parser = new FoolishParser(new CommonTokenStream(new FoolishLexer(CharStreams.fromString(source))));
+        return (AST.Program) new ASTBuilder(interning).visitProgram(parser.program());
+    }
+
+    /**
+     * A large generated program: many configuration branes built from a small vocabulary.
+     */
+    private static String syntheticSource(int branes) {
+        StringBuilder source = new StringBuilder("{\n");
+        for (int i = 0; i < branes; i++) {
+            source.append("  config_").append(i).append(" = { width = 640; height = 480; depth'bits = 24;")
+                .append(" rgb'color = ").append(i % 16).append("; area = width * height;")
+                .append(" scaled = { factor = 2; w = width * factor; h = height * factor; }; };\n");
+        }
+        return source.append("}\n").toString();
+    }
+
+    /**
+     * Identity-distinct identifier and integer literal nodes, and characterization lists, in a tree.
+     */
+    private static int distinctLeaves(AST ast) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        collectLeaves(ast, seen);
+        return seen.size();
+    }
+
+    private static void collectLeaves(Object node, Set<Object> seen) {
+        switch (node) {
+            case AST.Identifier identifier -> {
+                seen.add(identifier);
+                seen.add(identifier.characterizations());
+            }
+            case AST.IntegerLiteral literal -> {
+                seen.add(literal);
+                seen.add(literal.characterizations());
+            }
+            case List<?> list -> list.forEach(element -> collectLeaves(element, seen));
+            case Record record -> {
+                for (RecordComponent component : record.getClass().getRecordComponents()) {
+                    try {
+                        collectLeaves(component.getAccessor().invoke(record), seen);
+                    } catch (ReflectiveOperationException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }
+            case null, default -> {
+            }
+        }
+    }
+
+    @Test
+    void internedTreeEqualsPlainTree() throws IOException {
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            String source = Files.readString(file.toPath());
+            AST.Program plain = parse(source, false);
+            AST.Program interned = parse(source, true);
+            assertEquals(plain, interned, file.getName());
+            assertEquals(plain.toString(), interned.toString(), file.getName());
+        }
+    }
+
+    @Test
+    void identicalLeavesAreShared() {
+        AST.Program program = parse("{ a = 1; b = a + 1; c'x = a; d = c'x + 1; }", true);
+        List<AST.Expr> statements = ((AST.Brane) program.branes().branes().get(0)).statements();
+        AST.Assignment a = (AST.Assignment) statements.get(0);
+        AST.BinaryExpr b = (AST.BinaryExpr) ((AST.Assignment) statements.get(1)).expr();
+        AST.Assignment c = (AST.Assignment) statements.get(2);
+        AST.BinaryExpr d = (AST.BinaryExpr) ((AST.Assignment) statements.get(3)).expr();
+
+        assertSame(a.identifier(), b.left());
+        assertSame(a.expr(), b.right());
+        assertSame(c.identifier(), d.left());
+        assertSame(a.identifier().id(), c.expr() instanceof AST.Identifier id ? id.id() : null);
+    }
+
+    @Test
+    void internedTreeIsSmaller() {
+        String source = syntheticSource(2000);
+        int plainLeaves = distinctLeaves(parse(source, false));
+        int internedLeaves = distinctLeaves(parse(source, true));
+        assertEquals(46001, plainLeaves);
+        // One config_i name per brane, plus the shared vocabulary
+        assertEquals(2031, internedLeaves);
+    }
+}
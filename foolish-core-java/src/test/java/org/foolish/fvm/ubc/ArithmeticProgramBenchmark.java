@@ -0,0 +1,46 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Allocation of compiled arithmetic against the FIR-per-node tree walk on an arithmetic-heavy program.
+ * Not part of the default test run; run with {@code mvn test -Pbenchmarks}.
+ */
+class ArithmeticProgramBenchmark {
+
+    private static final ExecutionContext COMPILED = ExecutionContext.DEFAULT.withCompiledArithmetic(true);
+
+    @Test
+    void arithmeticHeavyProgram() {
+        StringBuilder source = new StringBuilder("{\n  v0 = 1;\n");
+        for (int i = 1; i < 200; i++) {
+            source.append("  v").append(i).append(" = (v").append(i - 1).append(" * 3 - v").append(i - 1)
+                .append(" * 2 + ").append(i).append(") / 1 - (").append(i).append(" - ").append(i).append(");\n");
+        }
+        AST.Brane brane = (AST.Brane) UbcRepl.parse(source.append("}").toString()).branes().branes().get(0);
+
+        int treeSteps = new UnicelluarBraneComputer(brane, ExecutionContext.DEFAULT).runToCompletion();
+        int compiledSteps = new UnicelluarBraneComputer(brane, COMPILED).runToCompletion();
+        assertTrue(compiledSteps < treeSteps);
+
+        long treeBytes = allocatedBytes(brane, ExecutionContext.DEFAULT);
+        long compiledBytes = allocatedBytes(brane, COMPILED);
+        System.out.printf("arithmetic-heavy program: tree steps=%d bytes=%d, compiled steps=%d bytes=%d%n",
+            treeSteps, treeBytes, compiledSteps, compiledBytes);
+    }
+
+    private static long allocatedBytes(AST.Brane brane, ExecutionContext context) {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)) {
+            return -1;
+        }
+        long threadId = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        new UnicelluarBraneComputer(brane, context).runToCompletion();
+        return threads.getThreadAllocatedBytes(threadId) - before;
+    }
+}
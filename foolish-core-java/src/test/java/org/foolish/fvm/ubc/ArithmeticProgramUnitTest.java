@@ -0,0 +1,109 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compiled arithmetic: the register program itself, and equivalence with the FIR-per-node tree walk.
+ */
+class ArithmeticProgramUnitTest {
+
+    private static final ExecutionContext COMPILED = ExecutionContext.DEFAULT.withCompiledArithmetic(true);
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private static AST.Expr expr(String source) {
+        return ((AST.Assignment) brane("{ r = " + source + "; }").statements().get(0)).expr();
+    }
+
+    private record Run(String output, int steps) {}
+
+    private static Run run(AST.Brane brane, ExecutionContext context) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane, context);
+        int steps = ubc.runToCompletion();
+        assertTrue(ubc.isComplete());
+        return new Run(new Sequencer4Human().sequence(ubc.getRootBrane()), steps);
+    }
+
+    @Test
+    void compilesOperatorsLiteralsAndSharedIdentifiers() {
+        ArithmeticProgram program = ArithmeticProgram.compile(expr("a * 3 - a * 2 + 7"));
+        assertNotNull(program);
+        assertEquals(1, program.inputs().size(), "both uses of a share one input");
+        assertEquals(3, program.constants().length);
+        assertEquals(4, program.operatorCount());
+        assertEquals(3 * 5 - 5 * 2 + 7, program.run(new long[]{5}));
+
+        assertEquals(-9, ArithmeticProgram.compile(expr("-(1 + 2) * 3")).run(new long[0]));
+        assertNull(ArithmeticProgram.compile(expr("a")), "a lone identifier is not arithmetic");
+    }
+
+    @Test
+    void divisionByZeroThrows() {
+        ArithmeticProgram program = ArithmeticProgram.compile(expr("x / (y - y)"));
+        assertEquals(2, program.inputs().size());
+        ArithmeticException e = assertThrows(ArithmeticException.class, () -> program.run(new long[]{1, 4}));
+        assertEquals("Division by zero", e.getMessage());
+    }
+
+    @Test
+    void compiledMatchesTreeWalk() {
+        for (String source : new String[]{
+            "{ a = 6; b = a * 7 - a / 2; c = -b + a * a; }",
+            "{ a = 1; b = a / 0 + 3; c = b * 2; }",
+            "{ b = missing * 2 + 1; c = b + 1; }",
+            "{ a = { x = 2; }; b = a.x * 10 - 1; c = b * b - a.x; }",
+            "{ a = 2; b = +a * 3; }",
+        }) {
+            AST.Brane brane = brane(source);
+            assertEquals(run(brane, ExecutionContext.DEFAULT).output(), run(brane, COMPILED).output(), source);
+        }
+    }
+
+    @Test
+    void compiledMatchesTreeWalkOnApprovalInputs() throws IOException {
+        long treeSteps = 0, compiledSteps = 0;
+        int compared = 0;
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (program.branes() == null || program.branes().branes().isEmpty()
+                || !(program.branes().branes().get(0) instanceof AST.Brane brane)) {
+                continue;
+            }
+            Run tree = run(brane, ExecutionContext.DEFAULT);
+            Run compiled = run(brane, COMPILED);
+            assertEquals(tree.output(), compiled.output(), file.getName());
+            assertTrue(compiled.steps() <= tree.steps(), file.getName());
+            treeSteps += tree.steps();
+            compiledSteps += compiled.steps();
+            compared++;
+        }
+        assertTrue(compared > 0, "approval inputs should be on the test classpath");
+        assertTrue(compiledSteps < treeSteps, "compiled arithmetic should save steps somewhere in the corpus");
+    }
+
+    @Test
+    void arithmeticHeavyProgram() {
+        StringBuilder source = new StringBuilder("{\n  v0 = 1;\n");
+        for (int i = 1; i < 200; i++) {
+            source.append("  v").append(i).append(" = (v").append(i - 1).append(" * 3 - v").append(i - 1)
+                .append(" * 2 + ").append(i).append(") / 1 - (").append(i).append(" - ").append(i).append(");\n");
+        }
+        AST.Brane brane = brane(source.append("}").toString());
+
+        Run tree = run(brane, ExecutionContext.DEFAULT);
+        Run compiled = run(brane, COMPILED);
+        assertEquals(tree.output(), compiled.output());
+        assertEquals(10161, tree.steps());
+        assertEquals(3001, compiled.steps(), "each compiled statement should cost a fixed handful of steps");
+    }
+}
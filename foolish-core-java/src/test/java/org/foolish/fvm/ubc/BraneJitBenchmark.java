@@ -0,0 +1,48 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Time to evaluate a repeated arithmetic template with and without {@link BraneJit}.
+ * Not part of the default test run; run with {@code mvn test -Pbenchmarks}.
+ */
+class BraneJitBenchmark {
+
+    private static String run(AST.Brane brane, ExecutionContext context) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane, context);
+        ubc.runToCompletion();
+        return new Sequencer4Human().sequence(ubc.getRootBrane());
+    }
+
+    @Test
+    void repeatedTemplateThroughput() {
+        StringBuilder template = new StringBuilder("{ x = 3; t = {\n  v0 = x;\n");
+        for (int i = 1; i < 40; i++) {
+            template.append("  v").append(i).append(" = v").append(i - 1).append(" * 3 - v").append(i - 1)
+                .append(" * 2 + ").append(i).append(";\n");
+        }
+        AST.Brane brane = (AST.Brane) UbcRepl.parse(template.append("}; }").toString()).branes().branes().get(0);
+        ExecutionContext compiled = ExecutionContext.DEFAULT.withBraneJit(new BraneJit(2));
+        assertEquals(run(brane, ExecutionContext.DEFAULT), run(brane, compiled));
+
+        long interpreted = bestOf(brane, ExecutionContext.DEFAULT);
+        long jit = bestOf(brane, compiled);
+        System.out.printf("40-statement template x 200: interpreted=%.2fms compiled=%.2fms%n",
+            interpreted / 1e6, jit / 1e6);
+    }
+
+    private static long bestOf(AST.Brane brane, ExecutionContext context) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 200; i++) {
+                new UnicelluarBraneComputer(brane, context).runToCompletion();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,215 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.RecordComponent;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tier-2 brane compilation: kernel semantics, equivalence with the interpreter, fallback and hotness.
+ */
+class BraneJitUnitTest {
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private static String run(AST.Brane brane, ExecutionContext context) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane, context);
+        ubc.runToCompletion();
+        assertTrue(ubc.isComplete());
+        return new Sequencer4Human().sequence(ubc.getRootBrane());
+    }
+
+    private static long[] compute(AST.Brane brane, long... inputs) {
+        BraneJit.Plan plan = BraneJit.analyse(brane);
+        assertNotNull(plan, "brane should qualify: " + brane);
+        long[] values = new long[brane.statements().size()];
+        BraneJit.compile(brane, plan).compute(inputs, values);
+        return values;
+    }
+
+    private static AST.Assignment assign(String id, AST.Expr expr) {
+        return new AST.Assignment(new AST.Identifier(id), expr);
+    }
+
+    private static AST.Expr binary(String op, AST.Expr left, AST.Expr right) {
+        return new AST.BinaryExpr(op, left, right);
+    }
+
+    @Test
+    void kernelComputesEveryStatement() {
+        AST.Identifier a = new AST.Identifier("a");
+        AST.Identifier x = new AST.Identifier("x");
+        AST.Brane brane = new AST.Brane(List.of(
+            assign("a", new AST.IntegerLiteral(6)),
+            assign("b", binary("-", binary("*", a, new AST.IntegerLiteral(7)), binary("/", a, x))),
+            assign("c", binary("<", a, x)),
+            assign("d", new AST.UnaryExpr("!", binary("==", a, new AST.IntegerLiteral(6)))),
+            assign("e", binary("&&", a, new AST.IntegerLiteral(0))),
+            assign("f", binary("||", new AST.IntegerLiteral(0), new AST.UnaryExpr("-", a))),
+            binary("%", x, new AST.IntegerLiteral(3))));
+        assertEquals(List.of(x), BraneJit.analyse(brane).inputs());
+        assertArrayEquals(new long[]{6, 6 * 7 - 6 / 4, 0, 0, 0, 1, 1}, compute(brane, 4));
+    }
+
+    @Test
+    void onlyArithmeticBranesQualify() {
+        assertNull(BraneJit.analyse(brane("{ a = { b = 1; }; }")));
+        assertNull(BraneJit.analyse(brane("{ a = a + 1; }")), "a refers to its own statement");
+        assertNull(BraneJit.analyse(brane("{ a = b.c; }")));
+        assertNull(BraneJit.analyse(brane("{ a = +1; }")), "unary + is NK in the interpreter");
+        assertNull(BraneJit.analyse(brane("{ a = 6; b = if a then 1 else 2; }")), "if is left to IfFiroe");
+        assertEquals(List.of(new AST.Identifier("b")), BraneJit.analyse(brane("{ a = b; c = a; }")).inputs());
+    }
+
+    @Test
+    void concatenatingProgramsAreNotCompiled() {
+        AST.Brane brane = brane("{ A = { a = 1; }; B = { b = a + 1; }; c = { x = 2; y = x * 3; }; r = A B; }");
+        assertTrue(ConcatenationFiroe.occursIn(brane));
+        assertFalse(ConcatenationFiroe.occursIn(brane("{ A = { a = 1; }; r = A.a; }")));
+
+        BraneJit jit = new BraneJit(1);
+        assertEquals(run(brane, ExecutionContext.DEFAULT), run(brane, ExecutionContext.DEFAULT.withBraneJit(jit)));
+        assertEquals(0, jit.getCompiledCount());
+    }
+
+    @Test
+    void compiledBranesMatchTheInterpreter() {
+        for (String source : new String[]{
+            "{ x = 5; t = { a = x * 2; b = a + 1; c = -b * a / 3; }; }",
+            "{ t = { a = 3; b = a * a - 1; 7; a + b; }; u = t.b; }",
+        }) {
+            AST.Brane brane = brane(source);
+            BraneJit jit = new BraneJit(1);
+            assertEquals(run(brane, ExecutionContext.DEFAULT), run(brane, ExecutionContext.DEFAULT.withBraneJit(jit)),
+                source);
+            assertEquals(1, jit.getCompiledRuns(), source);
+            assertEquals(0, jit.getFallbackCount(), source);
+        }
+    }
+
+    @Test
+    void everyQualifyingBraneMatchesTheInterpreter() throws IOException {
+        List<String> sources = new ArrayList<>(List.of(
+            "{ x = 4; t = { a = x * 2; b = missing + a; }; u = { c = x * 2; d = c - 1; }; }",
+            "{ x = 5; t = { a = x * 2; b = a + 1; c = -b * a / 3; }; }",
+            "{ t = { a = 3; b = a * a - 1; 7; a + b; }; u = t.b; }"));
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            sources.add(Files.readString(file.toPath()));
+        }
+        int qualifying = 0;
+        for (String source : sources) {
+            AST.Program program = UbcRepl.parse(source);
+            List<AST.Brane> branes = new ArrayList<>();
+            collectBranes(program, branes);
+            int before = qualifying;
+            for (AST.Brane brane : branes) {
+                if (BraneJit.analyse(brane) != null) {
+                    qualifying++;
+                    assertEquals(run(brane, ExecutionContext.DEFAULT),
+                        run(brane, ExecutionContext.DEFAULT.withBraneJit(new BraneJit(1))), brane.toString());
+                }
+            }
+            // Within the program as well, where their inputs are bound
+            if (qualifying > before) {
+                assertEquals(run(branes.getFirst(), ExecutionContext.DEFAULT),
+                    run(branes.getFirst(), ExecutionContext.DEFAULT.withBraneJit(new BraneJit(1))), source);
+            }
+        }
+        assertTrue(qualifying > 0);
+    }
+
+    /**
+     * Adds every brane within an AST, in source order, the AST itself first if it is one.
+     */
+    private static void collectBranes(Object ast, List<AST.Brane> branes) {
+        if (ast instanceof AST.Brane brane) {
+            branes.add(brane);
+        }
+        if (ast instanceof List<?> list) {
+            list.forEach(element -> collectBranes(element, branes));
+        } else if (ast instanceof AST && ast instanceof Record record) {
+            for (RecordComponent component : record.getClass().getRecordComponents()) {
+                try {
+                    collectBranes(component.getAccessor().invoke(record), branes);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    @Test
+    void fallsBackToTheInterpreter() {
+        for (String source : new String[]{
+            "{ t = { a = missing * 2; b = a + 1; }; }",
+            "{ t = { a = 1 / 0; b = 2; }; }",
+            "{ s = { k = 1; }; t = { a = s + 1; }; }",
+        }) {
+            AST.Brane brane = brane(source);
+            BraneJit jit = new BraneJit(1);
+            assertEquals(run(brane, ExecutionContext.DEFAULT), run(brane, ExecutionContext.DEFAULT.withBraneJit(jit)),
+                source);
+            assertEquals(1, jit.getFallbackCount(), source);
+        }
+    }
+
+    @Test
+    void compilesOnceHot() {
+        AST.Brane brane = brane("{ a = 2; b = a * 21; }");
+        BraneJit jit = new BraneJit(3);
+        ExecutionContext context = ExecutionContext.DEFAULT.withBraneJit(jit);
+        String expected = run(brane, ExecutionContext.DEFAULT);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(expected, run(brane, context));
+        }
+        assertEquals(1, jit.getCompiledCount());
+        assertEquals(3, jit.getCompiledRuns());
+    }
+
+    @Test
+    void approvalInputsAreUnchanged() throws IOException {
+        BraneJit jit = new BraneJit(1);
+        ExecutionContext context = ExecutionContext.DEFAULT.withBraneJit(jit);
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (program.branes() == null || program.branes().branes().isEmpty()
+                || !(program.branes().branes().get(0) instanceof AST.Brane brane)) {
+                continue;
+            }
+            assertEquals(run(brane, ExecutionContext.DEFAULT), run(brane, context), file.getName());
+        }
+        // Entries are weakly keyed by AST, so a brane shared by several inputs may be compiled more than once
+        assertTrue(jit.getCompiledCount() > 0, "some approval branes should qualify");
+        assertTrue(jit.getCompiledRuns() + jit.getFallbackCount() >= jit.getCompiledCount(),
+            "every compiled brane should have been run or handed back");
+    }
+
+    @Test
+    void repeatedTemplateCompilesOnce() {
+        StringBuilder template = new StringBuilder("{ x = 3; t = {\n  v0 = x;\n");
+        for (int i = 1; i < 40; i++) {
+            template.append("  v").append(i).append(" = v").append(i - 1).append(" * 3 - v").append(i - 1)
+                .append(" * 2 + ").append(i).append(";\n");
+        }
+        AST.Brane brane = brane(template.append("}; }").toString());
+        BraneJit jit = new BraneJit(2);
+        ExecutionContext context = ExecutionContext.DEFAULT.withBraneJit(jit);
+        String expected = run(brane, ExecutionContext.DEFAULT);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(expected, run(brane, context));
+        }
+        assertEquals(1, jit.getCompiledCount(), "the template compiles once");
+        assertEquals(9, jit.getCompiledRuns(), "every run from the second on uses the compiled kernel");
+        assertEquals(0, jit.getFallbackCount());
+    }
+}
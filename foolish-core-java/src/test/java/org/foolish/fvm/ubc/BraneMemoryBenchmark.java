@@ -0,0 +1,54 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Timings of identifier lookups in large brane memories, through the index and by scanning. Not part of the default
+ * test run; run with {@code mvn test -Pbenchmarks}.
+ */
+class BraneMemoryBenchmark {
+
+    private static int scan(BraneMemory brane, Query query, int from) {
+        for (int line = Math.min(from, brane.size() - 1); line >= 0; line--) {
+            if (query.matches(brane.get(line))) return line;
+        }
+        return -1;
+    }
+
+    /**
+     * Resolving every name of a 5000-line brane.
+     */
+    @Test
+    void indexedLookups() {
+        int lines = 5000;
+        BraneMemory brane = new BraneMemory(null);
+        Query[] queries = new Query[lines];
+        for (int i = 0; i < lines; i++) {
+            brane.put(new AssignmentFiroe(new AST.Assignment(new AST.Identifier("name" + i),
+                new AST.IntegerLiteral(i))));
+            queries[i] = new Query.StrictlyMatchingQuery("name" + i, "");
+        }
+        long[] indexed = new long[5];
+        long[] scanned = new long[5];
+        for (int run = 0; run < indexed.length; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < lines; i++) {
+                assertEquals(i, brane.get(queries[i], lines - 1).orElseThrow().getLeft());
+            }
+            long middle = System.nanoTime();
+            for (int i = 0; i < lines; i++) {
+                assertEquals(i, scan(brane, queries[i], lines - 1));
+            }
+            indexed[run] = (middle - start) / lines;
+            scanned[run] = (System.nanoTime() - middle) / lines;
+        }
+        Arrays.sort(indexed);
+        Arrays.sort(scanned);
+        System.out.printf("%d-line brane: indexed lookup %d ns, scan %d ns (medians)%n", lines, indexed[2], scanned[2]);
+    }
+}
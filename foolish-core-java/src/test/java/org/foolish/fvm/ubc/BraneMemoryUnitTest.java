@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -357,4 +358,86 @@ class BraneMemoryUnitTest {
         assertTrue(result.isPresent());
         assertEquals(3, result.get().getLeft());
     }
+
+    /**
+     * The line a linear scan finds, for comparing with the index: backward from {@code from}, or forward.
+     */
+    private static int scan(BraneMemory brane, Query query, int from, boolean forward) {
+        if (forward) {
+            for (int line = Math.max(from, 0); line < brane.size(); line++) {
+                if (query.matches(brane.get(line))) return line;
+            }
+        } else {
+            for (int line = Math.min(from, brane.size() - 1); line >= 0; line--) {
+                if (query.matches(brane.get(line))) return line;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    void testIndexedLookupsMatchScanning() {
+        Random random = new Random(18);
+        String[] names = {"a", "b", "c", "d", "e", "f"};
+        BraneMemory brane = new BraneMemory(null);
+        for (int i = 0; i < 300; i++) {
+            if (i % 7 == 3) {
+                brane.put(new ValueFiroe(new AST.IntegerLiteral(i), i));  // an unnamed line
+            } else {
+                brane.put(createAssignment(names[random.nextInt(names.length)], random.nextBoolean() ? "" : "t", i));
+            }
+            if (i == 150) {
+                brane.get(new Query.StrictlyMatchingQuery("a", ""), 0);  // index built part-way, then appended to
+            }
+        }
+        brane.set(40, createAssignment("zz", 0));
+        brane.set(41, createAssignment("a", 0));
+
+        for (String name : List.of("a", "b", "f", "zz", "missing")) {
+            for (String characterization : List.of("", "t'")) {
+                Query query = new Query.StrictlyMatchingQuery(name, characterization);
+                for (int from = -1; from <= brane.size(); from++) {
+                    int backward = scan(brane, query, from, false);
+                    assertEquals(backward, brane.get(query, from).map(Pair::getLeft).orElse(-1), query + " from " + from);
+                    assertEquals(backward, brane.getLocal(query, from).map(Pair::getLeft).orElse(-1));
+                    assertEquals(scan(brane, query, from, true),
+                        brane.getLocalForward(query, from).map(Pair::getLeft).orElse(-1), query + " forward " + from);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testIndexedLookupRespectsDetachment() {
+        List<AST.DetachmentStatement> detached = new java.util.ArrayList<>();
+        for (String name : List.of("a", "b", "c", "d", "e", "f", "g", "h", "i")) {
+            detached.add(new AST.DetachmentStatement(new AST.Identifier(name), AST.UnknownExpr.INSTANCE));
+        }
+        DetachmentBraneFiroe detachment = new DetachmentBraneFiroe(new AST.DetachmentBrane(detached));
+        detachment.step();
+        BraneMemory memory = (BraneMemory) detachment.getBraneMemory();
+        assertTrue(memory.size() >= BraneMemory.INDEXED_SIZE);
+
+        Query query = new Query.StrictlyMatchingQuery("c", "");
+        assertTrue(detachment.shouldFilter("c"));
+        assertTrue(memory.get(query, memory.size() - 1).isEmpty(), "a detached name does not resolve");
+        assertEquals(2, memory.getLocal(query, memory.size() - 1).orElseThrow().getLeft());
+    }
+
+    @Test
+    void testIndexedLookupsResolveEveryName() {
+        int lines = 500;
+        BraneMemory brane = new BraneMemory(null);
+        Query[] queries = new Query[lines];
+        for (int i = 0; i < lines; i++) {
+            brane.put(createAssignment("name" + i, i));
+            queries[i] = new Query.StrictlyMatchingQuery("name" + i, "");
+        }
+        for (int i = 0; i < lines; i++) {
+            assertEquals(scan(brane, queries[i], lines - 1, false),
+                brane.get(queries[i], lines - 1).map(Pair::getLeft).orElse(-1));
+            assertEquals(scan(brane, queries[i], i - 1, false),
+                brane.get(queries[i], i - 1).map(Pair::getLeft).orElse(-1));
+        }
+    }
 }
@@ -0,0 +1,52 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Timings of the approval inputs under each braneMind scheduler. Not part of the default test run; run with
+ * {@code mvn test -Pbenchmarks}.
+ */
+class BraneMindSchedulerBenchmark {
+
+    private static List<AST.Brane> approvalInputs() throws IOException {
+        List<AST.Brane> branes = new ArrayList<>();
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (program.branes() != null && !program.branes().branes().isEmpty()
+                && program.branes().branes().get(0) instanceof AST.Brane brane) {
+                branes.add(brane);
+            }
+        }
+        return branes;
+    }
+
+    private static long time(List<AST.Brane> inputs, BraneMindScheduler scheduler) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (AST.Brane brane : inputs) {
+                new UnicelluarBraneComputer(brane, scheduler).runToCompletion();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    @Test
+    void schedulersOnApprovalInputs() throws IOException {
+        List<AST.Brane> inputs = approvalInputs();
+        long bfNanos = time(inputs, BraneMindScheduler.BREADTH_FIRST);
+        long ddNanos = time(inputs, BraneMindScheduler.DEPENDENCY_DRIVEN);
+        System.out.printf("braneMind scheduler over %d inputs:%n", inputs.size());
+        System.out.printf("  BREADTH_FIRST     time=%.2fms%n", bfNanos / 1e6);
+        System.out.printf("  DEPENDENCY_DRIVEN time=%.2fms%n", ddNanos / 1e6);
+    }
+}
@@ -0,0 +1,229 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the dependency-driven braneMind scheduler against breadth-first on the approval inputs, and checks
+ * when parked FIRs are woken. Timings are in {@link BraneMindSchedulerBenchmark}.
+ */
+class BraneMindSchedulerTest {
+
+    private record Run(String output, boolean complete, int steps, long iterations) {}
+
+    private static Run run(AST.Brane brane, BraneMindScheduler scheduler) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane, scheduler);
+        int steps = ubc.runToCompletion();
+        String output = new Sequencer4Human().sequence(ubc.getRootBrane());
+        return new Run(output, ubc.isComplete(), steps, ubc.getIterations());
+    }
+
+    private static List<AST.Brane> approvalInputs() throws IOException {
+        List<AST.Brane> branes = new ArrayList<>();
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (program.branes() != null && !program.branes().branes().isEmpty()
+                && program.branes().branes().get(0) instanceof AST.Brane brane) {
+                branes.add(brane);
+            }
+        }
+        return branes;
+    }
+
+    @Test
+    void dependencyDrivenMatchesBreadthFirstOnApprovalInputs() throws IOException {
+        List<AST.Brane> inputs = approvalInputs();
+        assertFalse(inputs.isEmpty(), "approval inputs should be on the test classpath");
+
+        long bfIterations = 0, bfSteps = 0, ddIterations = 0, ddSteps = 0;
+        for (AST.Brane brane : inputs) {
+            Run breadthFirst = run(brane, BraneMindScheduler.BREADTH_FIRST);
+            Run dependencyDriven = run(brane, BraneMindScheduler.DEPENDENCY_DRIVEN);
+            assertEquals(breadthFirst.output(), dependencyDriven.output());
+            assertEquals(breadthFirst.complete(), dependencyDriven.complete());
+            assertEquals(breadthFirst.steps(), dependencyDriven.steps());
+            bfIterations += breadthFirst.iterations();
+            bfSteps += breadthFirst.steps();
+            ddIterations += dependencyDriven.iterations();
+            ddSteps += dependencyDriven.steps();
+        }
+        // The counts over the corpus when waking parked FIRs only on state changes replaced waking them on polls
+        assertEquals(5269, bfIterations);
+        assertEquals(5165, bfSteps);
+        assertEquals(5188, ddIterations);
+        assertEquals(5165, ddSteps);
+    }
+
+    private static ExecutionContext dependencyDriven() {
+        return ExecutionContext.DEFAULT.withScheduler(BraneMindScheduler.DEPENDENCY_DRIVEN);
+    }
+
+    /**
+     * Holds the given FIRs as its lines.
+     */
+    private static final class Lines extends FiroeWithBraneMind {
+        private final FIR[] lines;
+
+        Lines(FIR... lines) {
+            super((AST) null);
+            this.lines = lines;
+        }
+
+        @Override
+        protected void initialize() {
+            setInitialized();
+            storeFirs(lines);
+        }
+    }
+
+    /**
+     * Takes {@code remaining} steps, then is CONSTANT.
+     */
+    private static final class Countdown extends FIR {
+        private int remaining;
+
+        Countdown(int remaining) {
+            super((AST) null);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int step() {
+            if (remaining-- > 0) {
+                if (getNyes() == Nyes.UNINITIALIZED) {
+                    setNyes(Nyes.EVALUATING);
+                }
+                return 1;
+            }
+            setNyes(Nyes.CONSTANT);
+            return 1;
+        }
+    }
+
+    /**
+     * Becomes CONSTANT once its target is, reporting itself blocked on the target until then.
+     */
+    private static final class Waiter extends FIR {
+        private FIR target;
+        private int steps = 0;
+
+        Waiter(FIR target) {
+            super((AST) null);
+            this.target = target;
+        }
+
+        @Override
+        public int step() {
+            steps++;
+            if (getNyes() == Nyes.UNINITIALIZED) {
+                setNyes(Nyes.EVALUATING);
+                return 1;
+            }
+            if (target.isNye()) {
+                return 0;
+            }
+            setNyes(Nyes.CONSTANT);
+            return 1;
+        }
+
+        @Override
+        protected FIR blockedOn() {
+            return target.isNye() ? target : null;
+        }
+    }
+
+    /**
+     * Waits on a child that only it steps.
+     */
+    private static final class SelfStepper extends FIR {
+        private final Countdown child;
+        private int steps = 0;
+
+        SelfStepper(int childSteps) {
+            super((AST) null);
+            child = new Countdown(childSteps);
+            child.setParentFir(this);
+        }
+
+        @Override
+        public int step() {
+            steps++;
+            if (getNyes() == Nyes.UNINITIALIZED) {
+                setNyes(Nyes.EVALUATING);
+                return 1;
+            }
+            if (child.isNye()) {
+                return child.step();
+            }
+            setNyes(Nyes.CONSTANT);
+            return 1;
+        }
+
+        @Override
+        protected FIR blockedOn() {
+            return child.isNye() ? child : null;
+        }
+    }
+
+    @Test
+    void blockedHolderCompletesOnceItsDependencyChanges() {
+        Countdown countdown = new Countdown(50);
+        Waiter waiter = new Waiter(countdown);
+        Lines inner = new Lines(waiter);
+        Lines root = new Lines(countdown, inner);
+        root.context = dependencyDriven();
+
+        boolean sawInnerParked = false;
+        for (int i = 0; i < 1000 && root.isNye(); i++) {
+            root.step();
+            if (countdown.isNye() && inner.parkedOn == countdown) {
+                sawInnerParked = true;
+                assertTrue(inner.isBraneBlocked());
+                assertTrue(inner.isNye());
+            }
+        }
+        assertFalse(root.isNye());
+        assertFalse(inner.isNye());
+        assertTrue(waiter.isConstant());
+        assertTrue(sawInnerParked, "the holder of a parked waiter should be parked in turn");
+        assertTrue(waiter.steps <= 3, "the waiter was polled " + waiter.steps + " times");
+    }
+
+    @Test
+    void dependencySteppedOnlyByItsWaiterIsPolled() {
+        SelfStepper stepper = new SelfStepper(20);
+        Lines root = new Lines(new Lines(stepper));
+        root.context = dependencyDriven();
+
+        for (int i = 0; i < 1000 && root.isNye(); i++) {
+            root.step();
+        }
+        assertFalse(root.isNye(), "parking on a child only the waiter steps would deadlock");
+        assertNull(stepper.parkedIn);
+        assertTrue(stepper.steps > 20);
+    }
+
+    @Test
+    void waitCycleStallsInsteadOfHanging() {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(
+            (AST.Brane) UbcRepl.parse("{ a = 1; b = 2; }").branes().branes().get(0), dependencyDriven());
+        ubc.runToCompletion();
+        Waiter first = new Waiter(null);
+        Waiter second = new Waiter(first);
+        first.target = second;
+        ubc.getRootBrane().restartStatement(1, new Lines(first, second));
+
+        assertEquals(EvaluationStatus.STALLED, ubc.runFor(3L * UnicelluarBraneComputer.STALL_ITERATIONS));
+        assertNotNull(first.parkedIn);
+        assertTrue(first.steps + second.steps < 10, "parked waiters are not polled");
+    }
+}
@@ -0,0 +1,68 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The braneMind ring buffer, and statement indices kept on the child FIR.
+ */
+class BraneMindUnitTest {
+
+    private static FIR[] literals(int count) {
+        FIR[] firs = new FIR[count];
+        for (int i = 0; i < count; i++) {
+            firs[i] = new ValueFiroe(new AST.IntegerLiteral(i), i);
+        }
+        return firs;
+    }
+
+    private static List<FIR> contents(BraneMind mind) {
+        List<FIR> firs = new ArrayList<>();
+        mind.forEach(firs::add);
+        return firs;
+    }
+
+    @Test
+    void keepsQueueOrderAcrossWrapAroundAndGrowth() {
+        FIR[] firs = literals(10);
+        BraneMind mind = new BraneMind();
+        assertThrows(NoSuchElementException.class, mind::getFirst);
+
+        mind.addLast(firs[1]);
+        mind.addLast(firs[2]);
+        mind.addFirst(firs[0]);
+        assertSame(firs[0], mind.removeFirst());
+        for (int i = 3; i < 10; i++) {
+            mind.addLast(firs[i]);
+        }
+        assertEquals(List.of(firs).subList(1, 10), contents(mind));
+
+        List<FIR> removed = mind.removeIf(fir -> ((ValueFiroe) fir).getValue() % 3 == 0);
+        assertEquals(List.of(firs[3], firs[6], firs[9]), removed);
+        assertEquals(List.of(firs[1], firs[2], firs[4], firs[5], firs[7], firs[8]), contents(mind));
+        assertEquals(6, mind.size());
+    }
+
+    @Test
+    void indexSurvivesBeingIndexedByAnotherMemory() {
+        FIR fir = literals(1)[0];
+        BraneMemory first = new BraneMemory(null);
+        BraneMemory second = new BraneMemory(null);
+
+        first.putIndex(fir, 3);
+        second.putIndex(fir, 7);
+        assertEquals(3, first.indexOf(fir));
+        assertEquals(7, second.indexOf(fir));
+
+        first.putIndex(fir, 4);
+        assertEquals(4, first.indexOf(fir));
+        assertEquals(7, second.indexOf(fir));
+        assertEquals(-1, new BraneMemory(null).indexOf(fir));
+    }
+}
@@ -0,0 +1,67 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Timings of characterization queries in large brane memories, through the characterization index and by
+ * scanning. Not part of the default test run; run with {@code mvn test -Pbenchmarks}.
+ */
+class CharacterizationIndexBenchmark {
+
+    private static int scan(BraneMemory brane, Query query, int from) {
+        for (int line = Math.min(from, brane.size() - 1); line >= 0; line--) {
+            if (query.matches(brane.get(line))) return line;
+        }
+        return -1;
+    }
+
+    private static int found(BraneMemory brane, Query query, int from) {
+        return brane.getLocal(query, from).map(found -> found.getLeft()).orElse(-1);
+    }
+
+    /**
+     * Searching a 4096-line brane for its few {@code type'} lines.
+     */
+    @Test
+    void indexedSearches() {
+        int lines = 4096;
+        BraneMemory brane = new BraneMemory(null);
+        for (int i = 0; i < lines; i++) {
+            List<String> characterizations = i % 256 == 0 ? List.of("type") : List.of();
+            brane.put(new AssignmentFiroe(new AST.Assignment(new AST.Identifier(characterizations, "field" + i),
+                new AST.IntegerLiteral(i))));
+        }
+        Query query = new Query.CharacterizationQuery("type");
+        Random random = new Random(25);
+        int[] from = new int[256];
+        for (int i = 0; i < from.length; i++) {
+            from[i] = random.nextInt(lines);
+        }
+
+        long[] indexNanos = new long[5];
+        long[] scanNanos = new long[5];
+        for (int run = 0; run < indexNanos.length; run++) {
+            long start = System.nanoTime();
+            for (int line : from) {
+                assertEquals(line - line % 256, found(brane, query, line));
+            }
+            long middle = System.nanoTime();
+            for (int line : from) {
+                assertEquals(line - line % 256, scan(brane, query, line));
+            }
+            indexNanos[run] = (middle - start) / from.length;
+            scanNanos[run] = (System.nanoTime() - middle) / from.length;
+        }
+        Arrays.sort(indexNanos);
+        Arrays.sort(scanNanos);
+        System.out.printf("%d-line brane, type' search: index %d ns, scan %d ns (medians)%n",
+            lines, indexNanos[2], scanNanos[2]);
+    }
+}
@@ -0,0 +1,105 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Characterization queries and the characterization index of large brane memories.
+ */
+class CharacterizationIndexTest {
+
+    private static final List<List<String>> CHARACTERIZATIONS = List.of(List.of(), List.of("type"),
+        List.of("type", "inner"), List.of("kind"), List.of("types"), List.of("kind", "type"));
+
+    private static AssignmentFiroe assignment(List<String> characterizations, String name, long value) {
+        return new AssignmentFiroe(new AST.Assignment(new AST.Identifier(characterizations, name),
+            new AST.IntegerLiteral(value)));
+    }
+
+    private static int scan(BraneMemory brane, Query query, int from, boolean forward) {
+        if (forward) {
+            for (int line = Math.max(from, 0); line < brane.size(); line++) {
+                if (query.matches(brane.get(line))) return line;
+            }
+        } else {
+            for (int line = Math.min(from, brane.size() - 1); line >= 0; line--) {
+                if (query.matches(brane.get(line))) return line;
+            }
+        }
+        return -1;
+    }
+
+    private static int found(BraneMemory brane, Query query, int from, boolean forward) {
+        return (forward ? brane.getLocalForward(query, from) : brane.getLocal(query, from))
+            .map(found -> found.getLeft()).orElse(-1);
+    }
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    @Test
+    void patternsNamingOnlyACharacterizationBecomeCharacterizationQueries() {
+        assertEquals("type'", ((Query.CharacterizationQuery) Query.forPattern("type'.*")).getCharacterization());
+        assertEquals("a'b'", ((Query.CharacterizationQuery) Query.forPattern("a'b'.*")).getCharacterization());
+        for (String pattern : new String[]{"type.*", "type'x", "'.*", "a''.*", "ty.e'.*", "type'.*$", "^type'.*",
+            "(type)'.*", "type'.+"}) {
+            assertInstanceOf(Query.RegexpQuery.class, Query.forPattern(pattern), pattern);
+        }
+        assertEquals("type'", new Query.CharacterizationQuery("type").getCharacterization());
+        assertEquals("a'b'", new Query.CharacterizationQuery("a'b'").getCharacterization());
+        assertThrows(IllegalArgumentException.class, () -> new Query.CharacterizationQuery(""));
+    }
+
+    @Test
+    void indexedSearchesMatchTheRegexpTheyReplace() {
+        Random random = new Random(25);
+        BraneMemory brane = new BraneMemory(null);
+        for (int i = 0; i < 500; i++) {
+            brane.put(i % 13 == 0 ? new ValueFiroe(i)
+                : assignment(CHARACTERIZATIONS.get(random.nextInt(CHARACTERIZATIONS.size())), "n" + i, i));
+        }
+        String[] patterns = {"type'.*", "type'inner'.*", "kind'.*", "kind'type'.*", "types'.*", "inner'.*"};
+        for (int round = 0; round < 3; round++) {
+            for (String pattern : patterns) {
+                Query query = Query.forPattern(pattern);
+                assertInstanceOf(Query.CharacterizationQuery.class, query);
+                Query regexp = new Query.RegexpQuery(pattern);
+                for (int from = -1; from <= brane.size(); from += 7) {
+                    assertEquals(scan(brane, regexp, from, false), found(brane, query, from, false), pattern + " <= " + from);
+                    assertEquals(scan(brane, regexp, from, true), found(brane, query, from, true), pattern + " >= " + from);
+                }
+            }
+            // Replacing and dropping lines keeps the index in step with the lines
+            for (int i = 0; i < 50; i++) {
+                brane.set(random.nextInt(brane.size()),
+                    assignment(CHARACTERIZATIONS.get(random.nextInt(CHARACTERIZATIONS.size())), "m" + i, i));
+            }
+            brane.removeFirst();
+        }
+    }
+
+    @Test
+    void characterizationSearchesEvaluateAsBefore() {
+        StringBuilder source = new StringBuilder("{ schema = {");
+        for (int i = 0; i < 20; i++) {
+            source.append(" field").append(i).append(" = ").append(i).append(';');
+            source.append(" type'f").append(i).append(" = ").append(100 + i).append(';');
+        }
+        source.append(" kind'type'k = 7; }; last = schema?type'.*; first = schema~type'.*; k = schema?kind'.*;")
+            .append(" none = schema?other'.*; all = schema~~type'.*; second = all#1; }");
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane(source.toString()));
+        ubc.runToCompletion();
+        String output = new Sequencer4Human().sequence(ubc.getRootBrane());
+        assertTrue(output.contains("last = 119;"), output);
+        assertTrue(output.contains("first = 100;"), output);
+        assertTrue(output.contains("k = 7;"), output);
+        assertTrue(output.contains("none = ???;"), output);
+        assertTrue(output.contains("second = 101;"), output);
+    }
+}
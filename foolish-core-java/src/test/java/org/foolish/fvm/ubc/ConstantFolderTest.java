@@ -0,0 +1,90 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.foolish.ast.ConstantFolder;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The AST constant folding pass, and the approval corpus evaluated with it switched on.
+ */
+class ConstantFolderTest {
+
+    private final JavaUbcInterpreter folded = new JavaUbcInterpreter(null, true);
+
+    private static AST.Expr folded(String expr) {
+        AST.Brane brane = (AST.Brane) UbcRepl.parse("{ r = " + expr + "; }", true).branes().branes().get(0);
+        return ((AST.Assignment) brane.statements().get(0)).expr();
+    }
+
+    @Test
+    void foldsLiteralArithmetic() {
+        assertEquals(new AST.IntegerLiteral(14), folded("2 * (3 + 4)"));
+        assertEquals(new AST.IntegerLiteral(-9), folded("-(1 + 2) * 3"));
+        assertEquals(new AST.IntegerLiteral(7), folded("10 - 6 / 2"));
+        assertEquals("(a + 6)", folded("a + 2 * 3").toString());
+    }
+
+    @Test
+    void keepsDivisionByZeroForTheEvaluator() {
+        assertEquals("(2 / 0)", folded("(1 + 1) / (2 - 2)").toString());
+
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(
+            (AST.Brane) UbcRepl.parse("{ a = (1 + 1) / (2 - 2); }", true).branes().branes().get(0));
+        ubc.runToCompletion();
+        assertTrue(new Sequencer4Human().sequence(ubc.getRootBrane()).contains("???"));
+    }
+
+    @Test
+    void leavesOperatorsTheEvaluatorRejects() {
+        assertInstanceOf(AST.UnaryExpr.class, folded("+1"), "unary + is NK in the evaluator");
+    }
+
+    @Test
+    void unchangedTreesKeepTheirIdentity() {
+        AST.Program program = UbcRepl.parse("{ a = 1; b = { c = a + 1; }; d = b.c; }");
+        assertSame(program, ConstantFolder.fold(program));
+    }
+
+    static Stream<Arguments> provideInputFiles() {
+        return UbcApprovalTest.provideInputFiles();
+    }
+
+    /**
+     * Folding may shrink the parsed AST and the step count, but must not change what is computed.
+     */
+    @ParameterizedTest(name = "{index}: {1}")
+    @MethodSource("provideInputFiles")
+    void foldedMatchesApprovedResult(File inputFile, String testName) throws IOException {
+        String code = Files.readString(inputFile.toPath()).trim();
+        String approved = Files.readString(Path.of("src/test/resources/org/foolish/fvm/ubc", testName + ".approved.foo"));
+        String actual = folded.execute(code, inputFile.getName());
+
+        assertEquals(section(approved, "FINAL RESULT:"), section(actual, "FINAL RESULT:"));
+        assertTrue(steps(actual) <= steps(approved), testName);
+    }
+
+    private static String section(String output, String header) {
+        int start = output.indexOf(header);
+        return start < 0 ? output : output.substring(start);
+    }
+
+    private static int steps(String output) {
+        int start = output.indexOf("Steps taken: ");
+        if (start < 0) {
+            return 0;
+        }
+        start += "Steps taken: ".length();
+        return Integer.parseInt(output.substring(start, output.indexOf('\n', start)).trim());
+    }
+}
@@ -0,0 +1,145 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Find-all searches ({@code ??} and {@code ~~}) and the lazily filled branes they evaluate to.
+ */
+class FindAllSearchTest {
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private static UnicelluarBraneComputer run(String source) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane(source));
+        ubc.runToCompletion();
+        return ubc;
+    }
+
+    private static String output(UnicelluarBraneComputer ubc) {
+        return new Sequencer4Human().sequence(ubc.getRootBrane());
+    }
+
+    /**
+     * The result brane of the find-all search assigned at a statement of the root brane.
+     */
+    private static BraneMemory resultOf(UnicelluarBraneComputer ubc, int statement) {
+        AssignmentFiroe assignment = (AssignmentFiroe) ubc.getRootBrane().getMemoryItem(statement);
+        FindAllSearchFiroe search = (FindAllSearchFiroe) assignment.getResult();
+        return (BraneMemory) ((BraneFiroe) search.getResult()).getBraneMemory();
+    }
+
+    private static String many(int lines, String uses) {
+        StringBuilder source = new StringBuilder("{ b = {");
+        for (int i = 0; i < lines; i++) {
+            source.append(" x_").append(i).append(" = ").append(i).append(';');
+        }
+        return source.append(" }; all = b~~x_.*; ").append(uses).append(" }").toString();
+    }
+
+    @Test
+    void findAllCollectsMatchesInSearchOrder() {
+        String output = output(run("{ b = { x_1 = 1; y = 2; x_2 = 3; x_3 = y + 4; };"
+            + " back = b??x_.*; fwd = b~~x_.*; h = back^; f = fwd^; t = fwd$; k = fwd#1; none = b??z.*; m = none^;"
+            + " d = back.x_1; c = (b~~x_.*)~x_[23]; s = back#0 + fwd#0; one = b??y; }"));
+        assertTrue(output.contains("h = 6;"), output);
+        assertTrue(output.contains("f = 1;"), output);
+        assertTrue(output.contains("t = 6;"), output);
+        assertTrue(output.contains("k = 3;"), output);
+        assertTrue(output.contains("m = ???;"), output);
+        assertTrue(output.contains("d = 1;"), output);
+        assertTrue(output.contains("c = 3;"), output);
+        assertTrue(output.contains("s = 7;"), output);
+        // Names print canonicalized and branes indented, so compare what is left of the letters and digits
+        String compact = output.replaceAll("[^A-Za-z0-9=;{}]", "");
+        assertTrue(compact.contains("back={x3=6;x2=3;x1=1;};"), output);
+        assertTrue(compact.contains("fwd={x1=1;x2=3;x3=6;};"), output);
+        assertTrue(compact.contains("one={y=2;};"), output);
+    }
+
+    @Test
+    void resultsAreReadOnlyAsFarAsNeeded() {
+        UnicelluarBraneComputer ubc = run(many(500, "h = all^; k = all#3; f = all~x_2.*;"));
+        BraneMemory result = resultOf(ubc, 1);
+        assertEquals(4, result.linesHeld());
+
+        String output = output(ubc);
+        assertTrue(output.contains("h = 0;"), output);
+        assertTrue(output.contains("k = 3;"), output);
+        assertTrue(output.contains("f = 2;"), output);
+        assertEquals(500, result.linesHeld());
+    }
+
+    @Test
+    void resultsTakeTheStateOfTheirLines() {
+        UnicelluarBraneComputer ubc = run("{ b = { x = zz; y = 1 + 2; }; r = b??x; s = b??y; }");
+        AssignmentFiroe r = (AssignmentFiroe) ubc.getRootBrane().getMemoryItem(1);
+        FindAllSearchFiroe unresolved = (FindAllSearchFiroe) r.getResult();
+        assertTrue(unresolved.getResult().atConstanic());
+        assertTrue(unresolved.atConstanic());
+        assertTrue(r.atConstanic());
+        FindAllSearchFiroe resolved = (FindAllSearchFiroe) ((AssignmentFiroe) ubc.getRootBrane().getMemoryItem(2)).getResult();
+        assertTrue(resolved.getResult().atConstant());
+
+        String output = output(ubc);
+        String compact = output.replaceAll("[^A-Za-z0-9=;{}()]", "");
+        assertTrue(compact.contains("r={x=(CONSTANIC);};"), output);
+        assertTrue(compact.contains("s={y=3;};"), output);
+    }
+
+    @Test
+    void readingAResultsStateDoesNotSettleIt() {
+        UnicelluarBraneComputer ubc = run("{ b = { x_1 = 1; x_2 = 2; }; }");
+        BraneFiroe b = (BraneFiroe) ((AssignmentFiroe) ubc.getRootBrane().getMemoryItem(0)).getResult();
+        AST.Brane search = brane("{ b~~x_.*; }");
+        FindAllSearchFiroe searcher = new FindAllSearchFiroe((AST.RegexpSearchExpr) search.statements().getFirst());
+        FIR result = searcher.executeSearch(searcher.createCursor(b));
+
+        assertTrue(result.isNye());
+        assertTrue(result.isNye(), "only stepping the result settles it");
+        assertEquals(1, result.step());
+        assertTrue(result.atConstant());
+        assertEquals(0, result.step());
+    }
+
+    @Test
+    void halfReadResultsCheckpoint() throws IOException {
+        UnicelluarBraneComputer ubc = run(many(40, "h = all#2;"));
+        assertEquals(3, resultOf(ubc, 1).linesHeld());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ubc.checkpoint(bytes);
+        UnicelluarBraneComputer restored = UnicelluarBraneComputer.restore(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(3, resultOf(restored, 1).linesHeld());
+        assertEquals(output(ubc), output(restored));
+        assertEquals(40, resultOf(restored, 1).linesHeld());
+    }
+
+    @Test
+    void nothingIsFilledUntilTheResultIsRead() {
+        BraneMemory source = new BraneMemory(null);
+        for (int i = 0; i < 4096; i++) {
+            source.put(new AssignmentFiroe(new AST.Assignment(new AST.Identifier("x_" + i), new AST.IntegerLiteral(i))));
+        }
+        BraneMemory result = new BraneMemory(null);
+        result.fillLazily(new SearchCursor.Matches(
+            new SearchCursor.Position(source, 0), "x_.*", true, true, null));
+        assertEquals(0, result.linesHeld());
+        assertSame(source.get(0), result.get(0));
+        assertEquals(1, result.linesHeld());
+        assertTrue(result.hasLine(3));
+        assertEquals(4, result.linesHeld());
+        assertSame(source.get(3), result.get(3));
+        assertEquals(4, result.linesHeld());
+        assertEquals(4096, result.size());
+        assertEquals(4096, result.linesHeld());
+        assertSame(source.get(4095), result.get(4095));
+    }
+}
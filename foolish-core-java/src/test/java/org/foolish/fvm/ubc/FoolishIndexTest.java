@@ -1,5 +1,6 @@
 package org.foolish.fvm.ubc;
 
+import org.foolish.ast.AST;
 import org.junit.jupiter.api.Test;
 import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
@@ -43,11 +44,11 @@ public class FoolishIndexTest {
         //     grandChildBrane (index 2)
         //       stmt3 (index 0)
 
-        BraneFiroe root = new BraneFiroe(null);
-        BraneFiroe childBrane = new BraneFiroe(null);
+        BraneFiroe root = new BraneFiroe((AST) null);
+        BraneFiroe childBrane = new BraneFiroe((AST) null);
         FIR stmt1 = new ValueFiroe(null, 1);
         FIR stmt2 = new ValueFiroe(null, 2);
-        BraneFiroe grandChildBrane = new BraneFiroe(null);
+        BraneFiroe grandChildBrane = new BraneFiroe((AST) null);
         FIR stmt3 = new ValueFiroe(null, 3);
 
         // root contains childBrane
@@ -85,7 +86,7 @@ public class FoolishIndexTest {
         // root
         //   assignment (index 0): a = 1 + 2
 
-        BraneFiroe root = new BraneFiroe(null);
+        BraneFiroe root = new BraneFiroe((AST) null);
         FIR one = new ValueFiroe(null, 1);
         FIR two = new ValueFiroe(null, 2);
         // We can't easily create BinaryFiroe without AST.BinaryExpr, but we can simulate parent relationship.
@@ -105,7 +106,7 @@ public class FoolishIndexTest {
         // BinaryFiroe extends FIR directly? No, usually FiroeWithBraneMind or similar if it evaluates sub-expressions.
         // Let's assume we have a parent FIR 'exprParent' that is FiroeWithBraneMind.
 
-        FiroeWithBraneMind exprParent = new FiroeWithBraneMind(null) {
+        FiroeWithBraneMind exprParent = new FiroeWithBraneMind((AST) null) {
             @Override
             protected void initialize() {}
         };
@@ -0,0 +1,77 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fused Nyes transitions: same results as one step per state, in fewer steps.
+ */
+class FusedTransitionsTest {
+
+    private static final ExecutionContext FUSED = ExecutionContext.DEFAULT.withFusedTransitions(true);
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private record Run(String output, int steps) {}
+
+    private static Run run(AST.Brane brane, ExecutionContext context) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane, context);
+        int steps = ubc.runToCompletion();
+        assertTrue(ubc.isComplete());
+        return new Run(new Sequencer4Human().sequence(ubc.getRootBrane()), steps);
+    }
+
+    @Test
+    void fusedBraneSkipsNoOpSteps() {
+        AST.Brane brane = brane("{ a = 1; b = a + 2; c = { d = b * 3; }; }");
+        Run stepped = run(brane, ExecutionContext.DEFAULT);
+        Run fused = run(brane, FUSED);
+        assertEquals(stepped.output(), fused.output());
+        assertTrue(fused.steps() < stepped.steps(), fused.steps() + " < " + stepped.steps());
+    }
+
+    @Test
+    void fusedTransitionsStillPassThroughEveryState() {
+        List<Nyes> seen = new ArrayList<>();
+        BraneFiroe brane = new BraneFiroe(brane("{ 1; 2; }")) {
+            @Override
+            protected void setNyes(Nyes nyes) {
+                seen.add(nyes);
+                super.setNyes(nyes);
+            }
+        };
+        brane.context = FUSED;
+        assertEquals(1, brane.step());
+        assertEquals(List.of(Nyes.INITIALIZED, Nyes.CHECKED, Nyes.PRIMED, Nyes.EVALUATING), seen);
+    }
+
+    @Test
+    void fusedMatchesSteppedOnApprovalInputs() throws IOException {
+        long steppedSteps = 0, fusedSteps = 0;
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (program.branes() == null || program.branes().branes().isEmpty()
+                || !(program.branes().branes().get(0) instanceof AST.Brane brane)) {
+                continue;
+            }
+            Run stepped = run(brane, ExecutionContext.DEFAULT);
+            Run fused = run(brane, FUSED);
+            assertEquals(stepped.output(), fused.output(), file.getName());
+            steppedSteps += stepped.steps();
+            fusedSteps += fused.steps();
+        }
+        assertEquals(5165, steppedSteps);
+        assertEquals(3342, fusedSteps, "fusing should save about a third of the steps");
+    }
+}
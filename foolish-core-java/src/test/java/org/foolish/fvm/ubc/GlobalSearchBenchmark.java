@@ -0,0 +1,115 @@
+package org.foolish.fvm.ubc;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Timings and allocation of global searches climbing through many parent branes. Not part of the default test run;
+ * run with {@code mvn test -Pbenchmarks}.
+ */
+class GlobalSearchBenchmark {
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Branes nested {@code depth} deep, each binding {@code lines} names, with a {@code target} at the very top.
+     */
+    private static String nested(int depth, int lines) {
+        StringBuilder source = new StringBuilder("{ target = 1;");
+        for (int d = 0; d < depth; d++) {
+            for (int i = 0; i < lines; i++) {
+                source.append(" l").append(d).append('_').append(i).append(" = ").append(i).append(';');
+            }
+            source.append(" n = {");
+        }
+        source.append(" last = 0;");
+        source.append(" };".repeat(depth));
+        return source.append(" }").toString();
+    }
+
+    private static BraneFiroe innermost(UnicelluarBraneComputer ubc) {
+        BraneFiroe brane = ubc.getRootBrane();
+        while (brane.getMemoryItem(brane.getBraneMemory().size() - 1) instanceof AssignmentFiroe assignment
+            && assignment.getResult() instanceof BraneFiroe inner) {
+            brane = inner;
+        }
+        return brane;
+    }
+
+    /**
+     * The search as candidate streams did it: a pair (and cursor) for every line passed, and a matcher per name.
+     */
+    private static FIR streamed(BraneMemory memory, int from, String pattern) {
+        Query.RegexpQuery query = Query.RegexpQuery.of(pattern);
+        List<Stream<Pair<Integer, FIR>>> memories = new ArrayList<>();
+        for (BraneMemory current = memory; current != null; ) {
+            BraneMemory scanned = current;
+            int last = Math.min(from, scanned.size() - 1);
+            memories.add(Stream.iterate(last, line -> line >= 0, line -> line - 1)
+                .map(line -> Pair.of(line, scanned.get(line))));
+            FiroeWithBraneMind parent = current.getParentBrane();
+            from = parent == null ? -1 : current.positionInParent();
+            current = parent == null ? null : (BraneMemory) parent.getBraneMemory();
+        }
+        return memories.stream().flatMap(lines -> lines)
+            .filter(pair -> pair.getRight() instanceof AssignmentFiroe assignment
+                && (query.getPattern().matcher(assignment.getLhs().toString()).find()
+                || query.getPattern().matcher(assignment.getLhs().getId()).find()))
+            .findFirst().map(Pair::getRight).orElse(null);
+    }
+
+    /**
+     * A global search from 32 branes deep for the name at the very top, scanning every line on the way.
+     */
+    @Test
+    void deepGlobalSearches() {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(
+            (AST.Brane) UbcRepl.parse(nested(32, 64)).branes().branes().get(0));
+        ubc.runToCompletion();
+        BraneFiroe inner = innermost(ubc);
+        BraneMemory memory = (BraneMemory) inner.getBraneMemory();
+        FIR target = ubc.getRootBrane().getMemoryItem(0);
+        // No literal prefix, so every memory is scanned
+        Query query = Query.RegexpQuery.of(".*arget");
+        SearchCursor cursor = new SearchCursor(new FoolishCursor(inner, memory.size() - 1), false, true, false);
+
+        long[] cursorNanos = new long[5];
+        long[] streamNanos = new long[5];
+        long[] cursorBytes = new long[5];
+        long[] streamBytes = new long[5];
+        for (int run = 0; run < cursorNanos.length; run++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int repeat = 0; repeat < 50; repeat++) {
+                assertSame(target, cursor.findFirst(query));
+            }
+            cursorNanos[run] = (System.nanoTime() - start) / 50;
+            cursorBytes[run] = (allocatedBytes() - bytes) / 50;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int repeat = 0; repeat < 50; repeat++) {
+                assertSame(target, streamed(memory, memory.size() - 1, ".*arget"));
+            }
+            streamNanos[run] = (System.nanoTime() - start) / 50;
+            streamBytes[run] = (allocatedBytes() - bytes) / 50;
+        }
+        Arrays.sort(cursorNanos);
+        Arrays.sort(streamNanos);
+        Arrays.sort(cursorBytes);
+        Arrays.sort(streamBytes);
+        System.out.printf("global search 32 branes deep: cursor %d ns, %d bytes; streamed %d ns, %d bytes"
+            + " (medians)%n", cursorNanos[2], cursorBytes[2], streamNanos[2], streamBytes[2]);
+    }
+}
@@ -0,0 +1,133 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.foolish.ast.ASTBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Searches that are not brane-bound, going on through the parent branes.
+ */
+class GlobalSearchCursorTest {
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private static UnicelluarBraneComputer run(String source) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane(source));
+        ubc.runToCompletion();
+        return ubc;
+    }
+
+    private static String output(UnicelluarBraneComputer ubc) {
+        return new Sequencer4Human().sequence(ubc.getRootBrane());
+    }
+
+    /**
+     * Branes nested {@code depth} deep, each binding {@code lines} names {@code l<level>_<i>}, with a
+     * {@code target} at the very top.
+     */
+    private static String nested(int depth, int lines) {
+        StringBuilder source = new StringBuilder("{ target = 1;");
+        for (int d = 0; d < depth; d++) {
+            for (int i = 0; i < lines; i++) {
+                source.append(" l").append(d).append('_').append(i).append(" = ").append(i).append(';');
+            }
+            source.append(" n = {");
+        }
+        source.append(" last = 0;");
+        source.append(" };".repeat(depth));
+        return source.append(" }").toString();
+    }
+
+    private static BraneFiroe innermost(UnicelluarBraneComputer ubc) {
+        BraneFiroe brane = ubc.getRootBrane();
+        while (brane.getMemoryItem(brane.getBraneMemory().size() - 1) instanceof AssignmentFiroe assignment
+            && assignment.getResult() instanceof BraneFiroe inner) {
+            brane = inner;
+        }
+        return brane;
+    }
+
+    @Test
+    void globalSearchesClimbThroughParentBranes() {
+        String output = output(run("{ x = 100; y = 200; outer = { a = 10; inner = { b = 20; c = 30; };"
+            + " r1 = (inner??c)^; r2 = (inner??a)^; r3 = (inner??y)^; f = (inner~~z.*)^; z1 = 5;"
+            + " s = (inner??x_all)^; x_all = inner~~x_.*; x_1 = 1; }; x_2 = 2; }"));
+        assertTrue(output.contains("r1 = 30;"), output);
+        assertTrue(output.contains("r2 = 10;"), output);
+        assertTrue(output.contains("r3 = 200;"), output);
+        assertTrue(output.contains("f = 5;"), output);
+        assertTrue(output.contains("s = ???;"), output);
+        // Found after climbing out of inner, past the line holding the search itself
+        String compact = output.replaceAll("[^A-Za-z0-9=;{}]", "");
+        assertTrue(compact.contains("xall={x1=1;x2=2;};"), output);
+    }
+
+    @Test
+    void globalSearchesAgreeWithIdentifierLookup() {
+        UnicelluarBraneComputer ubc = run(nested(6, 10));
+        BraneFiroe inner = innermost(ubc);
+        BraneMemory memory = (BraneMemory) inner.getBraneMemory();
+        for (int d = 0; d < 6; d++) {
+            for (int i = 0; i < 10; i += 3) {
+                String name = ASTBuilder.canonicalizeIdentifierName("l" + d + "_" + i);
+                Query.StrictlyMatchingQuery query = new Query.StrictlyMatchingQuery(name, "");
+                FIR expected = memory.get(query, memory.size() - 1).orElseThrow().getRight();
+                assertSame(expected, new SearchCursor(new FoolishCursor(inner, memory.size() - 1), false, true, false)
+                    .findFirst(query), query.toString());
+                assertSame(expected, new SearchCursor(new FoolishCursor(inner, memory.size() - 1), false, true, false)
+                    .findFirst(Query.RegexpQuery.of(".*" + Pattern.quote(name))), query.toString());
+                assertNull(new SearchCursor(new FoolishCursor(inner, memory.size() - 1), false, true, true)
+                    .findFirst(query));
+            }
+        }
+        Query target = new Query.StrictlyMatchingQuery("target", "");
+        assertSame(ubc.getRootBrane().getMemoryItem(0),
+            new SearchCursor(new FoolishCursor(inner, 0), false, true, false).findFirst(target));
+        assertNull(new SearchCursor(new FoolishCursor(inner, 0), true, true, false).findFirst(target));
+    }
+
+    private static BraneFiroe braneAt(BraneFiroe brane, int statement) {
+        return (BraneFiroe) ((AssignmentFiroe) brane.getMemoryItem(statement)).getResult();
+    }
+
+    private static List<Long> values(Iterator<FIR> matches) {
+        List<Long> values = new ArrayList<>();
+        matches.forEachRemaining(line -> values.add(line.getValue()));
+        return values;
+    }
+
+    @Test
+    void globalMatchesComeInClimbingOrder() {
+        UnicelluarBraneComputer ubc = run("{ x_0 = 0; outer = { x_1 = 1; inner = { x_2 = 2; x_3 = 3; }; x_4 = 4; };"
+            + " x_5 = 5; }");
+        BraneFiroe inner = braneAt(braneAt(ubc.getRootBrane(), 1), 1);
+        int last = inner.getBraneMemory().size() - 1;
+        String pattern = ASTBuilder.canonicalizeIdentifierName("x_.*");
+
+        // Backward: the rest of inner, then each parent from the statement holding the brane left
+        assertEquals(List.of(3L, 2L, 1L, 0L),
+            values(new SearchCursor(new FoolishCursor(inner, last), false, true, false).matches(pattern, null)));
+        // Forward: the rest of inner, then each parent from the statement after the one holding the brane left
+        assertEquals(List.of(2L, 3L, 4L, 5L),
+            values(new SearchCursor(new FoolishCursor(inner, 0), true, true, false).matches(pattern, null)));
+        // Brane-bound searches stay in inner
+        assertEquals(List.of(3L, 2L),
+            values(new SearchCursor(new FoolishCursor(inner, last), false, true, true).matches(pattern, null)));
+
+        Query x4 = Query.RegexpQuery.of(ASTBuilder.canonicalizeIdentifierName("x_4"));
+        assertNull(new SearchCursor(new FoolishCursor(inner, last), false, true, false).findFirst(x4));
+        assertEquals(4, new SearchCursor(new FoolishCursor(inner, 0), true, true, false).findFirst(x4).getValue());
+        Query x0 = Query.RegexpQuery.of(ASTBuilder.canonicalizeIdentifierName("x_0"));
+        assertEquals(0, new SearchCursor(new FoolishCursor(inner, last), false, true, false).findFirst(x0).getValue());
+        assertNull(new SearchCursor(new FoolishCursor(inner, 0), true, true, false).findFirst(x0));
+    }
+}
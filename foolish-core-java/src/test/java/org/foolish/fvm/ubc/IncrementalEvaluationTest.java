@@ -0,0 +1,133 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Incremental re-evaluation: replacing a statement re-steps only the statements that read what it changes.
+ */
+class IncrementalEvaluationTest {
+
+    private static final ExecutionContext INCREMENTAL = ExecutionContext.DEFAULT.withIncremental(true);
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private static AST.Expr statement(String source) {
+        return brane("{ " + source + "; }").statements().get(0);
+    }
+
+    private static String output(UnicelluarBraneComputer ubc) {
+        return new Sequencer4Human().sequence(ubc.getRootBrane());
+    }
+
+    private static UnicelluarBraneComputer evaluated(AST.Brane brane, ExecutionContext context) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane, context);
+        ubc.runToCompletion();
+        assertTrue(ubc.isComplete());
+        return ubc;
+    }
+
+    @Test
+    void reEvaluatesOnlyDependentStatements() {
+        UnicelluarBraneComputer ubc = evaluated(brane("{ a = 1; b = 2; c = b * 3; d = a + 1; }"), INCREMENTAL);
+
+        BitSet invalid = ubc.replaceStatement(0, statement("a = 10"));
+        assertEquals(BitSet.valueOf(new long[]{0b1001}), invalid, "c never looked past b");
+        int steps = ubc.runToCompletion();
+
+        UnicelluarBraneComputer fresh = evaluated(ubc.getSource(), ExecutionContext.DEFAULT);
+        assertEquals(output(fresh), output(ubc));
+        assertTrue(output(ubc).contains("d = 11"), output(ubc));
+        assertTrue(steps < fresh.getStepsTaken(), steps + " < " + fresh.getStepsTaken());
+    }
+
+    @Test
+    void followsDependenciesThroughNestedBranes() {
+        UnicelluarBraneComputer ubc = evaluated(
+            brane("{ a = 1; b = { c = a + 1; }; d = b.c * 2; e = 7; }"), INCREMENTAL);
+
+        BitSet invalid = ubc.replaceStatement(0, statement("a = 5"));
+        assertTrue(invalid.get(1) && invalid.get(2), invalid.toString());
+        assertFalse(invalid.get(3));
+        ubc.runToCompletion();
+        assertEquals(output(evaluated(ubc.getSource(), ExecutionContext.DEFAULT)), output(ubc));
+        assertTrue(output(ubc).contains("d = 12"), output(ubc));
+    }
+
+    @Test
+    void newDefinitionShadowsLaterLookups() {
+        UnicelluarBraneComputer ubc = evaluated(brane("{ x = 1; y = 2; z = x + 1; }"), INCREMENTAL);
+
+        assertTrue(ubc.replaceStatement(1, statement("x = 40")).get(2), "z searched past y");
+        ubc.runToCompletion();
+        assertTrue(output(ubc).contains("z = 41"), output(ubc));
+    }
+
+    @Test
+    void editCostDoesNotGrowWithProgramSize() {
+        StringBuilder source = new StringBuilder("{ base = 2;");
+        for (int i = 0; i < 2000; i++) {
+            source.append(" v").append(i).append(" = ").append(i).append(" * 3;");
+        }
+        UnicelluarBraneComputer ubc = evaluated(brane(source.append(" }").toString()), INCREMENTAL);
+        long fullSteps = ubc.getStepsTaken();
+
+        assertEquals(1, ubc.replaceStatement(1000, statement("v999 = 5 * 5")).cardinality());
+        int steps = ubc.runToCompletion();
+        assertTrue(steps * 100 < fullSteps, steps + " steps to re-evaluate, " + fullSteps + " for the program");
+        assertTrue(output(ubc).contains("v999 = 25"));
+    }
+
+    @Test
+    void requiresAnIncrementalContext() {
+        UnicelluarBraneComputer ubc = evaluated(brane("{ a = 1; }"), ExecutionContext.DEFAULT);
+        assertThrows(IllegalStateException.class, () -> ubc.replaceStatement(0, statement("a = 2")));
+    }
+
+    @Test
+    void onlyTheUnsharedRootIsReopened() {
+        UnicelluarBraneComputer ubc = evaluated(brane("{ a = 1; b = { c = a + 1; }; }"), INCREMENTAL);
+        BraneFiroe nested = (BraneFiroe) ((AssignmentFiroe) ubc.getRootBrane().getMemoryItem(1)).getResult();
+        assertTrue(nested.isConstant());
+        assertThrows(IllegalStateException.class,
+            () -> nested.restartStatement(0, FIR.createFiroeFromExpr(statement("c = 3"))));
+        assertTrue(nested.isConstant());
+
+        FiroeWithBraneMind library = StandardConfiguration.standardLibrary();
+        assertThrows(IllegalStateException.class,
+            () -> library.restartStatement(0, FIR.createFiroeFromExpr(statement("c = 3"))));
+        assertTrue(library.isConstant());
+    }
+
+    /**
+     * Replacing every statement with itself, one at a time, must leave each program as a fresh evaluation does.
+     */
+    @Test
+    void replacingStatementsWithThemselvesMatchesApprovalInputs() throws IOException {
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (program.branes() == null || program.branes().branes().isEmpty()
+                || !(program.branes().branes().get(0) instanceof AST.Brane brane)) {
+                continue;
+            }
+            String expected = output(evaluated(brane, ExecutionContext.DEFAULT));
+            UnicelluarBraneComputer ubc = evaluated(brane, INCREMENTAL);
+            assertEquals(expected, output(ubc), file.getName());
+            for (int i = 0; i < brane.statements().size(); i++) {
+                ubc.replaceStatement(i, brane.statements().get(i));
+                ubc.runToCompletion();
+                assertEquals(expected, output(ubc), file.getName() + " after replacing statement " + i);
+            }
+        }
+    }
+}
@@ -5,11 +5,13 @@ import org.foolish.UbcTester;
 import org.foolish.ast.AST;
 import org.foolish.ast.ASTBuilder;
 import org.foolish.ast.ASTFormatter;
+import org.foolish.ast.ConstantFolder;
 import org.foolish.grammar.FoolishLexer;
 import org.foolish.grammar.FoolishParser;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Java implementation of the UBC tester.
@@ -17,6 +19,29 @@ import java.util.List;
  */
 public class JavaUbcInterpreter implements UbcTester {
 
+    private final ForkJoinPool parallelPool;
+    private final boolean foldConstants;
+
+    public JavaUbcInterpreter() {
+        this(null);
+    }
+
+    /**
+     * @param parallelPool pool for evaluating independent branes in parallel, or null for sequential
+     */
+    public JavaUbcInterpreter(ForkJoinPool parallelPool) {
+        this(parallelPool, false);
+    }
+
+    /**
+     * @param parallelPool  pool for evaluating independent branes in parallel, or null for sequential
+     * @param foldConstants whether to fold literal-only arithmetic with {@link ConstantFolder} before evaluation
+     */
+    public JavaUbcInterpreter(ForkJoinPool parallelPool, boolean foldConstants) {
+        this.parallelPool = parallelPool;
+        this.foldConstants = foldConstants;
+    }
+
     /**
      * Custom error listener that collects parse errors for reporting.
      */
@@ -52,10 +77,9 @@ public class JavaUbcInterpreter implements UbcTester {
      * @return the formatted test output
      */
     public String execute(String code, String filename) {
-        // Set up execution context for error reporting
-        ExecutionContext.setCurrent(new ExecutionContext(filename));
+        // Execution context for error reporting
+        ExecutionContext context = new ExecutionContext(filename).withParallelPool(parallelPool);
 
-        try {
             // Parse the code with error collection
             CharStream input = CharStreams.fromString(code);
             FoolishLexer lexer = new FoolishLexer(input);
@@ -68,6 +92,9 @@ public class JavaUbcInterpreter implements UbcTester {
         parser.addErrorListener(errorCollector);
 
         AST.Program program = (AST.Program) new ASTBuilder().visit(parser.program());
+        if (foldConstants) {
+            program = ConstantFolder.fold(program);
+        }
 
         // Format as complete .foo file
         StringBuilder output = new StringBuilder();
@@ -91,7 +118,7 @@ public class JavaUbcInterpreter implements UbcTester {
         AST.Brane brane = (AST.Brane) program.branes().branes().get(0);
 
         // Create UBC and run
-        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane);
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane, context);
         int stepCount = ubc.runToCompletion();
         BraneFiroe finalResult = ubc.getRootBrane();
 
@@ -110,14 +137,11 @@ public class JavaUbcInterpreter implements UbcTester {
             output.append("\n!!!\n");
 
             return output.toString();
-        } finally {
-            // Clean up execution context
-            ExecutionContext.clearCurrent();
-        }
     }
 
     @Override
     public String getName() {
-        return "Java UBC";
+        String name = parallelPool == null ? "Java UBC" : "Java UBC (parallel)";
+        return foldConstants ? name + " (folded)" : name;
     }
 }
@@ -0,0 +1,35 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Time to copy a large CONSTANIC brane with {@link FIR#cloneConstanic}.
+ * Not part of the default test run; run with {@code mvn test -Pbenchmarks}.
+ */
+class LazyBraneCopyBenchmark {
+
+    @Test
+    void copyingALargeConstanicBrane() {
+        StringBuilder source = new StringBuilder("{ big = { v = missing;");
+        for (int i = 0; i < 2000; i++) {
+            source.append(" { x = v + ").append(i).append("; };");
+        }
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(
+            (AST.Brane) UbcRepl.parse(source.append(" }; }").toString()).branes().branes().get(0));
+        ubc.runToCompletion();
+        BraneFiroe big = (BraneFiroe) ((AssignmentFiroe) ubc.getRootBrane().getMemoryItem(0)).getResult();
+        assertTrue(big.atConstanic());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            big.cloneConstanic(big.getParentFir(), Optional.of(Nyes.CONSTANIC));
+        }
+        System.out.printf("1000 copies of a 2001-line CONSTANIC brane: %d ms%n",
+            (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,70 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * cloneConstanic copies a brane's memory lazily: lines are cloned into the copy's context when first read.
+ */
+class LazyBraneCopyTest {
+
+    private static UnicelluarBraneComputer evaluated(String source) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(
+            (AST.Brane) UbcRepl.parse(source).branes().branes().get(0));
+        ubc.runToCompletion();
+        assertTrue(ubc.isComplete());
+        return ubc;
+    }
+
+    private static FIR statementValue(UnicelluarBraneComputer ubc, int statement) {
+        return ((AssignmentFiroe) ubc.getRootBrane().getMemoryItem(statement)).getResult();
+    }
+
+    private static int uncopiedLines(FIR fir) {
+        return ((BraneMemory) ((FiroeWithBraneMind) fir).getBraneMemory()).uncopiedLines();
+    }
+
+    @Test
+    void copyClonesLinesOnlyWhenRead() {
+        UnicelluarBraneComputer ubc = evaluated("{ big = { v = missing; a = 1; b = v + 1; { d = v; e = 2; }; }; }");
+        BraneFiroe big = (BraneFiroe) statementValue(ubc, 0);
+        assertTrue(big.atConstanic());
+
+        BraneFiroe copy = (BraneFiroe) big.cloneConstanic(ubc.getRootBrane(), Optional.of(Nyes.CONSTANIC));
+        assertEquals(4, uncopiedLines(copy));
+
+        FIR b = copy.memoryGet(new Query.StrictlyMatchingQuery("b", ""), copy.memorySize() - 1).orElseThrow().getRight();
+        assertEquals(3, uncopiedLines(copy), "only the line found was cloned");
+        assertNotSame(big.getMemoryItem(2), b);
+        assertSame(copy, b.getParentFir());
+        assertSame(big, big.getMemoryItem(2).getParentFir());
+        assertSame(b, copy.getMemoryItem(2));
+
+        FIR nested = copy.getMemoryItem(3);
+        assertInstanceOf(BraneFiroe.class, nested);
+        assertEquals(2, uncopiedLines(nested), "a copied brane line is itself a lazy copy");
+        assertSame(big.getMemoryItem(1), copy.getMemoryItem(1), "CONSTANT lines are shared");
+
+        assertEquals(4, copy.stream().count());
+        assertEquals(0, uncopiedLines(copy));
+    }
+
+    @Test
+    void copyingALargeConstanicBraneClonesNoLines() {
+        StringBuilder source = new StringBuilder("{ big = { v = missing;");
+        for (int i = 0; i < 2000; i++) {
+            source.append(" { x = v + ").append(i).append("; };");
+        }
+        BraneFiroe big = (BraneFiroe) statementValue(evaluated(source.append(" }; }").toString()), 0);
+        assertTrue(big.atConstanic());
+
+        BraneFiroe copy = (BraneFiroe) big.cloneConstanic(big.getParentFir(), Optional.of(Nyes.CONSTANIC));
+        assertEquals(2001, uncopiedLines(copy));
+        copy.getMemoryItem(1000);
+        assertEquals(2000, uncopiedLines(copy), "reading one line clones only that line");
+    }
+}
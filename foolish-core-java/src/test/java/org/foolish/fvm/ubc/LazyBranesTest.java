@@ -0,0 +1,100 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lazy branes: the statements of a closed nested brane are evaluated only when something reads them.
+ */
+class LazyBranesTest {
+
+    private static final ExecutionContext LAZY = ExecutionContext.DEFAULT.withLazyBranes(true);
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private static String output(UnicelluarBraneComputer ubc) {
+        return new Sequencer4Human().sequence(ubc.getRootBrane());
+    }
+
+    private static UnicelluarBraneComputer evaluated(AST.Brane brane, ExecutionContext context) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane, context);
+        ubc.runToCompletion();
+        assertTrue(ubc.isComplete());
+        return ubc;
+    }
+
+    private static BraneFiroe valueOf(UnicelluarBraneComputer ubc, int statement) {
+        return (BraneFiroe) ((AssignmentFiroe) ubc.getRootBrane().getMemoryItem(statement)).getResult();
+    }
+
+    private static String library(int members) {
+        StringBuilder source = new StringBuilder("{ lib = { base = 3;");
+        for (int i = 0; i < members; i++) {
+            source.append(" f").append(i).append(" = base * ").append(i).append(" + 1;");
+        }
+        return source.append(" }; r = lib.f7; }").toString();
+    }
+
+    @Test
+    void evaluatesOnlyWhatIsRead() {
+        UnicelluarBraneComputer ubc = evaluated(brane(library(10)), LAZY);
+        assertTrue(output(ubc).contains("r = 22"), output(ubc));
+
+        BraneFiroe lib = valueOf(ubc, 0);
+        assertFalse(lib.getMemoryItem(0).isNye(), "base is read by f7");
+        assertTrue(lib.getMemoryItem(1).isNye(), "f0 is never read");
+        assertFalse(lib.getMemoryItem(8).isNye());
+    }
+
+    @Test
+    void tailAndIdentifiersDemandStatements() {
+        UnicelluarBraneComputer ubc = evaluated(brane("{ b = { a = 1; c = a + 1; }; t = b$; u = { v = 5; }; }"), LAZY);
+        assertTrue(output(ubc).contains("t = 2"), output(ubc));
+        assertTrue(valueOf(ubc, 2).getMemoryItem(0).isNye(), "nothing reads u");
+    }
+
+    @Test
+    void openBranesAreEvaluatedInFull() {
+        UnicelluarBraneComputer ubc = evaluated(brane("{ k = 2; b = { x = k; y = 3; }; }"), LAZY);
+        assertFalse(valueOf(ubc, 1).getMemoryItem(1).isNye(), "b reads k from outside, so it is not lazy");
+    }
+
+    @Test
+    void costFollowsUseNotLibrarySize() {
+        AST.Brane program = brane(library(2000));
+        UnicelluarBraneComputer eager = evaluated(program, ExecutionContext.DEFAULT);
+        UnicelluarBraneComputer lazy = evaluated(program, LAZY);
+        assertEquals(36034, eager.getStepsTaken());
+        assertEquals(55, lazy.getStepsTaken());
+        assertEquals(lazy.getStepsTaken(), evaluated(brane(library(20)), LAZY).getStepsTaken(),
+            "a hundredth of the library should cost the same");
+
+        lazy.demandAll();
+        assertEquals(output(eager), output(lazy));
+    }
+
+    @Test
+    void demandAllMatchesEagerOnApprovalInputs() throws IOException {
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (program.branes() == null || program.branes().branes().isEmpty()
+                || !(program.branes().branes().get(0) instanceof AST.Brane brane)) {
+                continue;
+            }
+            UnicelluarBraneComputer eager = new UnicelluarBraneComputer(brane, ExecutionContext.DEFAULT);
+            eager.demandAll();
+            UnicelluarBraneComputer lazy = new UnicelluarBraneComputer(brane, LAZY);
+            lazy.demandAll();
+            assertEquals(output(eager), output(lazy), file.getName());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.foolish.ast.ASTBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Identifiers resolved through static lexical addresses rather than by searching brane memories.
+ */
+class LexicalAddressingTest {
+
+    private static final ExecutionContext SEARCHING = ExecutionContext.DEFAULT.withLexicalAddressing(false);
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private static UnicelluarBraneComputer run(String source, ExecutionContext context) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane(source), context);
+        ubc.runToCompletion();
+        return ubc;
+    }
+
+    private static String output(UnicelluarBraneComputer ubc) {
+        return new Sequencer4Human().sequence(ubc.getRootBrane());
+    }
+
+    /**
+     * Every identifier FIR reachable from the root brane, each once.
+     */
+    private static List<IdentifierFiroe> identifiers(UnicelluarBraneComputer ubc) {
+        List<IdentifierFiroe> found = new ArrayList<>();
+        collect(ubc.getRootBrane(), found, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return found;
+    }
+
+    private static void collect(FIR fir, List<IdentifierFiroe> found, Set<FIR> seen) {
+        if (fir == null || !seen.add(fir)) {
+            return;
+        }
+        if (fir instanceof IdentifierFiroe identifier) {
+            found.add(identifier);
+        } else if (fir instanceof FiroeWithBraneMind holder) {
+            for (int i = 0; i < holder.memorySize(); i++) {
+                collect(holder.getMemoryItem(i), found, seen);
+            }
+        }
+    }
+
+    private static IdentifierFiroe identifier(UnicelluarBraneComputer ubc, String text) {
+        return identifiers(ubc).stream().filter(i -> i.toString().equals(text)).findFirst().orElseThrow();
+    }
+
+    private static String nested(int depth, int statements) {
+        StringBuilder source = new StringBuilder("{ a0 = 1; a1 = 2; a2 = 3; a3 = 4; a4 = 5; a5 = 6;");
+        for (int d = 0; d < depth; d++) {
+            source.append(" n").append(d).append(" = {");
+        }
+        for (int i = 0; i < statements; i++) {
+            source.append(" r").append(i).append(" = a").append(i % 6).append(" + a").append(5 - i % 6).append(';');
+        }
+        source.append(" };".repeat(depth));
+        return source.append(" }").toString();
+    }
+
+    @Test
+    void approvalInputsEvaluateTheSame() throws IOException {
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (!(program.branes().branes().getFirst() instanceof AST.Brane root)) {
+                continue;
+            }
+            UnicelluarBraneComputer addressed = new UnicelluarBraneComputer(root);
+            UnicelluarBraneComputer searched = new UnicelluarBraneComputer(root, SEARCHING);
+            addressed.runToCompletion();
+            searched.runToCompletion();
+            assertEquals(output(searched), output(addressed), file.getName());
+            assertEquals(searched.getStepsTaken(), addressed.getStepsTaken(), file.getName());
+        }
+    }
+
+    @Test
+    void addressesFollowTheSearchRule() {
+        UnicelluarBraneComputer ubc = run(
+            "{ a = 1; b = { a = 2; c = a; d = { e = a + f; }; f = 3; }; g = a; a = 5; h = a; k = b.c; }",
+            ExecutionContext.DEFAULT);
+        String output = output(ubc);
+        assertTrue(output.contains("c = 2;"), output);
+        assertTrue(output.contains("g = 1;"), output);
+        assertTrue(output.contains("h = 5;"), output);
+        assertTrue(output.contains("k = 2;"), output);
+        assertEquals(output(run("{ a = 1; b = { a = 2; c = a; d = { e = a + f; }; f = 3; }; g = a; a = 5; h = a; k = b.c; }",
+            SEARCHING)), output);
+
+        for (IdentifierFiroe identifier : identifiers(ubc)) {
+            if (!identifier.toString().equals("f")) {
+                assertNotNull(identifier.getLexicalAddress(), identifier.toString());
+            }
+        }
+        assertNull(identifier(ubc, "f").getLexicalAddress());
+        LexicalScope.Address nestedA = identifiers(ubc).stream()
+            .filter(i -> i.toString().equals("a") && i.getLexicalAddress().depth() == 1)
+            .findFirst().orElseThrow().getLexicalAddress();
+        assertEquals(0, nestedA.index());
+        assertEquals(0, identifier(ubc, "b").getLexicalAddress().depth());
+        assertEquals(1, identifier(ubc, "b").getLexicalAddress().index());
+    }
+
+    @Test
+    void dynamicContextsAreSearched() {
+        String source = "{ x = 1; j = { y = x; } { z = y + x; }; l = ALARM_LEVELS.MILD; m = missing; n = j; }";
+        UnicelluarBraneComputer ubc = run(source, ExecutionContext.DEFAULT);
+        assertEquals(output(run(source, SEARCHING)), output(ubc));
+        assertTrue(output(ubc).contains("z = 2;"), output(ubc));
+        assertNull(identifier(ubc, "y").getLexicalAddress());
+        assertNull(identifier(ubc, ASTBuilder.canonicalizeIdentifierName("ALARM_LEVELS")).getLexicalAddress());
+        assertNull(identifier(ubc, "missing").getLexicalAddress());
+        assertNotNull(identifier(ubc, "j").getLexicalAddress());
+    }
+
+    @Test
+    void trackedRootsAreSearched() {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane("{ a = 1; b = a + 1; c = { d = b; }; }"),
+            ExecutionContext.DEFAULT.withIncremental(true));
+        ubc.runToCompletion();
+        ubc.replaceStatement(0, brane("{ a = 10; }").statements().getFirst());
+        ubc.runToCompletion();
+        String output = output(ubc);
+        assertTrue(output.contains("b = 11;"), output);
+        assertTrue(output.contains("d = 11;"), output);
+    }
+
+    @Test
+    void addressedLookupsFindWhatSearchingFinds() {
+        UnicelluarBraneComputer ubc = run(nested(12, 200), ExecutionContext.DEFAULT);
+        List<IdentifierFiroe> identifiers = identifiers(ubc);
+        assertEquals(400, identifiers.size());
+        for (IdentifierFiroe identifier : identifiers) {
+            assertNotNull(identifier.getLexicalAddress(), identifier.toString());
+            // Where the search goes once the identifier's own memory, empty until it resolves, misses
+            FIR searched = identifier.memoryParent().memoryGet((Query) identifier.getIdentifier(),
+                identifier.getMyBraneStatementNumber()).orElseThrow().getRight();
+            assertSame(searched, identifier.getLexicalAddress().find(identifier), identifier.toString());
+        }
+    }
+}
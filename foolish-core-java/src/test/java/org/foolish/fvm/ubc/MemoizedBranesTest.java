@@ -0,0 +1,91 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Memoized closed branes: structurally equal brane literals are evaluated once and share the result.
+ */
+class MemoizedBranesTest {
+
+    private static final ExecutionContext MEMOIZED = ExecutionContext.DEFAULT.withMemoizedBranes(true);
+    private static final String CONFIG = "{ x = 1; y = x * 2; z = { w = y + 3; }; }";
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private record Run(UnicelluarBraneComputer ubc, String output, int steps) {
+        BraneMemo memo() {
+            return ubc.getExecutionContext().getBraneMemo();
+        }
+    }
+
+    private static Run run(AST.Brane brane, ExecutionContext context) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane, context);
+        int steps = ubc.runToCompletion();
+        assertTrue(ubc.isComplete());
+        return new Run(ubc, new Sequencer4Human().sequence(ubc.getRootBrane()), steps);
+    }
+
+    private static BraneFiroe valueOf(UnicelluarBraneComputer ubc, int statement) {
+        AssignmentFiroe assignment = (AssignmentFiroe) ubc.getRootBrane().getMemoryItem(statement);
+        return (BraneFiroe) assignment.getResult();
+    }
+
+    @Test
+    void repeatedBraneLiteralsAreEvaluatedOnce() {
+        AST.Brane brane = brane("{ a = " + CONFIG + "; b = " + CONFIG + "; c = " + CONFIG + "; }");
+        Run plain = run(brane, ExecutionContext.DEFAULT);
+        Run memoized = run(brane, MEMOIZED);
+
+        assertEquals(plain.output(), memoized.output());
+        assertTrue(memoized.steps() < plain.steps(), memoized.steps() + " < " + plain.steps());
+        // The inner { w = y + 3; } reads y from outside, so only the whole literals are memoized
+        assertEquals(2, memoized.memo().hits());
+        assertSame(valueOf(memoized.ubc(), 0).getMemoryItem(2), valueOf(memoized.ubc(), 2).getMemoryItem(2));
+    }
+
+    @Test
+    void branesReadingOutsideThemselvesAreNotMemoized() {
+        Run memoized = run(brane("{ k = 1; a = { x = k; }; b = { x = k; }; k = 2; c = { x = k; }; }"), MEMOIZED);
+        assertEquals(0, memoized.memo().hits());
+        assertTrue(memoized.output().contains("x = 2"), memoized.output());
+    }
+
+    @Test
+    void eachComputerHasItsOwnTable() {
+        AST.Brane brane = brane("{ a = " + CONFIG + "; b = " + CONFIG + "; }");
+        assertNotSame(run(brane, MEMOIZED).memo(), run(brane, MEMOIZED).memo());
+    }
+
+    @Test
+    void memoizedMatchesPlainOnApprovalInputs() throws IOException {
+        long plainSteps = 0, memoizedSteps = 0, hits = 0;
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (program.branes() == null || program.branes().branes().isEmpty()
+                || !(program.branes().branes().get(0) instanceof AST.Brane brane)) {
+                continue;
+            }
+            Run plain = run(brane, ExecutionContext.DEFAULT);
+            Run memoized = run(brane, MEMOIZED);
+            assertEquals(plain.output(), memoized.output(), file.getName());
+            assertTrue(memoized.steps() <= plain.steps(), file.getName());
+            plainSteps += plain.steps();
+            memoizedSteps += memoized.steps();
+            // Programs with concatenation run unmemoized
+            hits += memoized.memo() == null ? 0 : memoized.memo().hits();
+        }
+        assertEquals(5165, plainSteps);
+        assertEquals(4942, memoizedSteps);
+        assertEquals(8, hits);
+    }
+}
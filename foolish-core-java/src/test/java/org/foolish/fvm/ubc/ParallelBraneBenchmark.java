@@ -0,0 +1,68 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Timings of a wide brane of independent sub-branes evaluated sequentially and in parallel. Not part of the
+ * default test run; run with {@code mvn test -Pbenchmarks}.
+ */
+class ParallelBraneBenchmark {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutdownPool() {
+        POOL.shutdown();
+    }
+
+    /**
+     * A wide brane of independent sub-branes, each doing some arithmetic over its own names.
+     */
+    private static String wideBrane(int width, int depth) {
+        StringBuilder sb = new StringBuilder("{\n");
+        for (int i = 0; i < width; i++) {
+            sb.append("  b").append(i).append(" = {\n    v0 = ").append(i).append(";\n");
+            for (int d = 1; d < depth; d++) {
+                sb.append("    v").append(d).append(" = v").append(d - 1).append(" * 3 - v").append(d - 1)
+                    .append(" * 2 + ").append(d).append(";\n");
+            }
+            sb.append("    inner = { w = 1; u = w + 2; };\n");
+            sb.append("  };\n");
+        }
+        return sb.append("}").toString();
+    }
+
+    private static String run(AST.Brane brane, ForkJoinPool pool) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane);
+        ubc.setParallelBranes(pool);
+        ubc.runToCompletion();
+        assertTrue(ubc.isComplete());
+        return new Sequencer4Human().sequence(ubc.getRootBrane());
+    }
+
+    private static long bestOf(AST.Brane brane, ForkJoinPool pool) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            run(brane, pool);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    @Test
+    void sequentialAndParallel() {
+        AST.Brane wide = (AST.Brane) UbcRepl.parse(wideBrane(24, 60)).branes().branes().get(0);
+        assertEquals(run(wide, null), run(wide, POOL));
+        long sequential = bestOf(wide, null);
+        long parallel = bestOf(wide, POOL);
+        System.out.printf("wide brane (24 x 60): sequential=%.2fms parallel(%d)=%.2fms%n",
+            sequential / 1e6, POOL.getParallelism(), parallel / 1e6);
+    }
+}
@@ -0,0 +1,86 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parallel evaluation of independent child branes: closure analysis and equivalence with sequential mode.
+ */
+class ParallelBraneUnitTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    @AfterAll
+    static void shutdownPool() {
+        POOL.shutdown();
+    }
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private static AST.Expr statement(String source, int index) {
+        return brane(source).statements().get(index);
+    }
+
+    /**
+     * A wide brane of independent sub-branes, each doing some arithmetic over its own names.
+     */
+    private static String wideBrane(int width, int depth) {
+        StringBuilder sb = new StringBuilder("{\n");
+        for (int i = 0; i < width; i++) {
+            sb.append("  b").append(i).append(" = {\n    v0 = ").append(i).append(";\n");
+            for (int d = 1; d < depth; d++) {
+                sb.append("    v").append(d).append(" = v").append(d - 1).append(" * 3 - v").append(d - 1)
+                    .append(" * 2 + ").append(d).append(";\n");
+            }
+            sb.append("    inner = { w = 1; u = w + 2; };\n");
+            sb.append("  };\n");
+        }
+        return sb.append("}").toString();
+    }
+
+    private record Result(String output, int steps) {}
+
+    private static Result run(AST.Brane brane, ForkJoinPool pool) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane);
+        ubc.setParallelBranes(pool);
+        int steps = ubc.runToCompletion();
+        assertTrue(ubc.isComplete());
+        return new Result(new Sequencer4Human().sequence(ubc.getRootBrane()), steps);
+    }
+
+    @Test
+    void closureFollowsBraneScoping() {
+        assertTrue(AstClosure.isClosed(statement("{ a = { x = 1; y = x + 2; }; }", 0)));
+        assertTrue(AstClosure.isClosed(statement("{ a = { x = 1; b = { y = x; }; }; }", 0)));
+        assertTrue(AstClosure.isClosed(statement("{ a = { x = 1; }.x; }", 0)));
+        assertFalse(AstClosure.isClosed(statement("{ a = { y = x; x = 1; }; }", 0)), "x is assigned after use");
+        assertFalse(AstClosure.isClosed(statement("{ x = 1; a = { y = x; }; }", 1)), "x lives in the parent");
+        assertFalse(AstClosure.isClosed(statement("{ a = { y = ↑; }; }", 0)));
+        assertFalse(AstClosure.isClosed(statement("{ a = { x = 1; y = #-1; }; }", 0)));
+    }
+
+    @Test
+    void wideBraneMatchesSequential() {
+        AST.Brane wide = brane(wideBrane(16, 40));
+        Result sequential = run(wide, null);
+        Result parallel = run(wide, POOL);
+        assertEquals(sequential.output(), parallel.output());
+        assertEquals(sequential.steps(), parallel.steps());
+    }
+
+    @Test
+    void dependentSiblingsStaySequential() {
+        AST.Brane dependent = brane("{ a = { x = 1; }; b = { y = 2; }; c = a.x + b.y; }");
+        Result sequential = run(dependent, null);
+        Result parallel = run(dependent, POOL);
+        assertEquals(sequential.output(), parallel.output());
+        assertEquals(sequential.steps(), parallel.steps());
+    }
+}
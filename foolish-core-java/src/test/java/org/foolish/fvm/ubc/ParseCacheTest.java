@@ -0,0 +1,116 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.foolish.ast.CompiledProgram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The {@code .fooc} compiled program format, and the parse cache keyed by source content that uses it.
+ */
+class ParseCacheTest {
+
+    private static String syntheticSource(int members) {
+        StringBuilder source = new StringBuilder("{\n  base = 3;\n");
+        for (int i = 0; i < members; i++) {
+            source.append("  f").append(i).append(" = { x'px = base * ").append(i).append("; y = x'px - -7; }.y;\n");
+        }
+        return source.append("  t = if f3 then f1 elif f2 then f0 else ???;\n  s = { a = 1; }?a;\n}\n").toString();
+    }
+
+    @Test
+    void compiledProgramsRoundTripApprovalInputs() throws IOException {
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program parsed = UbcRepl.parse(Files.readString(file.toPath()));
+            AST.Program loaded = CompiledProgram.read(ByteBuffer.wrap(CompiledProgram.toBytes(parsed)));
+            assertEquals(parsed, loaded, file.getName());
+            assertEquals(parsed.toString(), loaded.toString(), file.getName());
+        }
+    }
+
+    @Test
+    void loadedProgramsEvaluateTheSame() throws IOException {
+        AST.Program parsed = UbcRepl.parse("{ base = 3; f = { x'px = base * 2; y = x'px - -7; }.y; s = { a = 1; }?a; }");
+        AST.Program loaded = CompiledProgram.read(ByteBuffer.wrap(CompiledProgram.toBytes(parsed)));
+        assertEquals(parsed, loaded);
+        UnicelluarBraneComputer fromSource = new UnicelluarBraneComputer((AST.Brane) parsed.branes().branes().get(0));
+        UnicelluarBraneComputer fromBinary = new UnicelluarBraneComputer((AST.Brane) loaded.branes().branes().get(0));
+        fromSource.runToCompletion();
+        fromBinary.runToCompletion();
+        assertEquals(new Sequencer4Human().sequence(fromSource.getRootBrane()),
+            new Sequencer4Human().sequence(fromBinary.getRootBrane()));
+        assertEquals(fromSource.getStepsTaken(), fromBinary.getStepsTaken());
+    }
+
+    @Test
+    void unchangedSourceSkipsParsing(@TempDir Path directory) throws IOException {
+        ParseCache cache = new ParseCache(directory);
+        String source = syntheticSource(5);
+        AST.Program first = cache.parse(source);
+        assertTrue(Files.isRegularFile(cache.entryFor(source)));
+        AST.Program second = new ParseCache(directory).parse(source);
+        assertEquals(first, second);
+
+        ParseCache again = new ParseCache(directory);
+        again.parse(source);
+        again.parse(source + " ");
+        assertEquals(1, again.getHits());
+        assertEquals(1, again.getMisses());
+        assertEquals(UbcRepl.parse(source, true), again.parse(source, true));
+    }
+
+    @Test
+    void unreadableEntriesAreReplaced(@TempDir Path directory) throws IOException {
+        ParseCache cache = new ParseCache(directory);
+        String source = "{ a = 1; b = a + 2; }";
+        Files.write(cache.entryFor(source), new byte[]{0x46, 0x4F, 0x4F, 0x43, 99});
+        assertEquals(UbcRepl.parse(source), cache.parse(source));
+        assertEquals(0, cache.getHits());
+        assertEquals(UbcRepl.parse(source), CompiledProgram.load(cache.entryFor(source)));
+
+        assertThrows(IOException.class, () -> CompiledProgram.read(ByteBuffer.wrap("{ a = 1; }".getBytes())));
+        byte[] truncated = CompiledProgram.toBytes(UbcRepl.parse(source));
+        assertThrows(IOException.class,
+            () -> CompiledProgram.read(ByteBuffer.wrap(Arrays.copyOf(truncated, truncated.length - 3))));
+    }
+
+    @Test
+    void sourcesWithSyntaxErrorsAreNotCached(@TempDir Path directory) throws IOException {
+        ParseCache cache = new ParseCache(directory);
+        String source = "{ a = ; b = 2; }";
+        cache.parse(source);
+        assertFalse(Files.exists(cache.entryFor(source)));
+    }
+
+    @Test
+    void cachedProgramsAreLoadedNotReparsed(@TempDir Path directory) throws IOException {
+        String source = syntheticSource(50);
+        ParseCache cache = new ParseCache(directory);
+        assertEquals(UbcRepl.parse(source), cache.parse(source));
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // Swap in the compiled form of another program: only a load, not a parse, returns it
+        AST.Program standIn = UbcRepl.parse("{ standIn = 1; }");
+        Files.write(cache.entryFor(source), CompiledProgram.toBytes(standIn));
+        assertEquals(standIn, cache.parse(source));
+        assertEquals(1, cache.getHits());
+
+        String changed = source.replace("base = 3;", "base = 4;");
+        assertNotEquals(cache.entryFor(source), cache.entryFor(changed));
+        assertEquals(UbcRepl.parse(changed), cache.parse(changed));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertTrue(Files.isRegularFile(cache.entryFor(changed)));
+    }
+}
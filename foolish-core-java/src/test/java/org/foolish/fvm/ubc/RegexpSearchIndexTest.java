@@ -0,0 +1,135 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Regexp searches through shared compiled queries and the name trie of large brane memories.
+ */
+class RegexpSearchIndexTest {
+
+    private static final String[] STEMS = {"config_", "conf", "cache_", "b", "value", "config_x", "c"};
+
+    private static AssignmentFiroe assignment(String name, String characterization, long value) {
+        List<String> characterizations = characterization.isEmpty() ? List.of() : List.of(characterization);
+        return new AssignmentFiroe(new AST.Assignment(new AST.Identifier(characterizations, name),
+            new AST.IntegerLiteral(value)));
+    }
+
+    private static int scan(BraneMemory brane, Query query, int from, boolean forward) {
+        if (forward) {
+            for (int line = Math.max(from, 0); line < brane.size(); line++) {
+                if (query.matches(brane.get(line))) return line;
+            }
+        } else {
+            for (int line = Math.min(from, brane.size() - 1); line >= 0; line--) {
+                if (query.matches(brane.get(line))) return line;
+            }
+        }
+        return -1;
+    }
+
+    private static int found(BraneMemory brane, Query query, int from, boolean forward) {
+        return (forward ? brane.getLocalForward(query, from) : brane.getLocal(query, from))
+            .map(found -> found.getLeft()).orElse(-1);
+    }
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    @Test
+    void literalPrefixes() {
+        assertEquals("config_", Query.RegexpQuery.of("config_.*").getLiteralPrefix());
+        assertEquals("config_", Query.RegexpQuery.of("^config_\\d+").getLiteralPrefix());
+        assertEquals("abc", Query.RegexpQuery.of("abc").getLiteralPrefix());
+        assertEquals("ab", Query.RegexpQuery.of("abc?d").getLiteralPrefix());
+        assertEquals("ab", Query.RegexpQuery.of("abc*").getLiteralPrefix());
+        assertEquals("abc", Query.RegexpQuery.of("abc+").getLiteralPrefix());
+        assertEquals("", Query.RegexpQuery.of("a{0,2}b").getLiteralPrefix());
+        assertEquals("", Query.RegexpQuery.of("config_.*$").getLiteralPrefix());
+        assertEquals("", Query.RegexpQuery.of("ab|cd").getLiteralPrefix());
+        assertEquals("", Query.RegexpQuery.of(".*_config").getLiteralPrefix());
+        assertEquals("", Query.RegexpQuery.of("(?i)config").getLiteralPrefix());
+        assertEquals("", Query.RegexpQuery.of("\\w+").getLiteralPrefix());
+    }
+
+    @Test
+    void compiledQueriesAreSharedAndBounded() {
+        Query.RegexpQuery query = Query.RegexpQuery.of("shared_.*");
+        assertSame(query, Query.RegexpQuery.of("shared_.*"));
+        for (int i = 0; i < 2 * Query.RegexpQuery.CACHED_PATTERNS; i++) {
+            Query.RegexpQuery.of("pattern_" + i + ".*");
+        }
+        assertTrue(Query.RegexpQuery.cached() <= Query.RegexpQuery.CACHED_PATTERNS);
+        assertNotSame(query, Query.RegexpQuery.of("shared_.*"));
+        assertEquals(query.getPattern().pattern(), Query.RegexpQuery.of("shared_.*").getPattern().pattern());
+    }
+
+    @Test
+    void trieSearchesMatchScanning() {
+        Random random = new Random(21);
+        BraneMemory brane = new BraneMemory(null);
+        for (int i = 0; i < 600; i++) {
+            String name = STEMS[random.nextInt(STEMS.length)] + (random.nextBoolean() ? "" : random.nextInt(40));
+            brane.put(i % 11 == 0 ? new ValueFiroe(i)
+                : assignment(name, random.nextInt(4) == 0 ? "type" : "", i));
+        }
+        String[] patterns = {"config_.*", "conf.*", "config_1.?", "^config_x", "c", "b\\d+", "type'conf.*",
+            "^typ.*", "cache_3+", "value.*", "config_.*5$", ".*_1", "b|c"};
+        for (int round = 0; round < 3; round++) {
+            for (String pattern : patterns) {
+                Query query = Query.RegexpQuery.of(pattern);
+                for (int from = -1; from <= brane.size(); from += 7) {
+                    assertEquals(scan(brane, query, from, false), found(brane, query, from, false), pattern + " <= " + from);
+                    assertEquals(scan(brane, query, from, true), found(brane, query, from, true), pattern + " >= " + from);
+                }
+            }
+            // Replacing and dropping lines keeps the trie in step with the lines
+            for (int i = 0; i < 50; i++) {
+                brane.set(random.nextInt(brane.size()), assignment(STEMS[random.nextInt(STEMS.length)]
+                    + random.nextInt(40), random.nextBoolean() ? "type" : "", i));
+            }
+            brane.removeFirst();
+        }
+    }
+
+    @Test
+    void searchesEvaluateAsBefore() {
+        StringBuilder source = new StringBuilder("{ b = {");
+        for (int i = 0; i < 40; i++) {
+            source.append(" value").append(i).append(" = ").append(i).append(';');
+            source.append(" config_").append(i).append(" = ").append(100 + i).append(';');
+        }
+        source.append(" }; last = b?config_.*; first = b~config_.*; one = b?config_1; none = b?configx.*;")
+            .append(" digits = b?value3.; }");
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane(source.toString()));
+        ubc.runToCompletion();
+        String output = new Sequencer4Human().sequence(ubc.getRootBrane());
+        assertTrue(output.contains("last = 139;"), output);
+        assertTrue(output.contains("first = 100;"), output);
+        assertTrue(output.contains("one = 101;"), output);
+        assertTrue(output.contains("none = ???;"), output);
+        assertTrue(output.contains("digits = 39;"), output);
+    }
+
+    @Test
+    void sparseTrieSearchesMatchAFullScan() {
+        int lines = 1024;
+        BraneMemory brane = new BraneMemory(null);
+        for (int i = 0; i < lines; i++) {
+            brane.put(assignment((i % 64 == 0 ? "config_" : "setting_") + i, "", i));
+        }
+        Query query = Query.RegexpQuery.of("config_.*");
+        assertSame(query, Query.RegexpQuery.of("config_.*"));
+        for (int from = -1; from <= lines; from += 5) {
+            assertEquals(scan(brane, query, from, false), found(brane, query, from, false), "<= " + from);
+            assertEquals(scan(brane, query, from, true), found(brane, query, from, true), ">= " + from);
+        }
+    }
+}
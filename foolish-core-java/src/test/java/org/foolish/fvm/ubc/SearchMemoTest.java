@@ -0,0 +1,104 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.foolish.ast.SearchOperator;
+import org.junit.jupiter.api.Test;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Repeated brane-bound searches of CONSTANT branes answered from the context's {@link SearchMemo}.
+ */
+class SearchMemoTest {
+
+    private static final String PROGRAM = "{ cfg = { port = 80; host = 7; proxy_port = 8080; };"
+        + " a = cfg.port; b = cfg.port; c = cfg?.*port; d = cfg?.*port; e = cfg~p.*; f = cfg~p.*;"
+        + " g = cfg.nope; h = cfg.nope; i = (cfg??.*port)^; j = (cfg??.*port)^; }";
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private static String run(String source, ExecutionContext context) {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane(source), context);
+        ubc.runToCompletion();
+        return new Sequencer4Human().sequence(ubc.getRootBrane());
+    }
+
+    @Test
+    void repeatedSearchesOfAConstantBraneAreMemoized() {
+        SearchMemo memo = new SearchMemo();
+        String output = run(PROGRAM, ExecutionContext.DEFAULT.withSearchMemo(memo));
+        assertTrue(output.contains("a = 80;"), output);
+        assertTrue(output.contains("b = 80;"), output);
+        assertTrue(output.contains("c = 8080;"), output);
+        assertTrue(output.contains("d = 8080;"), output);
+        assertTrue(output.contains("e = 80;"), output);
+        assertTrue(output.contains("f = 80;"), output);
+        assertTrue(output.contains("g = ???;"), output);
+        assertTrue(output.contains("h = ???;"), output);
+        assertTrue(output.contains("j = 8080;"), output);
+        // Four distinct brane-bound searches, each repeated once; the find-alls climb out of cfg and always run
+        assertEquals(4, memo.getMissCount());
+        assertEquals(4, memo.getHitCount());
+        assertEquals(0.5, memo.getHitRate());
+        assertEquals(4, memo.size());
+
+        assertEquals(output, run(PROGRAM, ExecutionContext.DEFAULT.withSearchMemo(null)));
+    }
+
+    @Test
+    void memoizedLinesAreTheBranesOwn() {
+        BraneFiroe cfg = new BraneFiroe(brane("{ x = 1; y = 2; x = 3; }"));
+        while (cfg.isNye()) {
+            cfg.step();
+        }
+        assertTrue(cfg.isConstant());
+        SearchMemo memo = new SearchMemo();
+        BraneMemory memory = (BraneMemory) cfg.getBraneMemory();
+        SearchCursor cursor = new SearchCursor(new FoolishCursor(cfg, memory.size() - 1), false, true, true);
+        Query query = Query.RegexpQuery.of("x");
+        assertEquals(2, memo.line(cfg, SearchOperator.REGEXP_LOCAL, "x", () -> cursor.findFirstLine(query)));
+        assertEquals(2, memo.line(cfg, SearchOperator.REGEXP_LOCAL, "x", () -> fail("memoized search ran again")));
+        assertEquals(SearchMemo.NOT_FOUND,
+            memo.line(cfg, SearchOperator.REGEXP_LOCAL, "z", () -> cursor.findFirstLine(Query.RegexpQuery.of("z"))));
+        assertEquals(1, memo.getHitCount());
+        assertEquals(2, memo.getMissCount());
+
+        memo.forget(cfg);
+        assertEquals(0, memo.size());
+    }
+
+    @Test
+    void eachContextCountsItsOwnSearches() {
+        StringBuilder source = new StringBuilder("{ cfg = {");
+        for (int i = 0; i < 64; i++) {
+            source.append(" setting").append(i).append(" = ").append(i).append(';');
+        }
+        source.append(" port = 1; };");
+        for (int i = 0; i < 16; i++) {
+            source.append(" r").append(i).append(" = cfg~.*ort;");
+        }
+        String program = source.append(" }").toString();
+
+        assertNull(ExecutionContext.DEFAULT.getSearchMemo());
+        assertNull(new ExecutionContext("test.foo").getSearchMemo());
+        String expected = run(program, ExecutionContext.DEFAULT);
+
+        SearchMemo first = new SearchMemo();
+        SearchMemo second = new SearchMemo();
+        assertEquals(expected, run(program, ExecutionContext.DEFAULT.withSearchMemo(first)));
+        assertEquals(1, first.getMissCount());
+        assertEquals(15, first.getHitCount());
+        assertEquals(expected, run(program, ExecutionContext.DEFAULT.withSearchMemo(second)));
+        assertEquals(1, second.getMissCount());
+        assertEquals(15, second.getHitCount());
+        assertEquals(1, first.getMissCount());
+        // Another UBC's cfg is another brane, so a memo given to a second UBC misses on it first
+        assertEquals(expected, run(program, ExecutionContext.DEFAULT.withSearchMemo(first)));
+        assertEquals(2, first.getMissCount());
+        assertEquals(30, first.getHitCount());
+        assertTrue(expected.contains("r15 = 1;"), expected);
+    }
+}
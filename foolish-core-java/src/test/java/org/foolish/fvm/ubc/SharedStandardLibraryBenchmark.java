@@ -0,0 +1,53 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * What building a private standard library cost every UBC, against what constructing a UBC costs now.
+ * Not part of the default test run; run with {@code mvn test -Pbenchmarks}.
+ */
+class SharedStandardLibraryBenchmark {
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    @Test
+    void libraryAgainstConstruction() {
+        AST.Brane program = (AST.Brane) UbcRepl.parse("{ a = 1; b = a + 1; }").branes().branes().get(0);
+        long[] libraryBytes = new long[5];
+        long[] libraryNanos = new long[5];
+        long[] ubcBytes = new long[5];
+        long[] ubcNanos = new long[5];
+        for (int run = 0; run < 5; run++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < 1000; i++) {
+                StandardConfiguration.createStandardLibrary();
+            }
+            libraryNanos[run] = (System.nanoTime() - start) / 1000;
+            libraryBytes[run] = (allocatedBytes() - bytes) / 1000;
+
+            bytes = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < 1000; i++) {
+                new UnicelluarBraneComputer(program);
+            }
+            ubcNanos[run] = (System.nanoTime() - start) / 1000;
+            ubcBytes[run] = (allocatedBytes() - bytes) / 1000;
+        }
+        Arrays.sort(libraryBytes);
+        Arrays.sort(libraryNanos);
+        Arrays.sort(ubcBytes);
+        Arrays.sort(ubcNanos);
+        System.out.printf("per UBC: private library %d bytes, %d ns; UBC construction now %d bytes, %d ns (medians)%n",
+            libraryBytes[2], libraryNanos[2], ubcBytes[2], ubcNanos[2]);
+        assertTrue(ubcBytes[2] < libraryBytes[2], ubcBytes[2] + " bytes per UBC vs " + libraryBytes[2] + " per library");
+    }
+}
@@ -0,0 +1,120 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The standard library is evaluated once and shared, frozen, by every UBC.
+ */
+class SharedStandardLibraryTest {
+
+    private static final String READS_LIBRARY = "{ a = ALARM_LEVELS.PANIC; b = ALARM_LEVELS; c = ALARM_LEVELS$;"
+        + " d = ALARM_LEVELS?MI.*; g = { x = ALARM_LEVELS; y = x.MILD; }; h = b.NOT + c + a; }";
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private static String output(UnicelluarBraneComputer ubc) {
+        return new Sequencer4Human().sequence(ubc.getRootBrane());
+    }
+
+    private static FiroeWithBraneMind libraryOf(UnicelluarBraneComputer ubc) {
+        return ((BraneMemory) ubc.getRootBrane().getBraneMemory()).getParentBrane();
+    }
+
+    @Test
+    void programsResolveIntoTheLibrary() {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane(READS_LIBRARY));
+        ubc.runToCompletion();
+        String output = output(ubc);
+        assertTrue(output.contains("a = 10;"), output);
+        assertTrue(output.contains("d = 3;"), output);
+        assertTrue(output.contains("y = 3;"), output);
+        assertTrue(output.contains("h = 20;"), output);
+    }
+
+    @Test
+    void everyComputerSharesOneFrozenLibrary() {
+        UnicelluarBraneComputer first = new UnicelluarBraneComputer(brane("{ a = 1; }"));
+        UnicelluarBraneComputer second = new UnicelluarBraneComputer(brane("{ b = 2; }"));
+        assertSame(StandardConfiguration.standardLibrary(), libraryOf(first));
+        assertSame(libraryOf(first), libraryOf(second));
+
+        FiroeWithBraneMind library = StandardConfiguration.standardLibrary();
+        assertTrue(library.isFrozen());
+        AssignmentFiroe levels = (AssignmentFiroe) library.getMemoryItem(0);
+        assertTrue(levels.isFrozen());
+        assertTrue(levels.getResult().isFrozen());
+        assertTrue(((BraneFiroe) levels.getResult()).getMemoryItem(4).isFrozen());
+    }
+
+    @Test
+    void evaluationsLeaveTheLibraryUnchanged() {
+        FiroeWithBraneMind library = StandardConfiguration.standardLibrary();
+        AssignmentFiroe levels = (AssignmentFiroe) library.getMemoryItem(0);
+        BraneFiroe value = (BraneFiroe) levels.getResult();
+        FIR levelsParent = levels.getParentFir();
+        FIR valueParent = value.getParentFir();
+        FiroeWithBraneMind valueMemoryParent = ((BraneMemory) value.getBraneMemory()).getParentBrane();
+        String before = new Sequencer4Human().sequence(library);
+
+        for (ExecutionContext context : new ExecutionContext[]{ExecutionContext.DEFAULT,
+            ExecutionContext.DEFAULT.withIncremental(true).withLazyBranes(true).withMemoizedBranes(true)}) {
+            UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane(READS_LIBRARY), context);
+            ubc.demandAll();
+            assertTrue(output(ubc).contains("h = 20;"), output(ubc));
+        }
+
+        assertSame(levelsParent, levels.getParentFir());
+        assertSame(valueParent, value.getParentFir());
+        assertSame(valueMemoryParent, ((BraneMemory) value.getBraneMemory()).getParentBrane());
+        assertEquals(0, library.getStatementIndex(levels));
+        assertEquals(before, new Sequencer4Human().sequence(library));
+    }
+
+    @Test
+    void concurrentComputersReadTheSameLibrary() {
+        List<AST.Brane> programs = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            programs.add(brane("{ n = " + i + "; r = ALARM_LEVELS.PANIC * n + ALARM_LEVELS?HAIR.*; }"));
+        }
+        List<UnicelluarBraneComputer> ubcs = UnicelluarBraneComputer.runAll(programs);
+        for (int i = 0; i < ubcs.size(); i++) {
+            assertTrue(output(ubcs.get(i)).contains("r = " + (10 * i + 5) + ";"), output(ubcs.get(i)));
+        }
+    }
+
+    @Test
+    void restoredComputersLinkToTheSharedLibrary() throws IOException {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane(READS_LIBRARY));
+        ubc.runFor(20);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ubc.checkpoint(bytes);
+        UnicelluarBraneComputer restored = UnicelluarBraneComputer.restore(new ByteArrayInputStream(bytes.toByteArray()));
+        assertSame(StandardConfiguration.standardLibrary(), libraryOf(restored));
+        restored.runToCompletion();
+        assertTrue(output(restored).contains("h = 20;"), output(restored));
+    }
+
+    @Test
+    void constructionNoLongerBuildsTheLibrary() {
+        AST.Brane program = brane("{ a = 1; b = a + 1; }");
+        Set<FiroeWithBraneMind> libraries = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < 1000; i++) {
+            libraries.add(libraryOf(new UnicelluarBraneComputer(program)));
+        }
+        assertEquals(Set.of(StandardConfiguration.standardLibrary()), libraries);
+    }
+}
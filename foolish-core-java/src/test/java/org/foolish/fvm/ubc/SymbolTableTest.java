@@ -0,0 +1,104 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Identifiers interned as int symbols, and lookups comparing them.
+ */
+class SymbolTableTest {
+
+    private static final String PREFIX = "generated_module_component_configuration_value_";
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    @Test
+    void equalNamesShareASymbol() {
+        CharacterizedIdentifier plain = new CharacterizedIdentifier("x");
+        Query.StrictlyMatchingQuery query = new Query.StrictlyMatchingQuery("x", null);
+        AST.Assignment assignment = (AST.Assignment) brane("{ type'x = 1; }").statements().getFirst();
+        CharacterizedIdentifier typed = new CharacterizedIdentifier(assignment.identifier());
+        assertEquals(plain.getSymbol(), query.getSymbol());
+        assertEquals(plain, query);
+        assertEquals(plain.hashCode(), query.hashCode());
+        assertNotEquals(plain, typed);
+        assertNotEquals(new CharacterizedIdentifier("y"), plain);
+
+        assertEquals(typed, new CharacterizedIdentifier("x", typed.getCharacterization()));
+        assertTrue(query.matches(AssignmentFiroe.constant(
+            (AST.Assignment) brane("{ x = 1; }").statements().getFirst(), new ValueFiroe(1))));
+        assertFalse(query.matches(AssignmentFiroe.constant(assignment, new ValueFiroe(1))));
+    }
+
+    @Test
+    void longNamesResolve() {
+        StringBuilder source = new StringBuilder("{");
+        for (int i = 0; i < 40; i++) {
+            source.append(' ').append(PREFIX).append(i).append(" = ").append(i).append(';');
+        }
+        source.append(" sum = ").append(PREFIX).append(3).append(" + ").append(PREFIX).append(39).append("; }");
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane(source.toString()));
+        ubc.runToCompletion();
+        String output = new Sequencer4Human().sequence(ubc.getRootBrane());
+        assertTrue(output.contains("sum = 42;"), output);
+    }
+
+    @Test
+    void symbolsIdentifyNameAndCharacterization() {
+        String name = PREFIX + "0255";
+        // Distinct but equal strings, as separately parsed names are
+        SymbolTable.Symbol symbol = SymbolTable.intern(name, "");
+        assertSame(symbol, SymbolTable.intern(new String(name), new String("")));
+        assertNotEquals(symbol.id(), SymbolTable.intern(name, "type'").id());
+        assertNotEquals(symbol.id(), SymbolTable.intern(PREFIX + "0254", "").id());
+        CharacterizedIdentifier typed = new CharacterizedIdentifier(name, "type'");
+        assertEquals(SymbolTable.intern(name, "type'").id(), typed.getSymbol());
+
+        List<AssignmentFiroe> lines = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            lines.add(AssignmentFiroe.constant(new AST.Assignment(
+                new AST.Identifier(PREFIX + String.format("%04d", i)), new AST.IntegerLiteral(i)), new ValueFiroe(i)));
+        }
+        Query.StrictlyMatchingQuery query = new Query.StrictlyMatchingQuery(new String(name), "");
+        assertEquals(List.of(255L), lines.stream().filter(query::matches).map(FIR::getValue).toList());
+    }
+
+    @Test
+    void namesNoLongerHeldAreDropped() throws InterruptedException {
+        CharacterizedIdentifier kept = new CharacterizedIdentifier(PREFIX + "kept");
+        int before = SymbolTable.size();
+        for (int i = 0; i < 10_000; i++) {
+            new CharacterizedIdentifier(PREFIX + "dropped_" + i);
+        }
+        for (int attempt = 0; attempt < 50 && SymbolTable.size() >= before + 10_000; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(SymbolTable.size() < before + 10_000, "unheld names stay interned");
+        assertEquals(kept, new CharacterizedIdentifier(PREFIX + "kept"));
+    }
+
+    @Test
+    void concurrentInternsAgreeOnOneSymbol() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            names.add(PREFIX + "concurrent_" + i);
+        }
+        List<List<SymbolTable.Symbol>> perThread = IntStream.range(0, 8).parallel()
+            .mapToObj(t -> names.stream().map(name -> SymbolTable.intern(new String(name), "")).toList())
+            .toList();
+        for (List<SymbolTable.Symbol> symbols : perThread) {
+            for (int i = 0; i < names.size(); i++) {
+                assertSame(perThread.getFirst().get(i), symbols.get(i), names.get(i));
+            }
+        }
+    }
+}
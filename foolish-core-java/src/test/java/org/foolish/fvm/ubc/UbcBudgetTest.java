@@ -0,0 +1,102 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Budgeted, resumable evaluation with {@link UnicelluarBraneComputer#runFor(long)} and
+ * {@link UnicelluarBraneComputer#runUntil(Instant)}.
+ */
+class UbcBudgetTest {
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    @Test
+    void timeSlicedRunsMatchRunToCompletion() throws IOException {
+        int compared = 0;
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (program.branes() == null || program.branes().branes().isEmpty()
+                || !(program.branes().branes().get(0) instanceof AST.Brane brane)) {
+                continue;
+            }
+            UnicelluarBraneComputer whole = new UnicelluarBraneComputer(brane);
+            int steps = whole.runToCompletion();
+
+            UnicelluarBraneComputer sliced = new UnicelluarBraneComputer(brane);
+            EvaluationStatus status;
+            while ((status = sliced.runFor(7)) == EvaluationStatus.BUDGET_EXHAUSTED) {
+                assertFalse(sliced.isComplete());
+            }
+            assertEquals(EvaluationStatus.COMPLETE, status, file.getName());
+            assertEquals(steps, sliced.getStepsTaken(), file.getName());
+            assertEquals(whole.getIterations(), sliced.getIterations(), file.getName());
+            assertEquals(new Sequencer4Human().sequence(whole.getRootBrane()),
+                new Sequencer4Human().sequence(sliced.getRootBrane()), file.getName());
+            compared++;
+        }
+        assertTrue(compared > 0, "approval inputs should be on the test classpath");
+    }
+
+    @Test
+    void exhaustedBudgetLeavesUbcResumable() {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane("{ a = 1; b = a + 2; c = b * 3; }"));
+        assertEquals(EvaluationStatus.BUDGET_EXHAUSTED, ubc.runFor(0));
+        assertEquals(0, ubc.getIterations());
+
+        assertEquals(EvaluationStatus.BUDGET_EXHAUSTED, ubc.runFor(3));
+        assertEquals(3, ubc.getIterations());
+
+        assertEquals(EvaluationStatus.BUDGET_EXHAUSTED, ubc.runUntil(Instant.now().minusSeconds(1)));
+        assertEquals(3, ubc.getIterations());
+
+        assertEquals(EvaluationStatus.COMPLETE, ubc.runUntil(Instant.MAX));
+        assertTrue(ubc.isComplete());
+        assertEquals(EvaluationStatus.COMPLETE, ubc.runFor(10));
+        assertEquals(0, ubc.runToCompletion());
+    }
+
+    /**
+     * Waits on a FIR that nothing steps, taking a step to poll it every time it is stepped itself.
+     */
+    private static final class Poller extends FIR {
+        private final FIR awaited;
+
+        Poller(FIR awaited) {
+            super((AST) null);
+            this.awaited = awaited;
+        }
+
+        @Override
+        public int step() {
+            return awaited.isNye() ? 1 : 0;
+        }
+    }
+
+    @Test
+    void firPollingForeverStalls() {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane("{ a = 1; b = 2; }"));
+        ubc.runToCompletion();
+        ubc.getRootBrane().restartStatement(1, new Poller(new BraneFiroe(brane("{ x = 1; }"))));
+        long iterations = ubc.getIterations();
+        long steps = ubc.getStepsTaken();
+
+        assertEquals(EvaluationStatus.STALLED, ubc.runFor(3L * UnicelluarBraneComputer.STALL_ITERATIONS));
+        assertFalse(ubc.isComplete());
+        assertTrue(ubc.getIterations() - iterations <= UnicelluarBraneComputer.STALL_ITERATIONS + 1,
+            "stalled after " + (ubc.getIterations() - iterations) + " iterations");
+        assertTrue(ubc.getStepsTaken() - steps >= UnicelluarBraneComputer.STALL_ITERATIONS,
+            "the poller takes a step every iteration");
+        assertThrows(RuntimeException.class, ubc::runToCompletion);
+    }
+}
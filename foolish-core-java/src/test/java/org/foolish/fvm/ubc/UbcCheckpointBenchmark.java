@@ -0,0 +1,41 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checkpoint size and time, and restore time, for programs of growing size stopped part-way.
+ * Not part of the default test run; run with {@code mvn test -Pbenchmarks}.
+ */
+class UbcCheckpointBenchmark {
+
+    @Test
+    void checkpointAndRestore() throws IOException {
+        for (int statements = 1000; statements <= 4000; statements *= 2) {
+            StringBuilder source = new StringBuilder("{ base = 2;");
+            for (int j = 0; j < statements; j++) {
+                source.append(" v").append(j).append(" = { w = base * ").append(j).append("; }.w + 1;");
+            }
+            UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(
+                (AST.Brane) UbcRepl.parse(source.append(" }").toString()).branes().branes().get(0));
+            ubc.runFor(3L * statements);
+
+            long start = System.nanoTime();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ubc.checkpoint(bytes);
+            byte[] snapshot = bytes.toByteArray();
+            long written = System.nanoTime();
+            UnicelluarBraneComputer restored = UnicelluarBraneComputer.restore(new ByteArrayInputStream(snapshot));
+            long read = System.nanoTime();
+            assertEquals(ubc.getStepsTaken(), restored.getStepsTaken());
+            System.out.printf("%d statements: snapshot %d KB, checkpoint %d ms, restore %d ms%n", statements,
+                snapshot.length / 1024, (written - start) / 1_000_000, (read - written) / 1_000_000);
+        }
+    }
+}
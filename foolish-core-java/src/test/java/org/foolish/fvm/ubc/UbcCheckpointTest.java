@@ -0,0 +1,127 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checkpointing a UBC mid-evaluation and restoring it: the restored UBC continues exactly where it stopped.
+ */
+class UbcCheckpointTest {
+
+    private static AST.Brane brane(String source) {
+        return (AST.Brane) UbcRepl.parse(source).branes().branes().get(0);
+    }
+
+    private static String output(UnicelluarBraneComputer ubc) {
+        return new Sequencer4Human().sequence(ubc.getRootBrane());
+    }
+
+    private static byte[] checkpoint(UnicelluarBraneComputer ubc) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ubc.checkpoint(bytes);
+        return bytes.toByteArray();
+    }
+
+    private static UnicelluarBraneComputer restore(byte[] snapshot) throws IOException {
+        return UnicelluarBraneComputer.restore(new ByteArrayInputStream(snapshot));
+    }
+
+    @Test
+    void restoredComputerContinuesWhereItStopped() throws IOException {
+        AST.Brane program = brane("{ a = 1; b = { c = a + 1; d = c * 2; }; e = b.d + b$; f = a + 100; }");
+        UnicelluarBraneComputer reference = new UnicelluarBraneComputer(program);
+        reference.runToCompletion();
+
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(program);
+        assertEquals(EvaluationStatus.BUDGET_EXHAUSTED, ubc.runFor(reference.getIterations() / 2));
+        UnicelluarBraneComputer restored = restore(checkpoint(ubc));
+        assertNotSame(ubc.getRootBrane(), restored.getRootBrane());
+        assertEquals(output(ubc), output(restored));
+
+        restored.runToCompletion();
+        assertEquals(output(reference), output(restored));
+        assertEquals(reference.getStepsTaken(), restored.getStepsTaken());
+        assertEquals(reference.getIterations(), restored.getIterations());
+        assertTrue(ubc.getRootBrane().isNye(), "the checkpointed UBC is left as it was");
+    }
+
+    @Test
+    void checkpointsAtAnyPointMatchApprovalInputs() throws IOException {
+        ExecutionContext[] contexts = {
+            ExecutionContext.DEFAULT,
+            ExecutionContext.DEFAULT.withMemoizedBranes(true).withIncremental(true).withLazyBranes(true)
+        };
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (program.branes() == null || program.branes().branes().isEmpty()
+                || !(program.branes().branes().get(0) instanceof AST.Brane brane)) {
+                continue;
+            }
+            for (ExecutionContext context : contexts) {
+                UnicelluarBraneComputer reference = new UnicelluarBraneComputer(brane, context);
+                reference.demandAll();
+                for (long at : new long[]{0, reference.getIterations() / 3, 2 * reference.getIterations() / 3}) {
+                    UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane, context);
+                    ubc.runFor(at);
+                    UnicelluarBraneComputer restored = restore(checkpoint(ubc));
+                    restored.demandAll();
+                    assertEquals(output(reference), output(restored), file.getName() + " restored at " + at);
+                    assertEquals(reference.getStepsTaken(), restored.getStepsTaken(), file.getName());
+                }
+            }
+        }
+    }
+
+    @Test
+    void completedComputerCanStillBeEdited() throws IOException {
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(
+            brane("{ a = 1; b = 2; c = a + b; }"), ExecutionContext.DEFAULT.withIncremental(true));
+        ubc.runToCompletion();
+        UnicelluarBraneComputer restored = restore(checkpoint(ubc));
+        restored.replaceStatement(0, brane("{ a = 40; }").statements().get(0));
+        restored.runToCompletion();
+        assertTrue(output(restored).contains("c = 42"), output(restored));
+        assertTrue(output(ubc).contains("c = 3"));
+    }
+
+    @Test
+    void rejectsOtherStreams() {
+        assertThrows(IOException.class, () -> restore("not a snapshot".getBytes()));
+    }
+
+    private static UnicelluarBraneComputer stoppedPartWay(int statements) {
+        StringBuilder source = new StringBuilder("{ base = 2;");
+        for (int j = 0; j < statements; j++) {
+            source.append(" v").append(j).append(" = { w = base * ").append(j).append("; }.w + 1;");
+        }
+        UnicelluarBraneComputer ubc = new UnicelluarBraneComputer(brane(source.append(" }").toString()));
+        ubc.runFor(3L * statements);
+        return ubc;
+    }
+
+    @Test
+    void snapshotSizeIsLinearInGraphSize() throws IOException {
+        double perStatement = 0;
+        for (int statements = 1000; statements <= 4000; statements *= 2) {
+            UnicelluarBraneComputer ubc = stoppedPartWay(statements);
+            byte[] snapshot = checkpoint(ubc);
+            assertEquals(ubc.getStepsTaken(), restore(snapshot).getStepsTaken());
+            if (perStatement == 0) {
+                perStatement = (double) snapshot.length / statements;
+            }
+            // Only the varint ids widen as the graph grows
+            double expected = perStatement * statements;
+            assertTrue(snapshot.length >= expected && snapshot.length < 1.1 * expected,
+                statements + " statements: " + snapshot.length + " bytes, expected about " + (long) expected);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.foolish.fvm.ubc;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the UBC approval corpus with parallel brane evaluation enabled.
+ *
+ * Compares against the files approved by {@link UbcApprovalTest}, so the
+ * parallel mode must produce output identical to sequential evaluation.
+ */
+public class UbcParallelApprovalTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    private final JavaUbcInterpreter interpreter = new JavaUbcInterpreter(POOL);
+
+    static Stream<Arguments> provideInputFiles() {
+        return UbcApprovalTest.provideInputFiles();
+    }
+
+    @ParameterizedTest(name = "{index}: {1}")
+    @MethodSource("provideInputFiles")
+    void parallelMatchesApproved(File inputFile, String testName) throws IOException {
+        String code = Files.readString(inputFile.toPath()).trim();
+        Path approved = Path.of("src/test/resources/org/foolish/fvm/ubc", testName + ".approved.foo");
+        assertEquals(Files.readString(approved), interpreter.execute(code, inputFile.getName()));
+    }
+
+    @AfterAll
+    static void shutdownPool() {
+        POOL.shutdown();
+    }
+}
@@ -0,0 +1,60 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Throughput of {@link UnicelluarBraneComputer#runAll(List)} against running the same programs one after another.
+ * Not part of the default test run; run with {@code mvn test -Pbenchmarks}.
+ */
+class UbcRunAllBenchmark {
+
+    private static List<AST.Brane> approvalInputs() throws IOException {
+        List<AST.Brane> branes = new ArrayList<>();
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (program.branes() != null && !program.branes().branes().isEmpty()
+                && program.branes().branes().get(0) instanceof AST.Brane brane) {
+                branes.add(brane);
+            }
+        }
+        return branes;
+    }
+
+    @Test
+    void throughput() throws IOException {
+        List<AST.Brane> inputs = approvalInputs();
+        System.out.printf("runAll throughput over the %d approval inputs:%n", inputs.size());
+        for (int batch : new int[]{1, 10, 100, 1000}) {
+            List<AST.Brane> programs = new ArrayList<>(batch);
+            for (int i = 0; i < batch; i++) {
+                programs.add(inputs.get(i % inputs.size()));
+            }
+            long sequential = bestOf(() -> {
+                for (AST.Brane brane : programs) {
+                    new UnicelluarBraneComputer(brane).runToCompletion();
+                }
+            });
+            long concurrent = bestOf(() -> UnicelluarBraneComputer.runAll(programs));
+            System.out.printf("  %4d programs: sequential=%.0f/s runAll=%.0f/s%n",
+                batch, batch / (sequential / 1e9), batch / (concurrent / 1e9));
+        }
+    }
+
+    private static long bestOf(Runnable work) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            work.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
@@ -0,0 +1,62 @@
+package org.foolish.fvm.ubc;
+
+import org.foolish.ApprovalTestRunner;
+import org.foolish.ast.AST;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrent evaluation of independent programs with {@link UnicelluarBraneComputer#runAll(List)}.
+ */
+class UbcRunAllTest {
+
+    private static List<AST.Brane> approvalInputs() throws IOException {
+        List<AST.Brane> branes = new ArrayList<>();
+        for (File file : ApprovalTestRunner.findInputFiles("org/foolish/fvm/inputs")) {
+            AST.Program program = UbcRepl.parse(Files.readString(file.toPath()));
+            if (program.branes() != null && !program.branes().branes().isEmpty()
+                && program.branes().branes().get(0) instanceof AST.Brane brane) {
+                branes.add(brane);
+            }
+        }
+        return branes;
+    }
+
+    private static String sequence(UnicelluarBraneComputer ubc) {
+        return new Sequencer4Human().sequence(ubc.getRootBrane());
+    }
+
+    @Test
+    void runAllMatchesIndividualRuns() throws IOException {
+        List<AST.Brane> inputs = approvalInputs();
+        assertFalse(inputs.isEmpty(), "approval inputs should be on the test classpath");
+
+        List<UnicelluarBraneComputer> ubcs = UnicelluarBraneComputer.runAll(inputs);
+        assertEquals(inputs.size(), ubcs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            UnicelluarBraneComputer alone = new UnicelluarBraneComputer(inputs.get(i));
+            alone.runToCompletion();
+            assertTrue(ubcs.get(i).isComplete());
+            assertEquals(sequence(alone), sequence(ubcs.get(i)));
+        }
+    }
+
+    @Test
+    void contextIsSharedByTheWholeTree() {
+        ExecutionContext context = new ExecutionContext("batch.foo");
+        AST.Brane brane = (AST.Brane) UbcRepl.parse("{ a = { b = { c = 1; }; }; }").branes().branes().get(0);
+        List<UnicelluarBraneComputer> ubcs = UnicelluarBraneComputer.runAll(List.of(brane, brane), context);
+        for (UnicelluarBraneComputer ubc : ubcs) {
+            assertSame(context, ubc.getExecutionContext());
+            FIR a = ubc.getRootBrane().getMemoryItem(0);
+            assertSame(context, a.executionContext());
+        }
+    }
+}
@@ -144,9 +144,9 @@ endIf: FI ;
 // Regexp operators for brane searching
 regexp_operator
     : QUESTION          // ? (backward search)
-    | QUESTION_QUESTION // ?? (find-all backward - not yet implemented)
+    | QUESTION_QUESTION // ?? (find-all backward)
     | TILDE             // ~ (forward search)
-    | TILDE_TILDE       // ~~ (find-all forward - not yet implemented)
+    | TILDE_TILDE       // ~~ (find-all forward)
     ;
 
 // Regexp expression with balanced parentheses validation
@@ -6,7 +6,9 @@ import org.foolish.grammar.FoolishBaseVisitor;
 import org.foolish.grammar.FoolishParser;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import static org.foolish.ast.AST.setCharacterization;
@@ -15,6 +17,39 @@ public class ASTBuilder extends FoolishBaseVisitor<AST> {
     static final Pattern ID_CANONICALIZER = Pattern.compile("[\u202F_\u02CD]");
     static final String INTRA_ID_SPACE = "\u02CD";
 
+    /** Per-parse symbol table and pools of shared leaves; null unless interning. */
+    private final Map<String, String> symbols;
+    private final Map<List<String>, List<String>> characterizationLists;
+    private final Map<AST, AST> leaves;
+
+    public ASTBuilder() {
+        this(false);
+    }
+
+    /**
+     * Creates a builder that, when interning, shares structurally identical leaves within one parse: identifier
+     * names and characterizations are interned in a symbol table, equal characterization lists are one
+     * (immutable) list, and equal {@link AST.Identifier} and {@link AST.IntegerLiteral} nodes are one record.
+     * AST nodes are immutable, so sharing them changes nothing but the heap the tree takes. A builder interns
+     * across everything it visits; use a new one per parse.
+     *
+     * @param interning whether to share identical leaves
+     */
+    public ASTBuilder(boolean interning) {
+        this.symbols = interning ? new HashMap<>() : null;
+        this.characterizationLists = interning ? new HashMap<>() : null;
+        this.leaves = interning ? new HashMap<>() : null;
+    }
+
+    private String symbol(String name) {
+        return symbols == null || name == null ? name : symbols.computeIfAbsent(name, n -> n);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends AST> T leaf(T node) {
+        return leaves == null ? node : (T) leaves.computeIfAbsent(node, n -> n);
+    }
+
     public static final String canonicalizeIdentifierName(String name) {
         if (name == null)
             return null;
@@ -39,9 +74,10 @@ public class ASTBuilder extends FoolishBaseVisitor<AST> {
         List<String> result = new ArrayList<>();
         for (FoolishParser.CharacterizationContext ctx : contexts) {
             TerminalNode identifier = ctx.IDENTIFIER();
-            result.add(identifier != null ? canonicalizeIdentifierName(identifier.getText()) : "");
+            result.add(identifier != null ? symbol(canonicalizeIdentifierName(identifier.getText())) : "");
         }
-        return result;
+        return characterizationLists == null ? result
+            : characterizationLists.computeIfAbsent(List.copyOf(result), list -> list);
     }
 
     @Override
@@ -353,7 +389,11 @@ public class ASTBuilder extends FoolishBaseVisitor<AST> {
         } else {
             throw new IllegalStateException("Characterizable must be literal or brane when not identifier");
         }
-        return !characterizations.isEmpty() ? setCharacterization(characterizations, ret) : ret;
+        if (characterizations.isEmpty()) {
+            return ret;
+        }
+        AST characterized = setCharacterization(characterizations, ret);
+        return characterized instanceof AST.IntegerLiteral ? leaf(characterized) : characterized;
     }
 
     @Override
@@ -365,12 +405,12 @@ public class ASTBuilder extends FoolishBaseVisitor<AST> {
             throw new IllegalStateException("characterizable_identifier requires an IDENTIFIER token");
         }
 
-        String id = canonicalizeIdentifierName(ctx.IDENTIFIER().getText());
+        String id = symbol(canonicalizeIdentifierName(ctx.IDENTIFIER().getText()));
 
         if (characterizations.isEmpty()) {
-            return new AST.Identifier(id);
+            return leaf(new AST.Identifier(id));
         } else {
-            return setCharacterization(characterizations, new AST.Identifier(id));
+            return leaf(setCharacterization(characterizations, new AST.Identifier(id)));
         }
     }
 
@@ -378,7 +418,7 @@ public class ASTBuilder extends FoolishBaseVisitor<AST> {
     public AST visitLiteral(FoolishParser.LiteralContext ctx) {
         // Get characterization from parent context
         if (ctx.INTEGER() != null) {
-            return new AST.IntegerLiteral(Long.parseLong(ctx.INTEGER().getText()));
+            return leaf(new AST.IntegerLiteral(Long.parseLong(ctx.INTEGER().getText())));
         }
         throw new RuntimeException("Unknown literal type");
     }
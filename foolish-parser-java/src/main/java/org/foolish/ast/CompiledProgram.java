@@ -0,0 +1,426 @@
+package org.foolish.ast;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code .fooc} binary encoding of a parsed {@link AST.Program}, so a program can be loaded without running
+ * the ANTLR lexer and parser again.
+ * <p>
+ * Layout: a magic number and format version, then a string table (count, then each string as a length and its
+ * UTF-8 bytes), then the tree in pre-order. Each node is a one-byte tag followed by its components; strings are
+ * indices into the table, lists are their size followed by the elements, integers are LEB128 varints (zigzag for
+ * signed values) and enums are their ordinals. Strings, lists and nodes that may be null are encoded shifted by one,
+ * with 0 for null. Every component of every node is kept, including source locations, so a loaded program is
+ * {@code equals} to the parsed one. Equal strings are one {@code String} in the loaded tree.
+ * <p>
+ * The encoding depends on the AST record shapes and on the order of {@link SearchOperator} and
+ * {@link AST.AssignmentOperator}; any change to either must bump {@link #VERSION}. Files of another version are
+ * rejected, not misread.
+ */
+public final class CompiledProgram {
+
+    /** "FOOC". */
+    static final int MAGIC = 0x464F4F43;
+    public static final int VERSION = 1;
+
+    private static final int NULL = 0, PROGRAM = 1, BRANES = 2, CONCATENATION = 3, BRANE = 4, DETACHMENT_BRANE = 5,
+        DETACHMENT_STATEMENT = 6, SEARCH_UP = 7, INTEGER = 8, IDENTIFIER = 9, BINARY = 10, UNARY = 11,
+        DEREFERENCE = 12, REGEXP_SEARCH = 13, SEEK = 14, UNANCHORED_SEEK = 15, ONE_SHOT_SEARCH = 16,
+        ASSIGNMENT = 17, UNKNOWN = 18, STAY_FOOLISH = 19, STAY_FULLY_FOOLISH = 20, IF = 21,
+        BRANE_REGEXP_SEARCH = 22;
+
+    private static final SearchOperator[] SEARCH_OPERATORS = SearchOperator.values();
+    private static final AST.AssignmentOperator[] ASSIGNMENT_OPERATORS = AST.AssignmentOperator.values();
+
+    private CompiledProgram() {
+    }
+
+    /**
+     * Encodes a program.
+     */
+    public static byte[] toBytes(AST.Program program) {
+        Writer writer = new Writer();
+        writer.node(program);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(writer.body.size() + 16 * writer.strings.size() + 16);
+        Writer.fixed(out, MAGIC);
+        Writer.varint(out, VERSION);
+        Writer.varint(out, writer.strings.size());
+        for (String string : writer.strings.keySet()) {
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            Writer.varint(out, utf8.length);
+            out.writeBytes(utf8);
+        }
+        out.writeBytes(writer.body.toByteArray());
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a program onto a stream.
+     */
+    public static void write(AST.Program program, OutputStream out) throws IOException {
+        out.write(toBytes(program));
+    }
+
+    /**
+     * Decodes a program from the buffer's remaining bytes.
+     *
+     * @throws IOException if the bytes are not a {@code .fooc} program of this {@link #VERSION}
+     */
+    public static AST.Program read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) {
+                throw new IOException("not a compiled Foolish program");
+            }
+            int version = new Reader(buffer, new String[0]).varint();
+            if (version != VERSION) {
+                throw new IOException("compiled program version " + version + ", expected " + VERSION);
+            }
+            Reader reader = new Reader(buffer, null);
+            if (!(reader.node() instanceof AST.Program program) || buffer.hasRemaining()) {
+                throw new IOException("malformed compiled program");
+            }
+            return program;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | ArithmeticException | ClassCastException e) {
+            throw new IOException("malformed compiled program", e);
+        }
+    }
+
+    /**
+     * Loads a {@code .fooc} file, decoding the tree straight from a memory mapping of it.
+     */
+    public static AST.Program load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(mapped);
+        }
+    }
+
+    private static final class Writer {
+        final Map<String, Integer> strings = new LinkedHashMap<>();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+        static void fixed(ByteArrayOutputStream out, int value) {
+            out.write(value >>> 24);
+            out.write(value >>> 16);
+            out.write(value >>> 8);
+            out.write(value);
+        }
+
+        static void varint(ByteArrayOutputStream out, long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        void unsigned(long value) {
+            varint(body, value);
+        }
+
+        void signed(long value) {
+            varint(body, (value << 1) ^ (value >> 63));
+        }
+
+        void tag(int tag) {
+            body.write(tag);
+        }
+
+        void string(String string) {
+            unsigned(string == null ? 0 : strings.computeIfAbsent(string, s -> strings.size()) + 1);
+        }
+
+        void strings(List<String> list) {
+            if (list == null) {
+                unsigned(0);
+                return;
+            }
+            unsigned(list.size() + 1);
+            for (String string : list) {
+                string(string);
+            }
+        }
+
+        void nodes(List<? extends AST> list) {
+            if (list == null) {
+                unsigned(0);
+                return;
+            }
+            unsigned(list.size() + 1);
+            for (AST node : list) {
+                node(node);
+            }
+        }
+
+        void node(AST ast) {
+            switch (ast) {
+                case null -> tag(NULL);
+                case AST.Program program -> {
+                    tag(PROGRAM);
+                    node(program.branes());
+                }
+                case AST.Branes branes -> {
+                    tag(BRANES);
+                    nodes(branes.branes());
+                }
+                case AST.Concatenation concatenation -> {
+                    tag(CONCATENATION);
+                    nodes(concatenation.elements());
+                }
+                case AST.Brane brane -> {
+                    tag(BRANE);
+                    strings(brane.characterizations());
+                    nodes(brane.statements());
+                }
+                case AST.DetachmentBrane brane -> {
+                    tag(DETACHMENT_BRANE);
+                    strings(brane.characterizations());
+                    nodes(brane.statements());
+                }
+                case AST.DetachmentStatement statement -> {
+                    tag(DETACHMENT_STATEMENT);
+                    node(statement.identifier());
+                    node(statement.expr());
+                }
+                case AST.SearchUP searchUp -> {
+                    tag(SEARCH_UP);
+                    strings(searchUp.characterizations());
+                }
+                case AST.IntegerLiteral literal -> {
+                    tag(INTEGER);
+                    strings(literal.characterizations());
+                    signed(literal.value());
+                }
+                case AST.Identifier identifier -> {
+                    tag(IDENTIFIER);
+                    strings(identifier.characterizations());
+                    string(identifier.id());
+                }
+                case AST.BinaryExpr binary -> {
+                    tag(BINARY);
+                    string(binary.op());
+                    node(binary.left());
+                    node(binary.right());
+                }
+                case AST.UnaryExpr unary -> {
+                    tag(UNARY);
+                    string(unary.op());
+                    node(unary.expr());
+                }
+                case AST.DereferenceExpr dereference -> {
+                    tag(DEREFERENCE);
+                    node(dereference.anchor());
+                    node(dereference.coordinate());
+                }
+                case AST.RegexpSearchExpr search -> {
+                    tag(REGEXP_SEARCH);
+                    node(search.anchor());
+                    unsigned(search.operator().ordinal());
+                    string(search.pattern());
+                }
+                case AST.SeekExpr seek -> {
+                    tag(SEEK);
+                    node(seek.anchor());
+                    signed(seek.offset());
+                }
+                case AST.UnanchoredSeekExpr seek -> {
+                    tag(UNANCHORED_SEEK);
+                    signed(seek.offset());
+                }
+                case AST.OneShotSearchExpr search -> {
+                    tag(ONE_SHOT_SEARCH);
+                    node(search.anchor());
+                    unsigned(search.operator().ordinal());
+                }
+                case AST.Assignment assignment -> {
+                    tag(ASSIGNMENT);
+                    node(assignment.identifier());
+                    node(assignment.expr());
+                    unsigned(assignment.operator().ordinal());
+                    AST.SourceLocation location = assignment.location();
+                    if (location == null) {
+                        unsigned(0);
+                    } else {
+                        unsigned(1);
+                        signed(location.line());
+                        signed(location.column());
+                    }
+                }
+                case AST.UnknownExpr unknown -> tag(UNKNOWN);
+                case AST.StayFoolishExpr stayFoolish -> {
+                    tag(STAY_FOOLISH);
+                    node(stayFoolish.expr());
+                }
+                case AST.StayFullyFoolishExpr stayFullyFoolish -> {
+                    tag(STAY_FULLY_FOOLISH);
+                    node(stayFullyFoolish.expr());
+                }
+                case AST.IfExpr ifExpr -> {
+                    tag(IF);
+                    node(ifExpr.condition());
+                    node(ifExpr.thenExpr());
+                    node(ifExpr.elseExpr());
+                    nodes(ifExpr.elseIfs());
+                }
+                case AST.BraneRegexpSearch search -> {
+                    tag(BRANE_REGEXP_SEARCH);
+                    node(search.brane());
+                    string(search.operator());
+                    string(search.pattern());
+                }
+            }
+        }
+    }
+
+    private static final class Reader {
+        final ByteBuffer in;
+        final String[] strings;
+
+        /**
+         * @param strings the string table, or null to read it from {@code in}
+         */
+        Reader(ByteBuffer in, String[] strings) {
+            this.in = in;
+            this.strings = strings != null ? strings : table();
+        }
+
+        private String[] table() {
+            String[] table = new String[length()];
+            for (int i = 0; i < table.length; i++) {
+                byte[] utf8 = new byte[length()];
+                in.get(utf8);
+                table[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+            return table;
+        }
+
+        long varlong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("varint too long");
+        }
+
+        int varint() {
+            return Math.toIntExact(varlong());
+        }
+
+        /** A count, bounded by what is left so a corrupt count cannot ask for a huge allocation. */
+        int length() {
+            int length = varint();
+            if (length < 0 || length > in.remaining() + 1) {
+                throw new IllegalArgumentException("bad length " + length);
+            }
+            return length;
+        }
+
+        long signed() {
+            long value = varlong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String string() {
+            int index = varint();
+            return index == 0 ? null : strings[index - 1];
+        }
+
+        List<String> strings() {
+            int size = length();
+            if (size == 0) {
+                return null;
+            }
+            if (size == 1) {
+                return List.of();
+            }
+            List<String> list = new ArrayList<>(size - 1);
+            for (int i = 1; i < size; i++) {
+                list.add(string());
+            }
+            return list;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T extends AST> List<T> nodes() {
+            int size = length();
+            if (size == 0) {
+                return null;
+            }
+            List<T> list = new ArrayList<>(size - 1);
+            for (int i = 1; i < size; i++) {
+                list.add((T) node());
+            }
+            return list;
+        }
+
+        AST.Expr expr() {
+            return (AST.Expr) node();
+        }
+
+        AST.Identifier identifier() {
+            return (AST.Identifier) node();
+        }
+
+        AST node() {
+            int tag = in.get();
+            return switch (tag) {
+                case NULL -> null;
+                case PROGRAM -> new AST.Program((AST.Branes) node());
+                case BRANES -> new AST.Branes(nodes());
+                case CONCATENATION -> new AST.Concatenation(nodes());
+                case BRANE -> new AST.Brane(strings(), nodes());
+                case DETACHMENT_BRANE -> new AST.DetachmentBrane(strings(), nodes());
+                case DETACHMENT_STATEMENT -> new AST.DetachmentStatement(identifier(), expr());
+                case SEARCH_UP -> new AST.SearchUP(strings());
+                case INTEGER -> new AST.IntegerLiteral(strings(), signed());
+                case IDENTIFIER -> new AST.Identifier(strings(), string());
+                case BINARY -> new AST.BinaryExpr(string(), expr(), expr());
+                case UNARY -> new AST.UnaryExpr(string(), expr());
+                case DEREFERENCE -> new AST.DereferenceExpr(expr(), identifier());
+                case REGEXP_SEARCH -> new AST.RegexpSearchExpr(expr(), SEARCH_OPERATORS[varint()], string());
+                case SEEK -> new AST.SeekExpr(expr(), Math.toIntExact(signed()));
+                case UNANCHORED_SEEK -> new AST.UnanchoredSeekExpr(Math.toIntExact(signed()));
+                case ONE_SHOT_SEARCH -> new AST.OneShotSearchExpr(expr(), SEARCH_OPERATORS[varint()]);
+                case ASSIGNMENT -> {
+                    AST.Identifier identifier = identifier();
+                    AST.Expr expr = expr();
+                    AST.AssignmentOperator operator = ASSIGNMENT_OPERATORS[varint()];
+                    yield new AST.Assignment(identifier, expr, operator, location());
+                }
+                case UNKNOWN -> AST.UnknownExpr.INSTANCE;
+                case STAY_FOOLISH -> new AST.StayFoolishExpr(expr());
+                case STAY_FULLY_FOOLISH -> new AST.StayFullyFoolishExpr(expr());
+                case IF -> new AST.IfExpr(expr(), expr(), expr(), nodes());
+                case BRANE_REGEXP_SEARCH -> new AST.BraneRegexpSearch((AST.Characterizable) node(), string(), string());
+                default -> throw new IllegalArgumentException("unknown node tag " + tag);
+            };
+        }
+
+        private AST.SourceLocation location() {
+            if (varint() == 0) {
+                return null;
+            }
+            int line = Math.toIntExact(signed());
+            int column = Math.toIntExact(signed());
+            return line == -1 && column == -1 ? AST.SourceLocation.UNKNOWN : new AST.SourceLocation(line, column);
+        }
+    }
+}
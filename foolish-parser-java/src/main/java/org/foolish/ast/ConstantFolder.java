@@ -0,0 +1,172 @@
+package org.foolish.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Folds literal-only arithmetic in an AST before FIRs are built from it.
+ * <p>
+ * A binary or unary operator whose operands are (after folding) plain integer literals is replaced by
+ * the literal it evaluates to, using the same operators and semantics as the UBC's {@code BinaryFiroe}
+ * and {@code UnaryFiroe}. Division or modulo by zero is left in place, with its operands folded, so the
+ * evaluator still produces the NK value and message for it. Literals with characterizations, unary
+ * {@code +} and {@code *}, and every non-arithmetic node are left alone; only their children are folded.
+ * <p>
+ * Folding returns the node itself when nothing below it changed, so unchanged subtrees keep their identity.
+ */
+public final class ConstantFolder {
+
+    private ConstantFolder() {
+    }
+
+    public static AST.Program fold(AST.Program program) {
+        AST.Branes branes = program.branes();
+        if (branes == null) {
+            return program;
+        }
+        AST.Branes folded = (AST.Branes) fold(branes);
+        return folded == branes ? program : new AST.Program(folded);
+    }
+
+    public static AST.Expr fold(AST.Expr expr) {
+        return switch (expr) {
+            case null -> null;
+            case AST.BinaryExpr binary -> foldBinary(binary);
+            case AST.UnaryExpr unary -> foldUnary(unary);
+            case AST.Brane brane -> {
+                List<AST.Expr> statements = foldAll(brane.statements());
+                yield statements == brane.statements() ? brane : new AST.Brane(brane.characterizations(), statements);
+            }
+            case AST.DetachmentBrane brane -> {
+                List<AST.DetachmentStatement> statements = new ArrayList<>(brane.statements().size());
+                boolean changed = false;
+                for (AST.DetachmentStatement statement : brane.statements()) {
+                    AST.Expr folded = fold(statement.expr());
+                    changed |= folded != statement.expr();
+                    statements.add(folded == statement.expr()
+                        ? statement : new AST.DetachmentStatement(statement.identifier(), folded));
+                }
+                yield changed ? new AST.DetachmentBrane(brane.characterizations(), statements) : brane;
+            }
+            case AST.Branes branes -> {
+                List<AST.Characterizable> folded = foldAll(branes.branes());
+                yield folded == branes.branes() ? branes : new AST.Branes(folded);
+            }
+            case AST.Concatenation concatenation -> {
+                List<AST.Expr> elements = foldAll(concatenation.elements());
+                yield elements == concatenation.elements() ? concatenation : new AST.Concatenation(elements);
+            }
+            case AST.Assignment assignment -> {
+                AST.Expr value = fold(assignment.expr());
+                yield value == assignment.expr() ? assignment
+                    : new AST.Assignment(assignment.identifier(), value, assignment.operator(), assignment.location());
+            }
+            case AST.IfExpr ifExpr -> {
+                AST.Expr condition = fold(ifExpr.condition());
+                AST.Expr thenExpr = fold(ifExpr.thenExpr());
+                AST.Expr elseExpr = fold(ifExpr.elseExpr());
+                List<AST.IfExpr> elseIfs = foldAll(ifExpr.elseIfs());
+                yield condition == ifExpr.condition() && thenExpr == ifExpr.thenExpr()
+                    && elseExpr == ifExpr.elseExpr() && elseIfs == ifExpr.elseIfs()
+                    ? ifExpr : new AST.IfExpr(condition, thenExpr, elseExpr, elseIfs);
+            }
+            case AST.DereferenceExpr deref -> {
+                AST.Expr anchor = fold(deref.anchor());
+                yield anchor == deref.anchor() ? deref : new AST.DereferenceExpr(anchor, deref.coordinate());
+            }
+            case AST.RegexpSearchExpr search -> {
+                AST.Expr anchor = fold(search.anchor());
+                yield anchor == search.anchor() ? search
+                    : new AST.RegexpSearchExpr(anchor, search.operator(), search.pattern());
+            }
+            case AST.OneShotSearchExpr search -> {
+                AST.Expr anchor = fold(search.anchor());
+                yield anchor == search.anchor() ? search : new AST.OneShotSearchExpr(anchor, search.operator());
+            }
+            case AST.SeekExpr seek -> {
+                AST.Expr anchor = fold(seek.anchor());
+                yield anchor == seek.anchor() ? seek : new AST.SeekExpr(anchor, seek.offset());
+            }
+            case AST.StayFoolishExpr stayFoolish -> {
+                AST.Expr inner = fold(stayFoolish.expr());
+                yield inner == stayFoolish.expr() ? stayFoolish : new AST.StayFoolishExpr(inner);
+            }
+            case AST.StayFullyFoolishExpr stayFullyFoolish -> {
+                AST.Expr inner = fold(stayFullyFoolish.expr());
+                yield inner == stayFullyFoolish.expr() ? stayFullyFoolish : new AST.StayFullyFoolishExpr(inner);
+            }
+            default -> expr;
+        };
+    }
+
+    /**
+     * Folds every element; returns the original list if none changed.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends AST.Expr> List<T> foldAll(List<T> exprs) {
+        List<T> folded = null;
+        for (int i = 0; i < exprs.size(); i++) {
+            T expr = exprs.get(i);
+            T result = (T) fold(expr);
+            if (result != expr && folded == null) {
+                folded = new ArrayList<>(exprs.subList(0, i));
+            }
+            if (folded != null) {
+                folded.add(result);
+            }
+        }
+        return folded == null ? exprs : folded;
+    }
+
+    private static AST.Expr foldBinary(AST.BinaryExpr binary) {
+        AST.Expr left = fold(binary.left());
+        AST.Expr right = fold(binary.right());
+        if (literal(left) instanceof Long a && literal(right) instanceof Long b) {
+            Long value = switch (binary.op()) {
+                case "+" -> a + b;
+                case "-" -> a - b;
+                case "*" -> a * b;
+                case "/" -> b == 0 ? null : a / b;
+                case "%" -> b == 0 ? null : a % b;
+                case "==" -> a.longValue() == b.longValue() ? 1L : 0L;
+                case "!=", "<>" -> a.longValue() != b.longValue() ? 1L : 0L;
+                case "<" -> a < b ? 1L : 0L;
+                case "<=" -> a <= b ? 1L : 0L;
+                case ">" -> a > b ? 1L : 0L;
+                case ">=" -> a >= b ? 1L : 0L;
+                case "&&" -> (a != 0 && b != 0) ? 1L : 0L;
+                case "||" -> (a != 0 || b != 0) ? 1L : 0L;
+                default -> null;
+            };
+            if (value != null) {
+                return new AST.IntegerLiteral(value);
+            }
+        }
+        return left == binary.left() && right == binary.right() ? binary : new AST.BinaryExpr(binary.op(), left, right);
+    }
+
+    private static AST.Expr foldUnary(AST.UnaryExpr unary) {
+        AST.Expr operand = fold(unary.expr());
+        if (literal(operand) instanceof Long a) {
+            switch (unary.op()) {
+                case "-" -> {
+                    return new AST.IntegerLiteral(-a);
+                }
+                case "!" -> {
+                    return new AST.IntegerLiteral(a == 0 ? 1L : 0L);
+                }
+                default -> {
+                }
+            }
+        }
+        return operand == unary.expr() ? unary : new AST.UnaryExpr(unary.op(), operand);
+    }
+
+    /**
+     * The value of an uncharacterized integer literal, or null for anything else.
+     */
+    private static Long literal(AST.Expr expr) {
+        return expr instanceof AST.IntegerLiteral literal && literal.characterizations().isEmpty()
+            ? literal.value() : null;
+    }
+}
@@ -5,8 +5,8 @@ public enum SearchOperator {
     TAIL("$"),
     REGEXP_LOCAL("?"),              // Backward search (from end to start)
     REGEXP_FORWARD_LOCAL("~"),      // Forward search (from start to end)
-    REGEXP_GLOBAL("??"),            // Find-all backward (not yet implemented)
-    REGEXP_FORWARD_GLOBAL("~~"),    // Find-all forward (not yet implemented)
+    REGEXP_GLOBAL("??"),            // Find-all backward, a brane of every match
+    REGEXP_FORWARD_GLOBAL("~~"),    // Find-all forward, a brane of every match
     SEEK("#");
 
     public final String symbol;